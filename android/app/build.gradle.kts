@@ -6,6 +6,7 @@ plugins {
     id("com.google.devtools.ksp")
     id("com.google.dagger.hilt.android")
     id("com.google.gms.google-services")
+    id("androidx.baselineprofile")
 }
 
 import java.util.Properties
@@ -36,6 +37,9 @@ android {
         buildConfigField("String", "MAPS_API_KEY", "\"${properties.getProperty("MAPS_API_KEY", "")}\"")
         
         manifestPlaceholders["MAPS_API_KEY"] = properties.getProperty("MAPS_API_KEY", "")
+
+        // Lets a launch extra swap GPS and heart rate for a synthetic replay
+        buildConfigField("boolean", "EMULATED_SENSORS", "false")
     }
 
     buildTypes {
@@ -64,10 +68,40 @@ android {
             excludes += "/META-INF/{AL2.0,LGPL2.1}"
         }
     }
+
+    // JVM unit tests run against android.jar stubs; let Log and SystemClock return defaults
+    testOptions {
+        unitTests.isReturnDefaultValues = true
+    }
+}
+
+// Profiles are generated on a device or emulator with
+// ./gradlew :app:generateBaselineProfile and committed under src/main;
+// none has been generated yet
+baselineProfile {
+    saveInSrc = true
+    dexLayoutOptimization = true
+}
+
+// Build types added by the baseline profile plugin, used by :macrobenchmark.
+// Debug-signed so they install on an emulator, with sensor emulation allowed;
+// their source-set manifests add the screen deep links. Neither ships in
+// debug or release builds.
+androidComponents {
+    for (buildType in listOf("benchmarkRelease", "nonMinifiedRelease")) {
+        onVariants(selector().withBuildType(buildType)) { variant ->
+            variant.buildConfigFields.put(
+                "EMULATED_SENSORS",
+                com.android.build.api.variant.BuildConfigField("boolean", "true", null)
+            )
+            variant.signingConfig.setConfig(android.signingConfigs.getByName("debug"))
+        }
+    }
 }
 
 dependencies {
     implementation("androidx.core:core-ktx:1.17.0")
+    implementation("androidx.profileinstaller:profileinstaller:1.4.1")
     implementation("androidx.lifecycle:lifecycle-runtime-ktx:2.10.0")
     implementation("androidx.activity:activity-compose:1.12.2")
     implementation(platform("androidx.compose:compose-bom:2025.12.01"))
@@ -107,7 +141,11 @@ dependencies {
     implementation("com.google.maps.android:maps-compose:6.4.1")
     implementation("com.google.android.gms:play-services-maps:19.2.0")
 
+    baselineProfile(project(":macrobenchmark"))
+
     testImplementation("junit:junit:4.13.2")
+    testImplementation("io.mockk:mockk:1.14.2")
+    testImplementation("org.jetbrains.kotlinx:kotlinx-coroutines-test:1.10.2")
     androidTestImplementation("androidx.test.ext:junit:1.3.0")
     androidTestImplementation("androidx.test.espresso:espresso-core:3.7.0")
     androidTestImplementation(platform("androidx.compose:compose-bom:2025.12.01"))
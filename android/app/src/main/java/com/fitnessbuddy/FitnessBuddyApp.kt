@@ -6,6 +6,7 @@ import androidx.hilt.navigation.compose.hiltViewModel
 import androidx.navigation.compose.NavHost
 import androidx.navigation.compose.composable
 import androidx.navigation.compose.rememberNavController
+import androidx.navigation.navDeepLink
 import com.fitnessbuddy.ui.auth.LoginScreen
 import com.fitnessbuddy.ui.dashboard.DashboardScreen
 import com.fitnessbuddy.ui.home.HomeScreen
@@ -17,6 +18,10 @@ import com.fitnessbuddy.ui.trainingplan.WorkoutDetailScreen
 import com.fitnessbuddy.ui.workout.WorkoutTrackerScreen
 import com.google.firebase.auth.FirebaseAuth
 
+// Lets benchmarks open a screen directly; only benchmark builds register the
+// scheme for MainActivity (src/benchmarkRelease/AndroidManifest.xml)
+private const val DEEP_LINK_BASE = "fitnessbuddy://app"
+
 @Composable
 fun FitnessBuddyApp() {
     val navController = rememberNavController()
@@ -87,7 +92,10 @@ fun FitnessBuddyApp() {
         }
         
         // Training Plan Overview - loads saved plan from Firestore (used from dashboard)
-        composable("training_plan") {
+        composable(
+            route = "training_plan",
+            deepLinks = listOf(navDeepLink { uriPattern = "$DEEP_LINK_BASE/training_plan" })
+        ) {
             val viewModel: TrainingPlanViewModel = hiltViewModel()
             
             LaunchedEffect(Unit) {
@@ -111,7 +119,10 @@ fun FitnessBuddyApp() {
         }
         
         // Week Detail
-        composable("week_detail/{weekNumber}") { backStackEntry ->
+        composable(
+            route = "week_detail/{weekNumber}",
+            deepLinks = listOf(navDeepLink { uriPattern = "$DEEP_LINK_BASE/week_detail/{weekNumber}" })
+        ) { backStackEntry ->
             val weekNumber = backStackEntry.arguments?.getString("weekNumber")?.toIntOrNull() ?: 1
             val viewModel: TrainingPlanViewModel = hiltViewModel()
             
@@ -160,7 +171,10 @@ fun FitnessBuddyApp() {
         }
         
         // Workout Tracker - Active workout with GPS/timer
-        composable("workout_tracker/{weekNumber}/{dayOfWeek}") { backStackEntry ->
+        composable(
+            route = "workout_tracker/{weekNumber}/{dayOfWeek}",
+            deepLinks = listOf(navDeepLink { uriPattern = "$DEEP_LINK_BASE/workout_tracker/{weekNumber}/{dayOfWeek}" })
+        ) { backStackEntry ->
             val weekNumber = backStackEntry.arguments?.getString("weekNumber")?.toIntOrNull() ?: 1
             val dayOfWeek = backStackEntry.arguments?.getString("dayOfWeek") ?: ""
             
@@ -1,82 +1,159 @@
 package com.fitnessbuddy.bluetooth
 
 import android.annotation.SuppressLint
-import android.bluetooth.BluetoothAdapter
 import android.bluetooth.BluetoothDevice
 import android.bluetooth.BluetoothGatt
-import android.bluetooth.BluetoothGattCallback
+import android.bluetooth.BluetoothGattCharacteristic
 import android.bluetooth.BluetoothManager
 import android.bluetooth.BluetoothProfile
 import android.bluetooth.le.ScanCallback
+import android.bluetooth.le.ScanFilter
 import android.bluetooth.le.ScanResult
+import android.bluetooth.le.ScanSettings
 import android.content.Context
+import android.os.ParcelUuid
 import android.util.Log
+import dagger.hilt.android.qualifiers.ApplicationContext
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
-import java.util.UUID
+import kotlinx.coroutines.launch
+import javax.inject.Inject
+import javax.inject.Singleton
 
+@Singleton
 @SuppressLint("MissingPermission") // Permissions handled in UI layer
-class BluetoothController(private val context: Context) {
+class BluetoothController @Inject constructor(
+    @ApplicationContext private val context: Context,
+    private val gattQueue: GattOperationQueue
+) {
 
     private val bluetoothManager = context.getSystemService(Context.BLUETOOTH_SERVICE) as BluetoothManager
     private val bluetoothAdapter = bluetoothManager.adapter
-    private var bluetoothGatt: BluetoothGatt? = null
+
+    // Also cleared from the Bluetooth callback thread when the machine drops us
+    @Volatile
+    private var connection: GattConnection? = null
+
+    @Volatile
+    private var scanning = false
+
+    /**
+     * Gets to configure the treadmill once its services are known, and
+     * receives its notifications on the Bluetooth callback thread.
+     */
+    interface PeripheralListener {
+        suspend fun onServicesDiscovered(connection: GattConnection)
+        fun onCharacteristicChanged(characteristic: BluetoothGattCharacteristic, value: ByteArray)
+        fun onDisconnected()
+    }
+
+    @Volatile
+    private var peripheralListener: PeripheralListener? = null
 
     private val _connectionState = MutableStateFlow(BluetoothProfile.STATE_DISCONNECTED)
     val connectionState: StateFlow<Int> = _connectionState
 
-    // FTMS Service UUID
-    private val FTMS_SERVICE_UUID = UUID.fromString("00001826-0000-1000-8000-00805f9b34fb")
-    
-    // Callback for scanning
+    // Enough for a full Treadmill Data notification in one packet
+    private val FTMS_MTU = 247
+
+    // The scan filter only lets fitness machines through; the first one found is used
     private val scanCallback = object : ScanCallback() {
         override fun onScanResult(callbackType: Int, result: ScanResult) {
+            if (!scanning) return
             val device = result.device
-            Log.d("BluetoothController", "Found device: ${device.name} [${device.address}]")
-            
-            // In a real app, check for specific services in scan record or show list to user
-            // For MVP, if name contains "Treadmill", try to connect
-            if (device.name?.contains("Treadmill", ignoreCase = true) == true) {
-                connect(device)
-            }
+            Log.d("BluetoothController", "Found fitness machine: ${device.name} [${device.address}]")
+            connect(device)
+        }
+
+        override fun onScanFailed(errorCode: Int) {
+            scanning = false
+            Log.e("BluetoothController", "Fitness machine scan failed: $errorCode")
         }
     }
 
-    private val gattCallback = object : BluetoothGattCallback() {
-        override fun onConnectionStateChange(gatt: BluetoothGatt, status: Int, newState: Int) {
-            _connectionState.value = newState
-            if (newState == BluetoothProfile.STATE_CONNECTED) {
+    private val connectionListener = object : GattConnection.Listener {
+        override fun onConnectionStateChange(connection: GattConnection, isConnected: Boolean) {
+            if (isConnected) {
                 Log.d("BluetoothController", "Connected to GATT server.")
-                gatt.discoverServices()
-            } else if (newState == BluetoothProfile.STATE_DISCONNECTED) {
+                _connectionState.value = BluetoothProfile.STATE_CONNECTING
+                connection.scope.launch { setUp(connection) }
+            } else {
                 Log.d("BluetoothController", "Disconnected from GATT server.")
+                // Release the GATT client so the next scan can connect again;
+                // a callback from a connection already replaced is left alone
+                if (this@BluetoothController.connection === connection) {
+                    this@BluetoothController.connection = null
+                    connection.close()
+                }
+                _connectionState.value = BluetoothProfile.STATE_DISCONNECTED
+                peripheralListener?.onDisconnected()
             }
         }
 
-        override fun onServicesDiscovered(gatt: BluetoothGatt, status: Int) {
-            if (status == BluetoothGatt.GATT_SUCCESS) {
+        override fun onCharacteristicChanged(characteristic: BluetoothGattCharacteristic, value: ByteArray) {
+            peripheralListener?.onCharacteristicChanged(characteristic, value)
+        }
+    }
+
+    // Connected is only reported once the services are known and commands can be sent
+    private suspend fun setUp(connection: GattConnection) {
+        connection.requestConnectionPriority(BluetoothGatt.CONNECTION_PRIORITY_HIGH)
+        connection.requestMtu(FTMS_MTU)
+            .onFailure { Log.w("BluetoothController", "Staying at the default MTU", it) }
+        connection.discoverServices()
+            .onSuccess {
                 Log.d("BluetoothController", "Services discovered")
-                // Notify TreadmillManager or ready state
+                peripheralListener?.onServicesDiscovered(connection)
+                _connectionState.value = BluetoothProfile.STATE_CONNECTED
             }
-        }
-        
-        // ... Implement other callbacks as needed
+            .onFailure { Log.e("BluetoothController", "Service discovery failed", it) }
     }
 
+    /**
+     * Scans for a machine advertising the Fitness Machine Service and
+     * connects to the first one found. Does nothing while scanning or
+     * connected.
+     */
     fun startScan() {
-        if (bluetoothAdapter?.isEnabled == true) {
-            bluetoothAdapter.bluetoothLeScanner?.startScan(scanCallback)
+        if (scanning || connection != null) return
+        val scanner = bluetoothAdapter?.takeIf { it.isEnabled }?.bluetoothLeScanner
+        if (scanner == null) {
+            Log.w("BluetoothController", "Bluetooth not available or not enabled")
+            return
         }
+        val filter = ScanFilter.Builder()
+            .setServiceUuid(ParcelUuid(FtmsUuids.FITNESS_MACHINE_SERVICE))
+            .build()
+        val settings = ScanSettings.Builder()
+            .setScanMode(ScanSettings.SCAN_MODE_LOW_LATENCY)
+            .build()
+        scanning = true
+        scanner.startScan(listOf(filter), settings, scanCallback)
+        Log.d("BluetoothController", "Scanning for fitness machines")
     }
 
     fun stopScan() {
+        if (!scanning) return
+        scanning = false
         bluetoothAdapter?.bluetoothLeScanner?.stopScan(scanCallback)
     }
 
     fun connect(device: BluetoothDevice) {
         stopScan()
-        bluetoothGatt = device.connectGatt(context, false, gattCallback)
+        connection?.close()
+        _connectionState.value = BluetoothProfile.STATE_CONNECTING
+        connection = gattQueue.connect(device, connectionListener)
     }
 
-    fun getGatt(): BluetoothGatt? = bluetoothGatt
+    fun disconnect() {
+        stopScan()
+        connection?.close()
+        connection = null
+        _connectionState.value = BluetoothProfile.STATE_DISCONNECTED
+        peripheralListener?.onDisconnected()
+    }
+
+    fun setPeripheralListener(listener: PeripheralListener?) {
+        peripheralListener = listener
+    }
 }
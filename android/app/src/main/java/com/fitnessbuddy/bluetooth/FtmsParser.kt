@@ -0,0 +1,138 @@
+package com.fitnessbuddy.bluetooth
+
+/**
+ * Decodes the Fitness Machine Service characteristics a treadmill streams:
+ * Treadmill Data (0x2ACD) and Fitness Machine Status (0x2ADA), as defined in
+ * the Bluetooth FTMS specification. All values are little-endian.
+ */
+object FtmsParser {
+
+    // Treadmill Data flags; note that bit 0 clear means the speed IS present
+    private const val FLAG_MORE_DATA = 0x0001
+    private const val FLAG_AVERAGE_SPEED = 0x0002
+    private const val FLAG_TOTAL_DISTANCE = 0x0004
+    private const val FLAG_INCLINATION = 0x0008
+    private const val FLAG_ELEVATION_GAIN = 0x0010
+    private const val FLAG_INSTANTANEOUS_PACE = 0x0020
+    private const val FLAG_AVERAGE_PACE = 0x0040
+    private const val FLAG_EXPENDED_ENERGY = 0x0080
+    private const val FLAG_HEART_RATE = 0x0100
+    private const val FLAG_METABOLIC_EQUIVALENT = 0x0200
+    private const val FLAG_ELAPSED_TIME = 0x0400
+
+    // Machine Status op codes
+    private const val STATUS_RESET = 0x01
+    private const val STATUS_STOPPED_OR_PAUSED = 0x02
+    private const val STATUS_STOPPED_BY_SAFETY_KEY = 0x03
+    private const val STATUS_STARTED_OR_RESUMED = 0x04
+    private const val STATUS_TARGET_SPEED_CHANGED = 0x05
+    private const val STATUS_TARGET_INCLINE_CHANGED = 0x06
+
+    private const val PARAMETER_PAUSE = 0x02
+
+    // Marks a signed field the machine doesn't support
+    private const val SINT16_NOT_AVAILABLE = 0x7FFF
+    private const val UINT16_NOT_AVAILABLE = 0xFFFF
+
+    /**
+     * Folds one Treadmill Data notification into [into], reading the flags
+     * once and allocating nothing. Fields the notification doesn't carry
+     * keep their previous value.
+     *
+     * @return true if the notification held the instantaneous speed, which
+     * ends a record; false if it was a continuation or too short for the
+     * fields its flags announce
+     */
+    fun decodeTreadmillData(value: ByteArray, into: TreadmillData): Boolean {
+        if (value.size < 2) return false
+        val flags = uint16(value, 0)
+        var offset = 2
+
+        val hasSpeed = flags and FLAG_MORE_DATA == 0
+        if (hasSpeed) {
+            if (value.size < offset + 2) return false
+            into.speedKmh = uint16(value, offset) / 100f
+            offset += 2
+        }
+        if (flags and FLAG_AVERAGE_SPEED != 0) {
+            if (value.size < offset + 2) return false
+            into.averageSpeedKmh = uint16(value, offset) / 100f
+            offset += 2
+        }
+        if (flags and FLAG_TOTAL_DISTANCE != 0) {
+            if (value.size < offset + 3) return false
+            into.totalDistanceMeters = uint24(value, offset)
+            offset += 3
+        }
+        if (flags and FLAG_INCLINATION != 0) {
+            if (value.size < offset + 4) return false
+            val incline = uint16(value, offset)
+            val ramp = uint16(value, offset + 2)
+            into.inclinePercent = if (incline == SINT16_NOT_AVAILABLE) Float.NaN else sint16(incline) / 10f
+            into.rampAngleDegrees = if (ramp == SINT16_NOT_AVAILABLE) Float.NaN else sint16(ramp) / 10f
+            offset += 4
+        }
+        if (flags and FLAG_ELEVATION_GAIN != 0) {
+            if (value.size < offset + 4) return false
+            into.positiveElevationGainMeters = uint16(value, offset) / 10f
+            into.negativeElevationGainMeters = uint16(value, offset + 2) / 10f
+            offset += 4
+        }
+        // Pace only restates the speed
+        if (flags and FLAG_INSTANTANEOUS_PACE != 0) offset += 1
+        if (flags and FLAG_AVERAGE_PACE != 0) offset += 1
+        if (flags and FLAG_EXPENDED_ENERGY != 0) {
+            if (value.size < offset + 5) return false
+            val total = uint16(value, offset)
+            if (total != UINT16_NOT_AVAILABLE) into.totalEnergyKcal = total
+            offset += 5
+        }
+        if (flags and FLAG_HEART_RATE != 0) {
+            if (value.size < offset + 1) return false
+            into.heartRate = value[offset].toInt() and 0xFF
+            offset += 1
+        }
+        if (flags and FLAG_METABOLIC_EQUIVALENT != 0) offset += 1
+        if (flags and FLAG_ELAPSED_TIME != 0) {
+            if (value.size < offset + 2) return false
+            into.elapsedSeconds = uint16(value, offset)
+        }
+        // Remaining time, force on belt and power output aren't used
+        return hasSpeed
+    }
+
+    /**
+     * Folds one Fitness Machine Status notification into [into].
+     *
+     * @return false if the op code isn't one a treadmill workout cares about
+     */
+    fun decodeMachineStatus(value: ByteArray, into: TreadmillData): Boolean {
+        if (value.isEmpty()) return false
+        when (value[0].toInt() and 0xFF) {
+            STATUS_RESET, STATUS_STOPPED_BY_SAFETY_KEY -> into.state = TreadmillState.STOPPED
+            STATUS_STOPPED_OR_PAUSED -> {
+                val isPause = value.size > 1 && value[1].toInt() == PARAMETER_PAUSE
+                into.state = if (isPause) TreadmillState.PAUSED else TreadmillState.STOPPED
+            }
+            STATUS_STARTED_OR_RESUMED -> into.state = TreadmillState.RUNNING
+            STATUS_TARGET_SPEED_CHANGED -> {
+                if (value.size < 3) return false
+                into.targetSpeedKmh = uint16(value, 1) / 100f
+            }
+            STATUS_TARGET_INCLINE_CHANGED -> {
+                if (value.size < 3) return false
+                into.targetInclinePercent = sint16(uint16(value, 1)) / 10f
+            }
+            else -> return false
+        }
+        return true
+    }
+
+    private fun uint16(value: ByteArray, offset: Int): Int =
+        (value[offset].toInt() and 0xFF) or ((value[offset + 1].toInt() and 0xFF) shl 8)
+
+    private fun uint24(value: ByteArray, offset: Int): Int =
+        uint16(value, offset) or ((value[offset + 2].toInt() and 0xFF) shl 16)
+
+    private fun sint16(raw: Int): Int = raw.toShort().toInt()
+}
@@ -0,0 +1,343 @@
+package com.fitnessbuddy.bluetooth
+
+import android.annotation.SuppressLint
+import android.bluetooth.BluetoothDevice
+import android.bluetooth.BluetoothGatt
+import android.bluetooth.BluetoothGattCallback
+import android.bluetooth.BluetoothGattCharacteristic
+import android.bluetooth.BluetoothGattDescriptor
+import android.bluetooth.BluetoothGattService
+import android.bluetooth.BluetoothProfile
+import android.bluetooth.BluetoothStatusCodes
+import android.os.Build
+import android.util.Log
+import kotlinx.coroutines.CompletableDeferred
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
+import kotlinx.coroutines.withTimeoutOrNull
+import java.util.UUID
+
+/**
+ * One GATT client connection whose operations run strictly one at a time.
+ *
+ * Android silently drops a GATT request issued while another one on the same
+ * connection is still in flight. Every operation here waits for the previous
+ * one's completion callback, suspends until its own arrives and gives up
+ * after a timeout. A completion only counts for the operation it belongs to,
+ * matched by kind and characteristic or descriptor, so a callback arriving
+ * after its operation timed out can't complete the next one.
+ *
+ * Operations the stack rejected outright are retried a few times, as they
+ * never reached the peripheral. Failed or timed-out operations are only
+ * retried when repeating them is harmless: discovery, MTU, reads and
+ * notification set-up, but not characteristic writes such as control-point
+ * commands unless the caller says they are idempotent. Created by
+ * [GattOperationQueue.connect].
+ *
+ * Notifications are handed to the [Listener] directly on the Bluetooth
+ * callback thread, without queueing or allocation.
+ */
+@SuppressLint("MissingPermission") // Permissions handled in UI layer
+class GattConnection internal constructor(
+    val device: BluetoothDevice,
+    private val listener: Listener,
+    private val discoveryLock: Mutex
+) : BluetoothGattCallback() {
+
+    /**
+     * Receives connection changes and notifications, on the Bluetooth callback thread.
+     */
+    interface Listener {
+        fun onConnectionStateChange(connection: GattConnection, isConnected: Boolean)
+
+        /** [value] is only valid until this returns. */
+        fun onCharacteristicChanged(characteristic: BluetoothGattCharacteristic, value: ByteArray)
+    }
+
+    private val TAG = "GattConnection"
+
+    /** Runs work for this connection; cancelled by [close]. */
+    val scope = CoroutineScope(SupervisorJob() + Dispatchers.Default)
+
+    private val operationLock = Mutex()
+
+    @Volatile
+    private var gatt: BluetoothGatt? = null
+
+    @Volatile
+    private var pending: Pending? = null
+
+    @Volatile
+    var isConnected = false
+        private set
+
+    /** ATT MTU in use; 23 until [requestMtu] negotiates more. */
+    @Volatile
+    var mtu = DEFAULT_MTU
+        private set
+
+    internal fun attach(gatt: BluetoothGatt?) {
+        if (this.gatt == null) this.gatt = gatt
+    }
+
+    fun getService(uuid: UUID): BluetoothGattService? = gatt?.getService(uuid)
+
+    /**
+     * Discovers the peripheral's services. Only one connection discovers at
+     * a time, as several Android stacks fail when discoveries overlap.
+     */
+    suspend fun discoverServices(): Result<Unit> = discoveryLock.withLock {
+        execute("discoverServices", Kind.DISCOVER_SERVICES, timeoutMillis = DISCOVERY_TIMEOUT_MS) {
+            it.discoverServices()
+        }.map { }
+    }
+
+    /**
+     * Asks for a larger ATT MTU so longer notifications arrive in one packet.
+     *
+     * @return The MTU the peripheral agreed to
+     */
+    suspend fun requestMtu(mtu: Int): Result<Int> =
+        execute("requestMtu", Kind.MTU) { it.requestMtu(mtu) }.map { it.value }
+            .onSuccess { this.mtu = it }
+
+    /**
+     * Requests a connection interval, one of the
+     * `BluetoothGatt.CONNECTION_PRIORITY_*` constants. There is no completion
+     * callback, so this only waits its turn in the queue.
+     */
+    suspend fun requestConnectionPriority(priority: Int): Result<Unit> = operationLock.withLock {
+        val gatt = gatt ?: return Result.failure(IllegalStateException("requestConnectionPriority: not connected"))
+        if (gatt.requestConnectionPriority(priority)) {
+            Result.success(Unit)
+        } else {
+            Result.failure(IllegalStateException("requestConnectionPriority: rejected by the Bluetooth stack"))
+        }
+    }
+
+    /**
+     * Enables notifications, or indications if that is all the
+     * characteristic supports, by writing its client configuration descriptor.
+     */
+    suspend fun enableNotifications(characteristic: BluetoothGattCharacteristic): Result<Unit> {
+        val descriptor = characteristic.getDescriptor(CLIENT_CONFIG_DESCRIPTOR)
+            ?: return Result.failure(IllegalStateException("${characteristic.uuid} has no client configuration descriptor"))
+        val value = if (characteristic.properties and BluetoothGattCharacteristic.PROPERTY_NOTIFY != 0) {
+            BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE
+        } else {
+            BluetoothGattDescriptor.ENABLE_INDICATION_VALUE
+        }
+        return execute("enableNotifications ${characteristic.uuid}", Kind.DESCRIPTOR_WRITE, uuid = characteristic.uuid) { gatt ->
+            gatt.setCharacteristicNotification(characteristic, true) && writeDescriptor(gatt, descriptor, value)
+        }.map { }
+    }
+
+    /**
+     * Writes [value] to [characteristic]. Unless [idempotent], a write that
+     * may have reached the peripheral is not repeated: a control-point
+     * command could otherwise run twice.
+     */
+    suspend fun writeCharacteristic(
+        characteristic: BluetoothGattCharacteristic,
+        value: ByteArray,
+        writeType: Int = BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT,
+        idempotent: Boolean = false
+    ): Result<Unit> = execute(
+        "write ${characteristic.uuid}",
+        Kind.CHARACTERISTIC_WRITE,
+        uuid = characteristic.uuid,
+        idempotent = idempotent
+    ) { gatt ->
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            gatt.writeCharacteristic(characteristic, value, writeType) == BluetoothStatusCodes.SUCCESS
+        } else {
+            writeCharacteristicLegacy(gatt, characteristic, value, writeType)
+        }
+    }.map { }
+
+    suspend fun readCharacteristic(characteristic: BluetoothGattCharacteristic): Result<ByteArray> =
+        execute("read ${characteristic.uuid}", Kind.CHARACTERISTIC_READ, uuid = characteristic.uuid) {
+            it.readCharacteristic(characteristic)
+        }.map { it.bytes ?: ByteArray(0) }
+
+    /**
+     * Disconnects and releases the connection. Operations still waiting fail.
+     */
+    fun close() {
+        isConnected = false
+        gatt?.let { gatt ->
+            gatt.disconnect()
+            gatt.close()
+        }
+        gatt = null
+        pending?.deferred?.complete(Completion(BluetoothGatt.GATT_FAILURE))
+        scope.cancel()
+    }
+
+    /**
+     * Runs one operation, holding the connection's lock from the first attempt
+     * to the last retry.
+     *
+     * @param uuid Characteristic the completion callback must report, for
+     *   descriptor writes the descriptor's characteristic
+     * @param idempotent Whether an attempt that may have reached the
+     *   peripheral can be repeated
+     */
+    private suspend fun execute(
+        operation: String,
+        kind: Kind,
+        uuid: UUID? = null,
+        timeoutMillis: Long = OPERATION_TIMEOUT_MS,
+        idempotent: Boolean = kind != Kind.CHARACTERISTIC_WRITE,
+        start: (BluetoothGatt) -> Boolean
+    ): Result<Completion> = operationLock.withLock {
+        var result = attempt(operation, kind, uuid, timeoutMillis, start)
+        var retry = 0
+        while (result.isFailure && retry < MAX_RETRIES && isConnected &&
+            (idempotent || result.exceptionOrNull() is RejectedException)
+        ) {
+            retry++
+            Log.w(TAG, "${result.exceptionOrNull()?.message}, retry $retry of $MAX_RETRIES")
+            delay(RETRY_DELAY_MS * retry)
+            result = attempt(operation, kind, uuid, timeoutMillis, start)
+        }
+        result
+    }
+
+    private suspend fun attempt(
+        operation: String,
+        kind: Kind,
+        uuid: UUID?,
+        timeoutMillis: Long,
+        start: (BluetoothGatt) -> Boolean
+    ): Result<Completion> {
+        val gatt = gatt
+        if (gatt == null || !isConnected) {
+            return Result.failure(IllegalStateException("$operation: not connected"))
+        }
+        val completion = CompletableDeferred<Completion>()
+        pending = Pending(kind, uuid, completion)
+        try {
+            if (!start(gatt)) {
+                // Usually another client of the stack is mid-operation
+                return Result.failure(RejectedException("$operation: rejected by the Bluetooth stack"))
+            }
+            val done = withTimeoutOrNull(timeoutMillis) { completion.await() }
+                ?: return Result.failure(IllegalStateException("$operation: timed out after $timeoutMillis ms"))
+            if (done.status != BluetoothGatt.GATT_SUCCESS) {
+                return Result.failure(IllegalStateException("$operation: GATT status ${done.status}"))
+            }
+            return Result.success(done)
+        } finally {
+            pending = null
+        }
+    }
+
+    private fun writeDescriptor(gatt: BluetoothGatt, descriptor: BluetoothGattDescriptor, value: ByteArray): Boolean =
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU) {
+            gatt.writeDescriptor(descriptor, value) == BluetoothStatusCodes.SUCCESS
+        } else {
+            writeDescriptorLegacy(gatt, descriptor, value)
+        }
+
+    @Suppress("DEPRECATION")
+    private fun writeDescriptorLegacy(gatt: BluetoothGatt, descriptor: BluetoothGattDescriptor, value: ByteArray): Boolean {
+        descriptor.value = value
+        return gatt.writeDescriptor(descriptor)
+    }
+
+    @Suppress("DEPRECATION")
+    private fun writeCharacteristicLegacy(
+        gatt: BluetoothGatt,
+        characteristic: BluetoothGattCharacteristic,
+        value: ByteArray,
+        writeType: Int
+    ): Boolean {
+        characteristic.value = value
+        characteristic.writeType = writeType
+        return gatt.writeCharacteristic(characteristic)
+    }
+
+    // Drops completions of operations that already gave up
+    private fun complete(kind: Kind, uuid: UUID?, status: Int, value: Int = 0, bytes: ByteArray? = null) {
+        val current = pending
+        if (current == null || current.kind != kind || current.uuid != uuid) {
+            Log.w(TAG, "Ignoring stale $kind completion for $uuid, status $status")
+            return
+        }
+        current.deferred.complete(Completion(status, value, bytes))
+    }
+
+    override fun onConnectionStateChange(gatt: BluetoothGatt, status: Int, newState: Int) {
+        this.gatt = gatt
+        val connected = newState == BluetoothProfile.STATE_CONNECTED
+        isConnected = connected
+        if (!connected) {
+            mtu = DEFAULT_MTU
+            // Nothing in flight will complete any more
+            pending?.deferred?.complete(Completion(BluetoothGatt.GATT_FAILURE))
+        }
+        listener.onConnectionStateChange(this, connected)
+    }
+
+    override fun onServicesDiscovered(gatt: BluetoothGatt, status: Int) =
+        complete(Kind.DISCOVER_SERVICES, null, status)
+
+    override fun onMtuChanged(gatt: BluetoothGatt, mtu: Int, status: Int) =
+        complete(Kind.MTU, null, status, value = mtu)
+
+    override fun onDescriptorWrite(gatt: BluetoothGatt, descriptor: BluetoothGattDescriptor, status: Int) =
+        complete(Kind.DESCRIPTOR_WRITE, descriptor.characteristic?.uuid, status)
+
+    override fun onCharacteristicWrite(gatt: BluetoothGatt, characteristic: BluetoothGattCharacteristic, status: Int) =
+        complete(Kind.CHARACTERISTIC_WRITE, characteristic.uuid, status)
+
+    override fun onCharacteristicRead(
+        gatt: BluetoothGatt,
+        characteristic: BluetoothGattCharacteristic,
+        value: ByteArray,
+        status: Int
+    ) = complete(Kind.CHARACTERISTIC_READ, characteristic.uuid, status, bytes = value)
+
+    // Android 12 and lower; newer versions only call the overload above
+    @Suppress("OVERRIDE_DEPRECATION", "DEPRECATION")
+    override fun onCharacteristicRead(gatt: BluetoothGatt, characteristic: BluetoothGattCharacteristic, status: Int) =
+        complete(Kind.CHARACTERISTIC_READ, characteristic.uuid, status, bytes = characteristic.value)
+
+    override fun onCharacteristicChanged(
+        gatt: BluetoothGatt,
+        characteristic: BluetoothGattCharacteristic,
+        value: ByteArray
+    ) = listener.onCharacteristicChanged(characteristic, value)
+
+    // Android 12 and lower; newer versions only call the overload above
+    @Suppress("OVERRIDE_DEPRECATION", "DEPRECATION")
+    override fun onCharacteristicChanged(gatt: BluetoothGatt, characteristic: BluetoothGattCharacteristic) {
+        listener.onCharacteristicChanged(characteristic, characteristic.value ?: return)
+    }
+
+    private enum class Kind { DISCOVER_SERVICES, MTU, DESCRIPTOR_WRITE, CHARACTERISTIC_WRITE, CHARACTERISTIC_READ }
+
+    private class Pending(val kind: Kind, val uuid: UUID?, val deferred: CompletableDeferred<Completion>)
+
+    private class Completion(val status: Int, val value: Int = 0, val bytes: ByteArray? = null)
+
+    // The request never reached the peripheral, so it is always safe to repeat
+    private class RejectedException(message: String) : IllegalStateException(message)
+
+    companion object {
+        val CLIENT_CONFIG_DESCRIPTOR: UUID = UUID.fromString("00002902-0000-1000-8000-00805f9b34fb")
+
+        const val DEFAULT_MTU = 23
+
+        private const val OPERATION_TIMEOUT_MS = 5_000L
+        private const val DISCOVERY_TIMEOUT_MS = 15_000L
+        private const val MAX_RETRIES = 2
+        private const val RETRY_DELAY_MS = 200L
+    }
+}
@@ -0,0 +1,35 @@
+package com.fitnessbuddy.bluetooth
+
+import android.annotation.SuppressLint
+import android.bluetooth.BluetoothDevice
+import android.content.Context
+import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.sync.Mutex
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Opens GATT connections for every BLE sensor in the app.
+ *
+ * Each [GattConnection] serializes its own operations, so a heart-rate strap
+ * and a treadmill can both be set up and stream at full rate without either
+ * one's requests being dropped. Service discovery is additionally serialized
+ * across all connections.
+ */
+@Singleton
+class GattOperationQueue @Inject constructor(
+    @ApplicationContext private val context: Context
+) {
+    private val discoveryLock = Mutex()
+
+    /**
+     * Connects to [device] over LE. The listener is told when the link is up;
+     * set-up such as service discovery goes through the returned connection.
+     */
+    @SuppressLint("MissingPermission") // Permissions handled in UI layer
+    fun connect(device: BluetoothDevice, listener: GattConnection.Listener): GattConnection {
+        val connection = GattConnection(device, listener, discoveryLock)
+        connection.attach(device.connectGatt(context, false, connection, BluetoothDevice.TRANSPORT_LE))
+        return connection
+    }
+}
@@ -0,0 +1,95 @@
+package com.fitnessbuddy.bluetooth
+
+/**
+ * Run state as announced on the FTMS Machine Status characteristic.
+ */
+enum class TreadmillState {
+    UNKNOWN,
+    RUNNING,
+    PAUSED,
+    STOPPED
+}
+
+/**
+ * Latest known state of a treadmill, folded from Treadmill Data and Machine
+ * Status notifications.
+ *
+ * A treadmill may spread one record over several notifications and leave out
+ * fields it doesn't measure, so [FtmsParser] only overwrites the fields a
+ * notification carries and the rest keep their last value. Unknown values
+ * are NaN or -1. Instances are meant to be reused; nothing is allocated per
+ * notification.
+ */
+class TreadmillData {
+    /** Belt speed in km/h. */
+    var speedKmh: Float = Float.NaN
+        internal set
+
+    var averageSpeedKmh: Float = Float.NaN
+        internal set
+
+    /** Distance the machine has counted since it started, in metres. */
+    var totalDistanceMeters: Int = -1
+        internal set
+
+    var inclinePercent: Float = Float.NaN
+        internal set
+
+    var rampAngleDegrees: Float = Float.NaN
+        internal set
+
+    var positiveElevationGainMeters: Float = Float.NaN
+        internal set
+
+    var negativeElevationGainMeters: Float = Float.NaN
+        internal set
+
+    var totalEnergyKcal: Int = -1
+        internal set
+
+    /** Heart rate the machine measured itself, e.g. from hand grips. */
+    var heartRate: Int = -1
+        internal set
+
+    var elapsedSeconds: Int = -1
+        internal set
+
+    var state: TreadmillState = TreadmillState.UNKNOWN
+        internal set
+
+    var targetSpeedKmh: Float = Float.NaN
+        internal set
+
+    var targetInclinePercent: Float = Float.NaN
+        internal set
+
+    val speedMs: Float
+        get() = speedKmh / 3.6f
+
+    internal fun reset() {
+        speedKmh = Float.NaN
+        averageSpeedKmh = Float.NaN
+        totalDistanceMeters = -1
+        inclinePercent = Float.NaN
+        rampAngleDegrees = Float.NaN
+        positiveElevationGainMeters = Float.NaN
+        negativeElevationGainMeters = Float.NaN
+        totalEnergyKcal = -1
+        heartRate = -1
+        elapsedSeconds = -1
+        state = TreadmillState.UNKNOWN
+        targetSpeedKmh = Float.NaN
+        targetInclinePercent = Float.NaN
+    }
+}
+
+/**
+ * One treadmill reading handed to the workout pipeline.
+ */
+data class TreadmillSample(
+    val timestamp: Long,
+    val speedMs: Float,
+    val totalDistanceMeters: Float,     // NaN if the machine doesn't count distance
+    val inclinePercent: Float,          // NaN if the machine doesn't report incline
+    val isRunning: Boolean
+)
@@ -1,26 +1,103 @@
 package com.fitnessbuddy.bluetooth
 
-import android.annotation.SuppressLint
 import android.bluetooth.BluetoothGattCharacteristic
+import android.util.Log
+import kotlinx.coroutines.channels.BufferOverflow
+import kotlinx.coroutines.flow.MutableSharedFlow
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.SharedFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asSharedFlow
+import kotlinx.coroutines.flow.asStateFlow
 import java.util.UUID
+import javax.inject.Inject
+import javax.inject.Singleton
 
-@SuppressLint("MissingPermission")
-class TreadmillManager(private val bluetoothController: BluetoothController) {
+/**
+ * Standard Bluetooth UUIDs for the Fitness Machine Service
+ */
+object FtmsUuids {
+    val FITNESS_MACHINE_SERVICE: UUID = UUID.fromString("00001826-0000-1000-8000-00805f9b34fb")
+    val TREADMILL_DATA: UUID = UUID.fromString("00002acd-0000-1000-8000-00805f9b34fb")
+    val CONTROL_POINT: UUID = UUID.fromString("00002ad9-0000-1000-8000-00805f9b34fb")
+    val MACHINE_STATUS: UUID = UUID.fromString("00002ada-0000-1000-8000-00805f9b34fb")
+}
+
+/**
+ * FTMS client for the treadmill connected through [BluetoothController].
+ *
+ * The service and its characteristics are looked up once per connection.
+ * Treadmill Data and Machine Status are subscribed to and decoded into a
+ * reused [TreadmillData]; every complete record is published on [samples]
+ * for the workout pipeline. Control commands are queued on the treadmill's
+ * [GattConnection], so none are lost when several are sent back to back.
+ */
+@Singleton
+class TreadmillManager @Inject constructor(private val bluetoothController: BluetoothController) {
+
+    private val TAG = "TreadmillManager"
 
-    // FTMS Control Point Characteristic (UUID 0x2AD9)
-    private val FTMS_CONTROL_POINT_UUID = UUID.fromString("00002AD9-0000-1000-8000-00805f9b34fb")
-    
     // Opcodes per FTMS spec
     private val OPCODE_REQUEST_CONTROL = 0x00.toByte()
     private val OPCODE_RESET = 0x01.toByte()
     private val OPCODE_SET_TARGET_SPEED = 0x02.toByte()
     private val OPCODE_SET_TARGET_INCLINATION = 0x03.toByte()
 
-    fun requestControl() {
-        sendCommand(byteArrayOf(OPCODE_REQUEST_CONTROL))
+    /**
+     * Characteristics resolved after discovery; null where the machine lacks them.
+     */
+    private class FtmsHandles(
+        val connection: GattConnection,
+        val controlPoint: BluetoothGattCharacteristic?,
+        val treadmillData: BluetoothGattCharacteristic?,
+        val machineStatus: BluetoothGattCharacteristic?
+    )
+
+    @Volatile
+    private var handles: FtmsHandles? = null
+
+    // Only touched on the Bluetooth callback thread
+    private val data = TreadmillData()
+
+    private val _samples = MutableSharedFlow<TreadmillSample>(
+        extraBufferCapacity = 16,
+        onBufferOverflow = BufferOverflow.DROP_OLDEST
+    )
+    /** One sample per complete Treadmill Data record, while a treadmill is connected. */
+    val samples: SharedFlow<TreadmillSample> = _samples.asSharedFlow()
+
+    private val _state = MutableStateFlow(TreadmillState.UNKNOWN)
+    val state: StateFlow<TreadmillState> = _state.asStateFlow()
+
+    init {
+        bluetoothController.setPeripheralListener(object : BluetoothController.PeripheralListener {
+            override suspend fun onServicesDiscovered(connection: GattConnection) = setUp(connection)
+
+            override fun onCharacteristicChanged(characteristic: BluetoothGattCharacteristic, value: ByteArray) =
+                onNotification(characteristic, value)
+
+            override fun onDisconnected() {
+                handles = null
+                data.reset()
+                _state.value = TreadmillState.UNKNOWN
+            }
+        })
+    }
+
+    /**
+     * Looks for a treadmill advertising the Fitness Machine Service and
+     * connects to the first one found; [samples] start once it is set up.
+     */
+    fun connect() = bluetoothController.startScan()
+
+    /** Stops scanning and drops the treadmill connection. */
+    fun disconnect() = bluetoothController.disconnect()
+
+    suspend fun requestControl(): Result<Unit> {
+        return sendCommand(byteArrayOf(OPCODE_REQUEST_CONTROL))
     }
 
-    fun setSpeed(kmh: Float) {
+    suspend fun setSpeed(kmh: Float): Result<Unit> {
         // Speed is typically UINT16 with resolution 0.01 km/h
         val value = (kmh * 100).toInt()
         val payload = byteArrayOf(
@@ -28,10 +105,10 @@ class TreadmillManager(private val bluetoothController: BluetoothController) {
             (value and 0xFF).toByte(),
             ((value shr 8) and 0xFF).toByte()
         )
-        sendCommand(payload)
+        return sendCommand(payload)
     }
-    
-    fun setIncline(percent: Float) {
+
+    suspend fun setIncline(percent: Float): Result<Unit> {
         // Incline is typically SINT16 with resolution 0.1%
         val value = (percent * 10).toInt()
          val payload = byteArrayOf(
@@ -39,18 +116,65 @@ class TreadmillManager(private val bluetoothController: BluetoothController) {
             (value and 0xFF).toByte(),
             ((value shr 8) and 0xFF).toByte()
         )
-        sendCommand(payload)
+        return sendCommand(payload)
+    }
+
+    private suspend fun sendCommand(data: ByteArray): Result<Unit> {
+        val handles = handles ?: return Result.failure(IllegalStateException("No treadmill connected"))
+        val controlPoint = handles.controlPoint
+            ?: return Result.failure(IllegalStateException("Treadmill has no FTMS control point"))
+        return handles.connection.writeCharacteristic(controlPoint, data, BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT)
+    }
+
+    private suspend fun setUp(connection: GattConnection) {
+        val service = connection.getService(FtmsUuids.FITNESS_MACHINE_SERVICE)
+        if (service == null) {
+            Log.e(TAG, "Device has no fitness machine service")
+            return
+        }
+        val resolved = FtmsHandles(
+            connection = connection,
+            controlPoint = service.getCharacteristic(FtmsUuids.CONTROL_POINT),
+            treadmillData = service.getCharacteristic(FtmsUuids.TREADMILL_DATA),
+            machineStatus = service.getCharacteristic(FtmsUuids.MACHINE_STATUS)
+        )
+        data.reset()
+        handles = resolved
+
+        if (resolved.treadmillData == null) Log.w(TAG, "Treadmill doesn't stream treadmill data")
+        for (characteristic in listOfNotNull(resolved.treadmillData, resolved.machineStatus, resolved.controlPoint)) {
+            // The control point answers commands with indications
+            connection.enableNotifications(characteristic)
+                .onFailure { Log.e(TAG, "Failed to subscribe to ${characteristic.uuid}", it) }
+        }
+        if (resolved.controlPoint != null) {
+            requestControl().onFailure { Log.w(TAG, "Treadmill didn't grant control", it) }
+        }
     }
 
-    private fun sendCommand(data: ByteArray) {
-        val gatt = bluetoothController.getGatt() ?: return
-        val service = gatt.services.find { it.uuid.toString().startsWith("00001826") } 
-        val characteristic = service?.getCharacteristic(FTMS_CONTROL_POINT_UUID)
-        
-        if (characteristic != null) {
-            characteristic.value = data
-            characteristic.writeType = BluetoothGattCharacteristic.WRITE_TYPE_DEFAULT
-            gatt.writeCharacteristic(characteristic)
+    // Runs on the Bluetooth callback thread; only the published sample allocates
+    private fun onNotification(characteristic: BluetoothGattCharacteristic, value: ByteArray) {
+        when (characteristic.uuid) {
+            FtmsUuids.TREADMILL_DATA -> {
+                if (!FtmsParser.decodeTreadmillData(value, data)) return
+                // Treadmills without a status characteristic are running while the belt moves
+                val isRunning = when (data.state) {
+                    TreadmillState.UNKNOWN -> data.speedKmh > 0f
+                    else -> data.state == TreadmillState.RUNNING
+                }
+                _samples.tryEmit(
+                    TreadmillSample(
+                        timestamp = System.currentTimeMillis(),
+                        speedMs = data.speedMs,
+                        totalDistanceMeters = if (data.totalDistanceMeters < 0) Float.NaN else data.totalDistanceMeters.toFloat(),
+                        inclinePercent = data.inclinePercent,
+                        isRunning = isRunning
+                    )
+                )
+            }
+            FtmsUuids.MACHINE_STATUS -> {
+                if (FtmsParser.decodeMachineStatus(value, data)) _state.value = data.state
+            }
         }
     }
 }
@@ -0,0 +1,140 @@
+package com.fitnessbuddy.data.export
+
+import kotlin.math.abs
+import kotlin.math.roundToLong
+
+/**
+ * Locale-independent, allocation-light text helpers for the XML formats.
+ * String.format would follow the device locale and write decimal commas.
+ */
+internal object ExportText {
+
+    /**
+     * Appends [epochMillis] as UTC ISO-8601, e.g. `2024-05-01T07:30:00Z`;
+     * milliseconds are written only when non-zero.
+     */
+    fun appendIsoTime(out: Appendable, epochMillis: Long) {
+        val epochSeconds = Math.floorDiv(epochMillis, 1000L)
+        val millis = Math.floorMod(epochMillis, 1000L).toInt()
+        val days = Math.floorDiv(epochSeconds, 86_400L)
+        val secondOfDay = Math.floorMod(epochSeconds, 86_400L).toInt()
+
+        // Civil date from days since epoch (Howard Hinnant's algorithm)
+        val z = days + 719_468
+        val era = Math.floorDiv(z, 146_097L)
+        val doe = z - era * 146_097
+        val yoe = (doe - doe / 1460 + doe / 36_524 - doe / 146_096) / 365
+        val doy = doe - (365 * yoe + yoe / 4 - yoe / 100)
+        val mp = (5 * doy + 2) / 153
+        val day = (doy - (153 * mp + 2) / 5 + 1).toInt()
+        val month = (if (mp < 10) mp + 3 else mp - 9).toInt()
+        val year = (yoe + era * 400 + if (month <= 2) 1 else 0).toInt()
+
+        appendPadded(out, year, 4)
+        out.append('-')
+        appendPadded(out, month, 2)
+        out.append('-')
+        appendPadded(out, day, 2)
+        out.append('T')
+        appendPadded(out, secondOfDay / 3600, 2)
+        out.append(':')
+        appendPadded(out, secondOfDay / 60 % 60, 2)
+        out.append(':')
+        appendPadded(out, secondOfDay % 60, 2)
+        if (millis != 0) {
+            out.append('.')
+            appendPadded(out, millis, 3)
+        }
+        out.append('Z')
+    }
+
+    /**
+     * Parses an ISO-8601 date-time with optional fraction and `Z` or `±hh:mm` offset.
+     *
+     * @return Epoch milliseconds, or null if [text] isn't a date-time
+     */
+    fun parseIsoTime(text: CharSequence): Long? {
+        val s = text.trim()
+        if (s.length < 19 || s[4] != '-' || s[7] != '-' || (s[10] != 'T' && s[10] != ' ')) return null
+        val year = digits(s, 0, 4) ?: return null
+        val month = digits(s, 5, 2) ?: return null
+        val day = digits(s, 8, 2) ?: return null
+        val hour = digits(s, 11, 2) ?: return null
+        val minute = digits(s, 14, 2) ?: return null
+        val second = digits(s, 17, 2) ?: return null
+
+        var i = 19
+        var millis = 0
+        if (i < s.length && s[i] == '.') {
+            i++
+            var scale = 100
+            while (i < s.length && s[i].isDigit()) {
+                millis += (s[i] - '0') * scale
+                scale /= 10
+                i++
+            }
+        }
+        var offsetMinutes = 0
+        if (i < s.length && (s[i] == '+' || s[i] == '-')) {
+            val sign = if (s[i] == '-') -1 else 1
+            val offsetHours = digits(s, i + 1, 2) ?: return null
+            // Minutes may follow as ":mm", "mm" or be omitted
+            val minutesStart = if (i + 3 < s.length && s[i + 3] == ':') i + 4 else i + 3
+            val offsetMins = digits(s, minutesStart, 2) ?: 0
+            offsetMinutes = sign * (offsetHours * 60 + offsetMins)
+        }
+
+        // Days since epoch from the civil date (Howard Hinnant's algorithm)
+        val y = if (month <= 2) year - 1L else year.toLong()
+        val era = Math.floorDiv(y, 400L)
+        val yoe = y - era * 400
+        val doy = (153 * (if (month > 2) month - 3 else month + 9) + 2) / 5 + day - 1
+        val doe = yoe * 365 + yoe / 4 - yoe / 100 + doy
+        val days = era * 146_097 + doe - 719_468
+
+        val seconds = days * 86_400 + hour * 3600L + minute * 60L + second - offsetMinutes * 60L
+        return seconds * 1000 + millis
+    }
+
+    /**
+     * Appends [value] with exactly [decimals] fraction digits and a '.' separator.
+     */
+    fun appendFixed(out: Appendable, value: Double, decimals: Int) {
+        var scale = 1L
+        repeat(decimals) { scale *= 10 }
+        val scaled = (abs(value) * scale).roundToLong()
+        if (value < 0 && scaled != 0L) out.append('-')
+        out.append((scaled / scale).toString())
+        if (decimals > 0) {
+            out.append('.')
+            val fraction = scaled % scale
+            var pad = scale / 10
+            while (pad > 1 && fraction < pad) {
+                out.append('0')
+                pad /= 10
+            }
+            out.append(fraction.toString())
+        }
+    }
+
+    private fun appendPadded(out: Appendable, value: Int, width: Int) {
+        var limit = 1
+        repeat(width - 1) { limit *= 10 }
+        while (limit > 1 && value < limit) {
+            out.append('0')
+            limit /= 10
+        }
+        out.append(value.toString())
+    }
+
+    private fun digits(s: CharSequence, start: Int, count: Int): Int? {
+        if (start + count > s.length) return null
+        var value = 0
+        for (i in start until start + count) {
+            val c = s[i]
+            if (!c.isDigit()) return null
+            value = value * 10 + (c - '0')
+        }
+        return value
+    }
+}
@@ -0,0 +1,73 @@
+package com.fitnessbuddy.data.export
+
+/**
+ * Constants and helpers shared by the FIT reader and writer. Only the subset
+ * of the FIT profile the app produces and consumes is described here.
+ */
+internal object FitProtocol {
+    const val HEADER_SIZE = 14
+    const val PROTOCOL_VERSION = 0x20          // 2.0
+    const val PROFILE_VERSION = 2132           // 21.32
+
+    /** Seconds between the Unix epoch and the FIT epoch (1989-12-31T00:00:00Z). */
+    const val FIT_EPOCH_OFFSET_SECONDS = 631_065_600L
+
+    // Global message numbers
+    const val MESG_FILE_ID = 0
+    const val MESG_SESSION = 18
+    const val MESG_LAP = 19
+    const val MESG_RECORD = 20
+    const val MESG_ACTIVITY = 34
+
+    // Field numbers
+    const val FIELD_TIMESTAMP = 253
+    const val RECORD_POSITION_LAT = 0
+    const val RECORD_POSITION_LONG = 1
+    const val RECORD_ALTITUDE = 2
+    const val RECORD_HEART_RATE = 3
+    const val RECORD_DISTANCE = 5
+    const val RECORD_SPEED = 6
+    const val RECORD_ENHANCED_ALTITUDE = 78
+    const val SESSION_START_TIME = 2
+    const val SESSION_TOTAL_ELAPSED_TIME = 7
+    const val SESSION_TOTAL_DISTANCE = 9
+
+    // Base types
+    const val ENUM = 0x00
+    const val UINT8 = 0x02
+    const val SINT32 = 0x85
+    const val UINT16 = 0x84
+    const val UINT32 = 0x86
+
+    // Scales and offsets of the record fields
+    const val ALTITUDE_SCALE = 5.0
+    const val ALTITUDE_OFFSET = 500.0
+    const val DISTANCE_SCALE = 100.0
+    const val SPEED_SCALE = 1000.0
+    const val TIME_SCALE = 1000.0
+
+    private const val SEMICIRCLES_PER_DEGREE = 2147483648.0 / 180.0
+
+    fun toFitTime(epochMillis: Long): Long = epochMillis / 1000 - FIT_EPOCH_OFFSET_SECONDS
+
+    fun fromFitTime(fitSeconds: Long): Long = (fitSeconds + FIT_EPOCH_OFFSET_SECONDS) * 1000
+
+    fun toSemicircles(degrees: Double): Int = Math.round(degrees * SEMICIRCLES_PER_DEGREE).toInt()
+
+    fun fromSemicircles(semicircles: Int): Double = semicircles / SEMICIRCLES_PER_DEGREE
+
+    private val CRC_TABLE = intArrayOf(
+        0x0000, 0xCC01, 0xD801, 0x1400, 0xF001, 0x3C00, 0x2800, 0xE401,
+        0xA001, 0x6C00, 0x7800, 0xB401, 0x5000, 0x9C01, 0x8801, 0x4400
+    )
+
+    /** Folds [byte] into the running FIT CRC-16. */
+    fun crc(crc: Int, byte: Int): Int {
+        var tmp = CRC_TABLE[crc and 0xF]
+        var result = (crc shr 4) and 0x0FFF
+        result = result xor tmp xor CRC_TABLE[byte and 0xF]
+        tmp = CRC_TABLE[result and 0xF]
+        result = (result shr 4) and 0x0FFF
+        return result xor tmp xor CRC_TABLE[(byte shr 4) and 0xF]
+    }
+}
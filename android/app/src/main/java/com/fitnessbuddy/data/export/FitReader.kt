@@ -0,0 +1,194 @@
+package com.fitnessbuddy.data.export
+
+import java.io.EOFException
+import java.io.IOException
+import java.io.InputStream
+
+/**
+ * Decodes record and session messages from a FIT activity file, one message
+ * at a time. Handles both byte orders, compressed timestamp headers and
+ * developer fields; every other message is skipped by its definition.
+ */
+internal class FitReader(private val input: InputStream) {
+
+    private class Definition(
+        val globalNumber: Int,
+        val bigEndian: Boolean,
+        val fieldNumbers: IntArray,
+        val fieldSizes: IntArray,
+        val developerDataSize: Int
+    )
+
+    private val definitions = arrayOfNulls<Definition>(16)
+    private var remaining = 0L
+    private var lastTimestamp = -1L
+
+    fun read(): ImportedWorkout {
+        readHeader()
+        val builder = TrackBuilder()
+        while (remaining > 0) {
+            val header = readCounted()
+            when {
+                header and COMPRESSED_HEADER != 0 -> {
+                    val localType = (header shr 5) and 0x03
+                    val offset = header and 0x1F
+                    if (lastTimestamp >= 0) {
+                        var timestamp = (lastTimestamp and 0x1FL.inv()) + offset
+                        if (offset < (lastTimestamp and 0x1F)) timestamp += 0x20
+                        lastTimestamp = timestamp
+                    }
+                    readData(definitionFor(localType), builder)
+                }
+                header and DEFINITION_HEADER != 0 -> readDefinition(header)
+                else -> readData(definitionFor(header and 0x0F), builder)
+            }
+        }
+        return builder.build()
+    }
+
+    private fun readHeader() {
+        val headerSize = readByte()
+        if (headerSize < 12) throw IOException("Not a FIT file")
+        readByte()                                      // protocol version
+        readByte()
+        readByte()                                      // profile version
+        remaining = readUnsigned(4, bigEndian = false)
+        if (readByte() != '.'.code || readByte() != 'F'.code || readByte() != 'I'.code || readByte() != 'T'.code) {
+            throw IOException("Not a FIT file")
+        }
+        // Optional header CRC; header bytes aren't part of the data size
+        skip(headerSize - 12)
+    }
+
+    private fun readDefinition(header: Int) {
+        val hasDeveloperData = header and DEVELOPER_DATA_FLAG != 0
+        readCounted()                                   // reserved
+        val bigEndian = readCounted() == 1
+        val globalNumber = readUnsignedCounted(2, bigEndian).toInt()
+        val fieldCount = readCounted()
+        val numbers = IntArray(fieldCount)
+        val sizes = IntArray(fieldCount)
+        for (i in 0 until fieldCount) {
+            numbers[i] = readCounted()
+            sizes[i] = readCounted()
+            readCounted()                               // base type
+        }
+        var developerDataSize = 0
+        if (hasDeveloperData) {
+            repeat(readCounted()) {
+                readCounted()                           // field number
+                developerDataSize += readCounted()
+                readCounted()                           // developer index
+            }
+        }
+        definitions[header and 0x0F] = Definition(globalNumber, bigEndian, numbers, sizes, developerDataSize)
+    }
+
+    private fun readData(definition: Definition, builder: TrackBuilder) {
+        var latitude = INVALID_SINT32
+        var longitude = INVALID_SINT32
+        var altitude = Double.NaN
+        var heartRate = -1
+        var speed = 0f
+
+        for (i in definition.fieldNumbers.indices) {
+            val size = definition.fieldSizes[i]
+            if (size > 4) {
+                // Arrays and strings: nothing we read is wider than 32 bits
+                skipCounted(size)
+                continue
+            }
+            val raw = readUnsignedCounted(size, definition.bigEndian)
+            if (raw == invalidValue(size)) continue
+            val field = definition.fieldNumbers[i]
+            if (field == FitProtocol.FIELD_TIMESTAMP && size == 4) {
+                lastTimestamp = raw
+                continue
+            }
+            when (definition.globalNumber) {
+                FitProtocol.MESG_RECORD -> when (field) {
+                    FitProtocol.RECORD_POSITION_LAT -> if (raw != 0x7FFFFFFFL) latitude = raw.toInt()
+                    FitProtocol.RECORD_POSITION_LONG -> if (raw != 0x7FFFFFFFL) longitude = raw.toInt()
+                    FitProtocol.RECORD_ALTITUDE -> if (altitude.isNaN()) {
+                        altitude = raw / FitProtocol.ALTITUDE_SCALE - FitProtocol.ALTITUDE_OFFSET
+                    }
+                    FitProtocol.RECORD_ENHANCED_ALTITUDE ->
+                        altitude = raw / FitProtocol.ALTITUDE_SCALE - FitProtocol.ALTITUDE_OFFSET
+                    FitProtocol.RECORD_HEART_RATE -> heartRate = raw.toInt()
+                    FitProtocol.RECORD_SPEED -> speed = (raw / FitProtocol.SPEED_SCALE).toFloat()
+                }
+                FitProtocol.MESG_SESSION -> if (field == FitProtocol.SESSION_TOTAL_DISTANCE) {
+                    builder.reportDistance((raw / FitProtocol.DISTANCE_SCALE).toFloat())
+                }
+            }
+        }
+        skipCounted(definition.developerDataSize)
+
+        if (definition.globalNumber == FitProtocol.MESG_RECORD && lastTimestamp >= 0) {
+            val time = FitProtocol.fromFitTime(lastTimestamp)
+            if (latitude != INVALID_SINT32 && longitude != INVALID_SINT32) {
+                builder.addPoint(
+                    FitProtocol.fromSemicircles(latitude),
+                    FitProtocol.fromSemicircles(longitude),
+                    if (altitude.isNaN()) 0.0 else altitude,
+                    speed,
+                    time
+                )
+            } else {
+                builder.markTime(time)
+            }
+            if (heartRate > 0) builder.addHeartRate(time, heartRate)
+        }
+    }
+
+    private fun definitionFor(localType: Int): Definition =
+        definitions[localType] ?: throw IOException("Data message for undefined local type $localType")
+
+    private fun invalidValue(size: Int): Long = when (size) {
+        1 -> 0xFFL
+        2 -> 0xFFFFL
+        4 -> 0xFFFFFFFFL
+        else -> -1L
+    }
+
+    private fun readCounted(): Int {
+        remaining--
+        return readByte()
+    }
+
+    private fun readUnsignedCounted(size: Int, bigEndian: Boolean): Long {
+        remaining -= size
+        return readUnsigned(size, bigEndian)
+    }
+
+    private fun skipCounted(count: Int) {
+        remaining -= count
+        skip(count)
+    }
+
+    private fun readUnsigned(size: Int, bigEndian: Boolean): Long {
+        var value = 0L
+        for (i in 0 until size) {
+            val b = readByte().toLong()
+            value = if (bigEndian) (value shl 8) or b else value or (b shl (8 * i))
+        }
+        return value
+    }
+
+    private fun readByte(): Int {
+        val b = input.read()
+        if (b < 0) throw EOFException("Truncated FIT file")
+        return b
+    }
+
+    private fun skip(count: Int) {
+        repeat(count) { readByte() }
+    }
+
+    companion object {
+        private const val COMPRESSED_HEADER = 0x80
+        private const val DEFINITION_HEADER = 0x40
+        private const val DEVELOPER_DATA_FLAG = 0x20
+        private const val INVALID_SINT32 = Int.MAX_VALUE
+    }
+}
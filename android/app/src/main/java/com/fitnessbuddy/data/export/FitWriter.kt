@@ -0,0 +1,260 @@
+package com.fitnessbuddy.data.export
+
+import com.fitnessbuddy.data.export.FitProtocol.ENUM
+import com.fitnessbuddy.data.export.FitProtocol.SINT32
+import com.fitnessbuddy.data.export.FitProtocol.UINT16
+import com.fitnessbuddy.data.export.FitProtocol.UINT32
+import com.fitnessbuddy.data.export.FitProtocol.UINT8
+import com.fitnessbuddy.data.location.GeoMath
+import java.io.OutputStream
+
+/**
+ * Streams a [WorkoutTrack] as a FIT activity file: file_id, one record per
+ * sample, then lap, session and activity summaries.
+ *
+ * Every message has a fixed layout, so the data size for the header is
+ * known before the first record and the file is written in a single pass
+ * with a running CRC. Little-endian throughout.
+ */
+internal class FitWriter(private val out: OutputStream) {
+
+    // Fields are triples of field number, size in bytes and base type
+    private class MessageDefinition(val localType: Int, val globalNumber: Int, vararg val fields: Int) {
+        val fieldCount: Int get() = fields.size / 3
+        val definitionSize: Int get() = 6 + fields.size
+        val dataSize: Int get() = 1 + (0 until fieldCount).sumOf { fields[it * 3 + 1] }
+    }
+
+    private var crc = 0
+
+    fun write(track: WorkoutTrack) {
+        val route = track.route
+        val heartRate = track.heartRate
+        val recordCount = if (route.isNotEmpty()) route.size else heartRate.size
+
+        val dataSize = DEFINITIONS.sumOf { it.definitionSize } +
+            SINGLE_MESSAGES.sumOf { it.dataSize } +
+            recordCount * RECORD.dataSize
+        writeHeader(dataSize)
+
+        val startTime = FitProtocol.toFitTime(track.startTime)
+        val endTime = startTime + track.elapsedSeconds
+        val elapsedMillis = track.elapsedSeconds * 1000
+
+        writeDefinition(FILE_ID)
+        writeDataHeader(FILE_ID)
+        writeByte(4)                                    // type: activity
+        writeInt(255, 2)                                // manufacturer: development
+        writeInt(0, 2)                                  // product
+        writeInt(startTime, 4)                          // time_created
+
+        writeDefinition(RECORD)
+        if (route.isNotEmpty()) {
+            writeRouteRecords(track)
+        } else {
+            for (i in 0 until heartRate.size) {
+                writeRecord(
+                    FitProtocol.toFitTime(heartRate.timestamp(i)),
+                    Int.MAX_VALUE, Int.MAX_VALUE, INVALID_UINT16,
+                    heartRate.bpm(i), INVALID_UINT32, INVALID_UINT16
+                )
+            }
+        }
+
+        writeDefinition(LAP)
+        writeDataHeader(LAP)
+        writeInt(endTime, 4)                            // timestamp
+        writeInt(startTime, 4)                          // start_time
+        writeInt(elapsedMillis, 4)                      // total_elapsed_time
+        writeInt(elapsedMillis, 4)                      // total_timer_time
+        writeInt(scaledDistance(track.distanceMeters.toDouble()), 4)
+        writeByte(9)                                    // event: lap
+        writeByte(1)                                    // event_type: stop
+
+        writeDefinition(SESSION)
+        writeDataHeader(SESSION)
+        writeInt(endTime, 4)
+        writeInt(startTime, 4)
+        writeInt(elapsedMillis, 4)
+        writeInt(elapsedMillis, 4)
+        writeInt(scaledDistance(track.distanceMeters.toDouble()), 4)
+        writeByte(
+            when (SportCategory.of(track.sport)) {
+                SportCategory.RUNNING -> 1
+                SportCategory.CYCLING -> 2
+                SportCategory.OTHER -> 0
+            }
+        )
+        writeByte(0)                                    // sub_sport: generic
+        writeByte(8)                                    // event: session
+        writeByte(1)                                    // event_type: stop
+        writeInt(0, 2)                                  // first_lap_index
+        writeInt(1, 2)                                  // num_laps
+
+        writeDefinition(ACTIVITY)
+        writeDataHeader(ACTIVITY)
+        writeInt(endTime, 4)
+        writeInt(elapsedMillis, 4)                      // total_timer_time
+        writeInt(1, 2)                                  // num_sessions
+        writeByte(0)                                    // type: manual
+        writeByte(26)                                   // event: activity
+        writeByte(1)                                    // event_type: stop
+
+        // The file CRC covers everything written so far, header included
+        val fileCrc = crc
+        out.write(fileCrc and 0xFF)
+        out.write((fileCrc shr 8) and 0xFF)
+        out.flush()
+    }
+
+    private fun writeRouteRecords(track: WorkoutTrack) {
+        val route = track.route
+        val heartRate = HeartRateCursor(track.heartRate)
+        var distance = 0.0
+        for (i in 0 until route.size) {
+            if (i > 0) {
+                distance += GeoMath.distanceMeters(
+                    route.latitude(i - 1), route.longitude(i - 1), route.latitude(i), route.longitude(i)
+                )
+            }
+            val altitude = route.altitude(i)
+            val bpm = heartRate.bpmAt(route.timestamp(i))
+            writeRecord(
+                fitTime = FitProtocol.toFitTime(route.timestamp(i)),
+                latitude = FitProtocol.toSemicircles(route.latitude(i)),
+                longitude = FitProtocol.toSemicircles(route.longitude(i)),
+                altitude = if (altitude.isNaN()) {
+                    INVALID_UINT16
+                } else {
+                    ((altitude + FitProtocol.ALTITUDE_OFFSET) * FitProtocol.ALTITUDE_SCALE).toLong()
+                        .coerceIn(0L, INVALID_UINT16 - 1)
+                },
+                bpm = if (bpm > 0) bpm else INVALID_UINT8,
+                distance = scaledDistance(distance),
+                speed = (route.speed(i) * FitProtocol.SPEED_SCALE).toLong().coerceIn(0L, INVALID_UINT16 - 1)
+            )
+        }
+    }
+
+    private fun writeRecord(
+        fitTime: Long,
+        latitude: Int,
+        longitude: Int,
+        altitude: Long,
+        bpm: Int,
+        distance: Long,
+        speed: Long
+    ) {
+        writeDataHeader(RECORD)
+        writeInt(fitTime, 4)
+        writeInt(latitude.toLong(), 4)
+        writeInt(longitude.toLong(), 4)
+        writeInt(altitude, 2)
+        writeByte(bpm.coerceAtMost(INVALID_UINT8))
+        writeInt(distance, 4)
+        writeInt(speed, 2)
+    }
+
+    private fun writeHeader(dataSize: Int) {
+        val header = ByteArray(FitProtocol.HEADER_SIZE)
+        header[0] = FitProtocol.HEADER_SIZE.toByte()
+        header[1] = FitProtocol.PROTOCOL_VERSION.toByte()
+        header[2] = (FitProtocol.PROFILE_VERSION and 0xFF).toByte()
+        header[3] = (FitProtocol.PROFILE_VERSION shr 8).toByte()
+        for (i in 0 until 4) header[4 + i] = (dataSize shr (8 * i)).toByte()
+        header[8] = '.'.code.toByte()
+        header[9] = 'F'.code.toByte()
+        header[10] = 'I'.code.toByte()
+        header[11] = 'T'.code.toByte()
+        var headerCrc = 0
+        for (i in 0 until 12) headerCrc = FitProtocol.crc(headerCrc, header[i].toInt() and 0xFF)
+        header[12] = (headerCrc and 0xFF).toByte()
+        header[13] = (headerCrc shr 8).toByte()
+        for (b in header) writeByte(b.toInt() and 0xFF)
+    }
+
+    private fun writeDefinition(message: MessageDefinition) {
+        writeByte(0x40 or message.localType)
+        writeByte(0)                                    // reserved
+        writeByte(0)                                    // little-endian
+        writeInt(message.globalNumber.toLong(), 2)
+        writeByte(message.fieldCount)
+        for (value in message.fields) writeByte(value)
+    }
+
+    private fun writeDataHeader(message: MessageDefinition) {
+        writeByte(message.localType)
+    }
+
+    private fun writeInt(value: Long, size: Int) {
+        for (i in 0 until size) writeByte(((value shr (8 * i)) and 0xFF).toInt())
+    }
+
+    private fun writeByte(value: Int) {
+        out.write(value)
+        crc = FitProtocol.crc(crc, value and 0xFF)
+    }
+
+    private fun scaledDistance(meters: Double): Long =
+        (meters * FitProtocol.DISTANCE_SCALE).toLong().coerceIn(0L, INVALID_UINT32 - 1)
+
+    companion object {
+        private const val INVALID_UINT8 = 0xFF
+        private const val INVALID_UINT16 = 0xFFFFL
+        private const val INVALID_UINT32 = 0xFFFFFFFFL
+
+        private val FILE_ID = MessageDefinition(
+            0, FitProtocol.MESG_FILE_ID,
+            0, 1, ENUM,
+            1, 2, UINT16,
+            2, 2, UINT16,
+            4, 4, UINT32
+        )
+        private val RECORD = MessageDefinition(
+            1, FitProtocol.MESG_RECORD,
+            FitProtocol.FIELD_TIMESTAMP, 4, UINT32,
+            FitProtocol.RECORD_POSITION_LAT, 4, SINT32,
+            FitProtocol.RECORD_POSITION_LONG, 4, SINT32,
+            FitProtocol.RECORD_ALTITUDE, 2, UINT16,
+            FitProtocol.RECORD_HEART_RATE, 1, UINT8,
+            FitProtocol.RECORD_DISTANCE, 4, UINT32,
+            FitProtocol.RECORD_SPEED, 2, UINT16
+        )
+        private val LAP = MessageDefinition(
+            2, FitProtocol.MESG_LAP,
+            FitProtocol.FIELD_TIMESTAMP, 4, UINT32,
+            2, 4, UINT32,
+            7, 4, UINT32,
+            8, 4, UINT32,
+            9, 4, UINT32,
+            0, 1, ENUM,
+            1, 1, ENUM
+        )
+        private val SESSION = MessageDefinition(
+            3, FitProtocol.MESG_SESSION,
+            FitProtocol.FIELD_TIMESTAMP, 4, UINT32,
+            FitProtocol.SESSION_START_TIME, 4, UINT32,
+            FitProtocol.SESSION_TOTAL_ELAPSED_TIME, 4, UINT32,
+            8, 4, UINT32,
+            FitProtocol.SESSION_TOTAL_DISTANCE, 4, UINT32,
+            5, 1, ENUM,
+            6, 1, ENUM,
+            0, 1, ENUM,
+            1, 1, ENUM,
+            25, 2, UINT16,
+            26, 2, UINT16
+        )
+        private val ACTIVITY = MessageDefinition(
+            4, FitProtocol.MESG_ACTIVITY,
+            FitProtocol.FIELD_TIMESTAMP, 4, UINT32,
+            0, 4, UINT32,
+            1, 2, UINT16,
+            2, 1, ENUM,
+            3, 1, ENUM,
+            4, 1, ENUM
+        )
+
+        private val DEFINITIONS = listOf(FILE_ID, RECORD, LAP, SESSION, ACTIVITY)
+        private val SINGLE_MESSAGES = listOf(FILE_ID, LAP, SESSION, ACTIVITY)
+    }
+}
@@ -0,0 +1,56 @@
+package com.fitnessbuddy.data.export
+
+import android.util.Xml
+import org.xmlpull.v1.XmlPullParser
+import java.io.InputStream
+
+/**
+ * Pull-parses GPX 1.0/1.1 tracks and routes without building a DOM.
+ * Heart rate is read from any `hr` element inside a point's extensions,
+ * which covers the Garmin and Cluetrust schemas.
+ */
+internal class GpxReader(private val input: InputStream) {
+
+    fun read(): ImportedWorkout {
+        val parser = Xml.newPullParser()
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true)
+        parser.setInput(input, null)
+
+        val builder = TrackBuilder()
+        var inPoint = false
+        var latitude = 0.0
+        var longitude = 0.0
+        var altitude = 0.0
+        var time = -1L
+        var bpm = -1
+
+        var event = parser.eventType
+        while (event != XmlPullParser.END_DOCUMENT) {
+            when (event) {
+                XmlPullParser.START_TAG -> when (parser.name) {
+                    "trkpt", "rtept" -> {
+                        inPoint = true
+                        latitude = parser.getAttributeValue(null, "lat")?.toDoubleOrNull() ?: Double.NaN
+                        longitude = parser.getAttributeValue(null, "lon")?.toDoubleOrNull() ?: Double.NaN
+                        altitude = 0.0
+                        time = -1L
+                        bpm = -1
+                    }
+                    "ele" -> if (inPoint) altitude = parser.nextText().toDoubleOrNull() ?: 0.0
+                    "time" -> if (inPoint) time = ExportText.parseIsoTime(parser.nextText()) ?: -1L
+                    "hr" -> if (inPoint) bpm = parser.nextText().trim().toIntOrNull() ?: -1
+                }
+                XmlPullParser.END_TAG -> if (parser.name == "trkpt" || parser.name == "rtept") {
+                    inPoint = false
+                    // Untimed points can't be placed on the session timeline
+                    if (time >= 0 && !latitude.isNaN() && !longitude.isNaN()) {
+                        builder.addPoint(latitude, longitude, altitude, 0f, time)
+                        if (bpm > 0) builder.addHeartRate(time, bpm)
+                    }
+                }
+            }
+            event = parser.next()
+        }
+        return builder.build()
+    }
+}
@@ -0,0 +1,68 @@
+package com.fitnessbuddy.data.export
+
+import java.io.Writer
+
+/**
+ * Streams a [WorkoutTrack] as GPX 1.1, one `<trkpt>` at a time.
+ * Heart rate goes into the Garmin TrackPointExtension that Strava and most
+ * other services read.
+ */
+internal class GpxWriter(private val out: Writer) {
+
+    fun write(track: WorkoutTrack) {
+        out.write(HEADER)
+        out.write("  <metadata><time>")
+        ExportText.appendIsoTime(out, track.startTime)
+        out.write("</time></metadata>\n")
+        out.write("  <trk>\n    <name>")
+        out.write(escape(track.sport.ifBlank { "Workout" }))
+        out.write("</name>\n    <type>")
+        out.write(if (SportCategory.of(track.sport) == SportCategory.CYCLING) "cycling" else "running")
+        out.write("</type>\n    <trkseg>\n")
+
+        val route = track.route
+        val heartRate = HeartRateCursor(track.heartRate)
+        for (i in 0 until route.size) {
+            out.write("      <trkpt lat=\"")
+            ExportText.appendFixed(out, route.latitude(i), COORDINATE_DECIMALS)
+            out.write("\" lon=\"")
+            ExportText.appendFixed(out, route.longitude(i), COORDINATE_DECIMALS)
+            out.write("\">")
+            val altitude = route.altitude(i)
+            if (!altitude.isNaN()) {
+                out.write("<ele>")
+                ExportText.appendFixed(out, altitude, 1)
+                out.write("</ele>")
+            }
+            out.write("<time>")
+            ExportText.appendIsoTime(out, route.timestamp(i))
+            out.write("</time>")
+            val bpm = heartRate.bpmAt(route.timestamp(i))
+            if (bpm > 0) {
+                out.write("<extensions><gpxtpx:TrackPointExtension><gpxtpx:hr>")
+                out.write(bpm.toString())
+                out.write("</gpxtpx:hr></gpxtpx:TrackPointExtension></extensions>")
+            }
+            out.write("</trkpt>\n")
+        }
+
+        out.write("    </trkseg>\n  </trk>\n</gpx>\n")
+        out.flush()
+    }
+
+    private fun escape(text: String): String = text
+        .replace("&", "&amp;")
+        .replace("<", "&lt;")
+        .replace(">", "&gt;")
+
+    companion object {
+        // ~1 cm at the equator
+        private const val COORDINATE_DECIMALS = 7
+
+        private const val HEADER = """<?xml version="1.0" encoding="UTF-8"?>
+<gpx version="1.1" creator="FitnessBuddy"
+  xmlns="http://www.topografix.com/GPX/1/1"
+  xmlns:gpxtpx="http://www.garmin.com/xmlschemas/TrackPointExtension/v1">
+"""
+    }
+}
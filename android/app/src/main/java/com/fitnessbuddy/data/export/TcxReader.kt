@@ -0,0 +1,72 @@
+package com.fitnessbuddy.data.export
+
+import android.util.Xml
+import org.xmlpull.v1.XmlPullParser
+import java.io.InputStream
+
+/**
+ * Pull-parses every lap of a TCX activity without building a DOM.
+ * Lap `DistanceMeters` totals are summed and preferred over the track.
+ */
+internal class TcxReader(private val input: InputStream) {
+
+    fun read(): ImportedWorkout {
+        val parser = Xml.newPullParser()
+        parser.setFeature(XmlPullParser.FEATURE_PROCESS_NAMESPACES, true)
+        parser.setInput(input, null)
+
+        val builder = TrackBuilder()
+        var lapDistance = 0f
+        var inTrackpoint = false
+        var inHeartRate = false
+        var time = -1L
+        var latitude = Double.NaN
+        var longitude = Double.NaN
+        var altitude = 0.0
+        var bpm = -1
+
+        var event = parser.eventType
+        while (event != XmlPullParser.END_DOCUMENT) {
+            when (event) {
+                XmlPullParser.START_TAG -> when (parser.name) {
+                    "Trackpoint" -> {
+                        inTrackpoint = true
+                        time = -1L
+                        latitude = Double.NaN
+                        longitude = Double.NaN
+                        altitude = 0.0
+                        bpm = -1
+                    }
+                    "Time" -> if (inTrackpoint) time = ExportText.parseIsoTime(parser.nextText()) ?: -1L
+                    "LatitudeDegrees" -> latitude = parser.nextText().toDoubleOrNull() ?: Double.NaN
+                    "LongitudeDegrees" -> longitude = parser.nextText().toDoubleOrNull() ?: Double.NaN
+                    "AltitudeMeters" -> altitude = parser.nextText().toDoubleOrNull() ?: 0.0
+                    "HeartRateBpm" -> inHeartRate = true
+                    "Value" -> if (inHeartRate) bpm = parser.nextText().trim().toIntOrNull() ?: -1
+                    "DistanceMeters" -> {
+                        // Trackpoint distances are cumulative; only lap totals add up
+                        val meters = parser.nextText().toFloatOrNull() ?: 0f
+                        if (!inTrackpoint) lapDistance += meters
+                    }
+                }
+                XmlPullParser.END_TAG -> when (parser.name) {
+                    "HeartRateBpm" -> inHeartRate = false
+                    "Trackpoint" -> {
+                        inTrackpoint = false
+                        if (time >= 0) {
+                            if (!latitude.isNaN() && !longitude.isNaN()) {
+                                builder.addPoint(latitude, longitude, altitude, 0f, time)
+                            } else {
+                                builder.markTime(time)
+                            }
+                            if (bpm > 0) builder.addHeartRate(time, bpm)
+                        }
+                    }
+                }
+            }
+            event = parser.next()
+        }
+        builder.reportDistance(lapDistance)
+        return builder.build()
+    }
+}
@@ -0,0 +1,101 @@
+package com.fitnessbuddy.data.export
+
+import com.fitnessbuddy.data.location.GeoMath
+import java.io.Writer
+
+/**
+ * Streams a [WorkoutTrack] as a single-lap Training Center (TCX) activity.
+ * Lap totals come from the track summary, so points are written in one pass.
+ * Indoor sessions without a route are written as heart-rate-only trackpoints.
+ */
+internal class TcxWriter(private val out: Writer) {
+
+    fun write(track: WorkoutTrack) {
+        out.write(HEADER)
+        out.write("  <Activities>\n    <Activity Sport=\"")
+        out.write(
+            when (SportCategory.of(track.sport)) {
+                SportCategory.RUNNING -> "Running"
+                SportCategory.CYCLING -> "Biking"
+                SportCategory.OTHER -> "Other"
+            }
+        )
+        out.write("\">\n      <Id>")
+        ExportText.appendIsoTime(out, track.startTime)
+        out.write("</Id>\n      <Lap StartTime=\"")
+        ExportText.appendIsoTime(out, track.startTime)
+        out.write("\">\n        <TotalTimeSeconds>")
+        out.write(track.elapsedSeconds.toString())
+        out.write("</TotalTimeSeconds>\n        <DistanceMeters>")
+        ExportText.appendFixed(out, track.distanceMeters.toDouble(), 1)
+        out.write("</DistanceMeters>\n        <Calories>0</Calories>\n")
+        out.write("        <Intensity>Active</Intensity>\n        <TriggerMethod>Manual</TriggerMethod>\n")
+        out.write("        <Track>\n")
+
+        if (track.route.isNotEmpty()) {
+            writeRoute(track)
+        } else {
+            writeHeartRateOnly(track)
+        }
+
+        out.write("        </Track>\n      </Lap>\n    </Activity>\n  </Activities>\n</TrainingCenterDatabase>\n")
+        out.flush()
+    }
+
+    private fun writeRoute(track: WorkoutTrack) {
+        val route = track.route
+        val heartRate = HeartRateCursor(track.heartRate)
+        var distance = 0.0
+        for (i in 0 until route.size) {
+            if (i > 0) {
+                distance += GeoMath.distanceMeters(
+                    route.latitude(i - 1), route.longitude(i - 1), route.latitude(i), route.longitude(i)
+                )
+            }
+            out.write("          <Trackpoint><Time>")
+            ExportText.appendIsoTime(out, route.timestamp(i))
+            out.write("</Time><Position><LatitudeDegrees>")
+            ExportText.appendFixed(out, route.latitude(i), COORDINATE_DECIMALS)
+            out.write("</LatitudeDegrees><LongitudeDegrees>")
+            ExportText.appendFixed(out, route.longitude(i), COORDINATE_DECIMALS)
+            out.write("</LongitudeDegrees></Position>")
+            val altitude = route.altitude(i)
+            if (!altitude.isNaN()) {
+                out.write("<AltitudeMeters>")
+                ExportText.appendFixed(out, altitude, 1)
+                out.write("</AltitudeMeters>")
+            }
+            out.write("<DistanceMeters>")
+            ExportText.appendFixed(out, distance, 1)
+            out.write("</DistanceMeters>")
+            writeHeartRate(heartRate.bpmAt(route.timestamp(i)))
+            out.write("</Trackpoint>\n")
+        }
+    }
+
+    private fun writeHeartRateOnly(track: WorkoutTrack) {
+        val heartRate = track.heartRate
+        for (i in 0 until heartRate.size) {
+            out.write("          <Trackpoint><Time>")
+            ExportText.appendIsoTime(out, heartRate.timestamp(i))
+            out.write("</Time>")
+            writeHeartRate(heartRate.bpm(i))
+            out.write("</Trackpoint>\n")
+        }
+    }
+
+    private fun writeHeartRate(bpm: Int) {
+        if (bpm <= 0) return
+        out.write("<HeartRateBpm><Value>")
+        out.write(bpm.toString())
+        out.write("</Value></HeartRateBpm>")
+    }
+
+    companion object {
+        private const val COORDINATE_DECIMALS = 7
+
+        private const val HEADER = """<?xml version="1.0" encoding="UTF-8"?>
+<TrainingCenterDatabase xmlns="http://www.garmin.com/xmlschemas/TrainingCenterDatabase/v2">
+"""
+    }
+}
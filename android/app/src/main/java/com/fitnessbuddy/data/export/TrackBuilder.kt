@@ -0,0 +1,60 @@
+package com.fitnessbuddy.data.export
+
+import com.fitnessbuddy.data.location.GeoMath
+import com.fitnessbuddy.data.location.RouteBuffer
+import com.fitnessbuddy.data.metrics.HeartRateTrack
+
+/**
+ * Collects samples as a reader parses them straight into the columnar stores,
+ * accumulating distance on the way.
+ */
+internal class TrackBuilder {
+    private val route = RouteBuffer()
+    private val heartRate = HeartRateTrack()
+
+    private var distanceMeters = 0.0
+    private var reportedDistanceMeters = Float.NaN
+    private var startTime = Long.MAX_VALUE
+    private var endTime = Long.MIN_VALUE
+
+    fun addPoint(latitude: Double, longitude: Double, altitude: Double, speed: Float, timestamp: Long) {
+        val last = route.size - 1
+        if (last >= 0) {
+            distanceMeters += GeoMath.distanceMeters(
+                route.latitude(last), route.longitude(last), latitude, longitude
+            )
+        }
+        route.add(latitude, longitude, altitude, speed, timestamp)
+        markTime(timestamp)
+    }
+
+    fun addHeartRate(timestamp: Long, bpm: Int) {
+        if (bpm <= 0) return
+        heartRate.add(timestamp, bpm)
+        markTime(timestamp)
+    }
+
+    /**
+     * Total distance as stated by the file, preferred over the summed track
+     * since it usually comes from a footpod or wheel sensor.
+     */
+    fun reportDistance(meters: Float) {
+        if (meters > 0f) reportedDistanceMeters = meters
+    }
+
+    fun markTime(timestamp: Long) {
+        if (timestamp < startTime) startTime = timestamp
+        if (timestamp > endTime) endTime = timestamp
+    }
+
+    fun build(): ImportedWorkout {
+        require(route.isNotEmpty() || heartRate.isNotEmpty()) { "File contains no samples" }
+        return ImportedWorkout(
+            startTime = startTime,
+            durationMillis = (endTime - startTime).coerceAtLeast(0L),
+            distanceMeters = if (reportedDistanceMeters.isNaN()) distanceMeters.toFloat() else reportedDistanceMeters,
+            route = route.snapshot(),
+            heartRate = heartRate.snapshot()
+        )
+    }
+}
@@ -0,0 +1,72 @@
+package com.fitnessbuddy.data.export
+
+import android.util.Log
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.BufferedWriter
+import java.io.InputStream
+import java.io.OutputStream
+import java.io.OutputStreamWriter
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Entry point for writing and reading workout files.
+ *
+ * All formats stream: samples go from the route and heart-rate stores to the
+ * output buffer one at a time, and imports parse straight into columnar
+ * stores, so heap use stays flat regardless of track length. Callers own the
+ * streams and close them.
+ */
+@Singleton
+class WorkoutExporter @Inject constructor() {
+
+    suspend fun export(track: WorkoutTrack, format: ExportFormat, output: OutputStream): Result<Unit> =
+        withContext(Dispatchers.IO) {
+            try {
+                when (format) {
+                    ExportFormat.GPX -> GpxWriter(textWriter(output)).write(track)
+                    ExportFormat.TCX -> TcxWriter(textWriter(output)).write(track)
+                    ExportFormat.FIT -> FitWriter(BufferedOutputStream(output, BUFFER_SIZE)).write(track)
+                }
+                Log.d(TAG, "Exported ${track.route.size} points as $format")
+                Result.success(Unit)
+            } catch (e: Exception) {
+                Log.e(TAG, "Error exporting $format", e)
+                Result.failure(e)
+            }
+        }
+
+    suspend fun import(format: ExportFormat, input: InputStream): Result<ImportedWorkout> =
+        withContext(Dispatchers.IO) {
+            try {
+                val buffered = BufferedInputStream(input, BUFFER_SIZE)
+                val workout = when (format) {
+                    ExportFormat.GPX -> GpxReader(buffered).read()
+                    ExportFormat.TCX -> TcxReader(buffered).read()
+                    ExportFormat.FIT -> FitReader(buffered).read()
+                }
+                Log.d(TAG, "Imported ${workout.route.size} points from $format")
+                Result.success(workout)
+            } catch (e: Exception) {
+                Log.e(TAG, "Error importing $format", e)
+                Result.failure(e)
+            }
+        }
+
+    private fun textWriter(output: OutputStream) =
+        BufferedWriter(OutputStreamWriter(output, Charsets.UTF_8), BUFFER_SIZE)
+
+    companion object {
+        private const val TAG = "WorkoutExporter"
+        private const val BUFFER_SIZE = 64 * 1024
+
+        /** Format matching a file name's extension, or null. */
+        fun formatFor(fileName: String): ExportFormat? {
+            val extension = fileName.substringAfterLast('.', "").lowercase()
+            return ExportFormat.entries.firstOrNull { it.extension == extension }
+        }
+    }
+}
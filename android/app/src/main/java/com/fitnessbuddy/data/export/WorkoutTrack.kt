@@ -0,0 +1,82 @@
+package com.fitnessbuddy.data.export
+
+import com.fitnessbuddy.data.location.RouteView
+import com.fitnessbuddy.data.metrics.HeartRateView
+
+enum class ExportFormat(val extension: String, val mimeType: String) {
+    GPX("gpx", "application/gpx+xml"),
+    TCX("tcx", "application/vnd.garmin.tcx+xml"),
+    FIT("fit", "application/vnd.ant.fit")
+}
+
+/**
+ * A recorded session as handed to the exporters. Samples are read straight
+ * from the route and heart-rate stores; nothing is copied.
+ *
+ * @param startTime Wall-clock start in epoch milliseconds
+ * @param sport Free-form workout type from the plan, e.g. "Easy Run"
+ */
+data class WorkoutTrack(
+    val startTime: Long,
+    val elapsedSeconds: Long,
+    val distanceMeters: Float,
+    val sport: String,
+    val route: RouteView,
+    val heartRate: HeartRateView
+)
+
+/**
+ * A session read back from a GPX, TCX or FIT file.
+ */
+data class ImportedWorkout(
+    val startTime: Long,
+    val durationMillis: Long,
+    val distanceMeters: Float,
+    val route: RouteView,
+    val heartRate: HeartRateView
+)
+
+/**
+ * Walks a heart-rate series alongside route timestamps, which only move forward.
+ * Lookups are amortized O(1) over a whole export.
+ */
+internal class HeartRateCursor(private val heartRate: HeartRateView) {
+    private var index = 0
+
+    /**
+     * The latest sample at or before [timestamp] and at most [MAX_AGE_MS] old, or -1.
+     */
+    fun bpmAt(timestamp: Long): Int {
+        if (heartRate.isEmpty()) return -1
+        while (index + 1 < heartRate.size && heartRate.timestamp(index + 1) <= timestamp) {
+            index++
+        }
+        val sampleTime = heartRate.timestamp(index)
+        return if (sampleTime <= timestamp && timestamp - sampleTime <= MAX_AGE_MS) heartRate.bpm(index) else -1
+    }
+
+    companion object {
+        private const val MAX_AGE_MS = 5_000L
+    }
+}
+
+/**
+ * Coarse sport category of a plan workout type, as used by TCX and FIT.
+ */
+internal enum class SportCategory {
+    RUNNING,
+    CYCLING,
+    OTHER;
+
+    companion object {
+        fun of(workoutType: String): SportCategory {
+            val type = workoutType.lowercase()
+            return when {
+                "bike" in type || "cycl" in type || "ride" in type -> CYCLING
+                "run" in type || "jog" in type || "tempo" in type || "interval" in type -> RUNNING
+                type.isBlank() -> RUNNING
+                else -> OTHER
+            }
+        }
+    }
+}
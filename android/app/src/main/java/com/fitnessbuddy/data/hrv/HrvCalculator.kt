@@ -0,0 +1,139 @@
+package com.fitnessbuddy.data.hrv
+
+import kotlin.math.ln
+import kotlin.math.sqrt
+
+/**
+ * Time-domain HRV and short-term DFA over a range of an [RrIntervalBuffer].
+ *
+ * Scratch space is allocated once for the buffer's capacity, so repeated
+ * calls on the rolling window don't allocate. Not thread-safe.
+ */
+class HrvCalculator(capacity: Int = RrIntervalBuffer.DEFAULT_CAPACITY) {
+    private val profile = DoubleArray(capacity)
+    private val logBoxSizes = DoubleArray(MAX_BOX_SIZE - MIN_BOX_SIZE + 1)
+    private val logFluctuations = DoubleArray(MAX_BOX_SIZE - MIN_BOX_SIZE + 1)
+
+    /** Root mean square of successive differences in ms, NaN with fewer than two beats. */
+    fun rmssd(buffer: RrIntervalBuffer, from: Int, to: Int): Float {
+        if (to - from < 2) return Float.NaN
+        var sumSquares = 0.0
+        var previous = buffer.rrMillis(from)
+        for (i in from + 1 until to) {
+            val rr = buffer.rrMillis(i)
+            val diff = (rr - previous).toDouble()
+            sumSquares += diff * diff
+            previous = rr
+        }
+        return sqrt(sumSquares / (to - from - 1)).toFloat()
+    }
+
+    /** Sample standard deviation of the intervals in ms, NaN with fewer than two beats. */
+    fun sdnn(buffer: RrIntervalBuffer, from: Int, to: Int): Float {
+        val count = to - from
+        if (count < 2) return Float.NaN
+        val mean = mean(buffer, from, to)
+        var sumSquares = 0.0
+        for (i in from until to) {
+            val diff = buffer.rrMillis(i) - mean
+            sumSquares += diff * diff
+        }
+        return sqrt(sumSquares / (count - 1)).toFloat()
+    }
+
+    /**
+     * Short-term scaling exponent of detrended fluctuation analysis, over box
+     * sizes 4–16 beats. Around 1 at rest and easy intensity, it drops through
+     * [AEROBIC_THRESHOLD_ALPHA1] at the aerobic threshold.
+     *
+     * @return NaN with fewer than [MIN_DFA_BEATS] beats
+     */
+    fun dfaAlpha1(buffer: RrIntervalBuffer, from: Int, to: Int): Float {
+        val count = to - from
+        if (count < MIN_DFA_BEATS) return Float.NaN
+
+        // Integrated, mean-removed series
+        val mean = mean(buffer, from, to)
+        var cumulative = 0.0
+        for (k in 0 until count) {
+            cumulative += buffer.rrMillis(from + k) - mean
+            profile[k] = cumulative
+        }
+
+        var points = 0
+        for (boxSize in MIN_BOX_SIZE..MAX_BOX_SIZE) {
+            val fluctuation = fluctuation(count, boxSize)
+            if (fluctuation > 0.0) {
+                logBoxSizes[points] = ln(boxSize.toDouble())
+                logFluctuations[points] = ln(fluctuation)
+                points++
+            }
+        }
+        if (points < 2) return Float.NaN
+        return slope(logBoxSizes, logFluctuations, points).toFloat()
+    }
+
+    // Root mean square residual of a least-squares line fitted to each
+    // non-overlapping box of the profile
+    private fun fluctuation(count: Int, boxSize: Int): Double {
+        val boxes = count / boxSize
+        val xMean = (boxSize - 1) / 2.0
+        val sxx = boxSize * (boxSize * boxSize - 1) / 12.0
+        var residualSum = 0.0
+        for (box in 0 until boxes) {
+            val start = box * boxSize
+            var sy = 0.0
+            var sxy = 0.0
+            var syy = 0.0
+            for (x in 0 until boxSize) {
+                val y = profile[start + x]
+                sy += y
+                sxy += x * y
+                syy += y * y
+            }
+            val yMean = sy / boxSize
+            val slope = (sxy - boxSize * xMean * yMean) / sxx
+            residualSum += syy - boxSize * yMean * yMean - slope * slope * sxx
+        }
+        return sqrt(residualSum.coerceAtLeast(0.0) / (boxes * boxSize))
+    }
+
+    private fun slope(x: DoubleArray, y: DoubleArray, count: Int): Double {
+        var sx = 0.0
+        var sy = 0.0
+        for (i in 0 until count) {
+            sx += x[i]
+            sy += y[i]
+        }
+        val xMean = sx / count
+        val yMean = sy / count
+        var sxy = 0.0
+        var sxx = 0.0
+        for (i in 0 until count) {
+            val dx = x[i] - xMean
+            sxy += dx * (y[i] - yMean)
+            sxx += dx * dx
+        }
+        return sxy / sxx
+    }
+
+    private fun mean(buffer: RrIntervalBuffer, from: Int, to: Int): Double {
+        var sum = 0L
+        for (i in from until to) sum += buffer.rrMillis(i)
+        return sum.toDouble() / (to - from)
+    }
+
+    companion object {
+        private const val MIN_BOX_SIZE = 4
+        private const val MAX_BOX_SIZE = 16
+
+        // At least four of the largest boxes
+        const val MIN_DFA_BEATS = 4 * MAX_BOX_SIZE
+
+        /** DFA-alpha1 at the first ventilatory (aerobic) threshold. */
+        const val AEROBIC_THRESHOLD_ALPHA1 = 0.75f
+
+        /** DFA-alpha1 at the second ventilatory (anaerobic) threshold. */
+        const val ANAEROBIC_THRESHOLD_ALPHA1 = 0.5f
+    }
+}
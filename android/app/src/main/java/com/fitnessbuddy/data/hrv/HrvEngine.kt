@@ -0,0 +1,172 @@
+package com.fitnessbuddy.data.hrv
+
+import com.fitnessbuddy.data.sensor.BluetoothHeartRateManager
+import com.fitnessbuddy.data.sensor.HeartRateMeasurement
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import java.time.LocalDate
+import javax.inject.Inject
+import javax.inject.Singleton
+import kotlin.math.roundToInt
+import kotlin.math.sqrt
+
+/**
+ * Streaming HRV from the RR intervals of the connected heart-rate strap.
+ *
+ * Every beat goes through an [RrArtifactFilter] into a fixed-size
+ * [RrIntervalBuffer]. Every [UPDATE_INTERVAL_MS] of beat time, RMSSD and
+ * SDNN over the last [TIME_DOMAIN_WINDOW_MS] and DFA-alpha1 over the last
+ * [DFA_WINDOW_MS] are published on [metrics]. The per-beat path doesn't
+ * allocate; only the published [HrvMetrics] does.
+ *
+ * [measureReadiness] runs a morning measurement alongside, from the same
+ * beats.
+ */
+@Singleton
+class HrvEngine @Inject constructor(
+    bluetoothHeartRateManager: BluetoothHeartRateManager
+) {
+    private val lock = Any()
+    private val buffer = RrIntervalBuffer()
+    private val filter = RrArtifactFilter()
+    private val calculator = HrvCalculator(buffer.capacity)
+    private var lastPublishedAt = 0L
+
+    private val _metrics = MutableStateFlow<HrvMetrics?>(null)
+    /** Latest rolling-window HRV, null until the strap has sent RR intervals. */
+    val metrics: StateFlow<HrvMetrics?> = _metrics.asStateFlow()
+
+    // Readiness accumulators, streaming so the measurement doesn't depend on buffer size
+    private var isMeasuringReadiness = false
+    private var readinessPrevious = -1
+    private var readinessSquares = 0.0
+    private var readinessDifferences = 0
+    private var readinessBeats = 0
+    private var readinessRrSum = 0L
+
+    init {
+        bluetoothHeartRateManager.setMeasurementListener { timestamp, measurement ->
+            onMeasurement(timestamp, measurement)
+        }
+    }
+
+    /**
+     * Adds one beat. [timestamp] is when the interval ended, in epoch
+     * milliseconds; beats must arrive in order.
+     */
+    fun onRrInterval(timestamp: Long, rrMillis: Int) = synchronized(lock) {
+        val corrected = filter.correct(rrMillis)
+        if (corrected < 0) return@synchronized
+        buffer.add(timestamp, corrected)
+        if (isMeasuringReadiness) accumulateReadiness(corrected)
+        if (timestamp - lastPublishedAt >= UPDATE_INTERVAL_MS) {
+            lastPublishedAt = timestamp
+            publish(timestamp)
+        }
+    }
+
+    /** Forgets all beats, e.g. when a different strap is connected. */
+    fun reset() = synchronized(lock) {
+        buffer.clear()
+        filter.reset()
+        lastPublishedAt = 0L
+        _metrics.value = null
+    }
+
+    /**
+     * Records a resting measurement for [durationMillis], reporting progress
+     * from 0 to 1 once a second. The user should be lying or sitting still,
+     * ideally right after waking up.
+     *
+     * @return The reading, or a failure if too few beats arrived
+     */
+    suspend fun measureReadiness(
+        durationMillis: Long = READINESS_DURATION_MS,
+        onProgress: (Float) -> Unit = {}
+    ): Result<ReadinessReading> {
+        synchronized(lock) {
+            isMeasuringReadiness = true
+            readinessPrevious = -1
+            readinessSquares = 0.0
+            readinessDifferences = 0
+            readinessBeats = 0
+            readinessRrSum = 0L
+        }
+        try {
+            var elapsed = 0L
+            while (elapsed < durationMillis) {
+                onProgress(elapsed.toFloat() / durationMillis)
+                delay(PROGRESS_INTERVAL_MS)
+                elapsed += PROGRESS_INTERVAL_MS
+            }
+            onProgress(1f)
+        } finally {
+            synchronized(lock) { isMeasuringReadiness = false }
+        }
+
+        return synchronized(lock) {
+            // Expect at least one beat every two seconds of the measurement
+            if (readinessDifferences < durationMillis / 2000) {
+                Result.failure(IllegalStateException("Not enough heartbeats received. Is the heart rate strap connected?"))
+            } else {
+                Result.success(
+                    ReadinessReading(
+                        date = LocalDate.now().toString(),
+                        rmssdMs = sqrt(readinessSquares / readinessDifferences).toFloat(),
+                        restingHeartRate = (60_000.0 * readinessBeats / readinessRrSum).roundToInt()
+                    )
+                )
+            }
+        }
+    }
+
+    private fun onMeasurement(timestamp: Long, measurement: HeartRateMeasurement) {
+        val count = measurement.rrCount
+        if (count == 0 || !measurement.hasContact) return
+        // Intervals arrive batched; the last one ends about now, earlier ones before it
+        var offset = 0L
+        for (i in 0 until count) offset += measurement.rrIntervalMillis(i)
+        for (i in 0 until count) {
+            val rr = measurement.rrIntervalMillis(i)
+            offset -= rr
+            onRrInterval(timestamp - offset, rr)
+        }
+    }
+
+    private fun accumulateReadiness(rrMillis: Int) {
+        if (readinessPrevious > 0) {
+            val diff = (rrMillis - readinessPrevious).toDouble()
+            readinessSquares += diff * diff
+            readinessDifferences++
+        }
+        readinessPrevious = rrMillis
+        readinessBeats++
+        readinessRrSum += rrMillis
+    }
+
+    private fun publish(now: Long) {
+        val end = buffer.size
+        val timeDomainFrom = buffer.indexAtOrAfter(now - TIME_DOMAIN_WINDOW_MS)
+        val dfaFrom = buffer.indexAtOrAfter(now - DFA_WINDOW_MS)
+        _metrics.value = HrvMetrics(
+            timestamp = now,
+            rmssdMs = calculator.rmssd(buffer, timeDomainFrom, end),
+            sdnnMs = calculator.sdnn(buffer, timeDomainFrom, end),
+            dfaAlpha1 = calculator.dfaAlpha1(buffer, dfaFrom, end),
+            artifactPercent = filter.recentArtifactPercent
+        )
+    }
+
+    companion object {
+        const val UPDATE_INTERVAL_MS = 5_000L
+        const val TIME_DOMAIN_WINDOW_MS = 60_000L
+
+        // Two minutes is the usual window for DFA-alpha1 during exercise
+        const val DFA_WINDOW_MS = 120_000L
+
+        const val READINESS_DURATION_MS = 120_000L
+        private const val PROGRESS_INTERVAL_MS = 1_000L
+    }
+}
@@ -0,0 +1,31 @@
+package com.fitnessbuddy.data.hrv
+
+/**
+ * HRV over the rolling windows of [HrvEngine] at [timestamp].
+ *
+ * @property rmssdMs Root mean square of successive differences, NaN until enough beats
+ * @property sdnnMs Standard deviation of the intervals, NaN until enough beats
+ * @property dfaAlpha1 Short-term DFA exponent over the longer window, NaN until enough beats
+ * @property artifactPercent Share of beats the artifact filter dropped or corrected
+ */
+data class HrvMetrics(
+    val timestamp: Long,
+    val rmssdMs: Float,
+    val sdnnMs: Float,
+    val dfaAlpha1: Float,
+    val artifactPercent: Float
+) {
+    /**
+     * DFA-alpha1 is unreliable with many artifacts; above ~5 % it shouldn't
+     * be used for threshold decisions.
+     */
+    val isDfaReliable: Boolean
+        get() = !dfaAlpha1.isNaN() && artifactPercent <= MAX_RELIABLE_ARTIFACT_PERCENT
+
+    val isAboveAerobicThreshold: Boolean
+        get() = isDfaReliable && dfaAlpha1 < HrvCalculator.AEROBIC_THRESHOLD_ALPHA1
+
+    companion object {
+        const val MAX_RELIABLE_ARTIFACT_PERCENT = 5f
+    }
+}
@@ -0,0 +1,92 @@
+package com.fitnessbuddy.data.hrv
+
+/**
+ * Read-only access to HRV samples recorded during a session, oldest first.
+ */
+interface HrvView {
+    val size: Int
+
+    fun timestamp(index: Int): Long
+    fun rmssdMs(index: Int): Float
+    fun sdnnMs(index: Int): Float
+    fun dfaAlpha1(index: Int): Float
+
+    fun isEmpty(): Boolean = size == 0
+    fun isNotEmpty(): Boolean = size > 0
+
+    companion object {
+        val EMPTY: HrvView = HrvSeries().snapshot()
+    }
+}
+
+/**
+ * Growable primitive store for the HRV samples of a session, one per
+ * [HrvEngine] update. Same contract as
+ * [com.fitnessbuddy.data.metrics.HeartRateTrack]: append from one thread,
+ * hand out snapshots.
+ */
+class HrvSeries(initialCapacity: Int = DEFAULT_CAPACITY) : HrvView {
+
+    private var timestamps = LongArray(initialCapacity)
+    private var rmssd = FloatArray(initialCapacity)
+    private var sdnn = FloatArray(initialCapacity)
+    private var alpha1 = FloatArray(initialCapacity)
+
+    override var size: Int = 0
+        private set
+
+    fun add(metrics: HrvMetrics) {
+        if (size == timestamps.size) {
+            timestamps = timestamps.copyOf(size * 2)
+            rmssd = rmssd.copyOf(size * 2)
+            sdnn = sdnn.copyOf(size * 2)
+            alpha1 = alpha1.copyOf(size * 2)
+        }
+        timestamps[size] = metrics.timestamp
+        rmssd[size] = metrics.rmssdMs
+        sdnn[size] = metrics.sdnnMs
+        alpha1[size] = metrics.dfaAlpha1
+        size++
+    }
+
+    /**
+     * Drops all samples. Previously taken snapshots keep their data.
+     */
+    fun clear() {
+        timestamps = LongArray(DEFAULT_CAPACITY)
+        rmssd = FloatArray(DEFAULT_CAPACITY)
+        sdnn = FloatArray(DEFAULT_CAPACITY)
+        alpha1 = FloatArray(DEFAULT_CAPACITY)
+        size = 0
+    }
+
+    fun snapshot(): HrvView = Snapshot(timestamps, rmssd, sdnn, alpha1, size)
+
+    override fun timestamp(index: Int): Long = timestamps[checkIndex(index, size)]
+    override fun rmssdMs(index: Int): Float = rmssd[checkIndex(index, size)]
+    override fun sdnnMs(index: Int): Float = sdnn[checkIndex(index, size)]
+    override fun dfaAlpha1(index: Int): Float = alpha1[checkIndex(index, size)]
+
+    private class Snapshot(
+        private val timestamps: LongArray,
+        private val rmssd: FloatArray,
+        private val sdnn: FloatArray,
+        private val alpha1: FloatArray,
+        override val size: Int
+    ) : HrvView {
+        override fun timestamp(index: Int): Long = timestamps[checkIndex(index, size)]
+        override fun rmssdMs(index: Int): Float = rmssd[checkIndex(index, size)]
+        override fun sdnnMs(index: Int): Float = sdnn[checkIndex(index, size)]
+        override fun dfaAlpha1(index: Int): Float = alpha1[checkIndex(index, size)]
+    }
+
+    companion object {
+        // Two hours at one update every five seconds before the first resize
+        const val DEFAULT_CAPACITY = 1440
+
+        private fun checkIndex(index: Int, size: Int): Int {
+            if (index < 0 || index >= size) throw IndexOutOfBoundsException("Index $index, size $size")
+            return index
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.fitnessbuddy.data.hrv
+
+import android.content.Context
+import android.util.AtomicFile
+import android.util.Log
+import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import kotlinx.serialization.Serializable
+import kotlinx.serialization.builtins.ListSerializer
+import kotlinx.serialization.json.Json
+import java.io.File
+import java.time.LocalDate
+import javax.inject.Inject
+import javax.inject.Singleton
+import kotlin.math.ln
+import kotlin.math.roundToInt
+import kotlin.math.sqrt
+
+/**
+ * One morning readiness measurement, taken at rest.
+ */
+@Serializable
+data class ReadinessReading(
+    val date: String,                     // ISO date
+    val rmssdMs: Float,
+    val restingHeartRate: Int
+) {
+    val lnRmssd: Double
+        get() = ln(rmssdMs.toDouble())
+}
+
+/**
+ * A reading scored against the user's own baseline.
+ *
+ * @property percent 0–100; 75 is a usual morning for this user
+ */
+data class Readiness(
+    val reading: ReadinessReading,
+    val percent: Int
+) {
+    val isToday: Boolean
+        get() = reading.date == LocalDate.now().toString()
+}
+
+/**
+ * Keeps the last [MAX_READINGS] morning readings on the device and scores
+ * the latest one.
+ *
+ * With at least [MIN_BASELINE_READINGS] earlier readings from the last
+ * [BASELINE_DAYS] days, the score is the z-score of ln(RMSSD) against them,
+ * mapped so the mean is 75 % and one standard deviation is 25 points.
+ * Before that it falls back to a population range of ln(RMSSD).
+ */
+@Singleton
+class ReadinessStore @Inject constructor(
+    @ApplicationContext private val context: Context
+) {
+    private val json = Json { ignoreUnknownKeys = true }
+    private val serializer = ListSerializer(ReadinessReading.serializer())
+
+    private val file: AtomicFile
+        get() = AtomicFile(File(context.filesDir, FILE_NAME))
+
+    /** Stores [reading], replacing an earlier one from the same day. */
+    suspend fun add(reading: ReadinessReading) = withContext(Dispatchers.IO) {
+        val readings = (read().filter { it.date != reading.date } + reading)
+            .sortedBy { it.date }
+            .takeLast(MAX_READINGS)
+        write(readings)
+    }
+
+    /** The most recent reading with its score, or null before the first measurement. */
+    suspend fun latest(): Readiness? = withContext(Dispatchers.IO) {
+        val readings = read()
+        val reading = readings.lastOrNull() ?: return@withContext null
+        Readiness(reading, score(reading, readings.dropLast(1)))
+    }
+
+    private fun score(reading: ReadinessReading, earlier: List<ReadinessReading>): Int {
+        val since = LocalDate.parse(reading.date).minusDays(BASELINE_DAYS).toString()
+        val baseline = earlier.filter { it.date >= since }.map { it.lnRmssd }
+        val percent = if (baseline.size >= MIN_BASELINE_READINGS) {
+            val mean = baseline.average()
+            val variance = baseline.sumOf { (it - mean) * (it - mean) } / (baseline.size - 1)
+            // A floor keeps a very steady baseline from turning noise into big swings
+            val sd = sqrt(variance).coerceAtLeast(MIN_BASELINE_SD)
+            75.0 + 25.0 * (reading.lnRmssd - mean) / sd
+        } else {
+            (reading.lnRmssd - POPULATION_LOW_LN_RMSSD) /
+                (POPULATION_HIGH_LN_RMSSD - POPULATION_LOW_LN_RMSSD) * 100.0
+        }
+        return percent.roundToInt().coerceIn(0, 100)
+    }
+
+    private fun read(): List<ReadinessReading> {
+        val atomicFile = file
+        if (!atomicFile.baseFile.exists()) return emptyList()
+        return try {
+            json.decodeFromString(serializer, atomicFile.readFully().decodeToString())
+        } catch (e: Exception) {
+            Log.w(TAG, "Discarding unreadable readiness history", e)
+            atomicFile.delete()
+            emptyList()
+        }
+    }
+
+    private fun write(readings: List<ReadinessReading>) {
+        val atomicFile = file
+        val output = try {
+            atomicFile.startWrite()
+        } catch (e: Exception) {
+            Log.e(TAG, "Error opening readiness history", e)
+            return
+        }
+        try {
+            output.write(json.encodeToString(serializer, readings).encodeToByteArray())
+            atomicFile.finishWrite(output)
+        } catch (e: Exception) {
+            Log.e(TAG, "Error writing readiness history", e)
+            atomicFile.failWrite(output)
+        }
+    }
+
+    companion object {
+        private const val TAG = "ReadinessStore"
+        private const val FILE_NAME = "readiness.json"
+
+        private const val MAX_READINGS = 60
+        private const val BASELINE_DAYS = 30L
+        private const val MIN_BASELINE_READINGS = 3
+        private const val MIN_BASELINE_SD = 0.05
+
+        // ln(RMSSD) of about 12 ms and 90 ms at rest
+        private const val POPULATION_LOW_LN_RMSSD = 2.5
+        private const val POPULATION_HIGH_LN_RMSSD = 4.5
+    }
+}
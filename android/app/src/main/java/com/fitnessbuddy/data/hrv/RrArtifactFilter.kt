@@ -0,0 +1,115 @@
+package com.fitnessbuddy.data.hrv
+
+import kotlin.math.abs
+
+/**
+ * Corrects ectopic beats and missed or extra detections in a stream of RR
+ * intervals before they reach the HRV statistics.
+ *
+ * Intervals outside the physiological range are dropped. An interval that
+ * differs from the mean of the last [REFERENCE_BEATS] accepted ones by more
+ * than [maxDeviation] is replaced by that mean, which keeps the beat count
+ * and the timing of the series intact. When several outliers arrive in a
+ * row the rhythm has really changed (e.g. the start of an interval), so the
+ * reference restarts from the new level instead of correcting it away.
+ */
+class RrArtifactFilter(
+    private val maxDeviation: Float = 0.2f
+) {
+    private val reference = IntArray(REFERENCE_BEATS)
+    private var referenceCount = 0
+    private var referenceNext = 0
+    private var referenceSum = 0
+    private var consecutiveOutliers = 0
+
+    var beatCount = 0
+        private set
+
+    var artifactCount = 0
+        private set
+
+    /** Share of beats dropped or corrected since the last [reset], 0–100. */
+    val artifactPercent: Float
+        get() = if (beatCount == 0) 0f else artifactCount * 100f / beatCount
+
+    /** Share of artifacts over roughly the last [RECENT_BEATS] beats, 0–100. */
+    var recentArtifactPercent = 0f
+        private set
+
+    /**
+     * @return The interval to use in milliseconds, or -1 to drop it
+     */
+    fun correct(rrMillis: Int): Int {
+        beatCount++
+        if (rrMillis < MIN_RR_MS || rrMillis > MAX_RR_MS) {
+            countBeat(isArtifact = true)
+            return -1
+        }
+        if (referenceCount < REFERENCE_BEATS) {
+            remember(rrMillis)
+            countBeat(isArtifact = false)
+            return rrMillis
+        }
+
+        val mean = referenceSum / REFERENCE_BEATS
+        if (abs(rrMillis - mean) <= mean * maxDeviation) {
+            consecutiveOutliers = 0
+            remember(rrMillis)
+            countBeat(isArtifact = false)
+            return rrMillis
+        }
+
+        if (++consecutiveOutliers >= LEVEL_CHANGE_BEATS) {
+            restartReference()
+            remember(rrMillis)
+            countBeat(isArtifact = false)
+            return rrMillis
+        }
+        countBeat(isArtifact = true)
+        return mean
+    }
+
+    fun reset() {
+        restartReference()
+        beatCount = 0
+        artifactCount = 0
+        recentArtifactPercent = 0f
+    }
+
+    private fun countBeat(isArtifact: Boolean) {
+        if (isArtifact) artifactCount++
+        // Exponential average, close to a moving window of RECENT_BEATS
+        val sample = if (isArtifact) 100f else 0f
+        recentArtifactPercent += (sample - recentArtifactPercent) / RECENT_BEATS
+    }
+
+    private fun remember(rrMillis: Int) {
+        if (referenceCount == REFERENCE_BEATS) {
+            referenceSum -= reference[referenceNext]
+        } else {
+            referenceCount++
+        }
+        reference[referenceNext] = rrMillis
+        referenceSum += rrMillis
+        referenceNext = (referenceNext + 1) % REFERENCE_BEATS
+    }
+
+    private fun restartReference() {
+        referenceCount = 0
+        referenceNext = 0
+        referenceSum = 0
+        consecutiveOutliers = 0
+    }
+
+    companion object {
+        // 200 and 30 bpm
+        const val MIN_RR_MS = 300
+        const val MAX_RR_MS = 2000
+
+        // About the DFA window at moderate heart rates
+        const val RECENT_BEATS = 120
+
+        private const val REFERENCE_BEATS = 5
+        private const val LEVEL_CHANGE_BEATS = 3
+    }
+}
@@ -0,0 +1,52 @@
+package com.fitnessbuddy.data.hrv
+
+/**
+ * Fixed-capacity ring of RR intervals with their arrival times. Once full,
+ * each new beat overwrites the oldest, so memory stays constant however long
+ * the strap is worn. Index 0 is the oldest beat still held.
+ */
+class RrIntervalBuffer(val capacity: Int = DEFAULT_CAPACITY) {
+    private val timestamps = LongArray(capacity)
+    private val intervals = IntArray(capacity)
+    private var head = 0
+
+    var size = 0
+        private set
+
+    fun add(timestamp: Long, rrMillis: Int) {
+        val slot = (head + size) % capacity
+        timestamps[slot] = timestamp
+        intervals[slot] = rrMillis
+        if (size < capacity) size++ else head = (head + 1) % capacity
+    }
+
+    fun timestamp(index: Int): Long = timestamps[slot(index)]
+
+    fun rrMillis(index: Int): Int = intervals[slot(index)]
+
+    /** Index of the first beat at or after [timestamp], or [size] if none. */
+    fun indexAtOrAfter(timestamp: Long): Int {
+        var low = 0
+        var high = size
+        while (low < high) {
+            val mid = (low + high) ushr 1
+            if (timestamp(mid) < timestamp) low = mid + 1 else high = mid
+        }
+        return low
+    }
+
+    fun clear() {
+        head = 0
+        size = 0
+    }
+
+    private fun slot(index: Int): Int {
+        if (index !in 0 until size) throw IndexOutOfBoundsException("Index $index, size $size")
+        return (head + index) % capacity
+    }
+
+    companion object {
+        // About five minutes at race heart rates
+        const val DEFAULT_CAPACITY = 1024
+    }
+}
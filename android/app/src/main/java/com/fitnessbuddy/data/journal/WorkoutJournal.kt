@@ -0,0 +1,367 @@
+package com.fitnessbuddy.data.journal
+
+import android.content.Context
+import android.os.SystemClock
+import android.util.Log
+import dagger.hilt.android.qualifiers.ApplicationContext
+import java.io.File
+import java.io.RandomAccessFile
+import java.nio.ByteOrder
+import java.nio.MappedByteBuffer
+import java.nio.channels.FileChannel
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Metadata written at the start of a journaled session.
+ */
+data class JournalSessionInfo(
+    val startedAt: Long,
+    val weekNumber: Int,
+    val dayOfWeek: String,
+    val workoutMode: String
+)
+
+/**
+ * Receives journal records during [WorkoutJournal.replay].
+ * Values are passed as primitives so replaying a long session doesn't allocate per record.
+ */
+interface JournalVisitor {
+    fun onLocation(
+        timestamp: Long,
+        latitude: Double,
+        longitude: Double,
+        altitude: Double,
+        speed: Float,
+        isStationary: Boolean
+    ) {}
+
+    fun onHeartRate(timestamp: Long, bpm: Int) {}
+
+    fun onTreadmill(
+        timestamp: Long,
+        distanceMeters: Double,
+        altitudeMeters: Double,
+        elevationGainMeters: Float,
+        elevationLossMeters: Float
+    ) {}
+
+    /**
+     * @param isAuto The change was made by auto-pause rather than the user
+     */
+    fun onStateChange(timestamp: Long, state: Int, elapsedSeconds: Long, isAuto: Boolean) {}
+}
+
+/**
+ * Crash-safe, append-only journal for the live workout.
+ *
+ * Records have a fixed size and are written straight into a memory-mapped
+ * file, so an append is a handful of absolute puts into the page cache and
+ * survives process death. The mapping is flushed to disk every
+ * [SYNC_INTERVAL_MS] to also survive a device crash. After a restart,
+ * [readSessionInfo] and [replay] rebuild the interrupted session.
+ *
+ * File layout: a [HEADER_SIZE]-byte header followed by [RECORD_SIZE]-byte
+ * records. The committed record count is stored in the header and updated
+ * after each record, so a torn write is never replayed.
+ */
+@Singleton
+class WorkoutJournal @Inject constructor(
+    @ApplicationContext private val context: Context
+) {
+    private val file: File
+        get() = File(context.filesDir, FILE_NAME)
+
+    private var channel: FileChannel? = null
+    private var buffer: MappedByteBuffer? = null
+    private var recordCount = 0
+    private var lastSyncAt = 0L
+
+    val isOpen: Boolean
+        @Synchronized get() = buffer != null
+
+    /**
+     * Starts a new journal, discarding any previous one.
+     */
+    @Synchronized
+    fun begin(info: JournalSessionInfo) {
+        close()
+        file.delete()
+        try {
+            val raf = RandomAccessFile(file, "rw")
+            val fileChannel = raf.channel
+            val mapped = map(fileChannel, INITIAL_CAPACITY_RECORDS)
+            mapped.putInt(OFFSET_MAGIC, MAGIC)
+            mapped.putInt(OFFSET_VERSION, FORMAT_VERSION)
+            mapped.putInt(OFFSET_RECORD_COUNT, 0)
+            mapped.putLong(OFFSET_STARTED_AT, info.startedAt)
+            mapped.putInt(OFFSET_WEEK_NUMBER, info.weekNumber)
+            putAscii(mapped, OFFSET_DAY_OF_WEEK, info.dayOfWeek)
+            putAscii(mapped, OFFSET_WORKOUT_MODE, info.workoutMode)
+            mapped.force()
+
+            channel = fileChannel
+            buffer = mapped
+            recordCount = 0
+            lastSyncAt = SystemClock.elapsedRealtime()
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to open workout journal", e)
+            close()
+        }
+    }
+
+    /**
+     * Re-opens the journal left on disk for appending, after it has been replayed.
+     *
+     * @return true if the journal is open afterwards
+     */
+    @Synchronized
+    fun reopen(): Boolean {
+        if (buffer != null) return true
+        val journalFile = file
+        if (!journalFile.exists() || journalFile.length() < HEADER_SIZE + RECORD_SIZE) return false
+        return try {
+            val fileChannel = RandomAccessFile(journalFile, "rw").channel
+            val capacity = ((journalFile.length() - HEADER_SIZE) / RECORD_SIZE).toInt()
+            val mapped = map(fileChannel, capacity)
+            channel = fileChannel
+            buffer = mapped
+            recordCount = mapped.getInt(OFFSET_RECORD_COUNT).coerceIn(0, capacity)
+            lastSyncAt = SystemClock.elapsedRealtime()
+            true
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to reopen workout journal", e)
+            close()
+            false
+        }
+    }
+
+    fun appendLocation(
+        timestamp: Long,
+        latitude: Double,
+        longitude: Double,
+        altitude: Double,
+        speed: Float,
+        isStationary: Boolean
+    ) {
+        append(TYPE_LOCATION, timestamp, latitude, longitude, altitude.toFloat(), speed, if (isStationary) 1 else 0)
+    }
+
+    fun appendHeartRate(timestamp: Long, bpm: Int) {
+        append(TYPE_HEART_RATE, timestamp, 0.0, 0.0, 0f, 0f, bpm)
+    }
+
+    /**
+     * Records the indoor session's accumulated treadmill totals.
+     */
+    fun appendTreadmill(
+        timestamp: Long,
+        distanceMeters: Float,
+        altitudeMeters: Double,
+        elevationGainMeters: Float,
+        elevationLossMeters: Float
+    ) {
+        append(TYPE_TREADMILL, timestamp, distanceMeters.toDouble(), altitudeMeters, elevationGainMeters, elevationLossMeters, 0)
+    }
+
+    /**
+     * Records a workout state transition together with the elapsed time at that moment.
+     *
+     * @param isAuto The change was made by auto-pause rather than the user
+     */
+    fun appendStateChange(timestamp: Long, state: Int, elapsedSeconds: Long, isAuto: Boolean = false) {
+        append(TYPE_STATE, timestamp, elapsedSeconds.toDouble(), 0.0, if (isAuto) 1f else 0f, 0f, state)
+    }
+
+    @Synchronized
+    private fun append(type: Int, timestamp: Long, a: Double, b: Double, c: Float, d: Float, e: Int) {
+        var mapped = buffer ?: return
+        try {
+            if (recordCount == capacityOf(mapped)) {
+                mapped = grow(mapped)
+            }
+            val offset = HEADER_SIZE + recordCount * RECORD_SIZE
+            mapped.putInt(offset, type)
+            mapped.putLong(offset + 4, timestamp)
+            mapped.putDouble(offset + 12, a)
+            mapped.putDouble(offset + 20, b)
+            mapped.putFloat(offset + 28, c)
+            mapped.putFloat(offset + 32, d)
+            mapped.putInt(offset + 36, e)
+            // Commit only after the record body is in place
+            recordCount++
+            mapped.putInt(OFFSET_RECORD_COUNT, recordCount)
+
+            val now = SystemClock.elapsedRealtime()
+            if (now - lastSyncAt >= SYNC_INTERVAL_MS) {
+                mapped.force()
+                lastSyncAt = now
+            }
+        } catch (ex: Exception) {
+            Log.e(TAG, "Failed to append journal record", ex)
+        }
+    }
+
+    /**
+     * Returns metadata of the journal left on disk, or null if there is none.
+     */
+    @Synchronized
+    fun readSessionInfo(): JournalSessionInfo? {
+        val journalFile = file
+        if (!journalFile.exists() || journalFile.length() < HEADER_SIZE) return null
+        return try {
+            RandomAccessFile(journalFile, "r").use { raf ->
+                val mapped = raf.channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE.toLong())
+                mapped.order(ByteOrder.LITTLE_ENDIAN)
+                if (mapped.getInt(OFFSET_MAGIC) != MAGIC || mapped.getInt(OFFSET_VERSION) != FORMAT_VERSION) {
+                    return null
+                }
+                JournalSessionInfo(
+                    startedAt = mapped.getLong(OFFSET_STARTED_AT),
+                    weekNumber = mapped.getInt(OFFSET_WEEK_NUMBER),
+                    dayOfWeek = getAscii(mapped, OFFSET_DAY_OF_WEEK),
+                    workoutMode = getAscii(mapped, OFFSET_WORKOUT_MODE)
+                )
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to read workout journal", e)
+            null
+        }
+    }
+
+    /**
+     * Replays every committed record of the journal on disk, in write order.
+     *
+     * @return The number of records replayed
+     */
+    @Synchronized
+    fun replay(visitor: JournalVisitor): Int {
+        val journalFile = file
+        if (!journalFile.exists() || journalFile.length() < HEADER_SIZE) return 0
+        return try {
+            RandomAccessFile(journalFile, "r").use { raf ->
+                val length = raf.length()
+                val mapped = raf.channel.map(FileChannel.MapMode.READ_ONLY, 0, length)
+                mapped.order(ByteOrder.LITTLE_ENDIAN)
+                if (mapped.getInt(OFFSET_MAGIC) != MAGIC) return 0
+                val available = ((length - HEADER_SIZE) / RECORD_SIZE).toInt()
+                val count = mapped.getInt(OFFSET_RECORD_COUNT).coerceIn(0, available)
+                for (i in 0 until count) {
+                    val offset = HEADER_SIZE + i * RECORD_SIZE
+                    val timestamp = mapped.getLong(offset + 4)
+                    when (mapped.getInt(offset)) {
+                        TYPE_LOCATION -> visitor.onLocation(
+                            timestamp = timestamp,
+                            latitude = mapped.getDouble(offset + 12),
+                            longitude = mapped.getDouble(offset + 20),
+                            altitude = mapped.getFloat(offset + 28).toDouble(),
+                            speed = mapped.getFloat(offset + 32),
+                            isStationary = mapped.getInt(offset + 36) != 0
+                        )
+                        TYPE_HEART_RATE -> visitor.onHeartRate(timestamp, mapped.getInt(offset + 36))
+                        TYPE_TREADMILL -> visitor.onTreadmill(
+                            timestamp = timestamp,
+                            distanceMeters = mapped.getDouble(offset + 12),
+                            altitudeMeters = mapped.getDouble(offset + 20),
+                            elevationGainMeters = mapped.getFloat(offset + 28),
+                            elevationLossMeters = mapped.getFloat(offset + 32)
+                        )
+                        TYPE_STATE -> visitor.onStateChange(
+                            timestamp = timestamp,
+                            state = mapped.getInt(offset + 36),
+                            elapsedSeconds = mapped.getDouble(offset + 12).toLong(),
+                            isAuto = mapped.getFloat(offset + 28) != 0f
+                        )
+                    }
+                }
+                count
+            }
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to replay workout journal", e)
+            0
+        }
+    }
+
+    /**
+     * Closes and deletes the journal. Call when the session ends normally.
+     */
+    @Synchronized
+    fun finish() {
+        close()
+        file.delete()
+    }
+
+    @Synchronized
+    fun close() {
+        try {
+            buffer?.force()
+            channel?.close()
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to close workout journal", e)
+        }
+        buffer = null
+        channel = null
+        recordCount = 0
+    }
+
+    private fun map(fileChannel: FileChannel, capacityRecords: Int): MappedByteBuffer {
+        val size = HEADER_SIZE.toLong() + capacityRecords.toLong() * RECORD_SIZE
+        return fileChannel.map(FileChannel.MapMode.READ_WRITE, 0, size).apply {
+            order(ByteOrder.LITTLE_ENDIAN)
+        }
+    }
+
+    private fun grow(current: MappedByteBuffer): MappedByteBuffer {
+        current.force()
+        val grown = map(channel!!, capacityOf(current) * 2)
+        buffer = grown
+        return grown
+    }
+
+    private fun capacityOf(mapped: MappedByteBuffer): Int = (mapped.capacity() - HEADER_SIZE) / RECORD_SIZE
+
+    private fun putAscii(mapped: MappedByteBuffer, offset: Int, value: String) {
+        for (i in 0 until TEXT_FIELD_SIZE) {
+            val c = if (i < value.length) value[i].code.coerceAtMost(0x7F) else 0
+            mapped.put(offset + i, c.toByte())
+        }
+    }
+
+    private fun getAscii(mapped: java.nio.ByteBuffer, offset: Int): String = buildString {
+        for (i in 0 until TEXT_FIELD_SIZE) {
+            val c = mapped.get(offset + i).toInt()
+            if (c == 0) break
+            append(c.toChar())
+        }
+    }
+
+    companion object {
+        private const val TAG = "WorkoutJournal"
+        private const val FILE_NAME = "workout_journal.bin"
+
+        const val TYPE_LOCATION = 1
+        const val TYPE_HEART_RATE = 2
+        const val TYPE_STATE = 3
+        const val TYPE_TREADMILL = 4
+
+        private const val MAGIC = 0x46424A4E // "FBJN"
+        private const val FORMAT_VERSION = 1
+        private const val TEXT_FIELD_SIZE = 16
+
+        private const val OFFSET_MAGIC = 0
+        private const val OFFSET_VERSION = 4
+        private const val OFFSET_RECORD_COUNT = 8
+        private const val OFFSET_STARTED_AT = 12
+        private const val OFFSET_WEEK_NUMBER = 20
+        private const val OFFSET_DAY_OF_WEEK = 24
+        private const val OFFSET_WORKOUT_MODE = 40
+        const val HEADER_SIZE = 64
+
+        // type(4) timestamp(8) a(8) b(8) c(4) d(4) e(4)
+        const val RECORD_SIZE = 40
+
+        // 2 hours of 1 Hz GPS plus heart rate; the mapping doubles when full
+        private const val INITIAL_CAPACITY_RECORDS = 16_384
+        private const val SYNC_INTERVAL_MS = 10_000L
+    }
+}
@@ -0,0 +1,92 @@
+package com.fitnessbuddy.data.location
+
+import kotlin.math.abs
+import kotlin.math.asin
+import kotlin.math.atan
+import kotlin.math.atan2
+import kotlin.math.cos
+import kotlin.math.sin
+import kotlin.math.sqrt
+import kotlin.math.tan
+
+/**
+ * Plain-Kotlin geodesy helpers for code that must not depend on
+ * [android.location.Location], e.g. file import/export and JVM benchmarks.
+ */
+object GeoMath {
+    const val EARTH_RADIUS_METERS = 6_371_008.8
+
+    // WGS84 ellipsoid
+    private const val SEMI_MAJOR_AXIS = 6_378_137.0
+    private const val SEMI_MINOR_AXIS = 6_356_752.3142
+    private const val FLATTENING = (SEMI_MAJOR_AXIS - SEMI_MINOR_AXIS) / SEMI_MAJOR_AXIS
+    private const val SECOND_ECCENTRICITY_SQ =
+        (SEMI_MAJOR_AXIS * SEMI_MAJOR_AXIS - SEMI_MINOR_AXIS * SEMI_MINOR_AXIS) / (SEMI_MINOR_AXIS * SEMI_MINOR_AXIS)
+    private const val MAX_ITERATIONS = 20
+    private const val CONVERGENCE = 1.0e-12
+
+    /**
+     * Great-circle distance between two coordinates in meters (haversine).
+     * Within a few metres per 10 km of the ellipsoidal distance Android reports.
+     */
+    fun distanceMeters(lat1: Double, lon1: Double, lat2: Double, lon2: Double): Double {
+        val phi1 = Math.toRadians(lat1)
+        val phi2 = Math.toRadians(lat2)
+        val dPhi = phi2 - phi1
+        val dLambda = Math.toRadians(lon2 - lon1)
+        val sinPhi = sin(dPhi / 2)
+        val sinLambda = sin(dLambda / 2)
+        val a = sinPhi * sinPhi + cos(phi1) * cos(phi2) * sinLambda * sinLambda
+        return 2 * EARTH_RADIUS_METERS * asin(sqrt(a.coerceIn(0.0, 1.0)))
+    }
+
+    /**
+     * Distance on the WGS84 ellipsoid in meters (Vincenty's inverse formula),
+     * the same computation as [android.location.Location.distanceBetween]
+     * without the result array. Use it where totals must match what the
+     * platform reports.
+     */
+    fun ellipsoidalDistanceMeters(lat1: Double, lon1: Double, lat2: Double, lon2: Double): Double {
+        val l = Math.toRadians(lon2 - lon1)
+        val u1 = atan((1.0 - FLATTENING) * tan(Math.toRadians(lat1)))
+        val u2 = atan((1.0 - FLATTENING) * tan(Math.toRadians(lat2)))
+        val cosU1 = cos(u1)
+        val cosU2 = cos(u2)
+        val sinU1 = sin(u1)
+        val sinU2 = sin(u2)
+        val cosU1cosU2 = cosU1 * cosU2
+        val sinU1sinU2 = sinU1 * sinU2
+
+        var a = 0.0
+        var sigma = 0.0
+        var deltaSigma = 0.0
+        var lambda = l
+        for (iteration in 0 until MAX_ITERATIONS) {
+            val previousLambda = lambda
+            val cosLambda = cos(lambda)
+            val sinLambda = sin(lambda)
+            val t1 = cosU2 * sinLambda
+            val t2 = cosU1 * sinU2 - sinU1 * cosU2 * cosLambda
+            val sinSqSigma = t1 * t1 + t2 * t2
+            val sinSigma = sqrt(sinSqSigma)
+            val cosSigma = sinU1sinU2 + cosU1cosU2 * cosLambda
+            sigma = atan2(sinSigma, cosSigma)
+            val sinAlpha = if (sinSigma == 0.0) 0.0 else cosU1cosU2 * sinLambda / sinSigma
+            val cosSqAlpha = 1.0 - sinAlpha * sinAlpha
+            val cos2SM = if (cosSqAlpha == 0.0) 0.0 else cosSigma - 2.0 * sinU1sinU2 / cosSqAlpha
+
+            val uSquared = cosSqAlpha * SECOND_ECCENTRICITY_SQ
+            a = 1 + uSquared / 16384.0 * (4096.0 + uSquared * (-768 + uSquared * (320.0 - 175.0 * uSquared)))
+            val b = uSquared / 1024.0 * (256.0 + uSquared * (-128.0 + uSquared * (74.0 - 47.0 * uSquared)))
+            val c = FLATTENING / 16.0 * cosSqAlpha * (4.0 + FLATTENING * (4.0 - 3.0 * cosSqAlpha))
+            val cos2SMSq = cos2SM * cos2SM
+            deltaSigma = b * sinSigma * (cos2SM + b / 4.0 * (cosSigma * (-1.0 + 2.0 * cos2SMSq) -
+                b / 6.0 * cos2SM * (-3.0 + 4.0 * sinSqSigma) * (-3.0 + 4.0 * cos2SMSq)))
+            lambda = l + (1.0 - c) * FLATTENING * sinAlpha *
+                (sigma + c * sinSigma * (cos2SM + c * cosSigma * (-1.0 + 2.0 * cos2SM * cos2SM)))
+
+            if (lambda == 0.0 || abs((lambda - previousLambda) / lambda) < CONVERGENCE) break
+        }
+        return SEMI_MINOR_AXIS * a * (sigma - deltaSigma)
+    }
+}
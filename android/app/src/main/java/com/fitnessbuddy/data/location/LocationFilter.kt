@@ -0,0 +1,243 @@
+package com.fitnessbuddy.data.location
+
+import kotlin.math.PI
+import kotlin.math.cos
+import kotlin.math.sqrt
+
+/**
+ * Tuning for [LocationFilter].
+ */
+data class LocationFilterConfig(
+    val maxAccuracyMeters: Float = 25f,            // Fixes less accurate than this are dropped
+    val maxSpeedMs: Float = 12f,                   // Implied jumps faster than this are dropped
+    val accelerationNoise: Double = 2.0,           // Expected acceleration std-dev in m/s²
+    val stationarySpeedMs: Float = 0.4f,           // Below this the runner is considered stopped
+    val correctionThresholdMeters: Float = 3f,     // Shifts larger than this count as corrections
+    val maxConsecutiveDrops: Int = 5               // After this many drops the filter re-anchors
+)
+
+/**
+ * Counters reported by [LocationFilter].
+ */
+data class LocationFilterStats(
+    val accepted: Int = 0,
+    val droppedInaccurate: Int = 0,
+    val droppedSpeed: Int = 0,
+    val corrected: Int = 0,
+    val stationary: Int = 0
+) {
+    val dropped: Int
+        get() = droppedInaccurate + droppedSpeed
+}
+
+/**
+ * Smoothing and outlier rejection for raw fused-provider fixes.
+ *
+ * Fixes are first gated on reported accuracy and on the speed implied by the
+ * jump from the previous estimate. Accepted fixes go through a
+ * constant-velocity Kalman filter run independently on the east and north
+ * axes of a local tangent plane. Fixes where both the filtered and reported
+ * speed are below [LocationFilterConfig.stationarySpeedMs] are flagged as
+ * stationary jitter.
+ *
+ * All state is held in primitive fields and [process] does not allocate, so
+ * it can run on every callback at the fastest update interval.
+ */
+class LocationFilter(private val config: LocationFilterConfig = LocationFilterConfig()) {
+
+    // Local tangent plane origin
+    private var initialized = false
+    private var originLatitude = 0.0
+    private var originLongitude = 0.0
+    private var metersPerDegreeLon = 0.0
+
+    // State per axis: position (m) and velocity (m/s)
+    private var east = 0.0
+    private var eastVelocity = 0.0
+    private var north = 0.0
+    private var northVelocity = 0.0
+
+    // Shared 2x2 covariance (both axes see the same noise model)
+    private var p00 = 0.0
+    private var p01 = 0.0
+    private var p11 = 0.0
+
+    private var lastTimestamp = 0L
+    private var consecutiveDrops = 0
+
+    private var accepted = 0
+    private var droppedInaccurate = 0
+    private var droppedSpeed = 0
+    private var corrected = 0
+    private var stationaryCount = 0
+
+    /** Filtered latitude of the last accepted fix. */
+    var latitude: Double = 0.0
+        private set
+
+    /** Filtered longitude of the last accepted fix. */
+    var longitude: Double = 0.0
+        private set
+
+    /** Filtered ground speed of the last accepted fix, in m/s. */
+    var speed: Float = 0f
+        private set
+
+    /** Whether the last accepted fix looks like stationary jitter. */
+    var isStationary: Boolean = false
+        private set
+
+    val droppedCount: Int
+        get() = droppedInaccurate + droppedSpeed
+
+    val correctedCount: Int
+        get() = corrected
+
+    /**
+     * Feeds a raw fix through the filter.
+     *
+     * @return true if the fix was accepted; the smoothed values are then
+     *         available from [latitude], [longitude], [speed] and [isStationary]
+     */
+    fun process(
+        rawLatitude: Double,
+        rawLongitude: Double,
+        rawSpeed: Float,
+        accuracyMeters: Float,
+        timestamp: Long
+    ): Boolean {
+        if (accuracyMeters > config.maxAccuracyMeters) {
+            droppedInaccurate++
+            return false
+        }
+
+        if (!initialized || consecutiveDrops >= config.maxConsecutiveDrops) {
+            anchor(rawLatitude, rawLongitude, rawSpeed, accuracyMeters, timestamp)
+            accepted++
+            return true
+        }
+
+        val measuredEast = (rawLongitude - originLongitude) * metersPerDegreeLon
+        val measuredNorth = (rawLatitude - originLatitude) * METERS_PER_DEGREE_LAT
+        val dt = (timestamp - lastTimestamp) / 1000.0
+
+        if (dt > 0) {
+            val jumpEast = measuredEast - east
+            val jumpNorth = measuredNorth - north
+            val impliedSpeed = sqrt(jumpEast * jumpEast + jumpNorth * jumpNorth) / dt
+            if (impliedSpeed > config.maxSpeedMs) {
+                droppedSpeed++
+                consecutiveDrops++
+                return false
+            }
+            predict(dt)
+        }
+        consecutiveDrops = 0
+
+        // Update: position-only measurement with variance accuracy²
+        val r = (accuracyMeters * accuracyMeters).toDouble().coerceAtLeast(MIN_MEASUREMENT_VARIANCE)
+        val s = p00 + r
+        val k0 = p00 / s
+        val k1 = p01 / s
+
+        val innovationEast = measuredEast - east
+        val innovationNorth = measuredNorth - north
+        east += k0 * innovationEast
+        eastVelocity += k1 * innovationEast
+        north += k0 * innovationNorth
+        northVelocity += k1 * innovationNorth
+
+        val newP00 = (1 - k0) * p00
+        val newP01 = (1 - k0) * p01
+        val newP11 = p11 - k1 * p01
+        p00 = newP00
+        p01 = newP01
+        p11 = newP11
+
+        lastTimestamp = timestamp
+        publish()
+
+        val shiftEast = measuredEast - east
+        val shiftNorth = measuredNorth - north
+        if (shiftEast * shiftEast + shiftNorth * shiftNorth >
+            config.correctionThresholdMeters * config.correctionThresholdMeters
+        ) {
+            corrected++
+        }
+
+        isStationary = speed < config.stationarySpeedMs && rawSpeed < config.stationarySpeedMs
+        if (isStationary) stationaryCount++
+        accepted++
+        return true
+    }
+
+    fun stats(): LocationFilterStats = LocationFilterStats(
+        accepted = accepted,
+        droppedInaccurate = droppedInaccurate,
+        droppedSpeed = droppedSpeed,
+        corrected = corrected,
+        stationary = stationaryCount
+    )
+
+    fun reset() {
+        initialized = false
+        consecutiveDrops = 0
+        accepted = 0
+        droppedInaccurate = 0
+        droppedSpeed = 0
+        corrected = 0
+        stationaryCount = 0
+    }
+
+    private fun anchor(
+        rawLatitude: Double,
+        rawLongitude: Double,
+        rawSpeed: Float,
+        accuracyMeters: Float,
+        timestamp: Long
+    ) {
+        initialized = true
+        consecutiveDrops = 0
+        originLatitude = rawLatitude
+        originLongitude = rawLongitude
+        metersPerDegreeLon = METERS_PER_DEGREE_LAT * cos(rawLatitude * PI / 180.0)
+        east = 0.0
+        north = 0.0
+        eastVelocity = 0.0
+        northVelocity = 0.0
+        p00 = (accuracyMeters * accuracyMeters).toDouble().coerceAtLeast(MIN_MEASUREMENT_VARIANCE)
+        p01 = 0.0
+        p11 = INITIAL_VELOCITY_VARIANCE
+        lastTimestamp = timestamp
+        latitude = rawLatitude
+        longitude = rawLongitude
+        speed = rawSpeed
+        isStationary = rawSpeed < config.stationarySpeedMs
+    }
+
+    private fun predict(dt: Double) {
+        east += eastVelocity * dt
+        north += northVelocity * dt
+
+        val q = config.accelerationNoise * config.accelerationNoise
+        val dt2 = dt * dt
+        val newP00 = p00 + 2 * dt * p01 + dt2 * p11 + q * dt2 * dt2 / 4
+        val newP01 = p01 + dt * p11 + q * dt2 * dt / 2
+        val newP11 = p11 + q * dt2
+        p00 = newP00
+        p01 = newP01
+        p11 = newP11
+    }
+
+    private fun publish() {
+        latitude = originLatitude + north / METERS_PER_DEGREE_LAT
+        longitude = originLongitude + east / metersPerDegreeLon
+        speed = sqrt(eastVelocity * eastVelocity + northVelocity * northVelocity).toFloat()
+    }
+
+    companion object {
+        private const val METERS_PER_DEGREE_LAT = 111_320.0
+        private const val MIN_MEASUREMENT_VARIANCE = 1.0
+        private const val INITIAL_VELOCITY_VARIANCE = 25.0
+    }
+}
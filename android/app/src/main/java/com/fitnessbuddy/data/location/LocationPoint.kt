@@ -0,0 +1,11 @@
+package com.fitnessbuddy.data.location
+
+data class LocationPoint(
+    val latitude: Double,
+    val longitude: Double,
+    val altitude: Double = 0.0,
+    val speed: Float = 0f,
+    val timestamp: Long = System.currentTimeMillis(),
+    val accuracy: Float = 0f,
+    val isStationary: Boolean = false   // Flagged by LocationFilter as standing-still jitter
+)
@@ -0,0 +1,160 @@
+package com.fitnessbuddy.data.location
+
+import kotlin.math.PI
+import kotlin.math.abs
+import kotlin.math.atan2
+import kotlin.math.cos
+
+enum class SamplingMode {
+    HIGH_RATE,   // Intervals, turns, changing pace
+    STEADY       // Straight segments at a stable pace
+}
+
+/**
+ * Request parameters for one [SamplingMode].
+ */
+data class SamplingProfile(
+    val intervalMillis: Long,
+    val minUpdateIntervalMillis: Long,
+    val minUpdateDistanceMeters: Float
+)
+
+/**
+ * Adaptive GPS sampling for a workout session.
+ *
+ * The policy watches accepted fixes and switches between a high-rate profile
+ * (during intervals, turns and pace changes) and a cheaper steady profile on
+ * long straight segments, where sparse fixes lose no distance. While the
+ * screen is off, fixes are batched ([maxUpdateDelayMillis]) so the app wakes
+ * up once per batch instead of once per fix. Plain Kotlin; [LocationTracker]
+ * turns it into fused-provider requests.
+ *
+ * Use [forWorkoutType] to pick a policy from [com.fitnessbuddy.domain.model.TrainingDay.workoutType].
+ * Not thread-safe; feed it from the thread that receives location callbacks.
+ */
+class LocationSamplingPolicy(
+    private val highRate: SamplingProfile = HIGH_RATE_PROFILE,
+    private val steady: SamplingProfile = STEADY_PROFILE,
+    private val adaptive: Boolean = true,
+    private val screenOffMaxDelayMillis: Long = DEFAULT_SCREEN_OFF_MAX_DELAY_MILLIS,
+    private val steadyAfterMillis: Long = DEFAULT_STEADY_AFTER_MILLIS,
+    private val turnThresholdDegrees: Double = DEFAULT_TURN_THRESHOLD_DEGREES,
+    private val paceChangeThreshold: Float = DEFAULT_PACE_CHANGE_THRESHOLD
+) {
+    var mode: SamplingMode = SamplingMode.HIGH_RATE
+        private set
+
+    var isScreenOn: Boolean = true
+        private set
+
+    private var hasLastFix = false
+    private var lastLatitude = 0.0
+    private var lastLongitude = 0.0
+    private var lastHeading = Double.NaN
+    private var referenceSpeed = 0f
+    private var stableSince = 0L
+
+    /**
+     * Folds in an accepted fix.
+     *
+     * @return true if the sampling mode changed and the request must be re-issued
+     */
+    fun onFix(point: LocationPoint): Boolean {
+        if (!adaptive) return false
+
+        var disturbed = false
+        if (hasLastFix && !point.isStationary) {
+            val heading = headingDegrees(lastLatitude, lastLongitude, point.latitude, point.longitude)
+            if (!lastHeading.isNaN()) {
+                var delta = abs(heading - lastHeading)
+                if (delta > 180.0) delta = 360.0 - delta
+                if (delta > turnThresholdDegrees) disturbed = true
+            }
+            lastHeading = heading
+        }
+
+        if (referenceSpeed > 0f && abs(point.speed - referenceSpeed) > referenceSpeed * paceChangeThreshold) {
+            disturbed = true
+        }
+
+        if (disturbed || !hasLastFix) {
+            referenceSpeed = point.speed
+            stableSince = point.timestamp
+        }
+        hasLastFix = true
+        lastLatitude = point.latitude
+        lastLongitude = point.longitude
+
+        val newMode = if (!disturbed && point.timestamp - stableSince >= steadyAfterMillis) {
+            SamplingMode.STEADY
+        } else {
+            SamplingMode.HIGH_RATE
+        }
+        if (newMode == mode) return false
+        mode = newMode
+        return true
+    }
+
+    /**
+     * @return true if the screen state changed and the request must be re-issued
+     */
+    fun onScreenStateChanged(screenOn: Boolean): Boolean {
+        if (screenOn == isScreenOn) return false
+        isScreenOn = screenOn
+        return true
+    }
+
+    /** Request parameters of the current [mode]. */
+    val currentProfile: SamplingProfile
+        get() = if (mode == SamplingMode.STEADY) steady else highRate
+
+    /** How long fixes may be held back for batching; 0 while the screen is on. */
+    val maxUpdateDelayMillis: Long
+        get() = if (isScreenOn) 0L else screenOffMaxDelayMillis
+
+    private fun headingDegrees(lat1: Double, lon1: Double, lat2: Double, lon2: Double): Double {
+        val dx = (lon2 - lon1) * cos(lat1 * PI / 180.0)
+        val dy = lat2 - lat1
+        val degrees = atan2(dx, dy) * 180.0 / PI
+        return if (degrees < 0) degrees + 360.0 else degrees
+    }
+
+    companion object {
+        val HIGH_RATE_PROFILE = SamplingProfile(
+            intervalMillis = 1000L,
+            minUpdateIntervalMillis = 500L,
+            minUpdateDistanceMeters = 2f
+        )
+        val STEADY_PROFILE = SamplingProfile(
+            intervalMillis = 4000L,
+            minUpdateIntervalMillis = 2000L,
+            minUpdateDistanceMeters = 8f
+        )
+
+        const val DEFAULT_SCREEN_OFF_MAX_DELAY_MILLIS = 30_000L
+        const val DEFAULT_STEADY_AFTER_MILLIS = 30_000L
+        const val DEFAULT_TURN_THRESHOLD_DEGREES = 25.0
+        const val DEFAULT_PACE_CHANGE_THRESHOLD = 0.15f
+
+        private val HIGH_RATE_WORKOUT_KEYWORDS = listOf(
+            "interval", "tempo", "fartlek", "speed", "hill", "track", "threshold", "race"
+        )
+
+        /**
+         * Picks a policy for a planned workout type such as "Intervals" or "Easy Run".
+         * Structured speed work always samples at the high rate; everything else
+         * is adaptive.
+         */
+        fun forWorkoutType(workoutType: String): LocationSamplingPolicy {
+            val type = workoutType.lowercase()
+            return if (HIGH_RATE_WORKOUT_KEYWORDS.any { type.contains(it) }) {
+                LocationSamplingPolicy(
+                    adaptive = false,
+                    screenOffMaxDelayMillis = 10_000L
+                )
+            } else {
+                LocationSamplingPolicy()
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.fitnessbuddy.data.location
+
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.flow.Flow
+
+/**
+ * Where live location fixes come from: the fused provider on a device
+ * ([LocationTracker]) or a recorded session ([com.fitnessbuddy.data.replay.SensorReplay]).
+ */
+interface LocationSource {
+    /**
+     * Dispatcher fixes are delivered on. Run per-fix metric work on it
+     * (e.g. with flowOn) so only throttled snapshots reach the UI thread.
+     * It runs one task at a time, so state only touched on it needs no locks.
+     */
+    val dispatcher: CoroutineDispatcher
+
+    /**
+     * Streams smoothed location fixes until the collector is cancelled.
+     */
+    fun getLocationUpdates(
+        filterConfig: LocationFilterConfig = LocationFilterConfig(),
+        samplingPolicy: LocationSamplingPolicy = LocationSamplingPolicy()
+    ): Flow<LocationPoint>
+}
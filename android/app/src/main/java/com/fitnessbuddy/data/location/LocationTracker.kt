@@ -1,58 +1,111 @@
 package com.fitnessbuddy.data.location
 
 import android.annotation.SuppressLint
+import android.content.BroadcastReceiver
 import android.content.Context
+import android.content.Intent
+import android.content.IntentFilter
 import android.location.Location
-import android.os.Looper
+import android.os.Handler
+import android.os.HandlerThread
+import android.os.PowerManager
 import com.google.android.gms.location.*
 import dagger.hilt.android.qualifiers.ApplicationContext
+import java.util.concurrent.Executor
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.android.asCoroutineDispatcher
 import kotlinx.coroutines.channels.awaitClose
 import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
 import kotlinx.coroutines.flow.callbackFlow
 import javax.inject.Inject
 import javax.inject.Singleton
 
-data class LocationPoint(
-    val latitude: Double,
-    val longitude: Double,
-    val altitude: Double = 0.0,
-    val speed: Float = 0f,
-    val timestamp: Long = System.currentTimeMillis()
-)
-
 @Singleton
 class LocationTracker @Inject constructor(
     @ApplicationContext private val context: Context
-) {
+) : LocationSource {
     private val fusedLocationClient: FusedLocationProviderClient =
         LocationServices.getFusedLocationProviderClient(context)
 
-    private val locationRequest = LocationRequest.Builder(
-        Priority.PRIORITY_HIGH_ACCURACY,
-        1000L // Update every 1 second
-    ).apply {
-        setMinUpdateIntervalMillis(500L)
-        setMinUpdateDistanceMeters(2f) // Minimum 2 meters between updates
-    }.build()
+    private val powerManager = context.getSystemService(Context.POWER_SERVICE) as PowerManager
+
+    // Location callbacks, filtering and sampling decisions run on this thread,
+    // never on the main looper
+    private val dispatchThread: HandlerThread by lazy {
+        HandlerThread("LocationDispatch").apply { start() }
+    }
+    private val dispatchHandler: Handler by lazy { Handler(dispatchThread.looper) }
+
+    /**
+     * Dispatcher backed by the location thread. Run per-fix metric work on it
+     * (e.g. with flowOn) so only throttled snapshots reach the UI thread.
+     */
+    override val dispatcher: CoroutineDispatcher by lazy { dispatchHandler.asCoroutineDispatcher("LocationDispatch") }
+
+    private val _filterStats = MutableStateFlow(LocationFilterStats())
+    /**
+     * Counters from the smoothing stage of the current (or last) session.
+     * Updated whenever a fix is dropped or corrected, and when updates stop.
+     */
+    val filterStats: StateFlow<LocationFilterStats> = _filterStats.asStateFlow()
 
+    /**
+     * Streams smoothed location fixes. Raw fixes pass through a [LocationFilter]
+     * that drops inaccurate or impossible jumps, Kalman-smooths the rest and
+     * flags stationary jitter.
+     *
+     * The request rate follows [samplingPolicy]: it is re-issued whenever the
+     * policy switches mode or the screen turns on or off.
+     */
     @SuppressLint("MissingPermission")
-    fun getLocationUpdates(): Flow<LocationPoint> = callbackFlow {
+    override fun getLocationUpdates(
+        filterConfig: LocationFilterConfig,
+        samplingPolicy: LocationSamplingPolicy
+    ): Flow<LocationPoint> = callbackFlow {
         android.util.Log.d("LocationTracker", "Starting location updates...")
+        val filter = LocationFilter(filterConfig)
+        samplingPolicy.onScreenStateChanged(powerManager.isInteractive)
+        _filterStats.value = LocationFilterStats()
+        var reportedDrops = 0
+        var reportedCorrections = 0
+
+        fun emitFiltered(location: Location) {
+            val accepted = filter.process(
+                rawLatitude = location.latitude,
+                rawLongitude = location.longitude,
+                rawSpeed = location.speed,
+                accuracyMeters = if (location.hasAccuracy()) location.accuracy else 0f,
+                timestamp = location.time
+            )
+            if (accepted) {
+                val point = LocationPoint(
+                    latitude = filter.latitude,
+                    longitude = filter.longitude,
+                    altitude = location.altitude,
+                    speed = filter.speed,
+                    timestamp = location.time,
+                    accuracy = location.accuracy,
+                    isStationary = filter.isStationary
+                )
+                samplingPolicy.onFix(point)
+                trySend(point)
+            }
+            if (filter.droppedCount != reportedDrops || filter.correctedCount != reportedCorrections) {
+                reportedDrops = filter.droppedCount
+                reportedCorrections = filter.correctedCount
+                _filterStats.value = filter.stats()
+            }
+        }
         
         // Try to get last known location first for immediate response
         try {
-            fusedLocationClient.lastLocation.addOnSuccessListener { location ->
+            fusedLocationClient.lastLocation.addOnSuccessListener(Executor { dispatchHandler.post(it) }) { location ->
                 location?.let {
                     android.util.Log.d("LocationTracker", "Got last known location: ${it.latitude}, ${it.longitude}")
-                    trySend(
-                        LocationPoint(
-                            latitude = it.latitude,
-                            longitude = it.longitude,
-                            altitude = it.altitude,
-                            speed = it.speed,
-                            timestamp = it.time
-                        )
-                    )
+                    emitFiltered(it)
                 } ?: android.util.Log.d("LocationTracker", "No last known location available")
             }.addOnFailureListener { e ->
                 android.util.Log.e("LocationTracker", "Failed to get last location: ${e.message}")
@@ -61,20 +114,35 @@ class LocationTracker @Inject constructor(
             android.util.Log.e("LocationTracker", "Error getting last location: ${e.message}")
         }
         
-        val callback = object : LocationCallback() {
+        // Requests are built once per mode/screen combination and reused
+        val requests = arrayOfNulls<LocationRequest>(SamplingMode.entries.size * 2)
+        var activeRequest: LocationRequest? = null
+        lateinit var callback: LocationCallback
+
+        // Re-issuing with the same callback replaces the previous request
+        fun applySamplingPolicy() {
+            val slot = samplingPolicy.mode.ordinal * 2 + if (samplingPolicy.isScreenOn) 0 else 1
+            val request = requests[slot] ?: buildRequest(samplingPolicy).also { requests[slot] = it }
+            if (request === activeRequest) return
+            activeRequest = request
+            fusedLocationClient.requestLocationUpdates(
+                request,
+                callback,
+                dispatchThread.looper
+            )
+            android.util.Log.d("LocationTracker", "Location updates requested: ${samplingPolicy.mode}, screenOn=${samplingPolicy.isScreenOn}")
+        }
+
+        callback = object : LocationCallback() {
             override fun onLocationResult(result: LocationResult) {
-                result.lastLocation?.let { location ->
-                    android.util.Log.d("LocationTracker", "Location update: ${location.latitude}, ${location.longitude}, accuracy: ${location.accuracy}m")
-                    trySend(
-                        LocationPoint(
-                            latitude = location.latitude,
-                            longitude = location.longitude,
-                            altitude = location.altitude,
-                            speed = location.speed,
-                            timestamp = location.time
-                        )
-                    )
+                // Batched delivery hands over several fixes at once
+                for (location in result.locations) {
+                    if (android.util.Log.isLoggable("LocationTracker", android.util.Log.VERBOSE)) {
+                        android.util.Log.v("LocationTracker", "Location update: ${location.latitude}, ${location.longitude}, accuracy: ${location.accuracy}m")
+                    }
+                    emitFiltered(location)
                 }
+                applySamplingPolicy()
             }
             
             override fun onLocationAvailability(availability: com.google.android.gms.location.LocationAvailability) {
@@ -82,16 +150,32 @@ class LocationTracker @Inject constructor(
             }
         }
 
-        fusedLocationClient.requestLocationUpdates(
-            locationRequest,
-            callback,
-            Looper.getMainLooper()
+        val screenReceiver = object : BroadcastReceiver() {
+            override fun onReceive(context: Context, intent: Intent) {
+                if (samplingPolicy.onScreenStateChanged(intent.action == Intent.ACTION_SCREEN_ON)) {
+                    applySamplingPolicy()
+                }
+            }
+        }
+        context.registerReceiver(
+            screenReceiver,
+            IntentFilter().apply {
+                addAction(Intent.ACTION_SCREEN_ON)
+                addAction(Intent.ACTION_SCREEN_OFF)
+            },
+            null,
+            dispatchHandler
         )
-        android.util.Log.d("LocationTracker", "Location updates requested")
+
+        applySamplingPolicy()
 
         awaitClose {
             android.util.Log.d("LocationTracker", "Stopping location updates")
+            context.unregisterReceiver(screenReceiver)
             fusedLocationClient.removeLocationUpdates(callback)
+            val stats = filter.stats()
+            _filterStats.value = stats
+            android.util.Log.d("LocationTracker", "Filter stats: $stats")
         }
     }
 
@@ -113,31 +197,22 @@ class LocationTracker @Inject constructor(
         }
     }
 
-    companion object {
-        fun calculateDistance(points: List<LocationPoint>): Float {
-            if (points.size < 2) return 0f
-            var totalDistance = 0f
-            for (i in 1 until points.size) {
-                val results = FloatArray(1)
-                Location.distanceBetween(
-                    points[i - 1].latitude,
-                    points[i - 1].longitude,
-                    points[i].latitude,
-                    points[i].longitude,
-                    results
-                )
-                totalDistance += results[0]
+    private fun buildRequest(policy: LocationSamplingPolicy): LocationRequest {
+        val profile = policy.currentProfile
+        return LocationRequest.Builder(Priority.PRIORITY_HIGH_ACCURACY, profile.intervalMillis).apply {
+            setMinUpdateIntervalMillis(profile.minUpdateIntervalMillis)
+            setMinUpdateDistanceMeters(profile.minUpdateDistanceMeters)
+            if (policy.maxUpdateDelayMillis > 0) {
+                // Same sampling rate, delivered in batches
+                setMaxUpdateDelayMillis(policy.maxUpdateDelayMillis)
             }
-            return totalDistance
-        }
+        }.build()
+    }
 
-        fun calculatePace(distanceMeters: Float, durationSeconds: Long): String {
-            if (distanceMeters <= 0 || durationSeconds <= 0) return "--:--"
-            val distanceKm = distanceMeters / 1000f
-            val paceSecondsPerKm = durationSeconds / distanceKm
-            val minutes = (paceSecondsPerKm / 60).toInt()
-            val seconds = (paceSecondsPerKm % 60).toInt()
-            return String.format("%d:%02d", minutes, seconds)
-        }
+    companion object {
+        fun calculateDistance(points: List<LocationPoint>): Float = RouteMath.calculateDistance(points)
+
+        fun calculatePace(distanceMeters: Float, durationSeconds: Long): String =
+            RouteMath.calculatePace(distanceMeters, durationSeconds)
     }
 }
@@ -0,0 +1,102 @@
+package com.fitnessbuddy.data.location
+
+/**
+ * Streaming accumulator for live GPS tracking.
+ *
+ * Each [LocationPoint] is folded in exactly once, so the cost of an update is
+ * constant regardless of how long the route already is. Use this instead of
+ * [LocationTracker.calculateDistance] for live sessions.
+ */
+class RouteAccumulator(
+    private val minMovingSpeedMs: Float = DEFAULT_MIN_MOVING_SPEED_MS,
+    private val maxSegmentGapMillis: Long = DEFAULT_MAX_SEGMENT_GAP_MILLIS
+) {
+    private var hasLastPoint = false
+    private var lastLatitude = 0.0
+    private var lastLongitude = 0.0
+    private var lastTimestamp = 0L
+
+    /** Total distance covered so far, in meters. */
+    var distanceMeters: Float = 0f
+        private set
+
+    /** Length of the most recent segment, in meters. */
+    var lastSegmentMeters: Float = 0f
+        private set
+
+    /** Time spent moving faster than [minMovingSpeedMs], in milliseconds. */
+    var movingTimeMillis: Long = 0L
+        private set
+
+    /** Number of points folded in so far. */
+    var pointCount: Int = 0
+        private set
+
+    /**
+     * Folds a new point into the running totals.
+     *
+     * @return The length of the segment ending at [point], in meters
+     */
+    fun add(point: LocationPoint): Float {
+        pointCount++
+        if (!hasLastPoint) {
+            hasLastPoint = true
+            lastLatitude = point.latitude
+            lastLongitude = point.longitude
+            lastTimestamp = point.timestamp
+            lastSegmentMeters = 0f
+            return 0f
+        }
+
+        if (point.isStationary) {
+            // Standing-still jitter: hold the anchor so noise doesn't add distance
+            lastTimestamp = point.timestamp
+            lastSegmentMeters = 0f
+            return 0f
+        }
+
+        val segment = GeoMath.ellipsoidalDistanceMeters(
+            lastLatitude,
+            lastLongitude,
+            point.latitude,
+            point.longitude
+        ).toFloat()
+        distanceMeters += segment
+        lastSegmentMeters = segment
+
+        val dtMillis = point.timestamp - lastTimestamp
+        if (dtMillis in 1..maxSegmentGapMillis) {
+            val segmentSpeed = segment * 1000f / dtMillis
+            if (segmentSpeed >= minMovingSpeedMs) {
+                movingTimeMillis += dtMillis
+            }
+        }
+
+        lastLatitude = point.latitude
+        lastLongitude = point.longitude
+        lastTimestamp = point.timestamp
+        return segment
+    }
+
+    /**
+     * Forgets the last point so the next one starts a new segment.
+     * Totals are kept; use this when tracking resumes after a pause.
+     */
+    fun breakSegment() {
+        hasLastPoint = false
+        lastSegmentMeters = 0f
+    }
+
+    fun reset() {
+        hasLastPoint = false
+        distanceMeters = 0f
+        lastSegmentMeters = 0f
+        movingTimeMillis = 0L
+        pointCount = 0
+    }
+
+    companion object {
+        const val DEFAULT_MIN_MOVING_SPEED_MS = 0.5f
+        const val DEFAULT_MAX_SEGMENT_GAP_MILLIS = 10_000L
+    }
+}
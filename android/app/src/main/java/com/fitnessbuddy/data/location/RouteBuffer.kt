@@ -0,0 +1,142 @@
+package com.fitnessbuddy.data.location
+
+/**
+ * Read-only access to a recorded route, stored column by column.
+ * Reading a value never allocates; use [pointAt] only where a boxed
+ * [LocationPoint] is really needed.
+ */
+interface RouteView {
+    val size: Int
+
+    fun latitude(index: Int): Double
+    fun longitude(index: Int): Double
+    fun altitude(index: Int): Double
+    fun speed(index: Int): Float
+    fun timestamp(index: Int): Long
+
+    fun isEmpty(): Boolean = size == 0
+    fun isNotEmpty(): Boolean = size > 0
+
+    fun pointAt(index: Int): LocationPoint = LocationPoint(
+        latitude = latitude(index),
+        longitude = longitude(index),
+        altitude = altitude(index),
+        speed = speed(index),
+        timestamp = timestamp(index)
+    )
+
+    companion object {
+        val EMPTY: RouteView = RouteBuffer().snapshot()
+    }
+}
+
+/**
+ * Growable columnar store for GPS fixes.
+ *
+ * Points live in parallel primitive arrays split into fixed-size chunks, so
+ * growing never copies existing samples and a marathon at 1 Hz is a handful
+ * of arrays instead of tens of thousands of objects. Recorded entries are
+ * never modified, which lets [snapshot] hand out zero-copy views that stay
+ * valid while recording continues.
+ *
+ * The buffer itself is not thread-safe: write from a single thread and
+ * publish snapshots to readers.
+ */
+class RouteBuffer(chunkSizeBits: Int = DEFAULT_CHUNK_SIZE_BITS) : RouteView {
+
+    private class Chunk(capacity: Int) {
+        val latitudes = DoubleArray(capacity)
+        val longitudes = DoubleArray(capacity)
+        val altitudes = DoubleArray(capacity)
+        val speeds = FloatArray(capacity)
+        val timestamps = LongArray(capacity)
+    }
+
+    private val chunkShift = chunkSizeBits
+    private val chunkMask = (1 shl chunkSizeBits) - 1
+
+    private var chunks = arrayOfNulls<Chunk>(INITIAL_CHUNK_SLOTS)
+    private var chunkCount = 0
+
+    override var size: Int = 0
+        private set
+
+    /** Incremented on every change; use it to invalidate observers. */
+    var version: Int = 0
+        private set
+
+    fun add(latitude: Double, longitude: Double, altitude: Double, speed: Float, timestamp: Long) {
+        val chunkIndex = size ushr chunkShift
+        if (chunkIndex == chunkCount) {
+            if (chunkCount == chunks.size) {
+                // Only the chunk directory is copied; samples stay where they are
+                chunks = chunks.copyOf(chunkCount * 2)
+            }
+            chunks[chunkCount++] = Chunk(chunkMask + 1)
+        }
+        val chunk = chunks[chunkIndex]!!
+        val offset = size and chunkMask
+        chunk.latitudes[offset] = latitude
+        chunk.longitudes[offset] = longitude
+        chunk.altitudes[offset] = altitude
+        chunk.speeds[offset] = speed
+        chunk.timestamps[offset] = timestamp
+        size++
+        version++
+    }
+
+    fun add(point: LocationPoint) {
+        add(point.latitude, point.longitude, point.altitude, point.speed, point.timestamp)
+    }
+
+    /**
+     * Drops all points. Previously taken snapshots keep their data.
+     */
+    fun clear() {
+        chunks = arrayOfNulls(INITIAL_CHUNK_SLOTS)
+        chunkCount = 0
+        size = 0
+        version++
+    }
+
+    /**
+     * Returns a read-only view of the points recorded so far.
+     * No sample data is copied.
+     */
+    fun snapshot(): RouteView = Snapshot(chunks, size, chunkShift, chunkMask)
+
+    override fun latitude(index: Int): Double = chunkFor(index).latitudes[index and chunkMask]
+    override fun longitude(index: Int): Double = chunkFor(index).longitudes[index and chunkMask]
+    override fun altitude(index: Int): Double = chunkFor(index).altitudes[index and chunkMask]
+    override fun speed(index: Int): Float = chunkFor(index).speeds[index and chunkMask]
+    override fun timestamp(index: Int): Long = chunkFor(index).timestamps[index and chunkMask]
+
+    private fun chunkFor(index: Int): Chunk {
+        if (index < 0 || index >= size) throw IndexOutOfBoundsException("Index $index, size $size")
+        return chunks[index ushr chunkShift]!!
+    }
+
+    private class Snapshot(
+        private val chunks: Array<Chunk?>,
+        override val size: Int,
+        private val chunkShift: Int,
+        private val chunkMask: Int
+    ) : RouteView {
+        override fun latitude(index: Int): Double = chunkFor(index).latitudes[index and chunkMask]
+        override fun longitude(index: Int): Double = chunkFor(index).longitudes[index and chunkMask]
+        override fun altitude(index: Int): Double = chunkFor(index).altitudes[index and chunkMask]
+        override fun speed(index: Int): Float = chunkFor(index).speeds[index and chunkMask]
+        override fun timestamp(index: Int): Long = chunkFor(index).timestamps[index and chunkMask]
+
+        private fun chunkFor(index: Int): Chunk {
+            if (index < 0 || index >= size) throw IndexOutOfBoundsException("Index $index, size $size")
+            return chunks[index ushr chunkShift]!!
+        }
+    }
+
+    companion object {
+        // 1024 points per chunk, roughly 17 minutes at 1 Hz
+        const val DEFAULT_CHUNK_SIZE_BITS = 10
+        private const val INITIAL_CHUNK_SLOTS = 8
+    }
+}
@@ -0,0 +1,248 @@
+package com.fitnessbuddy.data.location
+
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import java.io.EOFException
+import java.io.IOException
+import java.io.InputStream
+import java.io.OutputStream
+import kotlin.math.roundToLong
+
+/**
+ * Streaming encoder for the compact binary route format.
+ *
+ * Each point is written as deltas from the previous one: latitude and
+ * longitude quantized to 1e-6 degrees (about 11 cm), altitude to decimeters,
+ * speed to cm/s, all as zig-zag varints, followed by the time step in
+ * milliseconds as an unsigned varint. A steady 1 Hz run costs around
+ * 7-9 bytes per point.
+ */
+class RouteEncoder(private val output: OutputStream) {
+
+    private var headerWritten = false
+    private var lastLat = 0L
+    private var lastLon = 0L
+    private var lastAlt = 0L
+    private var lastSpeed = 0L
+    private var lastTimestamp = 0L
+
+    /** Bytes written so far, header included. */
+    var bytesWritten: Long = 0
+        private set
+
+    fun write(latitude: Double, longitude: Double, altitude: Double, speed: Float, timestamp: Long) {
+        if (!headerWritten) {
+            writeByte(RouteCodec.FORMAT_VERSION)
+            writeUnsigned(timestamp)
+            lastTimestamp = timestamp
+            headerWritten = true
+        }
+        val lat = (latitude * RouteCodec.COORDINATE_SCALE).roundToLong()
+        val lon = (longitude * RouteCodec.COORDINATE_SCALE).roundToLong()
+        val alt = (altitude * RouteCodec.ALTITUDE_SCALE).roundToLong()
+        val spd = (speed * RouteCodec.SPEED_SCALE).roundToLong()
+
+        writeSigned(lat - lastLat)
+        writeSigned(lon - lastLon)
+        writeSigned(alt - lastAlt)
+        writeSigned(spd - lastSpeed)
+        writeUnsigned((timestamp - lastTimestamp).coerceAtLeast(0))
+
+        lastLat = lat
+        lastLon = lon
+        lastAlt = alt
+        lastSpeed = spd
+        lastTimestamp = maxOf(timestamp, lastTimestamp)
+    }
+
+    fun writeAll(route: RouteView, from: Int = 0) {
+        for (i in from until route.size) {
+            write(route.latitude(i), route.longitude(i), route.altitude(i), route.speed(i), route.timestamp(i))
+        }
+    }
+
+    private fun writeSigned(value: Long) = writeUnsigned((value shl 1) xor (value shr 63))
+
+    private fun writeUnsigned(value: Long) {
+        var v = value
+        while (v and 0x7FL.inv() != 0L) {
+            writeByte(((v and 0x7F) or 0x80).toInt())
+            v = v ushr 7
+        }
+        writeByte(v.toInt())
+    }
+
+    private fun writeByte(value: Int) {
+        output.write(value)
+        bytesWritten++
+    }
+}
+
+/**
+ * Streaming decoder for data written by [RouteEncoder].
+ * Call [next] until it returns false; the current point is exposed as properties.
+ */
+class RouteDecoder(private val input: InputStream) {
+
+    private var headerRead = false
+    private var lat = 0L
+    private var lon = 0L
+    private var alt = 0L
+    private var spd = 0L
+
+    var latitude: Double = 0.0
+        private set
+    var longitude: Double = 0.0
+        private set
+    var altitude: Double = 0.0
+        private set
+    var speed: Float = 0f
+        private set
+    var timestamp: Long = 0L
+        private set
+
+    /**
+     * Advances to the next point.
+     *
+     * @return false at the end of the stream
+     */
+    fun next(): Boolean {
+        if (!headerRead) {
+            val version = input.read()
+            if (version == -1) return false
+            if (version != RouteCodec.FORMAT_VERSION) throw IOException("Unsupported route format $version")
+            timestamp = readUnsigned(input.read())
+            headerRead = true
+        }
+        val first = input.read()
+        if (first == -1) return false
+
+        lat += readSigned(first)
+        lon += readSigned(input.read())
+        alt += readSigned(input.read())
+        spd += readSigned(input.read())
+        timestamp += readUnsigned(input.read())
+
+        latitude = lat / RouteCodec.COORDINATE_SCALE
+        longitude = lon / RouteCodec.COORDINATE_SCALE
+        altitude = alt / RouteCodec.ALTITUDE_SCALE
+        speed = (spd / RouteCodec.SPEED_SCALE).toFloat()
+        return true
+    }
+
+    fun readAll(into: RouteBuffer) {
+        while (next()) {
+            into.add(latitude, longitude, altitude, speed, timestamp)
+        }
+    }
+
+    private fun readSigned(firstByte: Int): Long {
+        val raw = readUnsigned(firstByte)
+        return (raw ushr 1) xor -(raw and 1)
+    }
+
+    private fun readUnsigned(firstByte: Int): Long {
+        var b = firstByte
+        var result = 0L
+        var shift = 0
+        while (true) {
+            if (b == -1) throw EOFException("Truncated route data")
+            result = result or ((b and 0x7F).toLong() shl shift)
+            if (b and 0x80 == 0) return result
+            shift += 7
+            b = input.read()
+        }
+    }
+}
+
+/**
+ * Compact encodings for recorded routes, for storage, upload and prompts.
+ */
+object RouteCodec {
+    const val FORMAT_VERSION = 1
+    const val COORDINATE_SCALE = 1e6
+    const val ALTITUDE_SCALE = 10.0
+    const val SPEED_SCALE = 100.0
+
+    private const val POLYLINE_SCALE = 1e5
+
+    fun encode(route: RouteView): ByteArray {
+        val output = ByteArrayOutputStream(route.size * 8 + 16)
+        RouteEncoder(output).writeAll(route)
+        return output.toByteArray()
+    }
+
+    fun decode(bytes: ByteArray, into: RouteBuffer = RouteBuffer()): RouteBuffer {
+        RouteDecoder(ByteArrayInputStream(bytes)).readAll(into)
+        return into
+    }
+
+    /**
+     * Encoded size normalized to one hour of recording.
+     */
+    fun bytesPerHour(encodedBytes: Long, route: RouteView): Long {
+        if (route.size < 2) return encodedBytes
+        val durationMs = route.timestamp(route.size - 1) - route.timestamp(0)
+        if (durationMs <= 0) return encodedBytes
+        return encodedBytes * 3_600_000L / durationMs
+    }
+
+    /**
+     * Writes the route as a Google encoded polyline (latitude/longitude only,
+     * 1e-5 degree precision), suitable for Maps APIs and text prompts.
+     */
+    fun encodePolyline(route: RouteView, out: Appendable = StringBuilder(route.size * 6)): Appendable {
+        var lastLat = 0L
+        var lastLon = 0L
+        for (i in 0 until route.size) {
+            val lat = (route.latitude(i) * POLYLINE_SCALE).roundToLong()
+            val lon = (route.longitude(i) * POLYLINE_SCALE).roundToLong()
+            appendPolylineValue(out, lat - lastLat)
+            appendPolylineValue(out, lon - lastLon)
+            lastLat = lat
+            lastLon = lon
+        }
+        return out
+    }
+
+    /**
+     * Decodes a Google encoded polyline. Altitude, speed and timestamps are zero.
+     */
+    fun decodePolyline(encoded: CharSequence, into: RouteBuffer = RouteBuffer()): RouteBuffer {
+        var index = 0
+        var lat = 0L
+        var lon = 0L
+        while (index < encoded.length) {
+            var result = 0L
+            var shift = 0
+            var b: Int
+            do {
+                b = encoded[index++].code - 63
+                result = result or ((b and 0x1F).toLong() shl shift)
+                shift += 5
+            } while (b >= 0x20)
+            lat += if (result and 1L != 0L) (result shr 1).inv() else result shr 1
+
+            result = 0L
+            shift = 0
+            do {
+                b = encoded[index++].code - 63
+                result = result or ((b and 0x1F).toLong() shl shift)
+                shift += 5
+            } while (b >= 0x20)
+            lon += if (result and 1L != 0L) (result shr 1).inv() else result shr 1
+
+            into.add(lat / POLYLINE_SCALE, lon / POLYLINE_SCALE, 0.0, 0f, 0L)
+        }
+        return into
+    }
+
+    private fun appendPolylineValue(out: Appendable, value: Long) {
+        var v = if (value < 0) (value shl 1).inv() else value shl 1
+        while (v >= 0x20) {
+            out.append(((0x20 or (v and 0x1F).toInt()) + 63).toChar())
+            v = v shr 5
+        }
+        out.append((v.toInt() + 63).toChar())
+    }
+}
@@ -0,0 +1,31 @@
+package com.fitnessbuddy.data.location
+
+/**
+ * Whole-route calculations for completed sessions. Plain Kotlin, so they
+ * can be benchmarked on the JVM.
+ */
+object RouteMath {
+
+    fun calculateDistance(points: List<LocationPoint>): Float {
+        if (points.size < 2) return 0f
+        var totalDistance = 0f
+        for (i in 1 until points.size) {
+            totalDistance += GeoMath.ellipsoidalDistanceMeters(
+                points[i - 1].latitude,
+                points[i - 1].longitude,
+                points[i].latitude,
+                points[i].longitude
+            ).toFloat()
+        }
+        return totalDistance
+    }
+
+    fun calculatePace(distanceMeters: Float, durationSeconds: Long): String {
+        if (distanceMeters <= 0 || durationSeconds <= 0) return "--:--"
+        val distanceKm = distanceMeters / 1000f
+        val paceSecondsPerKm = durationSeconds / distanceKm
+        val minutes = (paceSecondsPerKm / 60).toInt()
+        val seconds = (paceSecondsPerKm % 60).toInt()
+        return String.format("%d:%02d", minutes, seconds)
+    }
+}
@@ -0,0 +1,227 @@
+package com.fitnessbuddy.data.location
+
+import kotlin.math.PI
+import kotlin.math.abs
+import kotlin.math.cos
+import kotlin.math.pow
+import kotlin.math.sqrt
+
+/**
+ * Incremental level-of-detail simplifier for drawing a live route.
+ *
+ * Points are consumed from a [RouteView] as they arrive. Whenever the raw tail
+ * reaches [tailWindow] points it is reduced with Douglas-Peucker and appended
+ * to the committed polyline, so each update only touches the tail. The
+ * tolerance follows the map zoom level, and if the committed polyline grows
+ * past [maxPoints] it is re-simplified with a coarser tolerance. The output
+ * size is therefore bounded by what the screen can show, not by route length.
+ */
+class RouteSimplifier(
+    private val tolerancePixels: Double = DEFAULT_TOLERANCE_PIXELS,
+    private val maxPoints: Int = DEFAULT_MAX_POINTS,
+    private val tailWindow: Int = DEFAULT_TAIL_WINDOW
+) {
+    // Committed (already simplified) polyline
+    private var keptLatitudes = DoubleArray(INITIAL_CAPACITY)
+    private var keptLongitudes = DoubleArray(INITIAL_CAPACITY)
+    private var keptCount = 0
+
+    // Raw points received since the last committed point
+    private val tailLatitudes = DoubleArray(tailWindow)
+    private val tailLongitudes = DoubleArray(tailWindow)
+    private var tailCount = 0
+
+    // Douglas-Peucker scratch space, reused between runs
+    private var keepMarks = BooleanArray(tailWindow)
+    private var stack = IntArray(tailWindow * 2)
+
+    private var consumed = 0
+    private var zoomLevel = Float.NaN
+    private var coarsening = 1.0
+
+    /** Current tolerance in meters. */
+    var toleranceMeters: Double = 0.0
+        private set
+
+    /** Number of points in the simplified polyline, including the raw tail. */
+    val size: Int
+        get() = keptCount + tailCount
+
+    fun latitude(index: Int): Double =
+        if (index < keptCount) keptLatitudes[index] else tailLatitudes[index - keptCount]
+
+    fun longitude(index: Int): Double =
+        if (index < keptCount) keptLongitudes[index] else tailLongitudes[index - keptCount]
+
+    /**
+     * Sets the zoom level the polyline will be drawn at. A change of a whole
+     * zoom level or more rebuilds the polyline on the next [update].
+     */
+    fun setZoom(zoom: Float, latitude: Double) {
+        if (!zoomLevel.isNaN() && abs(zoom - zoomLevel) < 1f) return
+        zoomLevel = zoom
+        val metersPerPixel = EQUATOR_METERS_PER_PIXEL * cos(latitude * PI / 180.0) / 2.0.pow(zoom.toDouble())
+        toleranceMeters = metersPerPixel * tolerancePixels
+        coarsening = 1.0
+        restart()
+    }
+
+    /**
+     * Folds in any points added to [route] since the last call.
+     * Passing a route that does not extend the previous one starts over.
+     *
+     * @return true if the simplified polyline changed
+     */
+    fun update(route: RouteView): Boolean {
+        if (route.size < consumed) {
+            restart()
+        }
+        if (route.size == consumed) return false
+        if (zoomLevel.isNaN()) {
+            setZoom(DEFAULT_ZOOM, route.latitude(0))
+        }
+
+        for (i in consumed until route.size) {
+            appendTail(route.latitude(i), route.longitude(i))
+        }
+        consumed = route.size
+        return true
+    }
+
+    private fun restart() {
+        keptCount = 0
+        tailCount = 0
+        consumed = 0
+    }
+
+    private fun appendTail(latitude: Double, longitude: Double) {
+        if (tailCount == tailWindow) {
+            commitTail()
+        }
+        tailLatitudes[tailCount] = latitude
+        tailLongitudes[tailCount] = longitude
+        tailCount++
+    }
+
+    /**
+     * Simplifies the full tail and moves the kept points into the committed
+     * polyline. The last tail point stays behind as the anchor for the next
+     * window so segments join up.
+     */
+    private fun commitTail() {
+        val marked = douglasPeucker(tailLatitudes, tailLongitudes, tailCount, toleranceMeters * coarsening)
+        for (i in 0 until tailCount - 1) {
+            if (marked[i]) appendKept(tailLatitudes[i], tailLongitudes[i])
+        }
+        tailLatitudes[0] = tailLatitudes[tailCount - 1]
+        tailLongitudes[0] = tailLongitudes[tailCount - 1]
+        tailCount = 1
+
+        if (keptCount > maxPoints) {
+            coarsenCommitted()
+        }
+    }
+
+    private fun coarsenCommitted() {
+        while (keptCount > maxPoints / 2) {
+            coarsening *= 2.0
+            val marked = douglasPeucker(keptLatitudes, keptLongitudes, keptCount, toleranceMeters * coarsening)
+            var write = 0
+            for (read in 0 until keptCount) {
+                if (marked[read]) {
+                    keptLatitudes[write] = keptLatitudes[read]
+                    keptLongitudes[write] = keptLongitudes[read]
+                    write++
+                }
+            }
+            keptCount = write
+        }
+    }
+
+    private fun appendKept(latitude: Double, longitude: Double) {
+        if (keptCount == keptLatitudes.size) {
+            keptLatitudes = keptLatitudes.copyOf(keptCount * 2)
+            keptLongitudes = keptLongitudes.copyOf(keptCount * 2)
+        }
+        keptLatitudes[keptCount] = latitude
+        keptLongitudes[keptCount] = longitude
+        keptCount++
+    }
+
+    /**
+     * Iterative Douglas-Peucker over the first [count] points.
+     * Distances use a local equirectangular projection, which is accurate
+     * enough at the scale of a single map screen.
+     */
+    private fun douglasPeucker(
+        latitudes: DoubleArray,
+        longitudes: DoubleArray,
+        count: Int,
+        tolerance: Double
+    ): BooleanArray {
+        if (keepMarks.size < count) {
+            keepMarks = BooleanArray(count)
+            stack = IntArray(count * 2)
+        }
+        val marks = keepMarks
+        marks.fill(false, 0, count)
+        if (count == 0) return marks
+        marks[0] = true
+        marks[count - 1] = true
+        if (count < 3) return marks
+
+        val metersPerDegreeLat = EARTH_RADIUS_METERS * PI / 180.0
+        val metersPerDegreeLon = metersPerDegreeLat * cos(latitudes[0] * PI / 180.0)
+
+        var top = 0
+        stack[top++] = 0
+        stack[top++] = count - 1
+        while (top > 0) {
+            val last = stack[--top]
+            val first = stack[--top]
+
+            val ax = longitudes[first] * metersPerDegreeLon
+            val ay = latitudes[first] * metersPerDegreeLat
+            val dx = longitudes[last] * metersPerDegreeLon - ax
+            val dy = latitudes[last] * metersPerDegreeLat - ay
+            val lengthSquared = dx * dx + dy * dy
+
+            var maxDistance = 0.0
+            var maxIndex = -1
+            for (i in first + 1 until last) {
+                val px = longitudes[i] * metersPerDegreeLon - ax
+                val py = latitudes[i] * metersPerDegreeLat - ay
+                val distance = if (lengthSquared == 0.0) {
+                    sqrt(px * px + py * py)
+                } else {
+                    abs(px * dy - py * dx) / sqrt(lengthSquared)
+                }
+                if (distance > maxDistance) {
+                    maxDistance = distance
+                    maxIndex = i
+                }
+            }
+
+            if (maxIndex != -1 && maxDistance > tolerance) {
+                marks[maxIndex] = true
+                stack[top++] = first
+                stack[top++] = maxIndex
+                stack[top++] = maxIndex
+                stack[top++] = last
+            }
+        }
+        return marks
+    }
+
+    companion object {
+        const val DEFAULT_TOLERANCE_PIXELS = 1.5
+        const val DEFAULT_MAX_POINTS = 2000
+        const val DEFAULT_TAIL_WINDOW = 64
+        const val DEFAULT_ZOOM = 16f
+
+        private const val INITIAL_CAPACITY = 256
+        private const val EARTH_RADIUS_METERS = 6_371_008.8
+        // Web Mercator ground resolution at zoom 0 for 256 px tiles
+        private const val EQUATOR_METERS_PER_PIXEL = 156_543.033_92
+    }
+}
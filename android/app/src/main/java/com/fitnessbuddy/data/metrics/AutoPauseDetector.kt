@@ -0,0 +1,108 @@
+package com.fitnessbuddy.data.metrics
+
+enum class MotionState {
+    MOVING,
+    STOPPED
+}
+
+/**
+ * Debounced MOVING/STOPPED state machine for auto-pause.
+ *
+ * Each sample carries the smoothed speed and, when a step sensor is present,
+ * the step cadence. The state only flips after the opposite condition has
+ * held for [stopDelayMillis] or [resumeDelayMillis]; separate stop and
+ * resume speeds give hysteresis so jogging at the threshold doesn't flap.
+ * Cadence wins over GPS when both are known, since it reacts within a
+ * couple of steps and isn't affected by urban-canyon drift.
+ *
+ * [stateSince] dates each transition back to the start of its debounce
+ * window, so callers can move the delay itself to the right side, e.g.
+ * off the workout clock.
+ *
+ * Not thread-safe: call all methods from the same thread.
+ */
+class AutoPauseDetector(
+    private val stopSpeedMs: Float = DEFAULT_STOP_SPEED_MS,
+    private val resumeSpeedMs: Float = DEFAULT_RESUME_SPEED_MS,
+    private val stopDelayMillis: Long = DEFAULT_STOP_DELAY_MILLIS,
+    private val resumeDelayMillis: Long = DEFAULT_RESUME_DELAY_MILLIS,
+    private val minCadenceSpm: Float = DEFAULT_MIN_CADENCE_SPM
+) {
+    var state: MotionState = MotionState.MOVING
+        private set
+
+    /** Sample time the current [state] actually began, before its debounce delay. */
+    var stateSince: Long = 0L
+        private set
+
+    private var started = false
+    private var lastTime = 0L
+
+    // Start of the current run of samples contradicting [state], or -1
+    private var candidateSince = -1L
+
+    /**
+     * Folds in a sample.
+     *
+     * @param speedMs Smoothed speed in m/s
+     * @param cadenceSpm Steps per minute, or NaN when no step sensor is available
+     * @return true if the state changed
+     */
+    fun onSample(timeMillis: Long, speedMs: Float, cadenceSpm: Float = Float.NaN): Boolean {
+        if (!started) {
+            started = true
+            lastTime = timeMillis
+            stateSince = timeMillis
+            return false
+        }
+        val dt = (timeMillis - lastTime).coerceAtLeast(0)
+        lastTime = timeMillis
+
+        val contradicts = when (state) {
+            MotionState.MOVING -> isStopped(speedMs, cadenceSpm)
+            MotionState.STOPPED -> isMoving(speedMs, cadenceSpm)
+        }
+        if (!contradicts) {
+            candidateSince = -1L
+            return false
+        }
+        if (candidateSince < 0) candidateSince = timeMillis - dt
+
+        val held = timeMillis - candidateSince
+        return when (state) {
+            MotionState.MOVING -> if (held >= stopDelayMillis) transition(MotionState.STOPPED) else false
+            MotionState.STOPPED -> if (held >= resumeDelayMillis) transition(MotionState.MOVING) else false
+        }
+    }
+
+    fun reset() {
+        state = MotionState.MOVING
+        stateSince = 0L
+        started = false
+        candidateSince = -1L
+    }
+
+    private fun transition(newState: MotionState): Boolean {
+        state = newState
+        // The new state held for the whole debounce window
+        stateSince = candidateSince
+        candidateSince = -1L
+        return true
+    }
+
+    private fun isStopped(speedMs: Float, cadenceSpm: Float): Boolean =
+        if (!cadenceSpm.isNaN()) cadenceSpm < minCadenceSpm && speedMs < resumeSpeedMs
+        else speedMs < stopSpeedMs
+
+    private fun isMoving(speedMs: Float, cadenceSpm: Float): Boolean =
+        if (!cadenceSpm.isNaN()) cadenceSpm >= minCadenceSpm || speedMs >= resumeSpeedMs
+        else speedMs >= resumeSpeedMs
+
+    companion object {
+        const val DEFAULT_STOP_SPEED_MS = 0.5f
+        const val DEFAULT_RESUME_SPEED_MS = 1.0f
+        const val DEFAULT_STOP_DELAY_MILLIS = 5_000L
+        const val DEFAULT_RESUME_DELAY_MILLIS = 2_000L
+        const val DEFAULT_MIN_CADENCE_SPM = 60f
+    }
+}
@@ -0,0 +1,169 @@
+package com.fitnessbuddy.data.metrics
+
+import com.fitnessbuddy.domain.model.ElevationSample
+
+/**
+ * Streaming elevation gain/loss from noisy altitude samples.
+ *
+ * GPS altitude alone is far too noisy to sum directly. Samples are first
+ * smoothed with an exponential filter; when barometric altitude is available
+ * it drives the short-term shape and GPS only corrects its slow drift
+ * (a complementary filter). Gain and loss are then accumulated with
+ * hysteresis: the smoothed altitude must move at least [thresholdMeters]
+ * away from the last turning point before the climb or descent counts.
+ *
+ * A downsampled profile of at most [maxProfilePoints] points is kept by
+ * merging neighbouring buckets when full, so memory and work per sample stay
+ * bounded for any session length.
+ *
+ * Not thread-safe: call all methods from the same thread.
+ */
+class ElevationProcessor(
+    private val thresholdMeters: Float = DEFAULT_THRESHOLD_METERS,
+    private val gpsSmoothing: Float = DEFAULT_GPS_SMOOTHING,
+    private val baroDriftCorrection: Float = DEFAULT_BARO_DRIFT_CORRECTION,
+    private val maxProfilePoints: Int = DEFAULT_MAX_PROFILE_POINTS
+) {
+    private var smoothed = Float.NaN
+    private var reference = Float.NaN
+
+    // Barometric fusion state
+    private var lastBaroAltitude = Float.NaN
+    private var baroOffset = Float.NaN
+
+    // Profile buckets: each point averages `bucketSize` consecutive samples
+    private val profileDistances = FloatArray(maxProfilePoints)
+    private val profileAltitudes = FloatArray(maxProfilePoints)
+    private var profileCount = 0
+    private var bucketSize = 1
+    private var bucketFill = 0
+    private var bucketDistanceSum = 0.0
+    private var bucketAltitudeSum = 0.0
+
+    var gainMeters: Float = 0f
+        private set
+
+    var lossMeters: Float = 0f
+        private set
+
+    /** Latest smoothed altitude, NaN before the first sample. */
+    val currentAltitude: Float
+        get() = smoothed
+
+    val hasBarometer: Boolean
+        get() = !lastBaroAltitude.isNaN()
+
+    /**
+     * Feeds the latest barometric altitude (from [android.hardware.SensorManager.getAltitude]).
+     * Call as often as the sensor reports; only the last value is kept.
+     */
+    fun onBarometricAltitude(altitudeMeters: Float) {
+        lastBaroAltitude = altitudeMeters
+    }
+
+    /**
+     * Folds in a GPS fix.
+     *
+     * @param distanceMeters Cumulative distance at the fix, used for the profile
+     * @param gpsAltitude Altitude reported with the fix
+     */
+    fun onLocation(distanceMeters: Float, gpsAltitude: Double) {
+        val gps = gpsAltitude.toFloat()
+        val altitude = if (hasBarometer) {
+            // Barometer gives the shape, GPS slowly pulls the absolute level
+            val offsetSample = gps - lastBaroAltitude
+            baroOffset = if (baroOffset.isNaN()) offsetSample else baroOffset + baroDriftCorrection * (offsetSample - baroOffset)
+            lastBaroAltitude + baroOffset
+        } else {
+            gps
+        }
+        if (altitude == 0f && !hasBarometer) return   // Providers report 0 when altitude is unknown
+
+        smoothed = if (smoothed.isNaN()) altitude else {
+            val alpha = if (hasBarometer) 1f else gpsSmoothing
+            smoothed + alpha * (altitude - smoothed)
+        }
+
+        if (reference.isNaN()) {
+            reference = smoothed
+        } else {
+            val delta = smoothed - reference
+            if (delta >= thresholdMeters) {
+                gainMeters += delta
+                reference = smoothed
+            } else if (delta <= -thresholdMeters) {
+                lossMeters -= delta
+                reference = smoothed
+            }
+        }
+
+        addToProfile(distanceMeters, smoothed)
+    }
+
+    val profileSize: Int
+        get() = profileCount
+
+    fun profileDistance(index: Int): Float = profileDistances[index]
+
+    fun profileAltitude(index: Int): Float = profileAltitudes[index]
+
+    /**
+     * Copies the current profile, e.g. to store it with the finished workout.
+     */
+    fun profile(): List<ElevationSample> =
+        List(profileCount) { ElevationSample(profileDistances[it], profileAltitudes[it]) }
+
+    fun reset() {
+        smoothed = Float.NaN
+        reference = Float.NaN
+        lastBaroAltitude = Float.NaN
+        baroOffset = Float.NaN
+        gainMeters = 0f
+        lossMeters = 0f
+        profileCount = 0
+        bucketSize = 1
+        bucketFill = 0
+        bucketDistanceSum = 0.0
+        bucketAltitudeSum = 0.0
+    }
+
+    private fun addToProfile(distanceMeters: Float, altitude: Float) {
+        bucketDistanceSum += distanceMeters
+        bucketAltitudeSum += altitude
+        bucketFill++
+        if (bucketFill < bucketSize) return
+
+        if (profileCount == maxProfilePoints) {
+            // Halve the resolution: merge neighbouring points, double the bucket
+            var write = 0
+            var read = 0
+            while (read + 1 < profileCount) {
+                profileDistances[write] = (profileDistances[read] + profileDistances[read + 1]) / 2f
+                profileAltitudes[write] = (profileAltitudes[read] + profileAltitudes[read + 1]) / 2f
+                write++
+                read += 2
+            }
+            if (read < profileCount) {
+                profileDistances[write] = profileDistances[read]
+                profileAltitudes[write] = profileAltitudes[read]
+                write++
+            }
+            profileCount = write
+            bucketSize *= 2
+        }
+
+        profileDistances[profileCount] = (bucketDistanceSum / bucketFill).toFloat()
+        profileAltitudes[profileCount] = (bucketAltitudeSum / bucketFill).toFloat()
+        profileCount++
+        bucketFill = 0
+        bucketDistanceSum = 0.0
+        bucketAltitudeSum = 0.0
+    }
+
+    companion object {
+        const val DEFAULT_THRESHOLD_METERS = 3f
+        const val DEFAULT_GPS_SMOOTHING = 0.2f
+        const val DEFAULT_BARO_DRIFT_CORRECTION = 0.01f
+        const val DEFAULT_MAX_PROFILE_POINTS = 256
+    }
+}
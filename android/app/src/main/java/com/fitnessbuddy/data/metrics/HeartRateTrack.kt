@@ -0,0 +1,234 @@
+package com.fitnessbuddy.data.metrics
+
+import kotlin.math.roundToInt
+
+/**
+ * Read-only access to recorded heart-rate samples, oldest first, with
+ * summary statistics kept as they were recorded. Every query is O(1) in the
+ * number of samples.
+ */
+interface HeartRateView {
+    val size: Int
+
+    fun timestamp(index: Int): Long
+    fun bpm(index: Int): Int
+
+    fun isEmpty(): Boolean = size == 0
+    fun isNotEmpty(): Boolean = size > 0
+
+    /** Zones the time-in-zone figures are counted against. */
+    val zones: HeartRateZones
+
+    /** Lowest recorded bpm, -1 without samples. */
+    val minBpm: Int
+
+    /** Highest recorded bpm, -1 without samples. */
+    val maxBpm: Int
+
+    /**
+     * Mean weighted by how long each sample held, -1 without samples. Only
+     * credited time counts, see [timeInZoneMillis]; until any is credited
+     * it is the plain mean of the samples.
+     */
+    val averageBpm: Int
+
+    /**
+     * Milliseconds spent in [zone] (1-based, see [HeartRateZones]). A sample
+     * holds until the next one or until recording stopped; while the latest
+     * sample still holds it counts up to [now], if that is later.
+     */
+    fun timeInZoneMillis(zone: Int, now: Long = 0L): Long
+
+    /** Milliseconds spent in any of [zones], see [timeInZoneMillis]. */
+    fun timeInZonesMillis(zones: IntRange, now: Long = 0L): Long {
+        var total = 0L
+        for (zone in zones) {
+            if (zone in 1..this.zones.count) total += timeInZoneMillis(zone, now)
+        }
+        return total
+    }
+
+    companion object {
+        val EMPTY: HeartRateView = HeartRateTrack().snapshot()
+    }
+}
+
+/**
+ * Growable primitive store for heart-rate samples of a session.
+ *
+ * Timestamps are stored as millisecond offsets from the first sample, which
+ * halves their size; an Int offset covers sessions of up to 24 days. Values
+ * are appended to parallel arrays that double when full. Recorded entries are
+ * never modified and [clear] starts fresh arrays, so [snapshot] views stay
+ * valid while recording continues.
+ *
+ * Min, max, sums and time per zone are updated on every [add], so summaries
+ * never walk the samples. Time is credited to a sample, its zone and the
+ * average when the next one arrives, or when [endSegment] marks that
+ * recording stopped.
+ *
+ * Not thread-safe: write from a single thread and publish snapshots to readers.
+ */
+class HeartRateTrack(
+    initialCapacity: Int = DEFAULT_CAPACITY,
+    zones: HeartRateZones = HeartRateZones.DEFAULT
+) : HeartRateView {
+
+    private var baseTimestamp = 0L
+    private var offsets = IntArray(initialCapacity)
+    private var values = ShortArray(initialCapacity)
+
+    override var size: Int = 0
+        private set
+
+    override var zones: HeartRateZones = zones
+        private set
+
+    override var minBpm: Int = -1
+        private set
+
+    override var maxBpm: Int = -1
+        private set
+
+    private var sum = 0L
+    private var zoneMillis = LongArray(zones.count)
+
+    // bpm × milliseconds held, over the credited time
+    private var weightedSum = 0L
+    private var heldMillis = 0L
+
+    // Zone of the latest sample while it still holds, 0 once the segment ended
+    private var openZone = 0
+    private var lastTimestamp = 0L
+    private var lastBpm = 0
+
+    override val averageBpm: Int
+        get() = average(sum, size, weightedSum, heldMillis)
+
+    fun add(timestamp: Long, bpm: Int) {
+        if (size == offsets.size) {
+            offsets = offsets.copyOf(size * 2)
+            values = values.copyOf(size * 2)
+        }
+        if (size == 0) baseTimestamp = timestamp
+        offsets[size] = Math.toIntExact(timestamp - baseTimestamp)
+        values[size] = bpm.toShort()
+        size++
+
+        if (minBpm < 0 || bpm < minBpm) minBpm = bpm
+        if (bpm > maxBpm) maxBpm = bpm
+        sum += bpm
+        endSegment(timestamp)
+        openZone = zones.zoneOf(bpm)
+        lastTimestamp = timestamp
+        lastBpm = bpm
+    }
+
+    /**
+     * Credits the latest sample up to [timestamp] and stops it from holding
+     * further, e.g. on pause or when the strap disconnects. The next [add]
+     * starts a new segment.
+     */
+    fun endSegment(timestamp: Long) {
+        if (openZone == 0) return
+        if (timestamp > lastTimestamp) {
+            val held = timestamp - lastTimestamp
+            zoneMillis[openZone - 1] += held
+            weightedSum += lastBpm * held
+            heldMillis += held
+        }
+        openZone = 0
+    }
+
+    /**
+     * Drops all samples and statistics, counting zones against [zones] from
+     * now on. Previously taken snapshots keep their data.
+     */
+    fun clear(zones: HeartRateZones = this.zones) {
+        offsets = IntArray(DEFAULT_CAPACITY)
+        values = ShortArray(DEFAULT_CAPACITY)
+        size = 0
+        this.zones = zones
+        minBpm = -1
+        maxBpm = -1
+        sum = 0L
+        zoneMillis = LongArray(zones.count)
+        weightedSum = 0L
+        heldMillis = 0L
+        openZone = 0
+        lastTimestamp = 0L
+        lastBpm = 0
+    }
+
+    fun snapshot(): HeartRateView = Snapshot(
+        baseTimestamp, offsets, values, size, zones, minBpm, maxBpm, sum,
+        weightedSum, heldMillis, zoneMillis.copyOf(), openZone, lastTimestamp
+    )
+
+    override fun timestamp(index: Int): Long {
+        checkIndex(index, size)
+        return baseTimestamp + offsets[index]
+    }
+
+    override fun bpm(index: Int): Int {
+        checkIndex(index, size)
+        return values[index].toInt()
+    }
+
+    override fun timeInZoneMillis(zone: Int, now: Long): Long =
+        zoneTime(zoneMillis, openZone, lastTimestamp, zone, now)
+
+    private class Snapshot(
+        private val baseTimestamp: Long,
+        private val offsets: IntArray,
+        private val values: ShortArray,
+        override val size: Int,
+        override val zones: HeartRateZones,
+        override val minBpm: Int,
+        override val maxBpm: Int,
+        private val sum: Long,
+        private val weightedSum: Long,
+        private val heldMillis: Long,
+        private val zoneMillis: LongArray,
+        private val openZone: Int,
+        private val lastTimestamp: Long
+    ) : HeartRateView {
+        override val averageBpm: Int
+            get() = average(sum, size, weightedSum, heldMillis)
+
+        override fun timestamp(index: Int): Long {
+            checkIndex(index, size)
+            return baseTimestamp + offsets[index]
+        }
+
+        override fun bpm(index: Int): Int {
+            checkIndex(index, size)
+            return values[index].toInt()
+        }
+
+        override fun timeInZoneMillis(zone: Int, now: Long): Long =
+            zoneTime(zoneMillis, openZone, lastTimestamp, zone, now)
+    }
+
+    companion object {
+        // An hour at 1 Hz before the first resize
+        const val DEFAULT_CAPACITY = 4096
+
+        private fun checkIndex(index: Int, size: Int) {
+            if (index < 0 || index >= size) throw IndexOutOfBoundsException("Index $index, size $size")
+        }
+
+        private fun average(sum: Long, size: Int, weightedSum: Long, heldMillis: Long): Int = when {
+            size == 0 -> -1
+            heldMillis > 0 -> (weightedSum.toDouble() / heldMillis).roundToInt()
+            else -> (sum.toDouble() / size).roundToInt()
+        }
+
+        private fun zoneTime(zoneMillis: LongArray, openZone: Int, lastTimestamp: Long, zone: Int, now: Long): Long {
+            if (zone < 1 || zone > zoneMillis.size) throw IndexOutOfBoundsException("Zone $zone of ${zoneMillis.size}")
+            var millis = zoneMillis[zone - 1]
+            if (zone == openZone && now > lastTimestamp) millis += now - lastTimestamp
+            return millis
+        }
+    }
+}
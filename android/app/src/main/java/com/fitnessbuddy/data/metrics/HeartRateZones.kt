@@ -0,0 +1,91 @@
+package com.fitnessbuddy.data.metrics
+
+import kotlin.math.roundToInt
+
+/**
+ * Heart-rate training zones, numbered from 1 like on the training plan.
+ *
+ * Zone n spans from the upper bound of zone n-1 (inclusive) to its own upper
+ * bound (exclusive). Readings below the first bound count as zone 1 and
+ * readings at or above the last bound as the top zone, so every sample
+ * lands in a zone.
+ *
+ * @param upperBounds Ascending bpm where each zone but the top one ends
+ */
+class HeartRateZones(private val upperBounds: IntArray) {
+
+    init {
+        require(upperBounds.isNotEmpty()) { "At least two zones are needed" }
+        for (i in 1 until upperBounds.size) {
+            require(upperBounds[i] > upperBounds[i - 1]) { "Zone bounds must ascend: ${upperBounds.contentToString()}" }
+        }
+    }
+
+    val count: Int
+        get() = upperBounds.size + 1
+
+    /** Zone of [bpm], 1..[count]. At most [count] comparisons. */
+    fun zoneOf(bpm: Int): Int {
+        for (i in upperBounds.indices) {
+            if (bpm < upperBounds[i]) return i + 1
+        }
+        return count
+    }
+
+    /** Lowest bpm of [zone], 0 for zone 1. */
+    fun lowerBound(zone: Int): Int {
+        checkZone(zone)
+        return if (zone == 1) 0 else upperBounds[zone - 2]
+    }
+
+    /** First bpm above [zone], [Int.MAX_VALUE] for the top zone. */
+    fun upperBound(zone: Int): Int {
+        checkZone(zone)
+        return if (zone == count) Int.MAX_VALUE else upperBounds[zone - 1]
+    }
+
+    private fun checkZone(zone: Int) {
+        if (zone !in 1..count) throw IndexOutOfBoundsException("Zone $zone of $count")
+    }
+
+    companion object {
+        // Used until the app knows the user's maximum heart rate
+        const val DEFAULT_MAX_HEART_RATE = 190
+
+        /** Five zones at 60/70/80/90 % of maximum heart rate. */
+        fun forMaxHeartRate(maxHeartRate: Int): HeartRateZones = HeartRateZones(
+            intArrayOf(
+                maxHeartRate * 60 / 100,
+                maxHeartRate * 70 / 100,
+                maxHeartRate * 80 / 100,
+                maxHeartRate * 90 / 100
+            )
+        )
+
+        val DEFAULT: HeartRateZones = forMaxHeartRate(DEFAULT_MAX_HEART_RATE)
+
+        /**
+         * Age-predicted maximum heart rate, 208 - 0.7 × age (Tanaka et al.).
+         *
+         * @return The estimate, or null for an age outside 10..100
+         */
+        fun maxHeartRateForAge(age: Int): Int? =
+            if (age in 10..100) (208 - 0.7 * age).roundToInt() else null
+
+        private val ZONE_PATTERN = Regex("""\b(?:zone|z)\s*(\d)(?:\s*[-–/]\s*(?:zone|z)?\s*(\d))?""", RegexOption.IGNORE_CASE)
+
+        /**
+         * Target zones of a planned workout from its zone text, e.g. "Zone 2",
+         * "Zone 3-4" or "Z2".
+         *
+         * @return The zone numbers, or null if the text names no zone
+         */
+        fun parseTarget(text: String): IntRange? {
+            val match = ZONE_PATTERN.find(text) ?: return null
+            val first = match.groupValues[1].toInt()
+            val last = match.groupValues[2].toIntOrNull() ?: first
+            if (first < 1) return null
+            return minOf(first, last)..maxOf(first, last)
+        }
+    }
+}
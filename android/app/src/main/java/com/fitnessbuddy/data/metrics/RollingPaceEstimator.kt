@@ -0,0 +1,98 @@
+package com.fitnessbuddy.data.metrics
+
+/**
+ * Stable "current pace" signal computed over a rolling window.
+ *
+ * Samples of (time, cumulative distance) go into a fixed-capacity primitive
+ * ring buffer. Speed is the distance covered between the oldest and newest
+ * sample in the window, which is far less noisy than the per-fix speed
+ * reported by the fused provider. An optional exponential moving average
+ * smooths it further. Each [add] is amortized O(1) and never allocates.
+ *
+ * Not thread-safe: call all methods from the same thread.
+ *
+ * @param windowMillis Time window; ignored when [windowMeters] > 0
+ * @param windowMeters Distance window, e.g. the last 200 m
+ * @param smoothingAlpha EMA weight of the newest value in (0, 1]; 0 disables smoothing
+ */
+class RollingPaceEstimator(
+    capacity: Int = DEFAULT_CAPACITY,
+    private val windowMillis: Long = DEFAULT_WINDOW_MILLIS,
+    private val windowMeters: Float = 0f,
+    private val smoothingAlpha: Float = 0f
+) {
+    private val times = LongArray(capacity)
+    private val distances = FloatArray(capacity)
+    private var head = 0     // Index of the oldest sample
+    private var count = 0
+
+    private var smoothedSpeed = Float.NaN
+
+    /** Current speed in m/s, 0 until two samples are in the window. */
+    var speedMs: Float = 0f
+        private set
+
+    /** Current pace in seconds per kilometre, 0 when not moving. */
+    val paceSecondsPerKm: Float
+        get() = if (speedMs > MIN_SPEED_MS) 1000f / speedMs else 0f
+
+    fun add(timeMillis: Long, cumulativeDistanceMeters: Float) {
+        if (count == times.size) {
+            // Full: overwrite the oldest sample
+            head = (head + 1) % times.size
+            count--
+        }
+        val tail = (head + count) % times.size
+        times[tail] = timeMillis
+        distances[tail] = cumulativeDistanceMeters
+        count++
+
+        evict(timeMillis, cumulativeDistanceMeters)
+        update()
+    }
+
+    fun reset() {
+        head = 0
+        count = 0
+        smoothedSpeed = Float.NaN
+        speedMs = 0f
+    }
+
+    private fun evict(newestTime: Long, newestDistance: Float) {
+        // Drop the oldest sample while the window without it is still full
+        while (count > 2) {
+            val second = (head + 1) % times.size
+            val stillFull = if (windowMeters > 0f) {
+                newestDistance - distances[second] >= windowMeters
+            } else {
+                newestTime - times[second] >= windowMillis
+            }
+            if (!stillFull) break
+            head = second
+            count--
+        }
+    }
+
+    private fun update() {
+        if (count < 2) {
+            speedMs = 0f
+            return
+        }
+        val newest = (head + count - 1) % times.size
+        val dt = times[newest] - times[head]
+        val raw = if (dt > 0) (distances[newest] - distances[head]) * 1000f / dt else 0f
+
+        speedMs = if (smoothingAlpha > 0f) {
+            smoothedSpeed = if (smoothedSpeed.isNaN()) raw else smoothingAlpha * raw + (1 - smoothingAlpha) * smoothedSpeed
+            smoothedSpeed
+        } else {
+            raw
+        }
+    }
+
+    companion object {
+        const val DEFAULT_CAPACITY = 128
+        const val DEFAULT_WINDOW_MILLIS = 20_000L
+        private const val MIN_SPEED_MS = 0.3f
+    }
+}
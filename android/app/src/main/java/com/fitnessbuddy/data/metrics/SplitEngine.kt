@@ -0,0 +1,152 @@
+package com.fitnessbuddy.data.metrics
+
+import com.fitnessbuddy.domain.model.Lap
+
+/**
+ * Streaming auto-lap engine.
+ *
+ * Fed with the cumulative distance after every fix, it closes a lap each
+ * time a distance (or time) boundary is crossed. The exact crossing time is
+ * linearly interpolated between the two fixes around the boundary, so laps
+ * don't inherit the GPS update interval as error. Work per fix is O(1);
+ * a [Lap] is only allocated when a lap completes.
+ *
+ * Not thread-safe: call all methods from the same thread.
+ *
+ * @param lapDistanceMeters Lap length for distance-based laps
+ * @param lapDurationMillis Lap length for time-based laps; when > 0 it takes
+ *        precedence over [lapDistanceMeters]
+ */
+class SplitEngine(
+    private val lapDistanceMeters: Float = DEFAULT_LAP_DISTANCE_METERS,
+    private val lapDurationMillis: Long = 0L
+) {
+    private val completed = ArrayList<Lap>()
+
+    /** Immutable list of completed laps; replaced whenever a lap completes. */
+    var laps: List<Lap> = emptyList()
+        private set
+
+    private var started = false
+    private var lastTime = 0L
+    private var lastDistance = 0f
+
+    private var lapStartTime = 0L
+    private var lapStartDistance = 0f
+
+    private var heartRateSum = 0L
+    private var heartRateCount = 0
+
+    private var lastAltitude = Double.NaN
+    private var lapGain = 0f
+    private var lapLoss = 0f
+
+    /**
+     * Folds in a fix.
+     *
+     * @param timeMillis Time of the fix on the workout clock
+     * @param distanceMeters Cumulative distance at the fix
+     * @param altitude Altitude at the fix, or NaN if unknown
+     * @return true if at least one lap completed
+     */
+    fun onLocation(timeMillis: Long, distanceMeters: Float, altitude: Double = Double.NaN): Boolean {
+        if (!started) {
+            started = true
+            lastTime = timeMillis
+            lastDistance = distanceMeters
+            lapStartTime = timeMillis
+            lapStartDistance = distanceMeters
+            lastAltitude = altitude
+            return false
+        }
+
+        if (!altitude.isNaN()) {
+            if (!lastAltitude.isNaN()) {
+                val delta = (altitude - lastAltitude).toFloat()
+                if (delta > 0) lapGain += delta else lapLoss -= delta
+            }
+            lastAltitude = altitude
+        }
+
+        var lapCompleted = false
+        if (lapDurationMillis > 0) {
+            while (timeMillis >= lapStartTime + lapDurationMillis) {
+                val boundaryTime = lapStartTime + lapDurationMillis
+                val fraction = fraction(boundaryTime - lastTime, timeMillis - lastTime)
+                val boundaryDistance = lastDistance + (distanceMeters - lastDistance) * fraction.toFloat()
+                closeLap(boundaryTime, boundaryDistance)
+                lapCompleted = true
+            }
+        } else if (lapDistanceMeters > 0) {
+            while (distanceMeters >= lapStartDistance + lapDistanceMeters) {
+                val boundaryDistance = lapStartDistance + lapDistanceMeters
+                val fraction = fraction((boundaryDistance - lastDistance).toDouble(), (distanceMeters - lastDistance).toDouble())
+                val boundaryTime = lastTime + ((timeMillis - lastTime) * fraction).toLong()
+                closeLap(boundaryTime, boundaryDistance)
+                lapCompleted = true
+            }
+        }
+
+        lastTime = timeMillis
+        lastDistance = distanceMeters
+        return lapCompleted
+    }
+
+    fun onHeartRate(bpm: Int) {
+        if (bpm <= 0) return
+        heartRateSum += bpm
+        heartRateCount++
+    }
+
+    /**
+     * Closes the running partial lap, e.g. when the workout ends.
+     * Does nothing if the partial lap is empty.
+     */
+    fun finish(): Boolean {
+        if (!started || lastDistance <= lapStartDistance && lastTime <= lapStartTime) return false
+        closeLap(lastTime, lastDistance)
+        return true
+    }
+
+    fun reset() {
+        completed.clear()
+        laps = emptyList()
+        started = false
+        heartRateSum = 0
+        heartRateCount = 0
+        lastAltitude = Double.NaN
+        lapGain = 0f
+        lapLoss = 0f
+    }
+
+    private fun closeLap(endTime: Long, endDistance: Float) {
+        completed.add(
+            Lap(
+                number = completed.size + 1,
+                distanceMeters = endDistance - lapStartDistance,
+                durationMillis = endTime - lapStartTime,
+                averageHeartRate = if (heartRateCount > 0) (heartRateSum / heartRateCount).toInt() else null,
+                elevationGainMeters = lapGain,
+                elevationLossMeters = lapLoss
+            )
+        )
+        laps = completed.toList()
+
+        lapStartTime = endTime
+        lapStartDistance = endDistance
+        heartRateSum = 0
+        heartRateCount = 0
+        lapGain = 0f
+        lapLoss = 0f
+    }
+
+    private fun fraction(part: Long, whole: Long): Double =
+        fraction(part.toDouble(), whole.toDouble())
+
+    private fun fraction(part: Double, whole: Double): Double =
+        if (whole <= 0.0) 1.0 else (part / whole).coerceIn(0.0, 1.0)
+
+    companion object {
+        const val DEFAULT_LAP_DISTANCE_METERS = 1000f
+    }
+}
@@ -0,0 +1,102 @@
+package com.fitnessbuddy.data.metrics
+
+/**
+ * Session distance and climb from a treadmill's own readings, the indoor
+ * counterpart of [com.fitnessbuddy.data.location.RouteAccumulator].
+ *
+ * Distance comes from the machine's total distance counter when it reports
+ * one, and from belt speed over time otherwise. Climb is the distance of
+ * each step times the incline, which gives a virtual altitude for laps and
+ * the elevation totals. Each sample is folded in once, at constant cost.
+ *
+ * Not thread-safe: call all methods from the same thread.
+ */
+class TreadmillAccumulator(
+    private val maxSampleGapMillis: Long = DEFAULT_MAX_SAMPLE_GAP_MILLIS
+) {
+    private var hasLastSample = false
+    private var lastTotalDistance = Float.NaN
+    private var lastTimestamp = 0L
+
+    /** Distance covered during the session, in meters. */
+    var distanceMeters: Float = 0f
+        private set
+
+    /** Height climbed on the incline relative to the start, in meters. */
+    var altitudeMeters: Double = 0.0
+        private set
+
+    var elevationGainMeters: Float = 0f
+        private set
+
+    var elevationLossMeters: Float = 0f
+        private set
+
+    /**
+     * Folds in a reading.
+     *
+     * @param totalDistanceMeters The machine's distance counter, NaN if it has none
+     * @param inclinePercent Belt incline, NaN if unknown
+     */
+    fun add(timestamp: Long, totalDistanceMeters: Float, speedMs: Float, inclinePercent: Float) {
+        if (!hasLastSample) {
+            // The first reading after a start or resume only sets the baseline
+            hasLastSample = true
+            lastTotalDistance = totalDistanceMeters
+            lastTimestamp = timestamp
+            return
+        }
+
+        val step = when {
+            !totalDistanceMeters.isNaN() && !lastTotalDistance.isNaN() ->
+                // The counter restarts when the machine is reset
+                (totalDistanceMeters - lastTotalDistance).coerceAtLeast(0f)
+            speedMs > 0f && timestamp - lastTimestamp in 1..maxSampleGapMillis ->
+                speedMs * (timestamp - lastTimestamp) / 1000f
+            else -> 0f
+        }
+        lastTotalDistance = totalDistanceMeters
+        lastTimestamp = timestamp
+        distanceMeters += step
+
+        if (!inclinePercent.isNaN() && step > 0f) {
+            val climb = step * inclinePercent / 100f
+            altitudeMeters += climb
+            if (climb > 0f) elevationGainMeters += climb else elevationLossMeters -= climb
+        }
+    }
+
+    /**
+     * Makes the next reading start a new segment, so distance the belt covered
+     * while the session was paused doesn't count.
+     */
+    fun breakSegment() {
+        hasLastSample = false
+    }
+
+    /**
+     * Continues from totals recorded earlier, e.g. in the workout journal.
+     */
+    fun restore(distanceMeters: Float, altitudeMeters: Double, gainMeters: Float, lossMeters: Float) {
+        this.distanceMeters = distanceMeters
+        this.altitudeMeters = altitudeMeters
+        elevationGainMeters = gainMeters
+        elevationLossMeters = lossMeters
+        hasLastSample = false
+    }
+
+    fun reset() {
+        hasLastSample = false
+        lastTotalDistance = Float.NaN
+        lastTimestamp = 0L
+        distanceMeters = 0f
+        altitudeMeters = 0.0
+        elevationGainMeters = 0f
+        elevationLossMeters = 0f
+    }
+
+    companion object {
+        // Longer without a reading and the belt speed can't be trusted for the gap
+        const val DEFAULT_MAX_SAMPLE_GAP_MILLIS = 5_000L
+    }
+}
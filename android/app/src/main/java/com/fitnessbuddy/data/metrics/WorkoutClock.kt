@@ -0,0 +1,78 @@
+package com.fitnessbuddy.data.metrics
+
+import android.os.SystemClock
+
+/**
+ * Monotonic workout stopwatch.
+ *
+ * Time comes from [SystemClock.elapsedRealtimeNanos], which keeps counting in
+ * deep sleep and is immune to wall-clock changes, so elapsed time stays exact
+ * while the app is backgrounded. Elapsed time is computed on demand from the
+ * closed active intervals plus the open one; nothing ticks in the background.
+ * Displays decide themselves when to read it.
+ *
+ * Thread-safe: state changes and reads may come from any thread.
+ */
+class WorkoutClock(
+    private val nanoTime: () -> Long = { SystemClock.elapsedRealtimeNanos() }
+) {
+    private var running = false
+    private var segmentStart = -1L
+    private var activeNanos = 0L
+
+    val elapsedNanos: Long
+        @Synchronized get() = activeNanos + if (running) nanoTime() - segmentStart else 0L
+
+    val elapsedMillis: Long
+        get() = elapsedNanos / 1_000_000
+
+    val elapsedSeconds: Long
+        get() = elapsedNanos / 1_000_000_000
+
+    /**
+     * Starts or resumes the clock. Does nothing if it is already running.
+     */
+    @Synchronized
+    fun start() {
+        if (running) return
+        segmentStart = nanoTime()
+        running = true
+    }
+
+    /**
+     * Pauses the clock. Does nothing if it isn't running.
+     */
+    @Synchronized
+    fun pause() {
+        if (!running) return
+        activeNanos += nanoTime() - segmentStart
+        running = false
+    }
+
+    /**
+     * Sets the clock to [elapsedMillis] of active time, stopped, e.g. after
+     * restoring an interrupted session or importing one.
+     */
+    @Synchronized
+    fun restore(elapsedMillis: Long) {
+        activeNanos = elapsedMillis * 1_000_000
+        running = false
+    }
+
+    /**
+     * Adds [deltaMillis] of active time, or removes it if negative, e.g. to
+     * move a state change back to when it really happened. Elapsed time
+     * never goes below zero.
+     */
+    @Synchronized
+    fun adjust(deltaMillis: Long) {
+        activeNanos += maxOf(deltaMillis * 1_000_000, -elapsedNanos)
+    }
+
+    @Synchronized
+    fun reset() {
+        activeNanos = 0L
+        segmentStart = -1L
+        running = false
+    }
+}
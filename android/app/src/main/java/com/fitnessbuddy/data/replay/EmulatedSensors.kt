@@ -0,0 +1,28 @@
+package com.fitnessbuddy.data.replay
+
+import android.content.Intent
+import com.fitnessbuddy.BuildConfig
+
+/**
+ * Process-wide switch that replaces the live GPS and heart-rate sensors with
+ * a synthetic [SensorReplay], so a tracker session can run on an emulator
+ * or in a benchmark without walking outside or pairing a strap.
+ *
+ * Only honoured in builds with `BuildConfig.EMULATED_SENSORS`. The flag has
+ * to be set before the sensor sources are first injected, i.e. when the
+ * activity is created in a fresh process.
+ */
+object EmulatedSensors {
+    /** Boolean launch extra that turns emulation on. */
+    const val EXTRA_EMULATED_SENSORS = "com.fitnessbuddy.EMULATED_SENSORS"
+
+    @Volatile
+    var enabled: Boolean = false
+        private set
+
+    fun applyFrom(intent: Intent?) {
+        if (BuildConfig.EMULATED_SENSORS && intent?.getBooleanExtra(EXTRA_EMULATED_SENSORS, false) == true) {
+            enabled = true
+        }
+    }
+}
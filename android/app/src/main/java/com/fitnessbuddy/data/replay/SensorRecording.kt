@@ -0,0 +1,142 @@
+package com.fitnessbuddy.data.replay
+
+import com.fitnessbuddy.data.export.ExportText
+import com.fitnessbuddy.data.export.ImportedWorkout
+import com.fitnessbuddy.data.location.RouteBuffer
+import com.fitnessbuddy.data.location.RouteView
+import com.fitnessbuddy.data.metrics.HeartRateTrack
+import com.fitnessbuddy.data.metrics.HeartRateView
+import java.io.BufferedReader
+import java.io.IOException
+import java.io.Reader
+import kotlin.math.cos
+import kotlin.math.roundToInt
+import kotlin.math.sin
+
+/**
+ * Raw sensor samples of a recorded session, ready to be played back by
+ * [SensorReplay]. Fixes keep their reported accuracy so they go through the
+ * same filtering as live ones.
+ */
+class SensorRecording(
+    val route: RouteView,
+    val heartRate: HeartRateView,
+    private val accuracies: FloatArray? = null,
+    private val defaultAccuracyMeters: Float = DEFAULT_ACCURACY_METERS
+) {
+    /** Timestamp of the first sample, in epoch milliseconds. */
+    val startTime: Long = when {
+        route.isNotEmpty() && heartRate.isNotEmpty() -> minOf(route.timestamp(0), heartRate.timestamp(0))
+        route.isNotEmpty() -> route.timestamp(0)
+        heartRate.isNotEmpty() -> heartRate.timestamp(0)
+        else -> 0L
+    }
+
+    fun accuracy(index: Int): Float = accuracies?.get(index) ?: defaultAccuracyMeters
+
+    companion object {
+        // Typical open-sky accuracy, for formats that don't record it
+        const val DEFAULT_ACCURACY_METERS = 5f
+
+        /**
+         * Wraps a file read through [com.fitnessbuddy.data.export.WorkoutExporter],
+         * e.g. a GPX track.
+         */
+        fun fromImported(workout: ImportedWorkout): SensorRecording =
+            SensorRecording(workout.route, workout.heartRate)
+
+        /**
+         * Reads a recording written one sample per line as
+         * `timestamp,latitude,longitude,altitude,speed,accuracy,heartRate`.
+         *
+         * The timestamp is epoch milliseconds or ISO-8601. Any other column may
+         * be empty: lines without a position are heart-rate only. A header line
+         * and lines starting with '#' are skipped. Plain JVM, so benchmarks can
+         * load fixtures without Android.
+         */
+        fun fromCsv(input: Reader): SensorRecording {
+            val reader = input as? BufferedReader ?: BufferedReader(input)
+            val route = RouteBuffer()
+            val heartRate = HeartRateTrack()
+            var accuracies = FloatArray(INITIAL_CAPACITY)
+            val columns = arrayOfNulls<String>(COLUMN_COUNT)
+            var lineNumber = 0
+
+            while (true) {
+                val line = reader.readLine() ?: break
+                lineNumber++
+                if (line.isBlank() || line.startsWith('#')) continue
+                split(line, columns)
+                val timestamp = columns[0]?.let { it.toLongOrNull() ?: ExportText.parseIsoTime(it) }
+                if (timestamp == null) {
+                    if (lineNumber == 1) continue          // Header
+                    throw IOException("Line $lineNumber: invalid timestamp")
+                }
+
+                val latitude = columns[1]?.toDoubleOrNull()
+                val longitude = columns[2]?.toDoubleOrNull()
+                if (latitude != null && longitude != null) {
+                    if (route.size == accuracies.size) accuracies = accuracies.copyOf(route.size * 2)
+                    accuracies[route.size] = columns[5]?.toFloatOrNull() ?: DEFAULT_ACCURACY_METERS
+                    route.add(
+                        latitude,
+                        longitude,
+                        columns[3]?.toDoubleOrNull() ?: 0.0,
+                        columns[4]?.toFloatOrNull() ?: 0f,
+                        timestamp
+                    )
+                }
+                columns[6]?.toIntOrNull()?.let { bpm -> if (bpm > 0) heartRate.add(timestamp, bpm) }
+            }
+            return SensorRecording(route.snapshot(), heartRate.snapshot(), accuracies)
+        }
+
+        /**
+         * A steady run around a circular loop with one fix and one heart-rate
+         * reading per second, for emulated sensor sessions. Heart rate drifts
+         * up through the run the way it does at a constant pace.
+         */
+        fun syntheticLoop(
+            startTime: Long,
+            durationSeconds: Int,
+            centerLatitude: Double = 59.9139,
+            centerLongitude: Double = 10.7522,
+            radiusMeters: Double = 400.0,
+            speedMetersPerSecond: Float = 3f
+        ): SensorRecording {
+            val route = RouteBuffer()
+            val heartRate = HeartRateTrack(durationSeconds + 1)
+            val metersPerDegreeLongitude = METERS_PER_DEGREE * cos(Math.toRadians(centerLatitude))
+            for (second in 0..durationSeconds) {
+                val timestamp = startTime + second * 1000L
+                val angle = second * speedMetersPerSecond / radiusMeters
+                route.add(
+                    centerLatitude + radiusMeters * sin(angle) / METERS_PER_DEGREE,
+                    centerLongitude + radiusMeters * cos(angle) / metersPerDegreeLongitude,
+                    100.0 + 5.0 * sin(angle),
+                    speedMetersPerSecond,
+                    timestamp
+                )
+                val drift = 30.0 * second / durationSeconds.coerceAtLeast(1)
+                heartRate.add(timestamp, (125.0 + drift + 3.0 * sin(second / 7.0)).roundToInt())
+            }
+            return SensorRecording(route.snapshot(), heartRate.snapshot())
+        }
+
+        private const val METERS_PER_DEGREE = 111_320.0
+        private const val COLUMN_COUNT = 7
+        private const val INITIAL_CAPACITY = 1024
+
+        // Empty or missing columns become null
+        private fun split(line: String, columns: Array<String?>) {
+            columns.fill(null)
+            var start = 0
+            for (i in 0 until COLUMN_COUNT) {
+                val end = line.indexOf(',', start).let { if (it < 0) line.length else it }
+                if (end > start) columns[i] = line.substring(start, end).trim().ifEmpty { null }
+                if (end >= line.length) break
+                start = end + 1
+            }
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.fitnessbuddy.data.replay
+
+import com.fitnessbuddy.data.location.LocationFilter
+import com.fitnessbuddy.data.location.LocationFilterConfig
+import com.fitnessbuddy.data.location.LocationFilterStats
+import com.fitnessbuddy.data.location.LocationPoint
+import com.fitnessbuddy.data.location.LocationSamplingPolicy
+import com.fitnessbuddy.data.location.LocationSource
+import com.fitnessbuddy.data.sensor.HeartRateSample
+import com.fitnessbuddy.data.sensor.HeartRateSensorState
+import com.fitnessbuddy.data.sensor.HeartRateSource
+import kotlinx.coroutines.CoroutineDispatcher
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.MutableSharedFlow
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asSharedFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.withContext
+import kotlinx.coroutines.yield
+
+/**
+ * Playback rate of a [SensorReplay], as a multiple of recorded time.
+ */
+data class ReplaySpeed(val factor: Double) {
+    init {
+        require(factor > 0) { "Replay speed must be positive" }
+    }
+
+    val isUnlimited: Boolean
+        get() = factor.isInfinite()
+
+    companion object {
+        val REALTIME = ReplaySpeed(1.0)
+        val FAST = ReplaySpeed(10.0)
+
+        /** No waiting between samples, for benchmarks. */
+        val MAX = ReplaySpeed(Double.POSITIVE_INFINITY)
+    }
+}
+
+/**
+ * Plays a [SensorRecording] back through the same interfaces the live
+ * sensors implement, so consumers of [LocationSource] and [HeartRateSource]
+ * can run against a recorded session instead of a walk outside.
+ *
+ * Raw fixes go through a [LocationFilter] and the sampling policy exactly as
+ * in [com.fitnessbuddy.data.location.LocationTracker]. Heart-rate samples and
+ * fixes are merged into one timeline; a reading is published before a fix
+ * with the same timestamp. Timestamps are the recorded ones shifted to
+ * [startTime], so a replay yields the same values on every run regardless
+ * of [speed]; fixes and [heartRateSamples] both carry them. A null
+ * [startTime] starts the timeline when playback begins instead, for live
+ * sessions that also read the wall clock.
+ *
+ * [heartRateSamples] has no buffer: publishing a reading waits until every
+ * collector has taken it, so even at [ReplaySpeed.MAX] none is dropped.
+ * [currentHeartRate] conflates like the live sensor's does.
+ *
+ * Collecting [getLocationUpdates] drives the whole timeline, heart rate
+ * included, and completes at the end of the recording. Sessions without
+ * location use [playHeartRate] instead.
+ */
+class SensorReplay(
+    private val recording: SensorRecording,
+    private val speed: ReplaySpeed = ReplaySpeed.REALTIME,
+    // One thread at a time, like the live location thread
+    override val dispatcher: CoroutineDispatcher = Dispatchers.Default.limitedParallelism(1),
+    private val startTime: Long? = recording.startTime
+) : LocationSource, HeartRateSource {
+
+    private val _currentHeartRate = MutableStateFlow<Int?>(null)
+    override val currentHeartRate: StateFlow<Int?> = _currentHeartRate.asStateFlow()
+
+    private val _heartRateSamples = MutableSharedFlow<HeartRateSample>()
+    override val heartRateSamples: Flow<HeartRateSample> = _heartRateSamples.asSharedFlow()
+
+    private val _sensorState = MutableStateFlow(
+        if (recording.heartRate.isNotEmpty()) HeartRateSensorState.CONNECTED else HeartRateSensorState.DISCONNECTED
+    )
+    override val sensorState: StateFlow<HeartRateSensorState> = _sensorState.asStateFlow()
+
+    private val _filterStats = MutableStateFlow(LocationFilterStats())
+    /** Filter counters of the last location playback, updated when it ends. */
+    val filterStats: StateFlow<LocationFilterStats> = _filterStats.asStateFlow()
+
+    override fun getLocationUpdates(
+        filterConfig: LocationFilterConfig,
+        samplingPolicy: LocationSamplingPolicy
+    ): Flow<LocationPoint> = flow {
+        val route = recording.route
+        val filter = LocationFilter(filterConfig)
+        try {
+            play(includeRoute = true) { index, timestamp ->
+                val accuracy = recording.accuracy(index)
+                val accepted = filter.process(
+                    rawLatitude = route.latitude(index),
+                    rawLongitude = route.longitude(index),
+                    rawSpeed = route.speed(index),
+                    accuracyMeters = accuracy,
+                    timestamp = timestamp
+                )
+                if (accepted) {
+                    val point = LocationPoint(
+                        latitude = filter.latitude,
+                        longitude = filter.longitude,
+                        altitude = route.altitude(index),
+                        speed = filter.speed,
+                        timestamp = timestamp,
+                        accuracy = accuracy,
+                        isStationary = filter.isStationary
+                    )
+                    samplingPolicy.onFix(point)
+                    emit(point)
+                }
+            }
+        } finally {
+            _filterStats.value = filter.stats()
+        }
+    }.flowOn(dispatcher)
+
+    /**
+     * Plays only the heart-rate samples, in recorded time. Returns at the end
+     * of the recording.
+     */
+    suspend fun playHeartRate() {
+        withContext(dispatcher) {
+            play(includeRoute = false) { _, _ -> }
+        }
+    }
+
+    private suspend fun play(includeRoute: Boolean, onFix: suspend (index: Int, timestamp: Long) -> Unit) {
+        val route = recording.route
+        val heartRate = recording.heartRate
+        val routeSize = if (includeRoute) route.size else 0
+        // Without a fixed start the timeline begins now, in step with the wall clock
+        val shift = (startTime ?: System.currentTimeMillis()) - recording.startTime
+        var routeIndex = 0
+        var heartRateIndex = 0
+        var previous = recording.startTime
+
+        while (routeIndex < routeSize || heartRateIndex < heartRate.size) {
+            val nextFix = if (routeIndex < routeSize) route.timestamp(routeIndex) else Long.MAX_VALUE
+            val nextHeartRate = if (heartRateIndex < heartRate.size) heartRate.timestamp(heartRateIndex) else Long.MAX_VALUE
+            val isHeartRate = nextHeartRate <= nextFix
+            val timestamp = if (isHeartRate) nextHeartRate else nextFix
+
+            waitFor(timestamp - previous)
+            previous = timestamp
+
+            if (isHeartRate) {
+                val bpm = heartRate.bpm(heartRateIndex++)
+                _currentHeartRate.value = bpm
+                _heartRateSamples.emit(HeartRateSample(timestamp + shift, bpm))
+            } else {
+                onFix(routeIndex++, timestamp + shift)
+            }
+        }
+    }
+
+    private suspend fun waitFor(recordedMillis: Long) {
+        if (speed.isUnlimited) {
+            // Still let collectors of the heart-rate state run
+            yield()
+        } else if (recordedMillis > 0) {
+            delay((recordedMillis / speed.factor).toLong())
+        }
+    }
+}
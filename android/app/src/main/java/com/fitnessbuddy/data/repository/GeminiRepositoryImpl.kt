@@ -60,7 +60,7 @@ class GeminiRepositoryImpl @Inject constructor(
             Log.d("GeminiRepository", "Response preview: ${generatedText.take(500)}")
             
             // Extract JSON from response - handle markdown code blocks
-            val cleanedJson = extractJson(generatedText)
+            val cleanedJson = JsonExtractor.extract(generatedText)
             
             if (cleanedJson.isBlank()) {
                 Log.e("GeminiRepository", "Could not extract JSON from response")
@@ -107,29 +107,4 @@ class GeminiRepositoryImpl @Inject constructor(
             Result.failure(Exception(e.message ?: "Failed to get feedback"))
         }
     }
-    
-    /**
-     * Extracts JSON object from response text, handling markdown code blocks.
-     */
-    private fun extractJson(text: String): String {
-        // Try to find JSON in markdown code block first
-        val codeBlockPattern = Regex("```(?:json)?\\s*([\\s\\S]*?)```")
-        val codeBlockMatch = codeBlockPattern.find(text)
-        if (codeBlockMatch != null) {
-            return codeBlockMatch.groupValues[1].trim()
-        }
-        
-        // Try to find JSON object directly
-        val jsonObjectPattern = Regex("\\{[\\s\\S]*\\}")
-        val jsonMatch = jsonObjectPattern.find(text)
-        if (jsonMatch != null) {
-            return jsonMatch.value.trim()
-        }
-        
-        // Return cleaned text as fallback
-        return text
-            .replace("```json", "")
-            .replace("```", "")
-            .trim()
-    }
 }
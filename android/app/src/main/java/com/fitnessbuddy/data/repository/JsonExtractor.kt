@@ -0,0 +1,34 @@
+package com.fitnessbuddy.data.repository
+
+/**
+ * Pulls the JSON payload out of a model response.
+ */
+object JsonExtractor {
+
+    // Compiled once; extraction runs on every plan response
+    private val codeBlockPattern = Regex("```(?:json)?\\s*([\\s\\S]*?)```")
+    private val jsonObjectPattern = Regex("\\{[\\s\\S]*\\}")
+
+    /**
+     * Extracts JSON object from response text, handling markdown code blocks.
+     */
+    fun extract(text: String): String {
+        // Try to find JSON in markdown code block first
+        val codeBlockMatch = codeBlockPattern.find(text)
+        if (codeBlockMatch != null) {
+            return codeBlockMatch.groupValues[1].trim()
+        }
+
+        // Try to find JSON object directly
+        val jsonMatch = jsonObjectPattern.find(text)
+        if (jsonMatch != null) {
+            return jsonMatch.value.trim()
+        }
+
+        // Return cleaned text as fallback
+        return text
+            .replace("```json", "")
+            .replace("```", "")
+            .trim()
+    }
+}
@@ -0,0 +1,75 @@
+package com.fitnessbuddy.data.repository
+
+import android.content.Context
+import android.util.AtomicFile
+import android.util.Log
+import com.fitnessbuddy.domain.model.TrainingPlan
+import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.withContext
+import kotlinx.serialization.json.Json
+import java.io.File
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * On-device copy of each user's active training plan, one JSON file per
+ * user under the app's files directory.
+ *
+ * Writes go through [AtomicFile], so a crash mid-write leaves the previous
+ * plan readable. A file that fails to parse (e.g. after a model change) is
+ * dropped and the plan is fetched again.
+ */
+@Singleton
+class TrainingPlanCache @Inject constructor(
+    @ApplicationContext private val context: Context
+) {
+    private val json = Json {
+        ignoreUnknownKeys = true
+        coerceInputValues = true
+    }
+
+    suspend fun read(userId: String): TrainingPlan? = withContext(Dispatchers.IO) {
+        val file = fileFor(userId)
+        if (!file.baseFile.exists()) return@withContext null
+        try {
+            json.decodeFromString(TrainingPlan.serializer(), file.readFully().decodeToString())
+        } catch (e: Exception) {
+            Log.w(TAG, "Discarding unreadable cached plan", e)
+            file.delete()
+            null
+        }
+    }
+
+    suspend fun write(userId: String, plan: TrainingPlan) = withContext(Dispatchers.IO) {
+        val file = fileFor(userId)
+        val output = try {
+            file.startWrite()
+        } catch (e: Exception) {
+            Log.e(TAG, "Error opening plan cache", e)
+            return@withContext
+        }
+        try {
+            output.write(json.encodeToString(TrainingPlan.serializer(), plan).encodeToByteArray())
+            file.finishWrite(output)
+        } catch (e: Exception) {
+            Log.e(TAG, "Error writing plan cache", e)
+            file.failWrite(output)
+        }
+    }
+
+    suspend fun delete(userId: String) = withContext(Dispatchers.IO) {
+        fileFor(userId).delete()
+    }
+
+    private fun fileFor(userId: String): AtomicFile {
+        val directory = File(context.filesDir, DIRECTORY_NAME)
+        directory.mkdirs()
+        return AtomicFile(File(directory, "$userId.json"))
+    }
+
+    companion object {
+        private const val TAG = "TrainingPlanCache"
+        private const val DIRECTORY_NAME = "training_plans"
+    }
+}
@@ -0,0 +1,101 @@
+package com.fitnessbuddy.data.repository
+
+import com.fitnessbuddy.domain.model.TrainingDay
+import com.fitnessbuddy.domain.model.TrainingPlan
+import com.fitnessbuddy.domain.model.TrainingWeek
+
+/**
+ * Converts training plans to and from the nested maps stored in Firestore.
+ * Firestore returns whole numbers as Long, hence the Number/Long casts.
+ */
+object TrainingPlanMapper {
+
+    fun toMap(plan: TrainingPlan, createdAt: Long): Map<String, Any> {
+        return mapOf(
+            "id" to plan.id,
+            "eventType" to plan.eventType,
+            "targetDistance" to plan.targetDistance,
+            "targetDate" to plan.targetDate,
+            "totalWeeks" to plan.totalWeeks,
+            "currentWeek" to plan.currentWeek,
+            "daysToRace" to plan.daysToRace,
+            "createdAt" to createdAt,
+            "weeks" to plan.weeks.map { week ->
+                mapOf(
+                    "weekNumber" to week.weekNumber,
+                    "phase" to week.phase,
+                    "theme" to week.theme,
+                    "totalDistanceKm" to week.totalDistanceKm,
+                    "totalSessions" to week.totalSessions,
+                    "completedSessions" to week.completedSessions,
+                    "progressPercent" to week.progressPercent,
+                    "isCurrentWeek" to week.isCurrentWeek,
+                    "isLocked" to week.isLocked,
+                    "days" to week.days.map { day ->
+                        mapOf(
+                            "dayOfWeek" to day.dayOfWeek,
+                            "workoutType" to day.workoutType,
+                            "title" to day.title,
+                            "description" to day.description,
+                            "distanceKm" to day.distanceKm,
+                            "durationMinutes" to day.durationMinutes,
+                            "intensity" to day.intensity,
+                            "zone" to day.zone,
+                            "pace" to day.pace,
+                            "warmup" to day.warmup,
+                            "mainSet" to day.mainSet,
+                            "cooldown" to day.cooldown,
+                            "isRestDay" to day.isRestDay,
+                            "isCompleted" to day.isCompleted,
+                            "isToday" to day.isToday
+                        )
+                    }
+                )
+            }
+        )
+    }
+
+    fun fromMap(data: Map<String, Any>): TrainingPlan {
+        @Suppress("UNCHECKED_CAST")
+        val weeks = (data["weeks"] as? List<Map<String, Any>>)?.map { weekData ->
+            TrainingWeek(
+                weekNumber = (weekData["weekNumber"] as? Long)?.toInt() ?: 1,
+                phase = weekData["phase"] as? String ?: "",
+                theme = weekData["theme"] as? String ?: "",
+                totalDistanceKm = (weekData["totalDistanceKm"] as? Number)?.toFloat() ?: 0f,
+                totalSessions = (weekData["totalSessions"] as? Long)?.toInt() ?: 0,
+                isCurrentWeek = weekData["isCurrentWeek"] as? Boolean ?: false,
+                isLocked = weekData["isLocked"] as? Boolean ?: false,
+                days = (weekData["days"] as? List<Map<String, Any>>)?.map { dayData ->
+                    TrainingDay(
+                        dayOfWeek = dayData["dayOfWeek"] as? String ?: "",
+                        workoutType = dayData["workoutType"] as? String ?: "",
+                        title = dayData["title"] as? String ?: "",
+                        description = dayData["description"] as? String ?: "",
+                        distanceKm = (dayData["distanceKm"] as? Number)?.toFloat() ?: 0f,
+                        durationMinutes = (dayData["durationMinutes"] as? Long)?.toInt() ?: 0,
+                        intensity = dayData["intensity"] as? String ?: "",
+                        zone = dayData["zone"] as? String ?: "",
+                        pace = dayData["pace"] as? String ?: "",
+                        warmup = dayData["warmup"] as? String ?: "",
+                        mainSet = dayData["mainSet"] as? String ?: "",
+                        cooldown = dayData["cooldown"] as? String ?: "",
+                        isRestDay = dayData["isRestDay"] as? Boolean ?: false,
+                        isCompleted = dayData["isCompleted"] as? Boolean ?: false,
+                        isToday = dayData["isToday"] as? Boolean ?: false
+                    )
+                } ?: emptyList()
+            )
+        } ?: emptyList()
+
+        return TrainingPlan(
+            id = data["id"] as? String ?: "",
+            eventType = data["eventType"] as? String ?: "",
+            targetDistance = data["targetDistance"] as? String ?: "",
+            targetDate = data["targetDate"] as? String ?: "",
+            totalWeeks = (data["totalWeeks"] as? Long)?.toInt() ?: 0,
+            currentWeek = (data["currentWeek"] as? Long)?.toInt() ?: 1,
+            weeks = weeks
+        )
+    }
+}
@@ -1,22 +1,52 @@
 package com.fitnessbuddy.data.repository
 
 import android.util.Log
-import com.fitnessbuddy.domain.model.TrainingDay
 import com.fitnessbuddy.domain.model.TrainingPlan
-import com.fitnessbuddy.domain.model.TrainingWeek
 import com.fitnessbuddy.domain.repository.TrainingPlanRepository
 import com.google.firebase.auth.FirebaseAuth
 import com.google.firebase.firestore.FirebaseFirestore
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.emitAll
+import kotlinx.coroutines.flow.filter
+import kotlinx.coroutines.flow.filterNotNull
+import kotlinx.coroutines.flow.flow
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.sync.Mutex
+import kotlinx.coroutines.sync.withLock
 import kotlinx.coroutines.tasks.await
 import javax.inject.Inject
 import javax.inject.Singleton
 
+/**
+ * Firestore-backed plans with a local-first read path.
+ *
+ * The active plan is kept in memory and in [TrainingPlanCache]. Reads are
+ * answered from there straight away and revalidated against Firestore in
+ * the background, at most once per [REVALIDATE_INTERVAL_MS]; a changed plan
+ * reaches collectors of [observeActiveTrainingPlan] when it arrives.
+ */
 @Singleton
 class TrainingPlanRepositoryImpl @Inject constructor(
     private val firestore: FirebaseFirestore,
-    private val auth: FirebaseAuth
+    private val auth: FirebaseAuth,
+    private val cache: TrainingPlanCache
 ) : TrainingPlanRepository {
 
+    // Latest known plan of one user; plan is null when the user has none
+    private data class KnownPlan(val userId: String, val plan: TrainingPlan?, val fetchedAt: Long)
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.IO)
+    private val knownPlan = MutableStateFlow<KnownPlan?>(null)
+    private val cacheMutex = Mutex()
+    private var revalidation: Job? = null
+
     private val collection get() = firestore.collection("users")
         .document(auth.currentUser?.uid ?: "anonymous")
         .collection("training_plans")
@@ -24,51 +54,11 @@ class TrainingPlanRepositoryImpl @Inject constructor(
     override suspend fun saveTrainingPlan(plan: TrainingPlan): Result<Unit> {
         return try {
             val userId = auth.currentUser?.uid ?: return Result.failure(Exception("User not logged in"))
-            
-            val planMap = mapOf(
-                "id" to plan.id,
-                "eventType" to plan.eventType,
-                "targetDistance" to plan.targetDistance,
-                "targetDate" to plan.targetDate,
-                "totalWeeks" to plan.totalWeeks,
-                "currentWeek" to plan.currentWeek,
-                "daysToRace" to plan.daysToRace,
-                "createdAt" to System.currentTimeMillis(),
-                "weeks" to plan.weeks.map { week ->
-                    mapOf(
-                        "weekNumber" to week.weekNumber,
-                        "phase" to week.phase,
-                        "theme" to week.theme,
-                        "totalDistanceKm" to week.totalDistanceKm,
-                        "totalSessions" to week.totalSessions,
-                        "completedSessions" to week.completedSessions,
-                        "progressPercent" to week.progressPercent,
-                        "isCurrentWeek" to week.isCurrentWeek,
-                        "isLocked" to week.isLocked,
-                        "days" to week.days.map { day ->
-                            mapOf(
-                                "dayOfWeek" to day.dayOfWeek,
-                                "workoutType" to day.workoutType,
-                                "title" to day.title,
-                                "description" to day.description,
-                                "distanceKm" to day.distanceKm,
-                                "durationMinutes" to day.durationMinutes,
-                                "intensity" to day.intensity,
-                                "zone" to day.zone,
-                                "pace" to day.pace,
-                                "warmup" to day.warmup,
-                                "mainSet" to day.mainSet,
-                                "cooldown" to day.cooldown,
-                                "isRestDay" to day.isRestDay,
-                                "isCompleted" to day.isCompleted,
-                                "isToday" to day.isToday
-                            )
-                        }
-                    )
-                }
-            )
-            
+
+            val planMap = TrainingPlanMapper.toMap(plan, createdAt = System.currentTimeMillis())
+
             collection.document("active").set(planMap).await()
+            remember(userId, plan)
             Log.d("TrainingPlanRepo", "Plan saved successfully")
             Result.success(Unit)
         } catch (e: Exception) {
@@ -78,70 +68,38 @@ class TrainingPlanRepositoryImpl @Inject constructor(
     }
 
     override suspend fun getActiveTrainingPlan(): Result<TrainingPlan?> {
-        return try {
-            val userId = auth.currentUser?.uid ?: return Result.failure(Exception("User not logged in"))
-            
-            val doc = collection.document("active").get().await()
-            
-            if (!doc.exists()) {
-                return Result.success(null)
-            }
-            
-            val data = doc.data ?: return Result.success(null)
-            
-            @Suppress("UNCHECKED_CAST")
-            val weeks = (data["weeks"] as? List<Map<String, Any>>)?.map { weekData ->
-                TrainingWeek(
-                    weekNumber = (weekData["weekNumber"] as? Long)?.toInt() ?: 1,
-                    phase = weekData["phase"] as? String ?: "",
-                    theme = weekData["theme"] as? String ?: "",
-                    totalDistanceKm = (weekData["totalDistanceKm"] as? Number)?.toFloat() ?: 0f,
-                    totalSessions = (weekData["totalSessions"] as? Long)?.toInt() ?: 0,
-                    isCurrentWeek = weekData["isCurrentWeek"] as? Boolean ?: false,
-                    isLocked = weekData["isLocked"] as? Boolean ?: false,
-                    days = (weekData["days"] as? List<Map<String, Any>>)?.map { dayData ->
-                        TrainingDay(
-                            dayOfWeek = dayData["dayOfWeek"] as? String ?: "",
-                            workoutType = dayData["workoutType"] as? String ?: "",
-                            title = dayData["title"] as? String ?: "",
-                            description = dayData["description"] as? String ?: "",
-                            distanceKm = (dayData["distanceKm"] as? Number)?.toFloat() ?: 0f,
-                            durationMinutes = (dayData["durationMinutes"] as? Long)?.toInt() ?: 0,
-                            intensity = dayData["intensity"] as? String ?: "",
-                            zone = dayData["zone"] as? String ?: "",
-                            pace = dayData["pace"] as? String ?: "",
-                            warmup = dayData["warmup"] as? String ?: "",
-                            mainSet = dayData["mainSet"] as? String ?: "",
-                            cooldown = dayData["cooldown"] as? String ?: "",
-                            isRestDay = dayData["isRestDay"] as? Boolean ?: false,
-                            isCompleted = dayData["isCompleted"] as? Boolean ?: false,
-                            isToday = dayData["isToday"] as? Boolean ?: false
-                        )
-                    } ?: emptyList()
-                )
-            } ?: emptyList()
-            
-            val plan = TrainingPlan(
-                id = data["id"] as? String ?: "",
-                eventType = data["eventType"] as? String ?: "",
-                targetDistance = data["targetDistance"] as? String ?: "",
-                targetDate = data["targetDate"] as? String ?: "",
-                totalWeeks = (data["totalWeeks"] as? Long)?.toInt() ?: 0,
-                currentWeek = (data["currentWeek"] as? Long)?.toInt() ?: 1,
-                weeks = weeks
-            )
-            
-            Log.d("TrainingPlanRepo", "Plan loaded: ${plan.weeks.size} weeks")
-            Result.success(plan)
-        } catch (e: Exception) {
-            Log.e("TrainingPlanRepo", "Error loading plan", e)
-            Result.failure(e)
+        val userId = auth.currentUser?.uid ?: return Result.failure(Exception("User not logged in"))
+        val local = loadLocal(userId)
+        if (local != null) {
+            revalidate(userId)
+            return Result.success(local.plan)
+        }
+        return fetchRemote(userId)
+    }
+
+    override fun observeActiveTrainingPlan(): Flow<TrainingPlan?> = flow {
+        val userId = auth.currentUser?.uid ?: throw Exception("User not logged in")
+        if (loadLocal(userId) != null) {
+            revalidate(userId)
+        } else {
+            // Nothing on the device yet, so the first value has to come from Firestore
+            fetchRemote(userId).getOrThrow()
         }
+        emitAll(
+            knownPlan.filterNotNull()
+                .filter { it.userId == userId }
+                .map { it.plan }
+                .distinctUntilChanged()
+        )
     }
 
     override suspend fun hasTrainingPlan(): Boolean {
         return try {
             val userId = auth.currentUser?.uid ?: return false
+            loadLocal(userId)?.let { local ->
+                revalidate(userId)
+                return local.plan != null
+            }
             val doc = collection.document("active").get().await()
             doc.exists()
         } catch (e: Exception) {
@@ -153,9 +111,61 @@ class TrainingPlanRepositoryImpl @Inject constructor(
     override suspend fun deleteTrainingPlan(): Result<Unit> {
         return try {
             collection.document("active").delete().await()
+            auth.currentUser?.uid?.let { remember(it, null) }
             Result.success(Unit)
         } catch (e: Exception) {
             Result.failure(e)
         }
     }
+
+    /** The plan in memory, or else on disk; null if neither has one for [userId]. */
+    private suspend fun loadLocal(userId: String): KnownPlan? = cacheMutex.withLock {
+        val current = knownPlan.value
+        if (current?.userId == userId) return current
+        val plan = cache.read(userId) ?: return null
+        // A fetch that finished while reading the file wins over the file
+        knownPlan.compareAndSet(current, KnownPlan(userId, plan, fetchedAt = 0L))
+        knownPlan.value?.takeIf { it.userId == userId }
+    }
+
+    @Synchronized
+    private fun revalidate(userId: String) {
+        val known = knownPlan.value
+        if (known?.userId == userId && System.currentTimeMillis() - known.fetchedAt < REVALIDATE_INTERVAL_MS) return
+        if (revalidation?.isActive == true) return
+        revalidation = scope.launch { fetchRemote(userId) }
+    }
+
+    private suspend fun fetchRemote(userId: String): Result<TrainingPlan?> {
+        return try {
+            val doc = collection.document("active").get().await()
+
+            val local = knownPlan.value?.takeIf { it.userId == userId }
+            if (doc.metadata.isFromCache && local != null) {
+                // Offline: Firestore's own cache is no newer than ours
+                return Result.success(local.plan)
+            }
+
+            val data = if (doc.exists()) doc.data else null
+            val plan = data?.let { TrainingPlanMapper.fromMap(it) }
+            remember(userId, plan)
+
+            Log.d("TrainingPlanRepo", "Plan loaded: ${plan?.weeks?.size ?: 0} weeks")
+            Result.success(plan)
+        } catch (e: Exception) {
+            Log.e("TrainingPlanRepo", "Error loading plan", e)
+            Result.failure(e)
+        }
+    }
+
+    private suspend fun remember(userId: String, plan: TrainingPlan?) {
+        val previous = knownPlan.value?.takeIf { it.userId == userId }
+        knownPlan.value = KnownPlan(userId, plan, System.currentTimeMillis())
+        if (previous != null && previous.plan == plan) return
+        if (plan != null) cache.write(userId, plan) else cache.delete(userId)
+    }
+
+    companion object {
+        private const val REVALIDATE_INTERVAL_MS = 60_000L
+    }
 }
@@ -0,0 +1,76 @@
+package com.fitnessbuddy.data.repository
+
+import android.util.Log
+import com.fitnessbuddy.data.location.RouteCodec
+import com.fitnessbuddy.domain.model.WorkoutResult
+import com.fitnessbuddy.domain.repository.WorkoutHistoryRepository
+import com.google.firebase.auth.FirebaseAuth
+import com.google.firebase.firestore.Blob
+import com.google.firebase.firestore.FirebaseFirestore
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.tasks.await
+import kotlinx.coroutines.withContext
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Firestore-backed workout history, one document per completed workout.
+ *
+ * The route is stored as a single blob field in the [RouteCodec] format,
+ * a few kilobytes per hour of running, next to its size per hour so the
+ * encoding cost can be tracked across real sessions.
+ */
+@Singleton
+class WorkoutHistoryRepositoryImpl @Inject constructor(
+    private val firestore: FirebaseFirestore,
+    private val auth: FirebaseAuth
+) : WorkoutHistoryRepository {
+
+    override suspend fun saveWorkout(
+        weekNumber: Int,
+        dayOfWeek: String,
+        startedAt: Long,
+        result: WorkoutResult
+    ): Result<Unit> {
+        return try {
+            val userId = auth.currentUser?.uid ?: return Result.failure(Exception("User not logged in"))
+
+            val route = result.routePoints
+            val encoded = withContext(Dispatchers.Default) { RouteCodec.encode(route) }
+            val workoutMap = mutableMapOf<String, Any?>(
+                "startedAt" to startedAt,
+                "weekNumber" to weekNumber,
+                "dayOfWeek" to dayOfWeek,
+                "workoutMode" to result.workoutMode,
+                "elapsedSeconds" to result.elapsedSeconds,
+                "distanceMeters" to result.distanceMeters.toDouble(),
+                "elevationGainMeters" to result.elevationGainMeters.toDouble(),
+                "routePointCount" to route.size,
+                "routeFormatVersion" to RouteCodec.FORMAT_VERSION,
+                "routeBytes" to encoded.size,
+                "routeBytesPerHour" to RouteCodec.bytesPerHour(encoded.size.toLong(), route)
+            )
+            if (encoded.size <= MAX_ROUTE_BYTES) {
+                workoutMap["route"] = Blob.fromBytes(encoded)
+            } else {
+                Log.w("WorkoutHistoryRepo", "Route of ${encoded.size} bytes too large for one document, not stored")
+            }
+
+            firestore.collection("users")
+                .document(userId)
+                .collection("workouts")
+                .add(workoutMap)
+                .await()
+            Log.d("WorkoutHistoryRepo", "Workout saved: ${route.size} points in ${encoded.size} bytes")
+            Result.success(Unit)
+        } catch (e: Exception) {
+            Log.e("WorkoutHistoryRepo", "Error saving workout", e)
+            Result.failure(e)
+        }
+    }
+
+    companion object {
+        // Firestore documents are limited to 1 MiB; leave room for the other fields
+        private const val MAX_ROUTE_BYTES = 900_000
+    }
+}
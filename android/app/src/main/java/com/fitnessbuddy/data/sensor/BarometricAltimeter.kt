@@ -0,0 +1,66 @@
+package com.fitnessbuddy.data.sensor
+
+import android.content.Context
+import android.hardware.Sensor
+import android.hardware.SensorEvent
+import android.hardware.SensorEventListener
+import android.hardware.SensorManager
+import android.util.Log
+import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.channels.awaitClose
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.callbackFlow
+import kotlinx.coroutines.flow.emptyFlow
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Altitude from the device pressure sensor.
+ *
+ * Barometric altitude has a drifting absolute level (weather) but resolves
+ * height changes of well under a metre, which is exactly what GPS is bad at.
+ * Events are batched by the sensor hub to save power.
+ */
+@Singleton
+class BarometricAltimeter @Inject constructor(
+    @ApplicationContext private val context: Context
+) {
+    private val TAG = "BarometricAltimeter"
+
+    private val sensorManager: SensorManager? =
+        context.getSystemService(Context.SENSOR_SERVICE) as? SensorManager
+    private val pressureSensor: Sensor? = sensorManager?.getDefaultSensor(Sensor.TYPE_PRESSURE)
+
+    val isAvailable: Boolean
+        get() = pressureSensor != null
+
+    /**
+     * Altitude in metres relative to standard sea-level pressure.
+     * Completes immediately on devices without a barometer.
+     */
+    fun altitudeUpdates(): Flow<Float> {
+        val manager = sensorManager
+        val sensor = pressureSensor
+        if (manager == null || sensor == null) {
+            Log.d(TAG, "No pressure sensor, elevation falls back to GPS")
+            return emptyFlow()
+        }
+        return callbackFlow {
+            val listener = object : SensorEventListener {
+                override fun onSensorChanged(event: SensorEvent) {
+                    val pressure = event.values[0]
+                    trySend(SensorManager.getAltitude(SensorManager.PRESSURE_STANDARD_ATMOSPHERE, pressure))
+                }
+
+                override fun onAccuracyChanged(sensor: Sensor, accuracy: Int) {}
+            }
+            manager.registerListener(listener, sensor, SAMPLING_PERIOD_US, MAX_REPORT_LATENCY_US)
+            awaitClose { manager.unregisterListener(listener) }
+        }
+    }
+
+    companion object {
+        private const val SAMPLING_PERIOD_US = 1_000_000
+        private const val MAX_REPORT_LATENCY_US = 5_000_000
+    }
+}
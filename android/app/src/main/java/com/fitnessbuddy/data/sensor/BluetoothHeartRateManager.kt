@@ -4,11 +4,8 @@ import android.annotation.SuppressLint
 import android.bluetooth.BluetoothAdapter
 import android.bluetooth.BluetoothDevice
 import android.bluetooth.BluetoothGatt
-import android.bluetooth.BluetoothGattCallback
 import android.bluetooth.BluetoothGattCharacteristic
-import android.bluetooth.BluetoothGattDescriptor
 import android.bluetooth.BluetoothManager
-import android.bluetooth.BluetoothProfile
 import android.bluetooth.le.ScanCallback
 import android.bluetooth.le.ScanFilter
 import android.bluetooth.le.ScanResult
@@ -16,13 +13,19 @@ import android.bluetooth.le.ScanSettings
 import android.content.Context
 import android.os.ParcelUuid
 import android.util.Log
+import com.fitnessbuddy.bluetooth.GattConnection
+import com.fitnessbuddy.bluetooth.GattOperationQueue
 import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.channels.BufferOverflow
 import kotlinx.coroutines.channels.awaitClose
 import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.MutableSharedFlow
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asSharedFlow
 import kotlinx.coroutines.flow.asStateFlow
 import kotlinx.coroutines.flow.callbackFlow
+import kotlinx.coroutines.launch
 import java.util.UUID
 import javax.inject.Inject
 import javax.inject.Singleton
@@ -35,8 +38,6 @@ object HeartRateServiceUuids {
     val HEART_RATE_SERVICE: UUID = UUID.fromString("0000180d-0000-1000-8000-00805f9b34fb")
     // Heart Rate Measurement Characteristic UUID
     val HEART_RATE_MEASUREMENT: UUID = UUID.fromString("00002a37-0000-1000-8000-00805f9b34fb")
-    // Client Characteristic Configuration Descriptor UUID (for enabling notifications)
-    val CLIENT_CONFIG_DESCRIPTOR: UUID = UUID.fromString("00002902-0000-1000-8000-00805f9b34fb")
 }
 
 data class HeartRateSensorDevice(
@@ -45,35 +46,43 @@ data class HeartRateSensorDevice(
     val device: BluetoothDevice
 )
 
-enum class HeartRateSensorState {
-    DISCONNECTED,
-    SCANNING,
-    CONNECTING,
-    CONNECTED
-}
-
 /**
  * Manager for Bluetooth Low Energy heart rate sensors.
  * Supports standard BLE heart rate monitors (Polar, Wahoo, Garmin, etc.)
+ *
+ * GATT requests go through the shared [GattOperationQueue], so set-up isn't
+ * lost when another sensor is connecting at the same time.
  */
 @Singleton
 class BluetoothHeartRateManager @Inject constructor(
-    @ApplicationContext private val context: Context
-) {
+    @ApplicationContext private val context: Context,
+    private val gattQueue: GattOperationQueue
+) : HeartRateSource {
     private val TAG = "BluetoothHRManager"
     
     private val bluetoothManager: BluetoothManager? = 
         context.getSystemService(Context.BLUETOOTH_SERVICE) as? BluetoothManager
     private val bluetoothAdapter: BluetoothAdapter? = bluetoothManager?.adapter
     
-    private var bluetoothGatt: BluetoothGatt? = null
+    private var connection: GattConnection? = null
     
     private val _sensorState = MutableStateFlow(HeartRateSensorState.DISCONNECTED)
-    val sensorState: StateFlow<HeartRateSensorState> = _sensorState.asStateFlow()
+    override val sensorState: StateFlow<HeartRateSensorState> = _sensorState.asStateFlow()
     
     private val _currentHeartRate = MutableStateFlow<Int?>(null)
-    val currentHeartRate: StateFlow<Int?> = _currentHeartRate.asStateFlow()
-    
+    override val currentHeartRate: StateFlow<Int?> = _currentHeartRate.asStateFlow()
+
+    private val _heartRateSamples = MutableSharedFlow<HeartRateSample>(
+        extraBufferCapacity = 16,
+        onBufferOverflow = BufferOverflow.DROP_OLDEST
+    )
+    override val heartRateSamples: Flow<HeartRateSample> = _heartRateSamples.asSharedFlow()
+
+    private val measurement = HeartRateMeasurement()
+
+    @Volatile
+    private var measurementListener: HeartRateMeasurementListener? = null
+
     private val _discoveredDevices = MutableStateFlow<List<HeartRateSensorDevice>>(emptyList())
     val discoveredDevices: StateFlow<List<HeartRateSensorDevice>> = _discoveredDevices.asStateFlow()
     
@@ -131,30 +140,34 @@ class BluetoothHeartRateManager @Inject constructor(
     /**
      * Connect to a heart rate sensor device
      */
-    @SuppressLint("MissingPermission")
     fun connectToDevice(device: HeartRateSensorDevice) {
         stopScanning()
         _sensorState.value = HeartRateSensorState.CONNECTING
         
-        bluetoothGatt = device.device.connectGatt(context, false, gattCallback)
+        connection?.close()
+        connection = gattQueue.connect(device.device, connectionListener)
         Log.d(TAG, "Connecting to ${device.name}")
     }
     
     /**
      * Disconnect from current device
      */
-    @SuppressLint("MissingPermission")
     fun disconnect() {
-        bluetoothGatt?.let { gatt ->
-            gatt.disconnect()
-            gatt.close()
-        }
-        bluetoothGatt = null
+        connection?.close()
+        connection = null
         _sensorState.value = HeartRateSensorState.DISCONNECTED
         _connectedDevice.value = null
         _currentHeartRate.value = null
         Log.d(TAG, "Disconnected")
     }
+
+    /**
+     * Delivers every decoded measurement, RR intervals included, to [listener].
+     * Pass null to stop.
+     */
+    fun setMeasurementListener(listener: HeartRateMeasurementListener?) {
+        measurementListener = listener
+    }
     
     private val scanCallback = object : ScanCallback() {
         @SuppressLint("MissingPermission")
@@ -182,83 +195,65 @@ class BluetoothHeartRateManager @Inject constructor(
         }
     }
     
-    private val gattCallback = object : BluetoothGattCallback() {
+    private val connectionListener = object : GattConnection.Listener {
         @SuppressLint("MissingPermission")
-        override fun onConnectionStateChange(gatt: BluetoothGatt, status: Int, newState: Int) {
-            when (newState) {
-                BluetoothProfile.STATE_CONNECTED -> {
-                    Log.d(TAG, "Connected to GATT server")
-                    _sensorState.value = HeartRateSensorState.CONNECTED
-                    _connectedDevice.value = HeartRateSensorDevice(
-                        name = gatt.device.name ?: "Heart Rate Sensor",
-                        address = gatt.device.address,
-                        device = gatt.device
-                    )
-                    gatt.discoverServices()
-                }
-                BluetoothProfile.STATE_DISCONNECTED -> {
-                    Log.d(TAG, "Disconnected from GATT server")
-                    _sensorState.value = HeartRateSensorState.DISCONNECTED
-                    _connectedDevice.value = null
-                    _currentHeartRate.value = null
-                }
+        override fun onConnectionStateChange(connection: GattConnection, isConnected: Boolean) {
+            if (isConnected) {
+                Log.d(TAG, "Connected to GATT server")
+                _sensorState.value = HeartRateSensorState.CONNECTED
+                _connectedDevice.value = HeartRateSensorDevice(
+                    name = connection.device.name ?: "Heart Rate Sensor",
+                    address = connection.device.address,
+                    device = connection.device
+                )
+                connection.scope.launch { enableHeartRateNotifications(connection) }
+            } else {
+                Log.d(TAG, "Disconnected from GATT server")
+                _sensorState.value = HeartRateSensorState.DISCONNECTED
+                _connectedDevice.value = null
+                _currentHeartRate.value = null
             }
         }
-        
-        @SuppressLint("MissingPermission")
-        override fun onServicesDiscovered(gatt: BluetoothGatt, status: Int) {
-            if (status == BluetoothGatt.GATT_SUCCESS) {
-                // Find the Heart Rate service
-                val heartRateService = gatt.getService(HeartRateServiceUuids.HEART_RATE_SERVICE)
-                if (heartRateService != null) {
-                    // Get the Heart Rate Measurement characteristic
-                    val hrCharacteristic = heartRateService.getCharacteristic(
-                        HeartRateServiceUuids.HEART_RATE_MEASUREMENT
-                    )
-                    if (hrCharacteristic != null) {
-                        // Enable notifications for heart rate measurements
-                        gatt.setCharacteristicNotification(hrCharacteristic, true)
-                        
-                        // Write to the descriptor to enable notifications
-                        val descriptor = hrCharacteristic.getDescriptor(
-                            HeartRateServiceUuids.CLIENT_CONFIG_DESCRIPTOR
-                        )
-                        descriptor?.let {
-                            it.value = BluetoothGattDescriptor.ENABLE_NOTIFICATION_VALUE
-                            gatt.writeDescriptor(it)
-                        }
-                        Log.d(TAG, "Enabled heart rate notifications")
-                    }
-                }
+
+        override fun onCharacteristicChanged(characteristic: BluetoothGattCharacteristic, value: ByteArray) {
+            if (characteristic.uuid == HeartRateServiceUuids.HEART_RATE_MEASUREMENT) {
+                onHeartRateMeasurement(value)
             }
         }
-        
-        override fun onCharacteristicChanged(
-            gatt: BluetoothGatt,
-            characteristic: BluetoothGattCharacteristic
-        ) {
-            if (characteristic.uuid == HeartRateServiceUuids.HEART_RATE_MEASUREMENT) {
-                val heartRate = parseHeartRate(characteristic)
-                _currentHeartRate.value = heartRate
-                Log.d(TAG, "Heart rate: $heartRate bpm")
+    }
+
+    private suspend fun enableHeartRateNotifications(connection: GattConnection) {
+        // Notifications fit the default MTU; a relaxed interval saves the strap's battery
+        connection.requestConnectionPriority(BluetoothGatt.CONNECTION_PRIORITY_BALANCED)
+        connection.discoverServices()
+            .onFailure {
+                Log.e(TAG, "Service discovery failed", it)
+                return
             }
+        val hrCharacteristic = connection.getService(HeartRateServiceUuids.HEART_RATE_SERVICE)
+            ?.getCharacteristic(HeartRateServiceUuids.HEART_RATE_MEASUREMENT)
+        if (hrCharacteristic == null) {
+            Log.e(TAG, "Device has no heart rate measurement characteristic")
+            return
         }
+        connection.enableNotifications(hrCharacteristic)
+            .onSuccess { Log.d(TAG, "Enabled heart rate notifications") }
+            .onFailure { Log.e(TAG, "Failed to enable heart rate notifications", it) }
     }
-    
-    /**
-     * Parse heart rate from the characteristic value.
-     * The format is defined in the Bluetooth Heart Rate Service specification.
-     */
-    private fun parseHeartRate(characteristic: BluetoothGattCharacteristic): Int {
-        val flag = characteristic.value[0].toInt()
-        // Check if heart rate value is in UINT8 or UINT16 format
-        return if (flag and 0x01 == 0) {
-            // Heart Rate is in UINT8 format
-            characteristic.value[1].toInt() and 0xFF
-        } else {
-            // Heart Rate is in UINT16 format
-            (characteristic.value[1].toInt() and 0xFF) or 
-                ((characteristic.value[2].toInt() and 0xFF) shl 8)
+
+    // Runs on the Bluetooth callback thread for every notification; only the published sample allocates
+    private fun onHeartRateMeasurement(value: ByteArray) {
+        if (!HeartRateMeasurementParser.decode(value, measurement)) return
+        val timestamp = System.currentTimeMillis()
+        measurementListener?.onMeasurement(timestamp, measurement)
+
+        // A strap without skin contact keeps sending stale or zero values
+        if (!measurement.hasContact || measurement.bpm <= 0) return
+        val heartRate = measurement.bpm
+        _heartRateSamples.tryEmit(HeartRateSample(timestamp, heartRate))
+        val current = _currentHeartRate.value
+        if (current == null || current != heartRate) {
+            _currentHeartRate.value = heartRate
         }
     }
 }
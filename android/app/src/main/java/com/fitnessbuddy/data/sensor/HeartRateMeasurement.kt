@@ -0,0 +1,72 @@
+package com.fitnessbuddy.data.sensor
+
+/**
+ * Sensor contact as reported in the Heart Rate Measurement flags.
+ */
+enum class SensorContact {
+    NOT_SUPPORTED,
+    NOT_DETECTED,
+    DETECTED
+}
+
+/**
+ * One decoded Heart Rate Measurement notification.
+ *
+ * Instances are meant to be reused: [HeartRateMeasurementParser.decode]
+ * overwrites every field, and the RR interval storage only grows when a
+ * notification carries more intervals than any before it. Values are only
+ * valid until the next decode into the same instance.
+ */
+class HeartRateMeasurement {
+    var bpm: Int = -1
+        internal set
+
+    var contact: SensorContact = SensorContact.NOT_SUPPORTED
+        internal set
+
+    /** Cumulative energy expended in kilojoules, or -1 if not in this notification. */
+    var energyExpendedKj: Int = -1
+        internal set
+
+    /** Number of RR intervals in this notification; usually 0–3. */
+    var rrCount: Int = 0
+        internal set
+
+    // Raw intervals in units of 1/1024 s, as transmitted
+    private var rrRaw = IntArray(INITIAL_RR_CAPACITY)
+
+    /** RR interval [index] in milliseconds. */
+    fun rrIntervalMillis(index: Int): Int {
+        if (index >= rrCount) throw IndexOutOfBoundsException("RR index $index, count $rrCount")
+        return (rrRaw[index] * 1000 + 512) / 1024
+    }
+
+    /** False if the sensor reports it has lost skin contact; readings are then unreliable. */
+    val hasContact: Boolean
+        get() = contact != SensorContact.NOT_DETECTED
+
+    internal fun reset() {
+        bpm = -1
+        contact = SensorContact.NOT_SUPPORTED
+        energyExpendedKj = -1
+        rrCount = 0
+    }
+
+    internal fun addRrInterval(raw: Int) {
+        if (rrCount == rrRaw.size) rrRaw = rrRaw.copyOf(rrRaw.size * 2)
+        rrRaw[rrCount++] = raw
+    }
+
+    private companion object {
+        // Fits a default 23-byte ATT MTU notification: 20 bytes minus flags and bpm
+        const val INITIAL_RR_CAPACITY = 9
+    }
+}
+
+/**
+ * Receives every decoded notification, on the Bluetooth callback thread.
+ * The measurement is reused; copy out what is needed before returning.
+ */
+fun interface HeartRateMeasurementListener {
+    fun onMeasurement(timestamp: Long, measurement: HeartRateMeasurement)
+}
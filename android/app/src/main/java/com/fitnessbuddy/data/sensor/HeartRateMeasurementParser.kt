@@ -0,0 +1,64 @@
+package com.fitnessbuddy.data.sensor
+
+/**
+ * Decodes the Heart Rate Measurement characteristic (0x2A37) as defined in
+ * the Bluetooth Heart Rate Service specification.
+ *
+ * Layout: a flags byte, the heart rate as UINT8 or UINT16, then optionally
+ * energy expended (UINT16, kJ) and any number of RR intervals (UINT16,
+ * 1/1024 s), all little-endian.
+ */
+object HeartRateMeasurementParser {
+
+    private const val FLAG_UINT16_VALUE = 0x01
+    private const val FLAG_CONTACT_DETECTED = 0x02
+    private const val FLAG_CONTACT_SUPPORTED = 0x04
+    private const val FLAG_ENERGY_EXPENDED = 0x08
+    private const val FLAG_RR_INTERVALS = 0x10
+
+    /**
+     * Decodes every field of [value] into [into], reading the flags once and
+     * allocating nothing.
+     *
+     * @return false if [value] is too short for the fields its flags announce;
+     * [into] then holds whatever was decoded before the truncation
+     */
+    fun decode(value: ByteArray, into: HeartRateMeasurement): Boolean {
+        into.reset()
+        if (value.size < 2) return false
+        val flags = value[0].toInt()
+
+        into.contact = when {
+            flags and FLAG_CONTACT_SUPPORTED == 0 -> SensorContact.NOT_SUPPORTED
+            flags and FLAG_CONTACT_DETECTED != 0 -> SensorContact.DETECTED
+            else -> SensorContact.NOT_DETECTED
+        }
+
+        var offset: Int
+        if (flags and FLAG_UINT16_VALUE == 0) {
+            into.bpm = value[1].toInt() and 0xFF
+            offset = 2
+        } else {
+            if (value.size < 3) return false
+            into.bpm = uint16(value, 1)
+            offset = 3
+        }
+
+        if (flags and FLAG_ENERGY_EXPENDED != 0) {
+            if (value.size < offset + 2) return false
+            into.energyExpendedKj = uint16(value, offset)
+            offset += 2
+        }
+
+        if (flags and FLAG_RR_INTERVALS != 0) {
+            while (offset + 1 < value.size) {
+                into.addRrInterval(uint16(value, offset))
+                offset += 2
+            }
+        }
+        return true
+    }
+
+    private fun uint16(value: ByteArray, offset: Int): Int =
+        (value[offset].toInt() and 0xFF) or ((value[offset + 1].toInt() and 0xFF) shl 8)
+}
@@ -0,0 +1,37 @@
+package com.fitnessbuddy.data.sensor
+
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.StateFlow
+
+enum class HeartRateSensorState {
+    DISCONNECTED,
+    SCANNING,
+    CONNECTING,
+    CONNECTED
+}
+
+/**
+ * One heart-rate reading, stamped when the sensor delivered it.
+ */
+data class HeartRateSample(
+    val timestamp: Long,
+    val bpm: Int
+)
+
+/**
+ * Where live heart rate comes from: a BLE strap ([BluetoothHeartRateManager])
+ * or a recorded session ([com.fitnessbuddy.data.replay.SensorReplay]).
+ */
+interface HeartRateSource {
+    /** Latest reading in bpm, null while no sensor is delivering. */
+    val currentHeartRate: StateFlow<Int?>
+
+    /**
+     * Every valid reading with its own timestamp, for recording. Unlike
+     * [currentHeartRate] nothing is conflated, so a steady heart rate keeps
+     * producing samples.
+     */
+    val heartRateSamples: Flow<HeartRateSample>
+
+    val sensorState: StateFlow<HeartRateSensorState>
+}
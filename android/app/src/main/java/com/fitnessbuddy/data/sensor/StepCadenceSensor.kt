@@ -0,0 +1,83 @@
+package com.fitnessbuddy.data.sensor
+
+import android.Manifest
+import android.content.Context
+import android.content.pm.PackageManager
+import android.hardware.Sensor
+import android.hardware.SensorEvent
+import android.hardware.SensorEventListener
+import android.hardware.SensorManager
+import android.os.Build
+import android.util.Log
+import androidx.core.content.ContextCompat
+import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.channels.awaitClose
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.callbackFlow
+import kotlinx.coroutines.flow.emptyFlow
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Step cadence from the hardware step detector.
+ *
+ * Cadence is computed over the last [WINDOW_STEPS] step timestamps, kept in a
+ * small primitive ring so each step costs O(1) and allocates nothing.
+ */
+@Singleton
+class StepCadenceSensor @Inject constructor(
+    @ApplicationContext private val context: Context
+) {
+    private val TAG = "StepCadenceSensor"
+
+    private val sensorManager: SensorManager? =
+        context.getSystemService(Context.SENSOR_SERVICE) as? SensorManager
+    private val stepDetector: Sensor? = sensorManager?.getDefaultSensor(Sensor.TYPE_STEP_DETECTOR)
+
+    val isAvailable: Boolean
+        get() = stepDetector != null && hasPermission()
+
+    /**
+     * Cadence in steps per minute, emitted on every detected step.
+     * Completes immediately if there is no step detector or the permission is missing.
+     */
+    fun cadenceUpdates(): Flow<Float> {
+        val manager = sensorManager
+        val sensor = stepDetector
+        if (manager == null || sensor == null || !hasPermission()) {
+            Log.d(TAG, "Step detector unavailable, auto-pause uses GPS speed only")
+            return emptyFlow()
+        }
+        return callbackFlow {
+            val stepTimes = LongArray(WINDOW_STEPS)
+            var head = 0
+            var count = 0
+
+            val listener = object : SensorEventListener {
+                override fun onSensorChanged(event: SensorEvent) {
+                    val nowNanos = event.timestamp
+                    stepTimes[(head + count) % WINDOW_STEPS] = nowNanos
+                    if (count < WINDOW_STEPS) count++ else head = (head + 1) % WINDOW_STEPS
+                    if (count < 2) return
+                    val spanNanos = nowNanos - stepTimes[head]
+                    if (spanNanos > 0) {
+                        trySend((count - 1) * 60_000_000_000f / spanNanos)
+                    }
+                }
+
+                override fun onAccuracyChanged(sensor: Sensor, accuracy: Int) {}
+            }
+            manager.registerListener(listener, sensor, SensorManager.SENSOR_DELAY_NORMAL)
+            awaitClose { manager.unregisterListener(listener) }
+        }
+    }
+
+    private fun hasPermission(): Boolean =
+        Build.VERSION.SDK_INT < Build.VERSION_CODES.Q ||
+            ContextCompat.checkSelfPermission(context, Manifest.permission.ACTIVITY_RECOGNITION) ==
+            PackageManager.PERMISSION_GRANTED
+
+    companion object {
+        private const val WINDOW_STEPS = 8
+    }
+}
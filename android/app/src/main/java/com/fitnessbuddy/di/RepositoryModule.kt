@@ -2,8 +2,10 @@ package com.fitnessbuddy.di
 
 import com.fitnessbuddy.data.repository.AuthRepositoryImpl
 import com.fitnessbuddy.data.repository.TrainingPlanRepositoryImpl
+import com.fitnessbuddy.data.repository.WorkoutHistoryRepositoryImpl
 import com.fitnessbuddy.domain.repository.AuthRepository
 import com.fitnessbuddy.domain.repository.TrainingPlanRepository
+import com.fitnessbuddy.domain.repository.WorkoutHistoryRepository
 import dagger.Binds
 import dagger.Module
 import dagger.hilt.InstallIn
@@ -25,5 +27,10 @@ abstract class RepositoryModule {
     abstract fun bindTrainingPlanRepository(
         trainingPlanRepositoryImpl: TrainingPlanRepositoryImpl
     ): TrainingPlanRepository
-}
 
+    @Binds
+    @Singleton
+    abstract fun bindWorkoutHistoryRepository(
+        workoutHistoryRepositoryImpl: WorkoutHistoryRepositoryImpl
+    ): WorkoutHistoryRepository
+}
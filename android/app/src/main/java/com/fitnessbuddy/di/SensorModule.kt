@@ -0,0 +1,49 @@
+package com.fitnessbuddy.di
+
+import com.fitnessbuddy.data.location.LocationSource
+import com.fitnessbuddy.data.location.LocationTracker
+import com.fitnessbuddy.data.replay.EmulatedSensors
+import com.fitnessbuddy.data.replay.ReplaySpeed
+import com.fitnessbuddy.data.replay.SensorRecording
+import com.fitnessbuddy.data.replay.SensorReplay
+import com.fitnessbuddy.data.sensor.BluetoothHeartRateManager
+import com.fitnessbuddy.data.sensor.HeartRateSource
+import dagger.Module
+import dagger.Provides
+import dagger.hilt.InstallIn
+import dagger.hilt.components.SingletonComponent
+import javax.inject.Provider
+import javax.inject.Singleton
+
+@Module
+@InstallIn(SingletonComponent::class)
+object SensorModule {
+
+    // Length of the emulated run; long enough for any benchmark journey
+    private const val EMULATED_SESSION_SECONDS = 60 * 60
+
+    @Provides
+    @Singleton
+    fun provideSensorReplay(): SensorReplay = SensorReplay(
+        SensorRecording.syntheticLoop(System.currentTimeMillis(), EMULATED_SESSION_SECONDS),
+        ReplaySpeed.REALTIME,
+        // The engine mixes in wall-clock time, so play from when tracking starts
+        startTime = null
+    )
+
+    @Provides
+    @Singleton
+    fun provideLocationSource(
+        locationTracker: Provider<LocationTracker>,
+        sensorReplay: Provider<SensorReplay>
+    ): LocationSource =
+        if (EmulatedSensors.enabled) sensorReplay.get() else locationTracker.get()
+
+    @Provides
+    @Singleton
+    fun provideHeartRateSource(
+        bluetoothHeartRateManager: Provider<BluetoothHeartRateManager>,
+        sensorReplay: Provider<SensorReplay>
+    ): HeartRateSource =
+        if (EmulatedSensors.enabled) sensorReplay.get() else bluetoothHeartRateManager.get()
+}
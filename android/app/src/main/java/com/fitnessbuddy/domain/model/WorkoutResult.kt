@@ -1,6 +1,8 @@
 package com.fitnessbuddy.domain.model
 
-import com.fitnessbuddy.data.location.LocationPoint
+import com.fitnessbuddy.data.hrv.HrvView
+import com.fitnessbuddy.data.location.RouteView
+import com.fitnessbuddy.data.metrics.HeartRateView
 
 /**
  * Represents the result of a completed workout session.
@@ -12,7 +14,38 @@ data class WorkoutResult(
     val workoutMode: String,           // "INDOOR" or "OUTDOOR"
     val averagePace: String,           // e.g., "5:30 min/km"
     val plannedWorkout: PlannedWorkoutInfo?,
-    val routePoints: List<LocationPoint> = emptyList()
+    val routePoints: RouteView = RouteView.EMPTY,
+    val laps: List<Lap> = emptyList(),
+    val elevationGainMeters: Float = 0f,
+    val elevationLossMeters: Float = 0f,
+    val elevationProfile: List<ElevationSample> = emptyList(),  // Downsampled, at most a few hundred points
+    val heartRate: HeartRateView = HeartRateView.EMPTY,
+    val targetHeartRateZones: IntRange? = null,              // Zones the plan asked for, e.g. 2..2
+    val hrv: HrvView = HrvView.EMPTY
+)
+
+/**
+ * A completed split, e.g. one kilometre of a run.
+ */
+data class Lap(
+    val number: Int,
+    val distanceMeters: Float,
+    val durationMillis: Long,
+    val averageHeartRate: Int?,     // null if no heart rate was recorded during the lap
+    val elevationGainMeters: Float,
+    val elevationLossMeters: Float
+) {
+    /** Pace in seconds per kilometre, or 0 if the lap has no distance. */
+    val paceSecondsPerKm: Float
+        get() = if (distanceMeters > 0) durationMillis / distanceMeters else 0f
+}
+
+/**
+ * One point of the downsampled elevation profile.
+ */
+data class ElevationSample(
+    val distanceMeters: Float,
+    val altitudeMeters: Float
 )
 
 /**
@@ -25,6 +58,7 @@ data class PlannedWorkoutInfo(
     val targetDurationMinutes: Int,
     val targetPace: String,
     val intensity: String,
+    val targetZone: String,
     val warmup: String,
     val mainSet: String,
     val cooldown: String
@@ -41,6 +75,7 @@ fun TrainingDay.toPlannedWorkoutInfo(): PlannedWorkoutInfo {
         targetDurationMinutes = durationMinutes,
         targetPace = pace,
         intensity = intensity,
+        targetZone = zone,
         warmup = warmup,
         mainSet = mainSet,
         cooldown = cooldown
@@ -0,0 +1,14 @@
+package com.fitnessbuddy.domain.model
+
+enum class WorkoutMode {
+    INDOOR,
+    OUTDOOR
+}
+
+enum class WorkoutState {
+    NOT_STARTED,
+    PREPARING,    // GPS acquisition phase - location tracking starts but timer doesn't
+    RUNNING,
+    PAUSED,
+    COMPLETED
+}
@@ -1,6 +1,7 @@
 package com.fitnessbuddy.domain.repository
 
 import com.fitnessbuddy.domain.model.TrainingPlan
+import kotlinx.coroutines.flow.Flow
 
 /**
  * Repository for persisting and retrieving training plans.
@@ -14,9 +15,17 @@ interface TrainingPlanRepository {
     
     /**
      * Retrieves the active training plan for the current user.
-     * Returns null if no plan exists.
+     * Returns null if no plan exists. Served from the on-device copy when
+     * there is one, which is then refreshed in the background.
      */
     suspend fun getActiveTrainingPlan(): Result<TrainingPlan?>
+
+    /**
+     * Emits the active training plan for the current user: the on-device
+     * copy first, then the remote one whenever it differs. Fails if nothing
+     * is cached and the remote plan can't be loaded.
+     */
+    fun observeActiveTrainingPlan(): Flow<TrainingPlan?>
     
     /**
      * Checks if the current user has a saved training plan.
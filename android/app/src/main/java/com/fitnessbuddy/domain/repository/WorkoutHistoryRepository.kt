@@ -0,0 +1,22 @@
+package com.fitnessbuddy.domain.repository
+
+import com.fitnessbuddy.domain.model.WorkoutResult
+
+/**
+ * Repository for the current user's completed workouts.
+ */
+interface WorkoutHistoryRepository {
+
+    /**
+     * Stores a completed workout, its route in the compact binary format of
+     * [com.fitnessbuddy.data.location.RouteCodec].
+     *
+     * @param startedAt Wall-clock time the workout started
+     */
+    suspend fun saveWorkout(
+        weekNumber: Int,
+        dayOfWeek: String,
+        startedAt: Long,
+        result: WorkoutResult
+    ): Result<Unit>
+}
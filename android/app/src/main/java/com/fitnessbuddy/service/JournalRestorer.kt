@@ -0,0 +1,107 @@
+package com.fitnessbuddy.service
+
+import com.fitnessbuddy.data.journal.JournalVisitor
+import com.fitnessbuddy.data.location.LocationPoint
+import com.fitnessbuddy.domain.model.WorkoutState
+
+/**
+ * Rebuilds a [TrackingPipeline] from the workout journal the way the live
+ * session built it, so a session resumed after process death has the same
+ * route, distance and laps it had before.
+ *
+ * A manual resume breaks the route segment, like
+ * [WorkoutSessionEngine.resume]; an auto-resume doesn't, since the runner
+ * stood still where recording stopped.
+ */
+class JournalRestorer(private val pipeline: TrackingPipeline) : JournalVisitor {
+
+    /** Ordinal of the last journaled [WorkoutState], -1 if there was none. */
+    var lastState = -1
+        private set
+
+    var lastHeartRate: Int? = null
+        private set
+
+    // Timestamp of the last record of any kind
+    var lastTimestamp = 0L
+        private set
+
+    private var lastStateElapsed = 0L
+    private var lastStateTimestamp = 0L
+
+    val isRunning: Boolean
+        get() = lastState == WorkoutState.RUNNING.ordinal
+
+    /** Workout-clock time at the end of the journal, in seconds. */
+    val elapsedSeconds: Long
+        // While running, time kept passing until the last sample we have
+        get() = if (isRunning) lastStateElapsed + (lastTimestamp - lastStateTimestamp) / 1000 else lastStateElapsed
+
+    // Workout-clock time of a sample recorded while running, as the live laps use
+    private fun clockMillis(timestamp: Long): Long =
+        lastStateElapsed * 1000 + (timestamp - lastStateTimestamp).coerceAtLeast(0)
+
+    override fun onLocation(
+        timestamp: Long,
+        latitude: Double,
+        longitude: Double,
+        altitude: Double,
+        speed: Float,
+        isStationary: Boolean
+    ) {
+        val point = LocationPoint(
+            latitude = latitude,
+            longitude = longitude,
+            altitude = altitude,
+            speed = speed,
+            timestamp = timestamp,
+            isStationary = isStationary
+        )
+        pipeline.addLocation(point, clockMillis(timestamp))
+        lastTimestamp = timestamp
+    }
+
+    override fun onTreadmill(
+        timestamp: Long,
+        distanceMeters: Double,
+        altitudeMeters: Double,
+        elevationGainMeters: Float,
+        elevationLossMeters: Float
+    ) {
+        pipeline.restoreTreadmill(
+            distanceMeters.toFloat(),
+            altitudeMeters,
+            elevationGainMeters,
+            elevationLossMeters,
+            clockMillis(timestamp)
+        )
+        lastTimestamp = timestamp
+    }
+
+    override fun onHeartRate(timestamp: Long, bpm: Int) {
+        // The journal also holds readings taken while paused
+        pipeline.onHeartRate(timestamp, bpm, isRecording = isRunning)
+        lastHeartRate = bpm
+        lastTimestamp = timestamp
+    }
+
+    override fun onStateChange(timestamp: Long, state: Int, elapsedSeconds: Long, isAuto: Boolean) {
+        if (state == WorkoutState.RUNNING.ordinal) {
+            // Same as the live session: the gap across a manual pause isn't distance
+            if (!isAuto) pipeline.breakSegment()
+        } else {
+            pipeline.endHeartRateSegment(timestamp)
+        }
+        lastState = state
+        lastStateElapsed = elapsedSeconds
+        lastStateTimestamp = timestamp
+        lastTimestamp = timestamp
+    }
+
+    /**
+     * Closes the replay; the session comes back paused.
+     */
+    fun finish() {
+        pipeline.endHeartRateSegment(lastTimestamp)
+    }
+}
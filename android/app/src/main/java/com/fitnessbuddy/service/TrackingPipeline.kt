@@ -0,0 +1,163 @@
+package com.fitnessbuddy.service
+
+import com.fitnessbuddy.data.hrv.HrvSeries
+import com.fitnessbuddy.data.location.LocationPoint
+import com.fitnessbuddy.data.location.RouteAccumulator
+import com.fitnessbuddy.data.location.RouteBuffer
+import com.fitnessbuddy.data.metrics.AutoPauseDetector
+import com.fitnessbuddy.data.metrics.ElevationProcessor
+import com.fitnessbuddy.data.metrics.HeartRateTrack
+import com.fitnessbuddy.data.metrics.HeartRateZones
+import com.fitnessbuddy.data.metrics.RollingPaceEstimator
+import com.fitnessbuddy.data.metrics.SplitEngine
+import com.fitnessbuddy.data.metrics.TreadmillAccumulator
+import com.fitnessbuddy.domain.model.WorkoutMode
+
+/**
+ * Per-sample metric pipeline of a session: route, distance, elevation,
+ * laps, pace, auto-pause and heart-rate statistics.
+ *
+ * [WorkoutSessionEngine] feeds it live samples and journal replays; the
+ * replay benchmark drives the same calls, so what is measured is what runs.
+ *
+ * Not thread-safe: call everything but [breakSegment] from the thread that
+ * owns the session's metrics, [com.fitnessbuddy.data.location.LocationSource.dispatcher].
+ */
+class TrackingPipeline {
+    val routeBuffer = RouteBuffer()
+    val routeAccumulator = RouteAccumulator()
+    val treadmillAccumulator = TreadmillAccumulator()
+    val splitEngine = SplitEngine()
+    val elevationProcessor = ElevationProcessor()
+    val paceEstimator = RollingPaceEstimator(smoothingAlpha = 0.3f)
+    val autoPauseDetector = AutoPauseDetector()
+    val heartRateTrack = HeartRateTrack()
+    val hrvSeries = HrvSeries()
+
+    // Set from the main thread when recording resumes, consumed by the next recorded sample
+    @Volatile
+    private var breakSegmentPending = false
+
+    /**
+     * Don't count the straight line between the last recorded sample and the
+     * next one. Safe to call from any thread.
+     */
+    fun breakSegment() {
+        breakSegmentPending = true
+    }
+
+    /**
+     * Folds in a GPS fix. Every fix feeds auto-pause detection; only recorded
+     * ones count towards the route and metrics. While not recording, the
+     * first fix is still kept so the map can show where we are.
+     *
+     * @param clockMillis Workout-clock time, so pauses don't count towards lap time
+     * @param cadenceSpm Step cadence, NaN without a step sensor
+     */
+    fun onLocation(point: LocationPoint, clockMillis: Long, cadenceSpm: Float, isRecording: Boolean) {
+        val speed = if (point.isStationary) 0f else point.speed
+        autoPauseDetector.onSample(point.timestamp, speed, cadenceSpm)
+        if (isRecording) {
+            addLocation(point, clockMillis)
+        } else if (routeBuffer.isEmpty()) {
+            routeBuffer.add(point)
+            routeAccumulator.add(point)
+        }
+    }
+
+    /**
+     * Records a fix, live or replayed from the journal.
+     */
+    fun addLocation(point: LocationPoint, clockMillis: Long) {
+        if (breakSegmentPending) {
+            breakSegmentPending = false
+            routeAccumulator.breakSegment()
+        }
+        routeBuffer.add(point)
+        routeAccumulator.add(point)
+        elevationProcessor.onLocation(routeAccumulator.distanceMeters, point.altitude)
+        // Laps use the smoothed altitude so their gain/loss isn't GPS noise
+        splitEngine.onLocation(clockMillis, routeAccumulator.distanceMeters, elevationProcessor.currentAltitude.toDouble())
+        paceEstimator.add(point.timestamp, routeAccumulator.distanceMeters)
+    }
+
+    /**
+     * Indoor counterpart of [onLocation] for a treadmill reading.
+     *
+     * @param totalDistanceMeters The machine's distance counter, NaN if it has none
+     * @param inclinePercent Belt incline, NaN if unknown
+     */
+    fun onTreadmill(
+        timestamp: Long,
+        totalDistanceMeters: Float,
+        speedMs: Float,
+        inclinePercent: Float,
+        clockMillis: Long,
+        cadenceSpm: Float,
+        isRecording: Boolean
+    ) {
+        autoPauseDetector.onSample(timestamp, speedMs, cadenceSpm)
+        if (!isRecording) return
+        if (breakSegmentPending) {
+            breakSegmentPending = false
+            treadmillAccumulator.breakSegment()
+        }
+        treadmillAccumulator.add(timestamp, totalDistanceMeters, speedMs, inclinePercent)
+        splitEngine.onLocation(clockMillis, treadmillAccumulator.distanceMeters, treadmillAccumulator.altitudeMeters)
+        paceEstimator.add(timestamp, treadmillAccumulator.distanceMeters)
+    }
+
+    /**
+     * Continues from treadmill totals replayed from the journal.
+     */
+    fun restoreTreadmill(
+        distanceMeters: Float,
+        altitudeMeters: Double,
+        elevationGainMeters: Float,
+        elevationLossMeters: Float,
+        clockMillis: Long
+    ) {
+        treadmillAccumulator.restore(distanceMeters, altitudeMeters, elevationGainMeters, elevationLossMeters)
+        splitEngine.onLocation(clockMillis, distanceMeters, altitudeMeters)
+    }
+
+    /**
+     * Folds in a heart-rate reading; only recorded ones count towards laps
+     * and the session's statistics.
+     */
+    fun onHeartRate(timestamp: Long, bpm: Int, isRecording: Boolean) {
+        if (!isRecording) return
+        splitEngine.onHeartRate(bpm)
+        heartRateTrack.add(timestamp, bpm)
+    }
+
+    /**
+     * Stops the latest heart-rate reading from accruing zone time, e.g. on
+     * pause or when the strap is lost. The next reading starts a new segment.
+     */
+    fun endHeartRateSegment(timestamp: Long) {
+        heartRateTrack.endSegment(timestamp)
+    }
+
+    // Indoor totals come from the treadmill, outdoor ones from the route
+    fun distanceMeters(mode: WorkoutMode): Float =
+        if (mode == WorkoutMode.INDOOR) treadmillAccumulator.distanceMeters else routeAccumulator.distanceMeters
+
+    fun elevationGainMeters(mode: WorkoutMode): Float =
+        if (mode == WorkoutMode.INDOOR) treadmillAccumulator.elevationGainMeters else elevationProcessor.gainMeters
+
+    fun elevationLossMeters(mode: WorkoutMode): Float =
+        if (mode == WorkoutMode.INDOOR) treadmillAccumulator.elevationLossMeters else elevationProcessor.lossMeters
+
+    fun reset(heartRateZones: HeartRateZones) {
+        routeBuffer.clear()
+        routeAccumulator.reset()
+        treadmillAccumulator.reset()
+        splitEngine.reset()
+        elevationProcessor.reset()
+        paceEstimator.reset()
+        autoPauseDetector.reset()
+        heartRateTrack.clear(heartRateZones)
+        hrvSeries.clear()
+    }
+}
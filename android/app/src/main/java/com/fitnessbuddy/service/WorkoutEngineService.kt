@@ -0,0 +1,187 @@
+package com.fitnessbuddy.service
+
+import android.app.Notification
+import android.app.NotificationChannel
+import android.app.NotificationManager
+import android.app.Service
+import android.content.Context
+import android.content.Intent
+import android.content.pm.ServiceInfo
+import android.os.Binder
+import android.os.Build
+import android.os.IBinder
+import android.util.Log
+import androidx.core.app.NotificationCompat
+import androidx.core.app.ServiceCompat
+import androidx.core.content.ContextCompat
+import com.fitnessbuddy.R
+import com.fitnessbuddy.domain.model.WorkoutMode
+import com.fitnessbuddy.domain.model.WorkoutState
+import dagger.hilt.android.AndroidEntryPoint
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.FlowPreview
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.cancel
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.launchIn
+import kotlinx.coroutines.flow.onEach
+import kotlinx.coroutines.flow.sample
+import kotlinx.coroutines.launch
+import javax.inject.Inject
+
+/**
+ * Foreground service that keeps the process alive while [WorkoutSessionEngine]
+ * has an active session, so tracking survives screen-off and memory pressure.
+ *
+ * The engine owns all session state; this service only holds the foreground
+ * notification and exposes the engine through [LocalBinder]. After the system
+ * restarts the service (START_STICKY), an interrupted session is restored
+ * from the journal.
+ *
+ * The foreground type follows the session: location for outdoor, connected
+ * device for indoor, where only the Bluetooth sensors are kept running.
+ */
+@AndroidEntryPoint
+class WorkoutEngineService : Service() {
+
+    @Inject
+    lateinit var engine: WorkoutSessionEngine
+
+    private val TAG = "WorkoutEngineService"
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Main.immediate)
+    private val binder = LocalBinder()
+
+    /**
+     * In-process binder; the snapshot is the same [StateFlow] the engine publishes.
+     */
+    inner class LocalBinder : Binder() {
+        val snapshot: StateFlow<WorkoutSessionSnapshot>
+            get() = engine.snapshot
+
+        val sessionEngine: WorkoutSessionEngine
+            get() = engine
+    }
+
+    override fun onCreate() {
+        super.onCreate()
+        createNotificationChannel()
+        observeSession()
+    }
+
+    override fun onStartCommand(intent: Intent?, flags: Int, startId: Int): Int {
+        // Restarted by the system: the journal says what kind of session it was
+        val mode = intent?.getStringExtra(EXTRA_MODE)?.let { WorkoutMode.valueOf(it) }
+            ?: engine.journaledMode()
+        if (mode == null || !enterForeground(mode)) {
+            stopSelf()
+            return START_NOT_STICKY
+        }
+        if (intent == null) {
+            // Restarted by the system after the process was killed
+            scope.launch {
+                if (!engine.restoreFromJournal()) {
+                    stopSelf()
+                }
+            }
+        }
+        return START_STICKY
+    }
+
+    override fun onBind(intent: Intent): IBinder = binder
+
+    override fun onDestroy() {
+        scope.cancel()
+        super.onDestroy()
+    }
+
+    @OptIn(FlowPreview::class)
+    private fun observeSession() {
+        engine.snapshot
+            .sample(NOTIFICATION_INTERVAL_MS)
+            .onEach { snapshot ->
+                if (snapshot.state == WorkoutState.COMPLETED) {
+                    stopSelf()
+                } else if (snapshot.state != WorkoutState.NOT_STARTED) {
+                    val manager = getSystemService(NotificationManager::class.java)
+                    manager.notify(NOTIFICATION_ID, buildNotification(snapshot))
+                }
+            }
+            .launchIn(scope)
+    }
+
+    /**
+     * @return false if the system refused, e.g. the permission the type
+     * needs was revoked; tracking then continues only while the app is visible
+     */
+    private fun enterForeground(mode: WorkoutMode): Boolean {
+        val type = when {
+            Build.VERSION.SDK_INT < Build.VERSION_CODES.Q -> 0
+            mode == WorkoutMode.OUTDOOR -> ServiceInfo.FOREGROUND_SERVICE_TYPE_LOCATION
+            else -> ServiceInfo.FOREGROUND_SERVICE_TYPE_CONNECTED_DEVICE
+        }
+        return try {
+            ServiceCompat.startForeground(this, NOTIFICATION_ID, buildNotification(engine.snapshot.value), type)
+            true
+        } catch (e: Exception) {
+            Log.e(TAG, "Failed to enter foreground", e)
+            false
+        }
+    }
+
+    private fun buildNotification(snapshot: WorkoutSessionSnapshot): Notification {
+        val seconds = engine.elapsedSeconds
+        val text = buildString {
+            append(String.format("%d:%02d:%02d", seconds / 3600, (seconds % 3600) / 60, seconds % 60))
+            if (snapshot.distanceMeters > 0) {
+                append(String.format(" · %.2f km", snapshot.distanceMeters / 1000f))
+            }
+            snapshot.heartRate?.let { append(" · $it bpm") }
+        }
+        val title = when {
+            snapshot.state == WorkoutState.PREPARING -> "Getting ready"
+            snapshot.state == WorkoutState.PAUSED -> "Workout paused"
+            snapshot.isAutoPaused -> "Workout auto-paused"
+            else -> "Workout in progress"
+        }
+        return NotificationCompat.Builder(this, CHANNEL_ID)
+            .setContentTitle(title)
+            .setContentText(text)
+            .setSmallIcon(R.mipmap.ic_launcher)
+            .setOngoing(true)
+            .setOnlyAlertOnce(true)
+            .setCategory(NotificationCompat.CATEGORY_SERVICE)
+            .build()
+    }
+
+    private fun createNotificationChannel() {
+        val channel = NotificationChannel(
+            CHANNEL_ID,
+            "Workout Tracking",
+            NotificationManager.IMPORTANCE_LOW
+        )
+        val manager = getSystemService(NotificationManager::class.java)
+        manager.createNotificationChannel(channel)
+    }
+
+    companion object {
+        private const val CHANNEL_ID = "WorkoutEngineChannel"
+        private const val NOTIFICATION_ID = 2
+        private const val NOTIFICATION_INTERVAL_MS = 5_000L
+        private const val EXTRA_MODE = "mode"
+
+        fun start(context: Context, mode: WorkoutMode) {
+            val intent = Intent(context, WorkoutEngineService::class.java)
+                .putExtra(EXTRA_MODE, mode.name)
+            try {
+                ContextCompat.startForegroundService(context, intent)
+            } catch (e: Exception) {
+                Log.e("WorkoutEngineService", "Failed to start workout service", e)
+            }
+        }
+
+        fun stop(context: Context) {
+            context.stopService(Intent(context, WorkoutEngineService::class.java))
+        }
+    }
+}
@@ -0,0 +1,661 @@
+package com.fitnessbuddy.service
+
+import android.content.Context
+import android.os.SystemClock
+import android.util.Log
+import com.fitnessbuddy.bluetooth.TreadmillManager
+import com.fitnessbuddy.data.hrv.HrvEngine
+import com.fitnessbuddy.data.hrv.HrvMetrics
+import com.fitnessbuddy.data.hrv.HrvView
+import com.fitnessbuddy.data.journal.JournalSessionInfo
+import com.fitnessbuddy.data.journal.WorkoutJournal
+import com.fitnessbuddy.data.location.LocationSamplingPolicy
+import com.fitnessbuddy.data.location.LocationSource
+import com.fitnessbuddy.data.location.RouteView
+import com.fitnessbuddy.data.metrics.HeartRateView
+import com.fitnessbuddy.data.metrics.HeartRateZones
+import com.fitnessbuddy.data.metrics.MotionState
+import com.fitnessbuddy.data.metrics.WorkoutClock
+import com.fitnessbuddy.data.sensor.BarometricAltimeter
+import com.fitnessbuddy.data.sensor.HeartRateSensorState
+import com.fitnessbuddy.data.sensor.HeartRateSource
+import com.fitnessbuddy.data.sensor.StepCadenceSensor
+import com.fitnessbuddy.domain.model.ElevationSample
+import com.fitnessbuddy.domain.model.Lap
+import com.fitnessbuddy.domain.model.WorkoutMode
+import com.fitnessbuddy.domain.model.WorkoutState
+import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.CoroutineScope
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.FlowPreview
+import kotlinx.coroutines.Job
+import kotlinx.coroutines.SupervisorJob
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.flow.StateFlow
+import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.flowOn
+import kotlinx.coroutines.flow.launchIn
+import kotlinx.coroutines.flow.map
+import kotlinx.coroutines.flow.onEach
+import kotlinx.coroutines.flow.sample
+import kotlinx.coroutines.flow.update
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
+import javax.inject.Inject
+import javax.inject.Singleton
+
+/**
+ * Immutable state of the live session, published by [WorkoutSessionEngine].
+ */
+data class WorkoutSessionSnapshot(
+    val state: WorkoutState = WorkoutState.NOT_STARTED,
+    val mode: WorkoutMode = WorkoutMode.INDOOR,
+    val weekNumber: Int = 0,
+    val dayOfWeek: String = "",
+    val route: RouteView = RouteView.EMPTY,
+    val distanceMeters: Float = 0f,
+    val speedMs: Float = 0f,              // Rolling speed, steadier than the per-fix GPS value
+    val laps: List<Lap> = emptyList(),
+    val elevationGainMeters: Float = 0f,
+    val heartRate: Int? = null,
+    val heartRateTrace: HeartRateView = HeartRateView.EMPTY,
+    val targetHeartRateZones: IntRange? = null,  // From the planned workout, null if it names none
+    val heartRateSensorState: HeartRateSensorState = HeartRateSensorState.DISCONNECTED,
+    val hrv: HrvMetrics? = null,
+    val autoPauseEnabled: Boolean = true,
+    val isAutoPaused: Boolean = false
+) {
+    // GPS signal acquired (has at least one location point)
+    val hasGpsSignal: Boolean
+        get() = route.isNotEmpty()
+}
+
+/**
+ * Final figures of a completed session, for feedback and storage.
+ */
+data class WorkoutSessionSummary(
+    val startedAt: Long,
+    val elapsedSeconds: Long,
+    val distanceMeters: Float,
+    val mode: WorkoutMode,
+    val route: RouteView,
+    val heartRate: HeartRateView,
+    val hrv: HrvView,
+    val laps: List<Lap>,
+    val elevationGainMeters: Float,
+    val elevationLossMeters: Float,
+    val elevationProfile: List<ElevationSample>
+)
+
+/**
+ * Process-wide owner of the live workout: sensor subscriptions, the workout
+ * clock and the metric pipeline.
+ *
+ * It lives outside any ViewModel so tracking continues when screens go away;
+ * [WorkoutEngineService] keeps the process in the foreground while a session
+ * is active. Screens observe [snapshot] and call the session commands.
+ *
+ * Outdoor sessions measure distance along the GPS route, indoor ones from a
+ * connected FTMS treadmill; both feed the same laps, pace and auto-pause.
+ *
+ * Session commands must be called on the main thread. The metric pipeline
+ * runs on [LocationSource.dispatcher] and is only touched there.
+ */
+@OptIn(FlowPreview::class)
+@Singleton
+class WorkoutSessionEngine @Inject constructor(
+    @ApplicationContext private val context: Context,
+    private val locationSource: LocationSource,
+    private val heartRateSource: HeartRateSource,
+    private val hrvEngine: HrvEngine,
+    private val workoutJournal: WorkoutJournal,
+    private val barometricAltimeter: BarometricAltimeter,
+    private val stepCadenceSensor: StepCadenceSensor,
+    private val treadmillManager: TreadmillManager
+) {
+    private val TAG = "WorkoutSessionEngine"
+
+    private val scope = CoroutineScope(SupervisorJob() + Dispatchers.Main.immediate)
+
+    private val _snapshot = MutableStateFlow(WorkoutSessionSnapshot())
+    val snapshot: StateFlow<WorkoutSessionSnapshot> = _snapshot.asStateFlow()
+
+    // Monotonic stopwatch; elapsed time is read on demand, nothing ticks
+    private val workoutClock = WorkoutClock()
+
+    val elapsedSeconds: Long
+        get() = workoutClock.elapsedSeconds
+
+    val elapsedMillis: Long
+        get() = workoutClock.elapsedMillis
+
+    // Metric pipeline, only touched on the location thread
+    private val pipeline = TrackingPipeline()
+    private var cadenceSpm = Float.NaN
+    private var lastStepAt = 0L
+
+    // Read on the location thread to decide whether fixes are recorded
+    @Volatile
+    private var isRecording = false
+
+    private var locationJob: Job? = null
+    private var treadmillJob: Job? = null
+    private var barometerJob: Job? = null
+    private var cadenceJob: Job? = null
+    private var heartRateJob: Job? = null
+
+    // Picks the GPS sampling profile; kept for restarting collectors after recovery
+    private var workoutType = ""
+
+    // Applied to the heart-rate track when the pipeline is reset
+    private var heartRateZones = HeartRateZones.DEFAULT
+
+    // Wall-clock time the clock first started, for exported files
+    private var startedAt = 0L
+
+    private val state: WorkoutState
+        get() = _snapshot.value.state
+
+    // Both the service restart and the screen may try to restore
+    private var isRestoring = false
+
+    /**
+     * Starts a new session: GPS acquisition (outdoor) and heart rate
+     * monitoring begin, the clock doesn't run yet.
+     *
+     * @param heartRateZones Zones the session's time-in-zone is counted against
+     * @param targetHeartRateZones Zones the planned workout asks for, if any
+     */
+    fun prepare(
+        mode: WorkoutMode,
+        weekNumber: Int,
+        dayOfWeek: String,
+        workoutType: String,
+        heartRateZones: HeartRateZones = HeartRateZones.DEFAULT,
+        targetHeartRateZones: IntRange? = null
+    ) {
+        if (state != WorkoutState.NOT_STARTED && state != WorkoutState.COMPLETED) return
+        stopCollectors()
+        workoutClock.reset()
+        this.workoutType = workoutType
+        this.heartRateZones = heartRateZones
+        _snapshot.value = WorkoutSessionSnapshot(
+            mode = mode,
+            weekNumber = weekNumber,
+            dayOfWeek = dayOfWeek,
+            targetHeartRateZones = targetHeartRateZones,
+            autoPauseEnabled = _snapshot.value.autoPauseEnabled
+        )
+        workoutJournal.begin(
+            JournalSessionInfo(
+                startedAt = System.currentTimeMillis(),
+                weekNumber = weekNumber,
+                dayOfWeek = dayOfWeek,
+                workoutMode = mode.name
+            )
+        )
+        transitionTo(WorkoutState.PREPARING)
+        WorkoutEngineService.start(context, mode)
+
+        scope.launch {
+            // Previous collectors are cancelled; clear leftovers on the thread that owns them
+            withContext(locationSource.dispatcher) { resetPipeline() }
+            startCollectors()
+        }
+    }
+
+    /**
+     * Starts the clock. For outdoor mode, call after the GPS signal is acquired.
+     */
+    fun start() {
+        if (state != WorkoutState.PREPARING) return
+        // The fix shown while acquiring GPS isn't part of the distance
+        pipeline.breakSegment()
+        startedAt = System.currentTimeMillis()
+        transitionTo(WorkoutState.RUNNING)
+        workoutClock.start()
+    }
+
+    /**
+     * Pauses recording. Location and heart-rate collection keep running so
+     * resuming doesn't have to wait for a new GPS fix.
+     */
+    fun pause() {
+        if (state != WorkoutState.RUNNING) return
+        _snapshot.update { it.copy(isAutoPaused = false) }
+        transitionTo(WorkoutState.PAUSED)
+        workoutClock.pause()
+        endHeartRateSegment()
+    }
+
+    fun resume() {
+        if (state != WorkoutState.PAUSED) return
+        // Don't count the straight line between where we paused and where we resume
+        pipeline.breakSegment()
+        transitionTo(WorkoutState.RUNNING)
+        workoutClock.start()
+        // After process-death recovery the collectors aren't running yet
+        if (heartRateJob == null) {
+            startCollectors()
+        }
+    }
+
+    fun setAutoPauseEnabled(enabled: Boolean) {
+        _snapshot.update { it.copy(autoPauseEnabled = enabled) }
+        if (!enabled && _snapshot.value.isAutoPaused) {
+            applyMotionState(MotionState.MOVING)
+        }
+    }
+
+    /**
+     * Ends the session, stops all sensors and the foreground service.
+     */
+    suspend fun complete(): WorkoutSessionSummary {
+        _snapshot.update { it.copy(state = WorkoutState.COMPLETED, isAutoPaused = false) }
+        isRecording = false
+        workoutClock.pause()
+        stopCollectors()
+        workoutJournal.finish()
+        WorkoutEngineService.stop(context)
+
+        // Close the partial last lap on the thread that owns the split engine
+        return withContext(locationSource.dispatcher) {
+            pipeline.splitEngine.finish()
+            pipeline.endHeartRateSegment(System.currentTimeMillis())
+            val mode = _snapshot.value.mode
+            WorkoutSessionSummary(
+                startedAt = startedAt,
+                elapsedSeconds = workoutClock.elapsedSeconds,
+                distanceMeters = pipeline.distanceMeters(mode),
+                mode = mode,
+                route = pipeline.routeBuffer.snapshot(),
+                heartRate = pipeline.heartRateTrack.snapshot(),
+                hrv = pipeline.hrvSeries.snapshot(),
+                laps = pipeline.splitEngine.laps,
+                elevationGainMeters = pipeline.elevationGainMeters(mode),
+                elevationLossMeters = pipeline.elevationLossMeters(mode),
+                elevationProfile = pipeline.elevationProcessor.profile()
+            ).also { summary ->
+                _snapshot.update {
+                    it.copy(laps = summary.laps, route = summary.route, heartRateTrace = summary.heartRate)
+                }
+            }
+        }
+    }
+
+    /**
+     * Marks an externally recorded session, e.g. from Health Connect, as completed.
+     */
+    fun completeImported(mode: WorkoutMode, durationMillis: Long) {
+        if (state != WorkoutState.NOT_STARTED && state != WorkoutState.COMPLETED) return
+        workoutClock.restore(durationMillis)
+        _snapshot.value = WorkoutSessionSnapshot(state = WorkoutState.COMPLETED, mode = mode)
+    }
+
+    /**
+     * Forgets a completed session so the next screen starts clean.
+     */
+    fun clearCompleted() {
+        if (state != WorkoutState.COMPLETED) return
+        workoutClock.reset()
+        _snapshot.value = WorkoutSessionSnapshot(autoPauseEnabled = _snapshot.value.autoPauseEnabled)
+    }
+
+    /**
+     * Mode of the session in the journal on disk, null if there is none.
+     */
+    fun journaledMode(): WorkoutMode? {
+        val info = workoutJournal.readSessionInfo() ?: return null
+        return WorkoutMode.entries.find { it.name == info.workoutMode }
+    }
+
+    /**
+     * Resumes a session that was interrupted by process death from the
+     * journal on disk. The session comes back paused.
+     *
+     * @param weekNumber Only restore if the journal belongs to this week, null for any
+     * @param dayOfWeek Only restore if the journal belongs to this day, null for any
+     * @param heartRateZones Zones the session's time-in-zone is counted against
+     * @param targetHeartRateZones Zones the planned workout asks for, if any
+     * @return true if a session was restored
+     */
+    suspend fun restoreFromJournal(
+        weekNumber: Int? = null,
+        dayOfWeek: String? = null,
+        heartRateZones: HeartRateZones = HeartRateZones.DEFAULT,
+        targetHeartRateZones: IntRange? = null
+    ): Boolean {
+        if (state != WorkoutState.NOT_STARTED || isRestoring) return false
+        val info = workoutJournal.readSessionInfo() ?: return false
+        if (weekNumber != null && info.weekNumber != weekNumber) return false
+        if (dayOfWeek != null && !info.dayOfWeek.equals(dayOfWeek, ignoreCase = true)) return false
+        isRestoring = true
+        this.heartRateZones = heartRateZones
+        try {
+            return restore(info, targetHeartRateZones)
+        } finally {
+            isRestoring = false
+        }
+    }
+
+    private suspend fun restore(info: JournalSessionInfo, targetHeartRateZones: IntRange?): Boolean {
+        val restorer = JournalRestorer(pipeline)
+        // The pipeline is only written from the location thread
+        withContext(locationSource.dispatcher) {
+            resetPipeline()
+            workoutJournal.replay(restorer)
+            restorer.finish()
+        }
+
+        if (!restorer.isRunning && restorer.lastState != WorkoutState.PAUSED.ordinal) {
+            // Never got past GPS acquisition, nothing worth resuming
+            workoutJournal.finish()
+            return false
+        }
+        val restoredElapsed = restorer.elapsedSeconds
+
+        workoutJournal.reopen()
+        startedAt = info.startedAt
+        Log.d(TAG, "Restored session from journal: ${pipeline.routeBuffer.size} points, ${restoredElapsed}s")
+        workoutClock.restore(restoredElapsed * 1000)
+        val mode = WorkoutMode.valueOf(info.workoutMode)
+        _snapshot.value = WorkoutSessionSnapshot(
+            mode = mode,
+            weekNumber = info.weekNumber,
+            dayOfWeek = info.dayOfWeek,
+            route = pipeline.routeBuffer.snapshot(),
+            distanceMeters = pipeline.distanceMeters(mode),
+            laps = pipeline.splitEngine.laps,
+            elevationGainMeters = pipeline.elevationGainMeters(mode),
+            heartRate = restorer.lastHeartRate,
+            heartRateTrace = pipeline.heartRateTrack.snapshot(),
+            targetHeartRateZones = targetHeartRateZones,
+            autoPauseEnabled = _snapshot.value.autoPauseEnabled
+        )
+        transitionTo(WorkoutState.PAUSED)
+        WorkoutEngineService.start(context, mode)
+        return true
+    }
+
+    private fun transitionTo(newState: WorkoutState) {
+        _snapshot.update { it.copy(state = newState) }
+        isRecording = newState == WorkoutState.RUNNING
+        workoutJournal.appendStateChange(System.currentTimeMillis(), newState.ordinal, elapsedSeconds)
+    }
+
+    /**
+     * Applies an auto-pause decision from the location thread. Only acts while
+     * the workout is running; a manual pause always wins.
+     *
+     * The clock is moved back to [stateSince], when the detector's debounce
+     * window began: the stop delay isn't moving time and the resume delay is.
+     */
+    private fun applyMotionState(motionState: MotionState, stateSince: Long = System.currentTimeMillis()) {
+        val current = _snapshot.value
+        if (current.state != WorkoutState.RUNNING) return
+        val shouldPause = current.autoPauseEnabled && motionState == MotionState.STOPPED
+        if (shouldPause == current.isAutoPaused) return
+        _snapshot.update { it.copy(isAutoPaused = shouldPause) }
+        isRecording = !shouldPause
+        // An old flip, e.g. auto-pause just switched on, isn't dated back
+        val held = (System.currentTimeMillis() - stateSince).takeIf { it in 0..MAX_MOTION_CORRECTION_MS } ?: 0L
+        if (shouldPause) {
+            workoutClock.pause()
+            workoutClock.adjust(-held)
+            endHeartRateSegment()
+            workoutJournal.appendStateChange(System.currentTimeMillis(), WorkoutState.PAUSED.ordinal, elapsedSeconds, isAuto = true)
+        } else {
+            // No segment break: we stood still where recording stopped, so the
+            // line to the next fix is ground actually covered
+            workoutClock.start()
+            workoutClock.adjust(held)
+            workoutJournal.appendStateChange(System.currentTimeMillis(), WorkoutState.RUNNING.ordinal, elapsedSeconds, isAuto = true)
+        }
+        Log.d(TAG, if (shouldPause) "Auto-paused" else "Auto-resumed")
+    }
+
+    private fun startCollectors() {
+        startHeartRateMonitoring()
+        if (_snapshot.value.mode == WorkoutMode.OUTDOOR) {
+            startLocationTracking()
+        } else {
+            startTreadmillTracking()
+        }
+    }
+
+    private fun stopCollectors() {
+        stopLocationTracking()
+        stopTreadmillTracking()
+        stopHeartRateMonitoring()
+    }
+
+    private fun resetPipeline() {
+        pipeline.reset(heartRateZones)
+        cadenceSpm = Float.NaN
+        lastStepAt = 0L
+    }
+
+    private fun startLocationTracking() {
+        locationJob?.cancel()
+        val samplingPolicy = LocationSamplingPolicy.forWorkoutType(workoutType)
+        locationJob = locationSource.getLocationUpdates(samplingPolicy = samplingPolicy)
+            .map { point ->
+                // Runs on the location thread; the pipeline is only touched here.
+                // While preparing or paused the fix only keeps GPS warm and feeds the detector
+                val recording = isRecording
+                pipeline.onLocation(point, workoutClock.elapsedMillis, currentCadence(), recording)
+                if (recording) {
+                    workoutJournal.appendLocation(
+                        point.timestamp,
+                        point.latitude,
+                        point.longitude,
+                        point.altitude,
+                        point.speed,
+                        point.isStationary
+                    )
+                }
+                LocationSnapshot(
+                    route = pipeline.routeBuffer.snapshot(),
+                    distanceMeters = pipeline.routeAccumulator.distanceMeters,
+                    speedMs = pipeline.paceEstimator.speedMs,
+                    laps = pipeline.splitEngine.laps,
+                    elevationGainMeters = pipeline.elevationProcessor.gainMeters,
+                    motionState = pipeline.autoPauseDetector.state,
+                    motionStateSince = pipeline.autoPauseDetector.stateSince
+                )
+            }
+            .flowOn(locationSource.dispatcher)
+            .sample(SNAPSHOT_INTERVAL_MS)
+            .onEach { location -> applyLocationSnapshot(location) }
+            .launchIn(scope)
+
+        cadenceJob?.cancel()
+        cadenceJob = stepCadenceSensor.cadenceUpdates()
+            .onEach { cadence ->
+                cadenceSpm = cadence
+                lastStepAt = SystemClock.elapsedRealtime()
+            }
+            .flowOn(locationSource.dispatcher)
+            .launchIn(scope)
+
+        barometerJob?.cancel()
+        barometerJob = barometricAltimeter.altitudeUpdates()
+            .onEach { altitude -> pipeline.elevationProcessor.onBarometricAltitude(altitude) }
+            .flowOn(locationSource.dispatcher)
+            .launchIn(scope)
+    }
+
+    /**
+     * Indoor counterpart of [startLocationTracking]: readings from the FTMS
+     * treadmill drive distance, laps, pace and auto-pause. Scans for and
+     * connects the treadmill; until one is set up nothing arrives and
+     * distance stays 0.
+     */
+    private fun startTreadmillTracking() {
+        treadmillJob?.cancel()
+        treadmillManager.connect()
+        treadmillJob = treadmillManager.samples
+            .map { sample ->
+                // Runs on the location thread, like the GPS pipeline
+                val speed = if (sample.isRunning && !sample.speedMs.isNaN()) sample.speedMs else 0f
+                val recording = isRecording
+                pipeline.onTreadmill(
+                    sample.timestamp,
+                    sample.totalDistanceMeters,
+                    speed,
+                    sample.inclinePercent,
+                    workoutClock.elapsedMillis,
+                    currentCadence(),
+                    recording
+                )
+                val treadmill = pipeline.treadmillAccumulator
+                if (recording) {
+                    workoutJournal.appendTreadmill(
+                        sample.timestamp,
+                        treadmill.distanceMeters,
+                        treadmill.altitudeMeters,
+                        treadmill.elevationGainMeters,
+                        treadmill.elevationLossMeters
+                    )
+                }
+                LocationSnapshot(
+                    route = RouteView.EMPTY,
+                    distanceMeters = treadmill.distanceMeters,
+                    // The belt speed is exact, no need for the rolling estimate
+                    speedMs = speed,
+                    laps = pipeline.splitEngine.laps,
+                    elevationGainMeters = treadmill.elevationGainMeters,
+                    motionState = pipeline.autoPauseDetector.state,
+                    motionStateSince = pipeline.autoPauseDetector.stateSince
+                )
+            }
+            .flowOn(locationSource.dispatcher)
+            .sample(SNAPSHOT_INTERVAL_MS)
+            .onEach { location -> applyLocationSnapshot(location) }
+            .launchIn(scope)
+    }
+
+    private fun stopTreadmillTracking() {
+        val job = treadmillJob ?: return
+        job.cancel()
+        treadmillJob = null
+        treadmillManager.disconnect()
+    }
+
+    private fun applyLocationSnapshot(location: LocationSnapshot) {
+        _snapshot.update {
+            it.copy(
+                route = location.route,
+                distanceMeters = location.distanceMeters,
+                speedMs = location.speedMs,
+                laps = location.laps,
+                elevationGainMeters = location.elevationGainMeters
+            )
+        }
+        applyMotionState(location.motionState, location.motionStateSince)
+    }
+
+    private fun stopLocationTracking() {
+        locationJob?.cancel()
+        locationJob = null
+        barometerJob?.cancel()
+        barometerJob = null
+        cadenceJob?.cancel()
+        cadenceJob = null
+    }
+
+    /**
+     * Step cadence for the auto-pause detector: NaN without a step sensor,
+     * 0 once steps have stopped arriving. Location thread only.
+     */
+    private fun currentCadence(): Float {
+        if (cadenceSpm.isNaN()) return Float.NaN
+        return if (SystemClock.elapsedRealtime() - lastStepAt > STEP_TIMEOUT_MS) 0f else cadenceSpm
+    }
+
+    private fun startHeartRateMonitoring() {
+        heartRateJob?.cancel()
+        // Collect heart rate from the sensor (a BLE strap outside of replays)
+        heartRateJob = scope.launch {
+            launch {
+                heartRateSource.currentHeartRate.collect { heartRate ->
+                    _snapshot.update { it.copy(heartRate = heartRate) }
+                }
+            }
+            // Every reading at the source's own timestamp; lap averages and the
+            // recorded series are kept on the location thread
+            launch(locationSource.dispatcher) {
+                heartRateSource.heartRateSamples.collect { sample ->
+                    workoutJournal.appendHeartRate(sample.timestamp, sample.bpm)
+                    val recording = isRecording
+                    pipeline.onHeartRate(sample.timestamp, sample.bpm, recording)
+                    if (recording) {
+                        val trace = pipeline.heartRateTrack.snapshot()
+                        _snapshot.update { it.copy(heartRateTrace = trace) }
+                    }
+                }
+            }
+            launch(locationSource.dispatcher) {
+                heartRateSource.currentHeartRate.collect { heartRate ->
+                    // Strap lost: the last reading no longer counts towards its zone
+                    if (heartRate == null) pipeline.endHeartRateSegment(System.currentTimeMillis())
+                }
+            }
+            // RR-interval HRV, only from a BLE strap
+            launch(locationSource.dispatcher) {
+                hrvEngine.metrics.collect { metrics ->
+                    if (metrics != null && isRecording) pipeline.hrvSeries.add(metrics)
+                }
+            }
+            launch {
+                hrvEngine.metrics.collect { metrics ->
+                    _snapshot.update { it.copy(hrv = metrics) }
+                }
+            }
+            launch {
+                heartRateSource.sensorState.collect { state ->
+                    _snapshot.update { it.copy(heartRateSensorState = state) }
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops the latest heart-rate sample from accruing zone time while
+     * recording is stopped. The next sample starts a new segment.
+     */
+    private fun endHeartRateSegment() {
+        val now = System.currentTimeMillis()
+        scope.launch(locationSource.dispatcher) {
+            pipeline.endHeartRateSegment(now)
+            val trace = pipeline.heartRateTrack.snapshot()
+            _snapshot.update { it.copy(heartRateTrace = trace) }
+        }
+    }
+
+    private fun stopHeartRateMonitoring() {
+        heartRateJob?.cancel()
+        heartRateJob = null
+    }
+
+    /**
+     * Immutable view of the tracking state handed from the location thread.
+     */
+    private data class LocationSnapshot(
+        val route: RouteView,
+        val distanceMeters: Float,
+        val speedMs: Float,
+        val laps: List<Lap>,
+        val elevationGainMeters: Float,
+        val motionState: MotionState,
+        val motionStateSince: Long
+    )
+
+    companion object {
+        private const val SNAPSHOT_INTERVAL_MS = 500L
+        private const val STEP_TIMEOUT_MS = 3_000L
+
+        // Longest debounce window plus snapshot latency
+        private const val MAX_MOTION_CORRECTION_MS = 10_000L
+    }
+}
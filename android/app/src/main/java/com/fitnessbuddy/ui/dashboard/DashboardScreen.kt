@@ -27,6 +27,7 @@ import androidx.compose.ui.text.font.FontWeight
 import androidx.compose.ui.unit.dp
 import androidx.compose.ui.unit.sp
 import androidx.hilt.navigation.compose.hiltViewModel
+import com.fitnessbuddy.data.hrv.HrvEngine
 
 // Theme colors
 private val DarkBackground = Color(0xFF0D0D0D)
@@ -130,6 +131,11 @@ fun DashboardScreen(
                 )
                 RecoveryCard(
                     recoveryPercent = uiState.recoveryPercent,
+                    restingHrvMs = uiState.restingHrvMs,
+                    isMeasuring = uiState.isMeasuringReadiness,
+                    progress = uiState.readinessProgress,
+                    error = uiState.readinessError,
+                    onMeasure = { viewModel.measureReadiness() },
                     modifier = Modifier.weight(1f)
                 )
             }
@@ -553,11 +559,33 @@ private fun VO2MaxCard(
 
 @Composable
 private fun RecoveryCard(
-    recoveryPercent: Int,
+    recoveryPercent: Int?,
+    restingHrvMs: Int?,
+    isMeasuring: Boolean,
+    progress: Float,
+    error: String?,
+    onMeasure: () -> Unit,
     modifier: Modifier = Modifier
 ) {
+    val status = when {
+        isMeasuring -> "MEASURING"
+        recoveryPercent == null -> "TAP TO MEASURE"
+        recoveryPercent >= 75 -> "OPTIMAL"
+        recoveryPercent >= 50 -> "NORMAL"
+        else -> "LOW"
+    }
+    val detail = when {
+        isMeasuring -> {
+            val secondsLeft = ((1f - progress) * HrvEngine.READINESS_DURATION_MS / 1000).toInt()
+            "STAY STILL · ${secondsLeft}s LEFT"
+        }
+        error != null -> "NO HRV DATA · STRAP CONNECTED?"
+        restingHrvMs != null -> "HRV: ${restingHrvMs}ms (MORNING)"
+        else -> "2 MIN AT REST WITH STRAP"
+    }
+
     Card(
-        modifier = modifier,
+        modifier = modifier.clickable(enabled = !isMeasuring, onClick = onMeasure),
         colors = CardDefaults.cardColors(containerColor = CardBackground),
         shape = RoundedCornerShape(16.dp)
     ) {
@@ -574,7 +602,7 @@ private fun RecoveryCard(
                     shape = RoundedCornerShape(4.dp)
                 ) {
                     Text(
-                        text = "OPTIMAL",
+                        text = status,
                         color = AccentGreen,
                         fontSize = 9.sp,
                         fontWeight = FontWeight.Bold,
@@ -591,15 +619,26 @@ private fun RecoveryCard(
                 letterSpacing = 1.sp
             )
             Spacer(modifier = Modifier.height(4.dp))
-            Text(
-                text = "$recoveryPercent%",
-                color = TextWhite,
-                fontSize = 28.sp,
-                fontWeight = FontWeight.Bold
-            )
+            if (isMeasuring) {
+                LinearProgressIndicator(
+                    progress = { progress },
+                    modifier = Modifier
+                        .fillMaxWidth()
+                        .padding(vertical = 14.dp),
+                    color = AccentGreen,
+                    trackColor = TextGray.copy(alpha = 0.3f)
+                )
+            } else {
+                Text(
+                    text = recoveryPercent?.let { "$it%" } ?: "--",
+                    color = TextWhite,
+                    fontSize = 28.sp,
+                    fontWeight = FontWeight.Bold
+                )
+            }
             Spacer(modifier = Modifier.height(4.dp))
             Text(
-                text = "HRV: 72ms (STABLE)",
+                text = detail,
                 color = TextGray,
                 fontSize = 9.sp,
                 letterSpacing = 1.sp
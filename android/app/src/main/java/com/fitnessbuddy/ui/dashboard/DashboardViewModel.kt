@@ -3,13 +3,17 @@ package com.fitnessbuddy.ui.dashboard
 import android.util.Log
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
+import com.fitnessbuddy.data.hrv.HrvEngine
+import com.fitnessbuddy.data.hrv.ReadinessStore
 import com.fitnessbuddy.domain.model.TrainingDay
 import com.fitnessbuddy.domain.model.TrainingPlan
 import com.fitnessbuddy.domain.repository.TrainingPlanRepository
 import dagger.hilt.android.lifecycle.HiltViewModel
+import kotlinx.coroutines.Job
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.catch
 import kotlinx.coroutines.flow.update
 import kotlinx.coroutines.launch
 import java.time.LocalDate
@@ -31,29 +35,44 @@ data class DashboardUiState(
     val weeklyGoalKm: Float = 65f,
     val weeklyProgress: Float = 0f,
     val vo2Max: Float = 0f,
-    val recoveryPercent: Int = 88,
+    val recoveryPercent: Int? = null,      // Today's readiness, null until measured
+    val restingHrvMs: Int? = null,
+    val isMeasuringReadiness: Boolean = false,
+    val readinessProgress: Float = 0f,
+    val readinessError: String? = null,
     val aiInsight: String = "",
     val error: String? = null
 )
 
 @HiltViewModel
 class DashboardViewModel @Inject constructor(
-    private val trainingPlanRepository: TrainingPlanRepository
+    private val trainingPlanRepository: TrainingPlanRepository,
+    private val hrvEngine: HrvEngine,
+    private val readinessStore: ReadinessStore
 ) : ViewModel() {
 
     private val _uiState = MutableStateFlow(DashboardUiState())
     val uiState: StateFlow<DashboardUiState> = _uiState.asStateFlow()
 
+    private var planJob: Job? = null
+
     init {
         loadDashboardData()
+        loadReadiness()
     }
 
     fun loadDashboardData() {
-        viewModelScope.launch {
+        planJob?.cancel()
+        planJob = viewModelScope.launch {
             _uiState.update { it.copy(isLoading = true) }
             
-            trainingPlanRepository.getActiveTrainingPlan()
-                .onSuccess { plan ->
+            // Cached plan first, then again if the synced one differs
+            trainingPlanRepository.observeActiveTrainingPlan()
+                .catch { error ->
+                    Log.e("DashboardViewModel", "Failed to load plan", error)
+                    _uiState.update { it.copy(isLoading = false, error = error.message) }
+                }
+                .collect { plan ->
                     if (plan != null) {
                         Log.d("DashboardViewModel", "Loaded plan: ${plan.eventType}")
                         updateDashboardFromPlan(plan)
@@ -61,10 +80,42 @@ class DashboardViewModel @Inject constructor(
                         _uiState.update { it.copy(isLoading = false, error = "No training plan found") }
                     }
                 }
+        }
+    }
+
+    private fun loadReadiness() {
+        viewModelScope.launch {
+            val readiness = readinessStore.latest()?.takeIf { it.isToday }
+            _uiState.update {
+                it.copy(
+                    recoveryPercent = readiness?.percent,
+                    restingHrvMs = readiness?.reading?.rmssdMs?.toInt()
+                )
+            }
+        }
+    }
+
+    /**
+     * Takes the morning readiness measurement from the heart rate strap's
+     * RR intervals. The user should stay still until it finishes.
+     */
+    fun measureReadiness() {
+        if (_uiState.value.isMeasuringReadiness) return
+        viewModelScope.launch {
+            _uiState.update { it.copy(isMeasuringReadiness = true, readinessProgress = 0f, readinessError = null) }
+            hrvEngine.measureReadiness { progress ->
+                _uiState.update { it.copy(readinessProgress = progress) }
+            }
+                .onSuccess { reading ->
+                    Log.d("DashboardViewModel", "Readiness: RMSSD ${reading.rmssdMs} ms")
+                    readinessStore.add(reading)
+                    loadReadiness()
+                }
                 .onFailure { error ->
-                    Log.e("DashboardViewModel", "Failed to load plan", error)
-                    _uiState.update { it.copy(isLoading = false, error = error.message) }
+                    Log.e("DashboardViewModel", "Readiness measurement failed", error)
+                    _uiState.update { it.copy(readinessError = error.message) }
                 }
+            _uiState.update { it.copy(isMeasuringReadiness = false) }
         }
     }
 
@@ -11,9 +11,11 @@ import com.fitnessbuddy.domain.repository.GeminiRepository
 import com.fitnessbuddy.domain.repository.TrainingPlanRepository
 import com.fitnessbuddy.ui.onboarding.OnboardingData
 import dagger.hilt.android.lifecycle.HiltViewModel
+import kotlinx.coroutines.Job
 import kotlinx.coroutines.flow.MutableStateFlow
 import kotlinx.coroutines.flow.StateFlow
 import kotlinx.coroutines.flow.asStateFlow
+import kotlinx.coroutines.flow.catch
 import kotlinx.coroutines.flow.update
 import kotlinx.coroutines.launch
 import javax.inject.Inject
@@ -27,6 +29,8 @@ class TrainingPlanViewModel @Inject constructor(
 
     private val _uiState = MutableStateFlow(TrainingPlanUiState())
     val uiState: StateFlow<TrainingPlanUiState> = _uiState.asStateFlow()
+
+    private var planJob: Job? = null
     
     /**
      * Generates a new training plan from saved onboarding data.
@@ -42,13 +46,19 @@ class TrainingPlanViewModel @Inject constructor(
     }
     
     /**
-     * Loads an existing training plan from Firestore.
+     * Loads the saved training plan, from the device first and then from
+     * Firestore, and keeps it updated while the screen is shown.
      */
     fun loadSavedPlan() {
-        viewModelScope.launch {
+        if (planJob?.isActive == true) return
+        planJob = viewModelScope.launch {
             _uiState.update { it.copy(isGenerating = true) }
-            trainingPlanRepository.getActiveTrainingPlan()
-                .onSuccess { plan ->
+            trainingPlanRepository.observeActiveTrainingPlan()
+                .catch { error ->
+                    Log.e("TrainingPlanViewModel", "Failed to load plan", error)
+                    _uiState.update { it.copy(isGenerating = false, error = error.message) }
+                }
+                .collect { plan ->
                     if (plan != null) {
                         Log.d("TrainingPlanViewModel", "Loaded plan: ${plan.weeks.size} weeks")
                         _uiState.update { 
@@ -58,10 +68,6 @@ class TrainingPlanViewModel @Inject constructor(
                         _uiState.update { it.copy(isGenerating = false) }
                     }
                 }
-                .onFailure { error ->
-                    Log.e("TrainingPlanViewModel", "Failed to load plan", error)
-                    _uiState.update { it.copy(isGenerating = false, error = error.message) }
-                }
         }
     }
     
@@ -0,0 +1,251 @@
+package com.fitnessbuddy.ui.workout
+
+import androidx.compose.runtime.Immutable
+import androidx.compose.runtime.withFrameNanos
+import com.fitnessbuddy.data.sensor.HeartRateSensorState
+import com.fitnessbuddy.domain.model.WorkoutState
+import com.fitnessbuddy.service.WorkoutSessionEngine
+import com.fitnessbuddy.service.WorkoutSessionSnapshot
+import kotlinx.coroutines.delay
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.distinctUntilChanged
+import kotlinx.coroutines.flow.first
+import kotlinx.coroutines.flow.flow
+
+/**
+ * Display-ready live metrics. Every value is already formatted, so the
+ * screen only compares strings and tiles whose text didn't change skip
+ * recomposition.
+ */
+@Immutable
+data class LiveMetrics(
+    val elapsedTime: String = "00:00",
+    val distance: String = "0.00 km",
+    val pace: String = "--:-- /km",
+    val speed: String = "0.0 km/h",
+    val heartRate: String = "--",
+    val hasHeartRate: Boolean = false,
+    val heartRateSensorState: HeartRateSensorState = HeartRateSensorState.DISCONNECTED,
+    val averageHeartRate: String = "--",
+    val heartRateZone: String = "--",
+    val targetZoneLabel: String = "",       // Empty when the planned workout names no zone
+    val timeInTargetZone: String = "00:00",
+    val isInTargetZone: Boolean = false,
+    val hasHeartRateTrace: Boolean = false,
+    val hrv: String = "--",
+    val dfaAlpha1: String = "--",
+    val hasHrv: Boolean = false,
+    val isAboveAerobicThreshold: Boolean = false,
+    val elevationGain: String = "0 m",
+    val isAutoPaused: Boolean = false
+)
+
+/**
+ * Turns the engine's session snapshots into [LiveMetrics] at a fixed display
+ * rate, independent of how often sensors report.
+ *
+ * This is the screen's only tick source. While the clock runs a snapshot is
+ * produced every [displayIntervalMs], on the workout clock's own interval
+ * boundaries and aligned to the next frame, so the timer turns over with
+ * the frame that shows it; otherwise the flow sleeps until the session
+ * changes. Strings are only rebuilt when their underlying value changes at
+ * display precision.
+ *
+ * @param displayIntervalMs Display period; should divide one second
+ */
+class TelemetryAggregator(
+    private val engine: WorkoutSessionEngine,
+    private val displayIntervalMs: Long = DEFAULT_DISPLAY_INTERVAL_MS
+) {
+    private val builder = StringBuilder(16)
+
+    private var elapsedKey = -1L
+    private var elapsedText = LiveMetrics().elapsedTime
+    private var distanceKey = -1L
+    private var distanceText = LiveMetrics().distance
+    private var paceKey = -1L
+    private var paceText = LiveMetrics().pace
+    private var speedKey = -1L
+    private var speedText = LiveMetrics().speed
+    private var heartRateKey = -1
+    private var heartRateText = LiveMetrics().heartRate
+    private var averageHeartRateKey = -1
+    private var averageHeartRateText = LiveMetrics().averageHeartRate
+    private var zoneKey = -1
+    private var zoneText = LiveMetrics().heartRateZone
+    private var targetZonesKey: IntRange? = null
+    private var targetZoneLabel = LiveMetrics().targetZoneLabel
+    private var targetTimeKey = -1L
+    private var targetTimeText = LiveMetrics().timeInTargetZone
+    private var hrvKey = -1
+    private var hrvText = LiveMetrics().hrv
+    private var alpha1Key = -1
+    private var alpha1Text = LiveMetrics().dfaAlpha1
+    private var elevationKey = -1L
+    private var elevationText = LiveMetrics().elevationGain
+
+    /**
+     * Must be collected from a coroutine with a frame clock, e.g. with
+     * `collectAsState()` in the screen.
+     */
+    fun liveMetrics(): Flow<LiveMetrics> = flow {
+        while (true) {
+            val snapshot = engine.snapshot.value
+            emit(build(snapshot, engine.elapsedSeconds))
+            if (snapshot.state == WorkoutState.RUNNING && !snapshot.isAutoPaused) {
+                delay(displayIntervalMs - engine.elapsedMillis % displayIntervalMs)
+                withFrameNanos { }
+            } else {
+                // Clock stopped: nothing changes until the session does
+                engine.snapshot.first { it !== snapshot }
+            }
+        }
+    }.distinctUntilChanged()
+
+    private fun build(snapshot: WorkoutSessionSnapshot, elapsedSeconds: Long): LiveMetrics {
+        if (elapsedSeconds != elapsedKey) {
+            elapsedKey = elapsedSeconds
+            elapsedText = formatElapsed(elapsedSeconds)
+        }
+
+        // Distance shown to 10 m
+        val distanceDecameters = (snapshot.distanceMeters / 10f).toLong()
+        if (distanceDecameters != distanceKey) {
+            distanceKey = distanceDecameters
+            distanceText = builder.clearAndAppendFixed(distanceDecameters, 2).append(" km").toString()
+        }
+
+        val paceSeconds = if (snapshot.distanceMeters > 0 && elapsedSeconds > 0) {
+            (elapsedSeconds * 1000f / snapshot.distanceMeters).toLong()
+        } else {
+            -1L
+        }
+        if (paceSeconds != paceKey) {
+            paceKey = paceSeconds
+            paceText = if (paceSeconds < 0) {
+                "--:-- /km"
+            } else {
+                builder.setLength(0)
+                builder.append(paceSeconds / 60).append(':')
+                appendTwoDigits(paceSeconds % 60)
+                builder.append(" /km").toString()
+            }
+        }
+
+        // Speed shown to 0.1 km/h
+        val speedTenths = (snapshot.speedMs * 36f).toLong()
+        if (speedTenths != speedKey) {
+            speedKey = speedTenths
+            speedText = builder.clearAndAppendFixed(speedTenths, 1).append(" km/h").toString()
+        }
+
+        val bpm = snapshot.heartRate ?: -1
+        if (bpm != heartRateKey) {
+            heartRateKey = bpm
+            heartRateText = if (bpm < 0) "--" else bpm.toString()
+        }
+
+        // Session figures from the recorded series; zone time counts the current reading up to now
+        val trace = snapshot.heartRateTrace
+        val averageBpm = trace.averageBpm
+        if (averageBpm != averageHeartRateKey) {
+            averageHeartRateKey = averageBpm
+            averageHeartRateText = if (averageBpm < 0) "--" else averageBpm.toString()
+        }
+        val zone = if (bpm < 0) -1 else trace.zones.zoneOf(bpm)
+        if (zone != zoneKey) {
+            zoneKey = zone
+            zoneText = if (zone < 0) "--" else "Z$zone"
+        }
+        val targetZones = snapshot.targetHeartRateZones
+        if (targetZones != targetZonesKey) {
+            targetZonesKey = targetZones
+            targetZoneLabel = when {
+                targetZones == null -> ""
+                targetZones.first == targetZones.last -> "IN Z${targetZones.first}"
+                else -> "IN Z${targetZones.first}-${targetZones.last}"
+            }
+        }
+        val targetSeconds = if (targetZones == null) 0L else trace.timeInZonesMillis(targetZones, System.currentTimeMillis()) / 1000
+        if (targetSeconds != targetTimeKey) {
+            targetTimeKey = targetSeconds
+            targetTimeText = formatElapsed(targetSeconds)
+        }
+
+        // RMSSD shown to 1 ms, DFA-alpha1 to 0.01; -1 while not available
+        val hrv = snapshot.hrv
+        val rmssd = hrv?.rmssdMs?.takeUnless { it.isNaN() }?.toInt() ?: -1
+        if (rmssd != hrvKey) {
+            hrvKey = rmssd
+            hrvText = if (rmssd < 0) "--" else "$rmssd ms"
+        }
+        val alpha1Hundredths = if (hrv != null && hrv.isDfaReliable) (hrv.dfaAlpha1 * 100f).toInt() else -1
+        if (alpha1Hundredths != alpha1Key) {
+            alpha1Key = alpha1Hundredths
+            alpha1Text = if (alpha1Hundredths < 0) "--" else builder.clearAndAppendFixed(alpha1Hundredths.toLong(), 2).toString()
+        }
+
+        val gain = snapshot.elevationGainMeters.toLong()
+        if (gain != elevationKey) {
+            elevationKey = gain
+            elevationText = "$gain m"
+        }
+
+        return LiveMetrics(
+            elapsedTime = elapsedText,
+            distance = distanceText,
+            pace = paceText,
+            speed = speedText,
+            heartRate = heartRateText,
+            hasHeartRate = bpm >= 0,
+            heartRateSensorState = snapshot.heartRateSensorState,
+            averageHeartRate = averageHeartRateText,
+            heartRateZone = zoneText,
+            targetZoneLabel = targetZoneLabel,
+            timeInTargetZone = targetTimeText,
+            isInTargetZone = targetZones != null && zone in targetZones,
+            hasHeartRateTrace = trace.isNotEmpty(),
+            hrv = hrvText,
+            dfaAlpha1 = alpha1Text,
+            hasHrv = rmssd >= 0,
+            isAboveAerobicThreshold = hrv?.isAboveAerobicThreshold == true,
+            elevationGain = elevationText,
+            isAutoPaused = snapshot.isAutoPaused
+        )
+    }
+
+    private fun formatElapsed(totalSeconds: Long): String {
+        builder.setLength(0)
+        val hours = totalSeconds / 3600
+        if (hours > 0) {
+            builder.append(hours).append(':')
+        }
+        appendTwoDigits((totalSeconds % 3600) / 60)
+        builder.append(':')
+        appendTwoDigits(totalSeconds % 60)
+        return builder.toString()
+    }
+
+    private fun appendTwoDigits(value: Long) {
+        if (value < 10) builder.append('0')
+        builder.append(value)
+    }
+
+    /**
+     * Writes [scaled] / 10^[decimals] with exactly [decimals] fraction digits.
+     */
+    private fun StringBuilder.clearAndAppendFixed(scaled: Long, decimals: Int): StringBuilder {
+        setLength(0)
+        var divisor = 1L
+        repeat(decimals) { divisor *= 10 }
+        append(scaled / divisor).append('.')
+        val fraction = (scaled % divisor).toString()
+        repeat(decimals - fraction.length) { append('0') }
+        append(fraction)
+        return this
+    }
+
+    companion object {
+        const val DEFAULT_DISPLAY_INTERVAL_MS = 500L
+    }
+}
@@ -27,7 +27,47 @@ object WorkoutFeedbackPromptBuilder {
                 appendLine("- Distance: ${String.format("%.2f", result.distanceMeters / 1000f)} km")
                 appendLine("- Average Pace: ${result.averagePace}")
             }
+            if (result.elevationGainMeters >= 1f || result.elevationLossMeters >= 1f) {
+                appendLine("- Elevation: +${result.elevationGainMeters.toInt()} m / -${result.elevationLossMeters.toInt()} m")
+            }
             appendLine()
+
+            // Heart rate, from the recorded series
+            val heartRate = result.heartRate
+            if (heartRate.isNotEmpty()) {
+                appendLine("## Heart Rate")
+                appendLine("- Average: ${heartRate.averageBpm} bpm (min ${heartRate.minBpm}, max ${heartRate.maxBpm})")
+                val zoneMillis = LongArray(heartRate.zones.count) { heartRate.timeInZoneMillis(it + 1) }
+                val totalMillis = zoneMillis.sum()
+                if (totalMillis > 0) {
+                    zoneMillis.forEachIndexed { index, millis ->
+                        if (millis > 0) {
+                            appendLine("- Zone ${index + 1}: ${formatTime(millis / 1000)} (${millis * 100 / totalMillis}%)")
+                        }
+                    }
+                    result.targetHeartRateZones?.let { target ->
+                        val inTarget = heartRate.timeInZonesMillis(target)
+                        appendLine("- Time in target ${formatZones(target)}: ${inTarget * 100 / totalMillis}%")
+                    }
+                }
+                appendLine()
+            }
+
+            // Splits
+            if (result.laps.isNotEmpty()) {
+                appendLine("## Splits")
+                result.laps.forEach { lap ->
+                    append("- Lap ${lap.number}: ${String.format("%.2f", lap.distanceMeters / 1000f)} km")
+                    append(" in ${formatTime(lap.durationMillis / 1000)}")
+                    append(" (${formatPace(lap.paceSecondsPerKm)} /km")
+                    lap.averageHeartRate?.let { append(", avg HR $it bpm") }
+                    if (lap.elevationGainMeters >= 1f || lap.elevationLossMeters >= 1f) {
+                        append(", +${lap.elevationGainMeters.toInt()}/-${lap.elevationLossMeters.toInt()} m")
+                    }
+                    appendLine(")")
+                }
+                appendLine()
+            }
             
             // Planned vs Actual (if we have plan data)
             result.plannedWorkout?.let { planned ->
@@ -46,6 +86,9 @@ object WorkoutFeedbackPromptBuilder {
                 if (planned.intensity.isNotEmpty()) {
                     appendLine("- Intensity: ${planned.intensity}")
                 }
+                if (planned.targetZone.isNotEmpty()) {
+                    appendLine("- Target Zone: ${planned.targetZone}")
+                }
                 if (planned.warmup.isNotEmpty()) {
                     appendLine("- Warmup: ${planned.warmup}")
                 }
@@ -62,13 +105,22 @@ object WorkoutFeedbackPromptBuilder {
             appendLine("## Instructions")
             appendLine("Provide a short, motivating feedback (2-3 sentences max) that:")
             appendLine("1. Acknowledges the effort")
-            appendLine("2. If plan data is available, comments on how actual compared to planned")
+            appendLine("2. If plan data is available, comments on how actual compared to planned (use the splits for pacing and the heart rate zones for effort)")
             appendLine("3. Gives one specific tip for next time")
             appendLine()
             appendLine("Keep the tone friendly and encouraging. Respond in plain text only, no markdown.")
         }
     }
 
+    private fun formatZones(zones: IntRange): String =
+        if (zones.first == zones.last) "Zone ${zones.first}" else "Zones ${zones.first}-${zones.last}"
+
+    private fun formatPace(secondsPerKm: Float): String {
+        if (secondsPerKm <= 0f) return "--:--"
+        val totalSeconds = secondsPerKm.toInt()
+        return String.format("%d:%02d", totalSeconds / 60, totalSeconds % 60)
+    }
+
     private fun formatTime(seconds: Long): String {
         val hours = seconds / 3600
         val minutes = (seconds % 3600) / 60
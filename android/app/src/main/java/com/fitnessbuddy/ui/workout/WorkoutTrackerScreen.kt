@@ -16,6 +16,7 @@ import androidx.compose.material.icons.Icons
 import androidx.compose.material.icons.automirrored.filled.ArrowBack
 import androidx.compose.material.icons.filled.Check
 import androidx.compose.material.icons.filled.Close
+import androidx.compose.material.icons.filled.FileOpen
 import androidx.compose.material.icons.filled.Info
 import androidx.compose.material.icons.filled.LocationOn
 import androidx.compose.material.icons.filled.Pause
@@ -28,6 +29,7 @@ import androidx.compose.ui.Modifier
 import androidx.compose.ui.draw.clip
 import androidx.compose.ui.graphics.Color
 import androidx.compose.ui.platform.LocalContext
+import androidx.compose.ui.platform.testTag
 import androidx.compose.ui.text.font.FontWeight
 import androidx.compose.ui.text.style.TextAlign
 import androidx.compose.ui.unit.dp
@@ -37,7 +39,13 @@ import androidx.hilt.navigation.compose.hiltViewModel
 import com.google.android.gms.maps.model.CameraPosition
 import com.google.android.gms.maps.model.LatLng
 import com.google.maps.android.compose.*
+import com.fitnessbuddy.data.export.ExportFormat
+import com.fitnessbuddy.data.location.RouteSimplifier
+import com.fitnessbuddy.data.location.RouteView
 import com.fitnessbuddy.data.sensor.HeartRateSensorState
+import com.fitnessbuddy.domain.model.Lap
+import com.fitnessbuddy.domain.model.WorkoutMode
+import com.fitnessbuddy.domain.model.WorkoutState
 import com.fitnessbuddy.data.healthconnect.ExerciseSessionInfo
 import java.time.ZoneId
 import java.time.format.DateTimeFormatter
@@ -85,6 +93,25 @@ fun WorkoutTrackerScreen(
         viewModel.loadWorkout(weekNumber, dayOfWeek)
     }
 
+    // File export: the picker result carries no format, so remember the one asked for
+    var pendingExportFormat by remember { mutableStateOf(ExportFormat.GPX) }
+    val exportLauncher = rememberLauncherForActivityResult(
+        contract = ActivityResultContracts.CreateDocument("*/*")
+    ) { uri ->
+        if (uri != null) {
+            viewModel.exportWorkout(uri, pendingExportFormat)
+        }
+    }
+
+    // File import: GPX and FIT have no MIME type Android reliably knows, so accept any
+    val importLauncher = rememberLauncherForActivityResult(
+        contract = ActivityResultContracts.OpenDocument()
+    ) { uri ->
+        if (uri != null) {
+            viewModel.importWorkoutFile(uri)
+        }
+    }
+
 
     val trainingDay = viewModel.trainingDay
     val workoutState = viewModel.workoutState
@@ -92,10 +119,9 @@ fun WorkoutTrackerScreen(
     val feedbackState = viewModel.feedbackState
     val feedback = viewModel.feedback
     val feedbackError = viewModel.feedbackError
-    val currentHeartRate = viewModel.currentHeartRate
-    val heartRateSensorState = viewModel.heartRateSensorState
-    val currentSpeedKmh = viewModel.getSpeedKmh()
     val hasGpsSignal = viewModel.hasGpsSignal
+    // Read only inside the cards that show it, so a metrics tick doesn't recompose the whole screen
+    val liveMetrics = viewModel.liveMetrics.collectAsState(LiveMetrics())
     
     // Health Connect import state
     val showImportDialog = viewModel.showImportDialog
@@ -160,6 +186,7 @@ fun WorkoutTrackerScreen(
         Column(
             modifier = Modifier
                 .fillMaxSize()
+                .testTag("workout_tracker")
                 .verticalScroll(rememberScrollState())
                 .padding(16.dp)
         ) {
@@ -190,12 +217,41 @@ fun WorkoutTrackerScreen(
                         fontSize = 12.sp
                     )
                 }
+                Spacer(modifier = Modifier.height(8.dp))
+
+                // Import a GPX, TCX or FIT file
+                OutlinedButton(
+                    onClick = { importLauncher.launch(arrayOf("*/*")) },
+                    modifier = Modifier.fillMaxWidth(),
+                    colors = ButtonDefaults.outlinedButtonColors(contentColor = AccentGreen),
+                    shape = RoundedCornerShape(12.dp)
+                ) {
+                    Icon(
+                        Icons.Default.FileOpen,
+                        contentDescription = null,
+                        modifier = Modifier.size(18.dp)
+                    )
+                    Spacer(modifier = Modifier.width(8.dp))
+                    Text(
+                        text = "IMPORT FROM FILE",
+                        fontWeight = FontWeight.Medium,
+                        fontSize = 12.sp
+                    )
+                }
+                viewModel.importMessage?.let { message ->
+                    Spacer(modifier = Modifier.height(8.dp))
+                    Text(
+                        text = message,
+                        color = TextGray,
+                        fontSize = 12.sp
+                    )
+                }
                 Spacer(modifier = Modifier.height(16.dp))
             }
 
             // Timer Display
             TimerCard(
-                time = viewModel.formatTime(),
+                liveMetrics = liveMetrics,
                 workoutState = workoutState
             )
 
@@ -204,23 +260,21 @@ fun WorkoutTrackerScreen(
             // Stats Card (shown for all modes once workout starts)
             if (workoutState != WorkoutState.NOT_STARTED) {
                 LiveStatsCard(
-                    distanceKm = viewModel.distanceMeters / 1000f,
-                    pace = viewModel.getPace(),
-                    speedKmh = currentSpeedKmh,
-                    heartRate = currentHeartRate,
-                    heartRateSensorState = heartRateSensorState,
+                    liveMetrics = liveMetrics,
                     isOutdoor = workoutMode == WorkoutMode.OUTDOOR
                 )
                 Spacer(modifier = Modifier.height(16.dp))
             }
+
+            // Splits (once the first lap is complete)
+            if (viewModel.laps.isNotEmpty()) {
+                SplitsCard(laps = viewModel.laps)
+                Spacer(modifier = Modifier.height(16.dp))
+            }
             
             // Map View (outdoor only)
             if (workoutMode == WorkoutMode.OUTDOOR && workoutState != WorkoutState.NOT_STARTED) {
-                RouteMapCard(
-                    routePoints = viewModel.routePoints.map { 
-                        LatLng(it.latitude, it.longitude) 
-                    }
-                )
+                RouteMapCard(routeProvider = { viewModel.routePoints })
                 Spacer(modifier = Modifier.height(16.dp))
             }
 
@@ -239,6 +293,18 @@ fun WorkoutTrackerScreen(
                     onDismiss = onNavigateBack
                 )
                 Spacer(modifier = Modifier.height(16.dp))
+
+                if (viewModel.canExport) {
+                    ExportCard(
+                        isExporting = viewModel.isExporting,
+                        message = viewModel.exportMessage,
+                        onExport = { format ->
+                            pendingExportFormat = format
+                            exportLauncher.launch(viewModel.exportFileName(format))
+                        }
+                    )
+                    Spacer(modifier = Modifier.height(16.dp))
+                }
             }
 
             // Control Buttons
@@ -253,7 +319,8 @@ fun WorkoutTrackerScreen(
                         permissionLauncher.launch(
                             arrayOf(
                                 Manifest.permission.ACCESS_FINE_LOCATION,
-                                Manifest.permission.ACCESS_COARSE_LOCATION
+                                Manifest.permission.ACCESS_COARSE_LOCATION,
+                                Manifest.permission.ACTIVITY_RECOGNITION    // Optional, step cadence for auto-pause
                             )
                         )
                     }
@@ -304,7 +371,9 @@ private fun ModeSelectionCard(
                     icon = "🏃",
                     isSelected = selectedMode == WorkoutMode.OUTDOOR,
                     onClick = { onModeSelected(WorkoutMode.OUTDOOR) },
-                    modifier = Modifier.weight(1f)
+                    modifier = Modifier
+                        .weight(1f)
+                        .testTag("mode_outdoor")
                 )
             }
             if (selectedMode == WorkoutMode.OUTDOOR) {
@@ -366,9 +435,11 @@ private fun ModeButton(
 
 @Composable
 private fun TimerCard(
-    time: String,
+    liveMetrics: State<LiveMetrics>,
     workoutState: WorkoutState
 ) {
+    val time = liveMetrics.value.elapsedTime
+    val isAutoPaused = liveMetrics.value.isAutoPaused
     Card(
         modifier = Modifier.fillMaxWidth(),
         colors = CardDefaults.cardColors(containerColor = CardBackground),
@@ -394,14 +465,14 @@ private fun TimerCard(
                 fontWeight = FontWeight.Bold,
                 fontFamily = androidx.compose.ui.text.font.FontFamily.Monospace
             )
-            if (workoutState == WorkoutState.PAUSED) {
+            if (workoutState == WorkoutState.PAUSED || isAutoPaused) {
                 Spacer(modifier = Modifier.height(8.dp))
                 Surface(
                     color = Color(0xFFFF9800).copy(alpha = 0.2f),
                     shape = RoundedCornerShape(4.dp)
                 ) {
                     Text(
-                        text = "PAUSED",
+                        text = if (isAutoPaused) "AUTO-PAUSED" else "PAUSED",
                         color = Color(0xFFFF9800),
                         fontSize = 12.sp,
                         fontWeight = FontWeight.Bold,
@@ -415,13 +486,11 @@ private fun TimerCard(
 
 @Composable
 private fun LiveStatsCard(
-    distanceKm: Float,
-    pace: String,
-    speedKmh: Float,
-    heartRate: Int?,
-    heartRateSensorState: HeartRateSensorState,
+    liveMetrics: State<LiveMetrics>,
     isOutdoor: Boolean
 ) {
+    // Children take plain strings, so tiles whose text didn't change are skipped
+    val metrics = liveMetrics.value
     Card(
         modifier = Modifier.fillMaxWidth(),
         colors = CardDefaults.cardColors(containerColor = CardBackground),
@@ -433,68 +502,50 @@ private fun LiveStatsCard(
                 .padding(16.dp)
         ) {
             // Heart Rate Row (always shown)
-            Row(
-                modifier = Modifier.fillMaxWidth(),
-                verticalAlignment = Alignment.CenterVertically
-            ) {
-                // Heart icon with pulse animation if connected
-                Text(
-                    text = "❤️",
-                    fontSize = 24.sp
-                )
-                Spacer(modifier = Modifier.width(12.dp))
-                Column {
-                    Text(
-                        text = "HEART RATE",
-                        color = TextGray,
-                        fontSize = 10.sp,
-                        fontWeight = FontWeight.Medium
+            HeartRateRow(
+                heartRate = metrics.heartRate,
+                hasHeartRate = metrics.hasHeartRate,
+                heartRateSensorState = metrics.heartRateSensorState
+            )
+
+            // Session average and zones, once heart rate has been recorded
+            if (metrics.hasHeartRateTrace) {
+                Spacer(modifier = Modifier.height(12.dp))
+                Row(
+                    modifier = Modifier.fillMaxWidth(),
+                    horizontalArrangement = Arrangement.SpaceEvenly
+                ) {
+                    StatItem(
+                        label = "AVG HR",
+                        value = metrics.averageHeartRate
                     )
-                    Row(
-                        verticalAlignment = Alignment.Bottom
-                    ) {
-                        Text(
-                            text = heartRate?.toString() ?: "--",
-                            color = if (heartRate != null) Color(0xFFFF5252) else TextGray,
-                            fontSize = 32.sp,
-                            fontWeight = FontWeight.Bold
-                        )
-                        Spacer(modifier = Modifier.width(4.dp))
-                        Text(
-                            text = "bpm",
-                            color = TextGray,
-                            fontSize = 14.sp,
-                            modifier = Modifier.padding(bottom = 4.dp)
+                    StatItem(
+                        label = if (metrics.isInTargetZone) "ZONE · ON TARGET" else "ZONE",
+                        value = metrics.heartRateZone
+                    )
+                    if (metrics.targetZoneLabel.isNotEmpty()) {
+                        StatItem(
+                            label = metrics.targetZoneLabel,
+                            value = metrics.timeInTargetZone
                         )
                     }
                 }
-                Spacer(modifier = Modifier.weight(1f))
-                // Sensor status indicator
-                Surface(
-                    color = when (heartRateSensorState) {
-                        HeartRateSensorState.CONNECTED -> AccentGreen.copy(alpha = 0.2f)
-                        HeartRateSensorState.CONNECTING -> Color(0xFFFF9800).copy(alpha = 0.2f)
-                        HeartRateSensorState.SCANNING -> Color(0xFF2196F3).copy(alpha = 0.2f)
-                        HeartRateSensorState.DISCONNECTED -> TextGray.copy(alpha = 0.2f)
-                    },
-                    shape = RoundedCornerShape(8.dp)
+            }
+
+            // HRV from the strap's RR intervals, once enough beats are in
+            if (metrics.hasHrv) {
+                Spacer(modifier = Modifier.height(12.dp))
+                Row(
+                    modifier = Modifier.fillMaxWidth(),
+                    horizontalArrangement = Arrangement.SpaceEvenly
                 ) {
-                    Text(
-                        text = when (heartRateSensorState) {
-                            HeartRateSensorState.CONNECTED -> "CONNECTED"
-                            HeartRateSensorState.CONNECTING -> "CONNECTING"
-                            HeartRateSensorState.SCANNING -> "SCANNING"
-                            HeartRateSensorState.DISCONNECTED -> "NO SENSOR"
-                        },
-                        color = when (heartRateSensorState) {
-                            HeartRateSensorState.CONNECTED -> AccentGreen
-                            HeartRateSensorState.CONNECTING -> Color(0xFFFF9800)
-                            HeartRateSensorState.SCANNING -> Color(0xFF2196F3)
-                            HeartRateSensorState.DISCONNECTED -> TextGray
-                        },
-                        fontSize = 10.sp,
-                        fontWeight = FontWeight.Medium,
-                        modifier = Modifier.padding(horizontal = 8.dp, vertical = 4.dp)
+                    StatItem(
+                        label = "HRV (RMSSD)",
+                        value = metrics.hrv
+                    )
+                    StatItem(
+                        label = if (metrics.isAboveAerobicThreshold) "DFA α1 · ABOVE AeT" else "DFA α1",
+                        value = metrics.dfaAlpha1
                     )
                 }
             }
@@ -519,7 +570,7 @@ private fun LiveStatsCard(
                 ) {
                     StatItem(
                         label = "SPEED",
-                        value = String.format("%.1f km/h", speedKmh)
+                        value = metrics.speed
                     )
                     Box(
                         modifier = Modifier
@@ -529,7 +580,7 @@ private fun LiveStatsCard(
                     )
                     StatItem(
                         label = "DISTANCE",
-                        value = String.format("%.2f km", distanceKm)
+                        value = metrics.distance
                     )
                     Box(
                         modifier = Modifier
@@ -539,7 +590,7 @@ private fun LiveStatsCard(
                     )
                     StatItem(
                         label = "PACE",
-                        value = "$pace /km"
+                        value = metrics.pace
                     )
                 }
             }
@@ -547,6 +598,79 @@ private fun LiveStatsCard(
     }
 }
 
+@Composable
+private fun HeartRateRow(
+    heartRate: String,
+    hasHeartRate: Boolean,
+    heartRateSensorState: HeartRateSensorState
+) {
+    Row(
+        modifier = Modifier.fillMaxWidth(),
+        verticalAlignment = Alignment.CenterVertically
+    ) {
+        // Heart icon with pulse animation if connected
+        Text(
+            text = "❤️",
+            fontSize = 24.sp
+        )
+        Spacer(modifier = Modifier.width(12.dp))
+        Column {
+            Text(
+                text = "HEART RATE",
+                color = TextGray,
+                fontSize = 10.sp,
+                fontWeight = FontWeight.Medium
+            )
+            Row(
+                verticalAlignment = Alignment.Bottom
+            ) {
+                Text(
+                    text = heartRate,
+                    color = if (hasHeartRate) Color(0xFFFF5252) else TextGray,
+                    fontSize = 32.sp,
+                    fontWeight = FontWeight.Bold
+                )
+                Spacer(modifier = Modifier.width(4.dp))
+                Text(
+                    text = "bpm",
+                    color = TextGray,
+                    fontSize = 14.sp,
+                    modifier = Modifier.padding(bottom = 4.dp)
+                )
+            }
+        }
+        Spacer(modifier = Modifier.weight(1f))
+        // Sensor status indicator
+        Surface(
+            color = when (heartRateSensorState) {
+                HeartRateSensorState.CONNECTED -> AccentGreen.copy(alpha = 0.2f)
+                HeartRateSensorState.CONNECTING -> Color(0xFFFF9800).copy(alpha = 0.2f)
+                HeartRateSensorState.SCANNING -> Color(0xFF2196F3).copy(alpha = 0.2f)
+                HeartRateSensorState.DISCONNECTED -> TextGray.copy(alpha = 0.2f)
+            },
+            shape = RoundedCornerShape(8.dp)
+        ) {
+            Text(
+                text = when (heartRateSensorState) {
+                    HeartRateSensorState.CONNECTED -> "CONNECTED"
+                    HeartRateSensorState.CONNECTING -> "CONNECTING"
+                    HeartRateSensorState.SCANNING -> "SCANNING"
+                    HeartRateSensorState.DISCONNECTED -> "NO SENSOR"
+                },
+                color = when (heartRateSensorState) {
+                    HeartRateSensorState.CONNECTED -> AccentGreen
+                    HeartRateSensorState.CONNECTING -> Color(0xFFFF9800)
+                    HeartRateSensorState.SCANNING -> Color(0xFF2196F3)
+                    HeartRateSensorState.DISCONNECTED -> TextGray
+                },
+                fontSize = 10.sp,
+                fontWeight = FontWeight.Medium,
+                modifier = Modifier.padding(horizontal = 8.dp, vertical = 4.dp)
+            )
+        }
+    }
+}
+
 @Composable
 private fun StatItem(label: String, value: String) {
     Column(horizontalAlignment = Alignment.CenterHorizontally) {
@@ -567,7 +691,69 @@ private fun StatItem(label: String, value: String) {
 }
 
 @Composable
-private fun RouteMapCard(routePoints: List<LatLng>) {
+private fun SplitsCard(laps: List<Lap>) {
+    Card(
+        modifier = Modifier.fillMaxWidth(),
+        colors = CardDefaults.cardColors(containerColor = CardBackground),
+        shape = RoundedCornerShape(16.dp)
+    ) {
+        Column(modifier = Modifier.padding(16.dp)) {
+            Text(
+                text = "SPLITS",
+                color = TextGray,
+                fontSize = 11.sp,
+                fontWeight = FontWeight.Medium
+            )
+            Spacer(modifier = Modifier.height(12.dp))
+            // Most recent lap first
+            laps.asReversed().forEach { lap ->
+                val paceSeconds = lap.paceSecondsPerKm.toInt()
+                Row(
+                    modifier = Modifier
+                        .fillMaxWidth()
+                        .padding(vertical = 4.dp),
+                    horizontalArrangement = Arrangement.SpaceBetween
+                ) {
+                    Text(
+                        text = "KM ${lap.number}",
+                        color = AccentGreen,
+                        fontSize = 12.sp,
+                        fontWeight = FontWeight.Medium,
+                        modifier = Modifier.width(60.dp)
+                    )
+                    Text(
+                        text = String.format("%d:%02d /km", paceSeconds / 60, paceSeconds % 60),
+                        color = TextWhite,
+                        fontSize = 14.sp,
+                        fontWeight = FontWeight.Bold
+                    )
+                    Text(
+                        text = lap.averageHeartRate?.let { "$it bpm" } ?: "-- bpm",
+                        color = TextGray,
+                        fontSize = 12.sp
+                    )
+                }
+            }
+        }
+    }
+}
+
+@Composable
+private fun RouteMapCard(routeProvider: () -> RouteView) {
+    // Read here rather than in the caller so new points only recompose the map
+    val route = routeProvider()
+    // Simplified polyline is cached across recompositions and only the tail
+    // is reprocessed as new points arrive
+    val simplifier = remember { RouteSimplifier() }
+    var zoom by remember { mutableFloatStateOf(RouteSimplifier.DEFAULT_ZOOM) }
+    val routePoints = remember(route, zoom) {
+        if (route.isNotEmpty()) {
+            simplifier.setZoom(zoom, route.latitude(route.size - 1))
+        }
+        simplifier.update(route)
+        List(simplifier.size) { LatLng(simplifier.latitude(it), simplifier.longitude(it)) }
+    }
+
     Card(
         modifier = Modifier
             .fillMaxWidth()
@@ -600,6 +786,13 @@ private fun RouteMapCard(routePoints: List<LatLng>) {
                 position = CameraPosition.fromLatLngZoom(routePoints.last(), 16f)
             }
 
+            // Re-simplify only when the user settles on a different zoom level
+            LaunchedEffect(cameraPositionState.isMoving) {
+                if (!cameraPositionState.isMoving) {
+                    zoom = cameraPositionState.position.zoom
+                }
+            }
+
             // Update camera when route changes
             LaunchedEffect(routePoints.lastOrNull()) {
                 routePoints.lastOrNull()?.let { lastPoint ->
@@ -815,6 +1008,7 @@ private fun WorkoutControls(
                     Button(
                         onClick = onPrepare,
                         modifier = Modifier
+                            .testTag("workout_prepare")
                             .fillMaxWidth()
                             .height(56.dp),
                         colors = ButtonDefaults.buttonColors(containerColor = AccentGreen),
@@ -838,6 +1032,7 @@ private fun WorkoutControls(
                     Button(
                         onClick = onStart,
                         modifier = Modifier
+                            .testTag("workout_start")
                             .fillMaxWidth()
                             .height(56.dp),
                         colors = ButtonDefaults.buttonColors(containerColor = AccentGreen),
@@ -919,6 +1114,7 @@ private fun WorkoutControls(
                     Button(
                         onClick = onStart,
                         modifier = Modifier
+                            .testTag("workout_start")
                             .fillMaxWidth()
                             .height(56.dp),
                         colors = ButtonDefaults.buttonColors(
@@ -961,6 +1157,7 @@ private fun WorkoutControls(
                     Button(
                         onClick = onComplete,
                         modifier = Modifier
+                            .testTag("workout_finish")
                             .weight(1f)
                             .height(56.dp),
                         colors = ButtonDefaults.buttonColors(containerColor = AccentGreen),
@@ -1008,6 +1205,7 @@ private fun WorkoutControls(
                     OutlinedButton(
                         onClick = onComplete,
                         modifier = Modifier
+                            .testTag("workout_finish")
                             .weight(1f)
                             .height(56.dp),
                         colors = ButtonDefaults.outlinedButtonColors(contentColor = AccentGreen),
@@ -1046,6 +1244,63 @@ private fun WorkoutControls(
     }
 }
 
+@Composable
+private fun ExportCard(
+    isExporting: Boolean,
+    message: String?,
+    onExport: (ExportFormat) -> Unit
+) {
+    Card(
+        modifier = Modifier.fillMaxWidth(),
+        colors = CardDefaults.cardColors(containerColor = CardBackground),
+        shape = RoundedCornerShape(16.dp)
+    ) {
+        Column(modifier = Modifier.padding(16.dp)) {
+            Text(
+                text = "EXPORT WORKOUT",
+                color = TextGray,
+                fontSize = 12.sp,
+                fontWeight = FontWeight.Medium
+            )
+            Spacer(modifier = Modifier.height(12.dp))
+            Row(
+                modifier = Modifier.fillMaxWidth(),
+                horizontalArrangement = Arrangement.spacedBy(8.dp)
+            ) {
+                ExportFormat.entries.forEach { format ->
+                    OutlinedButton(
+                        onClick = { onExport(format) },
+                        enabled = !isExporting,
+                        modifier = Modifier.weight(1f),
+                        colors = ButtonDefaults.outlinedButtonColors(contentColor = AccentGreen),
+                        shape = RoundedCornerShape(12.dp)
+                    ) {
+                        Text(
+                            text = format.name,
+                            fontWeight = FontWeight.Medium,
+                            fontSize = 12.sp
+                        )
+                    }
+                }
+            }
+            if (isExporting) {
+                Spacer(modifier = Modifier.height(12.dp))
+                LinearProgressIndicator(
+                    modifier = Modifier.fillMaxWidth(),
+                    color = AccentGreen
+                )
+            } else if (message != null) {
+                Spacer(modifier = Modifier.height(8.dp))
+                Text(
+                    text = message,
+                    color = TextGray,
+                    fontSize = 12.sp
+                )
+            }
+        }
+    }
+}
+
 @Composable
 private fun ImportHealthConnectDialog(
     sessions: List<ExerciseSessionInfo>,
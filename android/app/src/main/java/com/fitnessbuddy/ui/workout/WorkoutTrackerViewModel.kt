@@ -1,46 +1,44 @@
 package com.fitnessbuddy.ui.workout
 
+import android.content.Context
+import android.net.Uri
+import android.provider.OpenableColumns
+import androidx.compose.runtime.derivedStateOf
 import androidx.compose.runtime.getValue
-import androidx.compose.runtime.mutableFloatStateOf
-import androidx.compose.runtime.mutableLongStateOf
-import androidx.compose.runtime.mutableStateListOf
 import androidx.compose.runtime.mutableStateOf
 import androidx.compose.runtime.setValue
 import androidx.lifecycle.ViewModel
 import androidx.lifecycle.viewModelScope
-import com.fitnessbuddy.data.sensor.BluetoothHeartRateManager
-import com.fitnessbuddy.data.sensor.HeartRateSensorState
+import com.fitnessbuddy.data.export.ExportFormat
+import com.fitnessbuddy.data.export.ImportedWorkout
+import com.fitnessbuddy.data.export.WorkoutExporter
+import com.fitnessbuddy.data.export.WorkoutTrack
 import com.fitnessbuddy.data.healthconnect.HealthConnectManager
 import com.fitnessbuddy.data.healthconnect.ExerciseSessionInfo
-import com.fitnessbuddy.data.location.LocationPoint
 import com.fitnessbuddy.data.location.LocationTracker
+import com.fitnessbuddy.data.location.RouteView
+import com.fitnessbuddy.data.metrics.HeartRateZones
+import com.fitnessbuddy.data.repository.OnboardingDataHolder
+import com.fitnessbuddy.domain.model.Lap
+import com.fitnessbuddy.domain.model.WorkoutMode
 import com.fitnessbuddy.domain.model.WorkoutResult
+import com.fitnessbuddy.domain.model.WorkoutState
 import com.fitnessbuddy.domain.model.toPlannedWorkoutInfo
 import com.fitnessbuddy.domain.repository.GeminiRepository
 import com.fitnessbuddy.domain.repository.TrainingPlanRepository
+import com.fitnessbuddy.domain.repository.WorkoutHistoryRepository
 import com.fitnessbuddy.domain.model.TrainingDay
+import com.fitnessbuddy.service.WorkoutSessionEngine
+import com.fitnessbuddy.service.WorkoutSessionSummary
 import dagger.hilt.android.lifecycle.HiltViewModel
-import kotlinx.coroutines.Job
-import kotlinx.coroutines.delay
-import kotlinx.coroutines.flow.launchIn
-import kotlinx.coroutines.flow.onEach
-import kotlinx.coroutines.isActive
+import dagger.hilt.android.qualifiers.ApplicationContext
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.flow.Flow
+import kotlinx.coroutines.flow.flowOn
 import kotlinx.coroutines.launch
+import kotlinx.coroutines.withContext
 import javax.inject.Inject
 
-enum class WorkoutMode {
-    INDOOR,
-    OUTDOOR
-}
-
-enum class WorkoutState {
-    NOT_STARTED,
-    PREPARING,    // GPS acquisition phase - location tracking starts but timer doesn't
-    RUNNING,
-    PAUSED,
-    COMPLETED
-}
-
 enum class FeedbackState {
     IDLE,
     LOADING,
@@ -48,49 +46,58 @@ enum class FeedbackState {
     ERROR
 }
 
+/**
+ * Thin observer of [WorkoutSessionEngine]: the live session, its sensors and
+ * metrics live in the engine so they outlive this ViewModel. This class only
+ * mirrors the engine snapshot into Compose state and handles the plan,
+ * feedback, file export and Health Connect parts of the screen.
+ */
 @HiltViewModel
 class WorkoutTrackerViewModel @Inject constructor(
+    @ApplicationContext private val context: Context,
     private val trainingPlanRepository: TrainingPlanRepository,
-    private val locationTracker: LocationTracker,
     private val geminiRepository: GeminiRepository,
-    private val bluetoothHeartRateManager: BluetoothHeartRateManager,
-    private val healthConnectManager: HealthConnectManager
+    private val healthConnectManager: HealthConnectManager,
+    private val sessionEngine: WorkoutSessionEngine,
+    private val workoutExporter: WorkoutExporter,
+    private val workoutHistoryRepository: WorkoutHistoryRepository,
+    private val onboardingDataHolder: OnboardingDataHolder
 ) : ViewModel() {
 
     var trainingDay by mutableStateOf<TrainingDay?>(null)
         private set
 
-    var workoutMode by mutableStateOf(WorkoutMode.INDOOR)
-        private set
+    private var session by mutableStateOf(sessionEngine.snapshot.value)
 
-    var workoutState by mutableStateOf(WorkoutState.NOT_STARTED)
-        private set
+    // Mode picked before the session starts; afterwards the engine's mode applies
+    private var selectedMode by mutableStateOf(WorkoutMode.INDOOR)
 
-    var elapsedSeconds by mutableLongStateOf(0L)
-        private set
+    // Derived per field: readers are only invalidated when their value changes,
+    // not on every heart-rate or location tick of the session snapshot
+    val workoutMode: WorkoutMode by derivedStateOf {
+        if (session.state == WorkoutState.NOT_STARTED) selectedMode else session.mode
+    }
 
-    var distanceMeters by mutableFloatStateOf(0f)
-        private set
+    val workoutState: WorkoutState by derivedStateOf { session.state }
 
-    val routePoints = mutableStateListOf<LocationPoint>()
+    val routePoints: RouteView by derivedStateOf { session.route }
 
-    var isLoading by mutableStateOf(false)
-        private set
+    val laps: List<Lap> by derivedStateOf { session.laps }
+
+    val autoPauseEnabled: Boolean by derivedStateOf { session.autoPauseEnabled }
 
-    // Heart rate state (from Bluetooth sensor)
-    var currentHeartRate by mutableStateOf<Int?>(null)
-        private set
-    
-    var heartRateSensorState by mutableStateOf(HeartRateSensorState.DISCONNECTED)
-        private set
-    
-    // Current speed in m/s (from GPS)
-    var currentSpeedMs by mutableFloatStateOf(0f)
-        private set
-    
     // GPS signal acquired (has at least one location point)
-    val hasGpsSignal: Boolean
-        get() = routePoints.isNotEmpty()
+    val hasGpsSignal: Boolean by derivedStateOf { session.hasGpsSignal }
+
+    /**
+     * Formatted live figures at display rate, for the timer and stats tiles.
+     * Collect it from composition: its ticks wait for the screen's frames.
+     */
+    val liveMetrics: Flow<LiveMetrics> = TelemetryAggregator(sessionEngine).liveMetrics()
+        .flowOn(Dispatchers.Default)
+
+    var isLoading by mutableStateOf(false)
+        private set
 
     // Feedback state
     var feedbackState by mutableStateOf(FeedbackState.IDLE)
@@ -112,11 +119,34 @@ class WorkoutTrackerViewModel @Inject constructor(
     var showImportDialog by mutableStateOf(false)
         private set
 
-    private var timerJob: Job? = null
-    private var locationJob: Job? = null
-    private var heartRateJob: Job? = null
+    // Error from the last file import, null if there was none
+    var importMessage by mutableStateOf<String?>(null)
+        private set
+
+    // File export state, available once a recorded session is completed
+    private var completedSummary: WorkoutSessionSummary? = null
+
+    var canExport by mutableStateOf(false)
+        private set
+
+    var isExporting by mutableStateOf(false)
+        private set
+
+    var exportMessage by mutableStateOf<String?>(null)
+        private set
+
+    private var weekNumber = 0
+    private var dayOfWeek = ""
+
+    init {
+        viewModelScope.launch {
+            sessionEngine.snapshot.collect { session = it }
+        }
+    }
 
     fun loadWorkout(weekNumber: Int, dayOfWeek: String) {
+        this.weekNumber = weekNumber
+        this.dayOfWeek = dayOfWeek
         viewModelScope.launch {
             isLoading = true
             trainingPlanRepository.getActiveTrainingPlan()
@@ -126,13 +156,41 @@ class WorkoutTrackerViewModel @Inject constructor(
                         it.dayOfWeek.equals(dayOfWeek, ignoreCase = true) 
                     }
                 }
+            if (feedbackState == FeedbackState.IDLE) {
+                // A fresh screen shouldn't show the previous session's results
+                sessionEngine.clearCompleted()
+            }
+            if (workoutState == WorkoutState.NOT_STARTED) {
+                // Resumes a session interrupted by process death, if it belongs to this workout
+                sessionEngine.restoreFromJournal(
+                    weekNumber,
+                    dayOfWeek,
+                    heartRateZones = heartRateZones(),
+                    targetHeartRateZones = targetHeartRateZones()
+                )
+            }
             isLoading = false
         }
     }
 
+    // From the age given during onboarding; the default until it is known
+    private fun heartRateZones(): HeartRateZones =
+        onboardingDataHolder.onboardingData?.age
+            ?.let { HeartRateZones.maxHeartRateForAge(it) }
+            ?.let { HeartRateZones.forMaxHeartRate(it) }
+            ?: HeartRateZones.DEFAULT
+
+    // Zones the planned workout names, e.g. 2..2 for "Zone 2"
+    private fun targetHeartRateZones(): IntRange? =
+        trainingDay?.zone?.let { HeartRateZones.parseTarget(it) }
+
+    fun setAutoPauseEnabled(enabled: Boolean) {
+        sessionEngine.setAutoPauseEnabled(enabled)
+    }
+
     fun setMode(mode: WorkoutMode) {
         if (workoutState == WorkoutState.NOT_STARTED) {
-            workoutMode = mode
+            selectedMode = mode
         }
     }
 
@@ -141,163 +199,171 @@ class WorkoutTrackerViewModel @Inject constructor(
      * but doesn't start the timer yet.
      */
     fun prepareWorkout() {
-        workoutState = WorkoutState.PREPARING
-        startHeartRateMonitoring()
-        if (workoutMode == WorkoutMode.OUTDOOR) {
-            startLocationTracking()
-        }
+        sessionEngine.prepare(
+            mode = selectedMode,
+            weekNumber = weekNumber,
+            dayOfWeek = dayOfWeek,
+            workoutType = trainingDay?.workoutType.orEmpty(),
+            heartRateZones = heartRateZones(),
+            targetHeartRateZones = targetHeartRateZones()
+        )
     }
     
     /**
      * Actually start the workout timer.
      * For outdoor mode, should be called after GPS signal is acquired.
+     * Indoor mode has no GPS to wait for, so it is prepared here too.
      */
     fun startWorkout() {
-        workoutState = WorkoutState.RUNNING
-        startTimer()
-        // If we weren't already preparing, start the tracking now
-        if (workoutMode == WorkoutMode.OUTDOOR && locationJob == null) {
-            startLocationTracking()
-        }
-        if (heartRateJob == null) {
-            startHeartRateMonitoring()
+        if (selectedMode == WorkoutMode.INDOOR && sessionEngine.snapshot.value.state == WorkoutState.NOT_STARTED) {
+            prepareWorkout()
         }
+        sessionEngine.start()
     }
 
     fun pauseWorkout() {
-        workoutState = WorkoutState.PAUSED
-        stopTimer()
-        stopLocationTracking()
-        stopHeartRateMonitoring()
+        sessionEngine.pause()
     }
 
     fun resumeWorkout() {
-        workoutState = WorkoutState.RUNNING
-        startTimer()
-        startHeartRateMonitoring()
-        if (workoutMode == WorkoutMode.OUTDOOR) {
-            startLocationTracking()
-        }
+        sessionEngine.resume()
     }
 
     fun completeWorkout() {
-        workoutState = WorkoutState.COMPLETED
-        stopTimer()
-        stopLocationTracking()
-        stopHeartRateMonitoring()
-        
-        // Request feedback from Gemini
-        requestFeedback()
-    }
-    
-    private fun requestFeedback() {
         feedbackState = FeedbackState.LOADING
         feedbackError = null
-        
+
         viewModelScope.launch {
+            val summary = sessionEngine.complete()
+            completedSummary = summary
+            canExport = summary.route.isNotEmpty() || summary.heartRate.isNotEmpty()
             val result = WorkoutResult(
-                elapsedSeconds = elapsedSeconds,
-                distanceMeters = distanceMeters,
-                workoutMode = workoutMode.name,
-                averagePace = getPace(),
+                elapsedSeconds = summary.elapsedSeconds,
+                distanceMeters = summary.distanceMeters,
+                workoutMode = summary.mode.name,
+                averagePace = LocationTracker.calculatePace(summary.distanceMeters, summary.elapsedSeconds),
                 plannedWorkout = trainingDay?.toPlannedWorkoutInfo(),
-                routePoints = routePoints.toList()
+                routePoints = summary.route,
+                laps = summary.laps,
+                elevationGainMeters = summary.elevationGainMeters,
+                elevationLossMeters = summary.elevationLossMeters,
+                elevationProfile = summary.elevationProfile,
+                heartRate = summary.heartRate,
+                targetHeartRateZones = targetHeartRateZones(),
+                hrv = summary.hrv
             )
-            
-            geminiRepository.generateWorkoutFeedback(result)
-                .onSuccess { feedbackText ->
-                    feedback = feedbackText
-                    feedbackState = FeedbackState.SUCCESS
-                }
-                .onFailure { error ->
-                    feedbackError = error.message ?: "Failed to get feedback"
-                    feedbackState = FeedbackState.ERROR
-                }
+            launch { workoutHistoryRepository.saveWorkout(weekNumber, dayOfWeek, summary.startedAt, result) }
+            requestFeedback(result)
         }
     }
+    
+    private suspend fun requestFeedback(result: WorkoutResult) {
+        feedbackState = FeedbackState.LOADING
+        feedbackError = null
 
-    private fun startTimer() {
-        timerJob?.cancel()
-        timerJob = viewModelScope.launch {
-            while (isActive) {
-                delay(1000)
-                elapsedSeconds++
+        geminiRepository.generateWorkoutFeedback(result)
+            .onSuccess { feedbackText ->
+                feedback = feedbackText
+                feedbackState = FeedbackState.SUCCESS
+            }
+            .onFailure { error ->
+                feedbackError = error.message ?: "Failed to get feedback"
+                feedbackState = FeedbackState.ERROR
             }
-        }
     }
 
-    private fun stopTimer() {
-        timerJob?.cancel()
-        timerJob = null
-    }
+    // File export functions
 
-    private fun startLocationTracking() {
-        locationJob?.cancel()
-        locationJob = locationTracker.getLocationUpdates()
-            .onEach { point ->
-                routePoints.add(point)
-                distanceMeters = LocationTracker.calculateDistance(routePoints)
-                currentSpeedMs = point.speed // Update current speed from GPS
-            }
-            .launchIn(viewModelScope)
-    }
+    fun exportFileName(format: ExportFormat): String =
+        "fitnessbuddy-week$weekNumber-${dayOfWeek.lowercase()}.${format.extension}"
 
-    private fun stopLocationTracking() {
-        locationJob?.cancel()
-        locationJob = null
-    }
-    
-    private fun startHeartRateMonitoring() {
-        heartRateJob?.cancel()
-        // Collect heart rate from Bluetooth sensor
-        heartRateJob = viewModelScope.launch {
-            launch {
-                bluetoothHeartRateManager.currentHeartRate.collect { heartRate ->
-                    currentHeartRate = heartRate
-                }
-            }
-            launch {
-                bluetoothHeartRateManager.sensorState.collect { state ->
-                    heartRateSensorState = state
+    /**
+     * Streams the completed session to [uri], e.g. a document picked with
+     * ACTION_CREATE_DOCUMENT.
+     */
+    fun exportWorkout(uri: Uri, format: ExportFormat) {
+        val summary = completedSummary ?: return
+        val track = WorkoutTrack(
+            startTime = summary.startedAt,
+            elapsedSeconds = summary.elapsedSeconds,
+            distanceMeters = summary.distanceMeters,
+            sport = trainingDay?.workoutType.orEmpty(),
+            route = summary.route,
+            heartRate = summary.heartRate
+        )
+        viewModelScope.launch {
+            isExporting = true
+            exportMessage = null
+            val result = try {
+                withContext(Dispatchers.IO) {
+                    context.contentResolver.openOutputStream(uri)?.use { output ->
+                        workoutExporter.export(track, format, output)
+                    } ?: Result.failure(IllegalStateException("Could not open $uri"))
                 }
+            } catch (e: Exception) {
+                Result.failure(e)
             }
+            exportMessage = result.fold(
+                onSuccess = { "Exported as ${format.name}" },
+                onFailure = { it.message ?: "Export failed" }
+            )
+            isExporting = false
         }
     }
-    
-    private fun stopHeartRateMonitoring() {
-        heartRateJob?.cancel()
-        heartRateJob = null
-    }
 
-    fun getPace(): String {
-        return LocationTracker.calculatePace(distanceMeters, elapsedSeconds)
-    }
-    
+    // File import functions
+
     /**
-     * Get current speed in km/h
+     * Reads a GPX, TCX or FIT file, e.g. a document picked with
+     * ACTION_OPEN_DOCUMENT, and completes it as this day's workout.
      */
-    fun getSpeedKmh(): Float {
-        return currentSpeedMs * 3.6f // Convert m/s to km/h
+    fun importWorkoutFile(uri: Uri) {
+        viewModelScope.launch {
+            importMessage = null
+            val result = try {
+                withContext(Dispatchers.IO) {
+                    val format = WorkoutExporter.formatFor(displayName(uri))
+                        ?: return@withContext Result.failure(IllegalStateException("Pick a GPX, TCX or FIT file"))
+                    context.contentResolver.openInputStream(uri)?.use { input ->
+                        workoutExporter.import(format, input)
+                    } ?: Result.failure(IllegalStateException("Could not open $uri"))
+                }
+            } catch (e: Exception) {
+                Result.failure(e)
+            }
+            result
+                .onSuccess { workout -> completeImportedWorkout(workout) }
+                .onFailure { importMessage = it.message ?: "Import failed" }
+        }
     }
 
-    fun formatTime(): String {
-        val hours = elapsedSeconds / 3600
-        val minutes = (elapsedSeconds % 3600) / 60
-        val seconds = elapsedSeconds % 60
-        return if (hours > 0) {
-            String.format("%d:%02d:%02d", hours, minutes, seconds)
-        } else {
-            String.format("%02d:%02d", minutes, seconds)
-        }
+    private suspend fun completeImportedWorkout(workout: ImportedWorkout) {
+        val mode = if (workout.route.isEmpty()) WorkoutMode.INDOOR else WorkoutMode.OUTDOOR
+        sessionEngine.completeImported(mode, workout.durationMillis)
+
+        val elapsed = workout.durationMillis / 1000
+        requestFeedback(
+            WorkoutResult(
+                elapsedSeconds = elapsed,
+                distanceMeters = workout.distanceMeters,
+                workoutMode = mode.name,
+                averagePace = LocationTracker.calculatePace(workout.distanceMeters, elapsed),
+                plannedWorkout = trainingDay?.toPlannedWorkoutInfo(),
+                routePoints = workout.route,
+                heartRate = workout.heartRate,
+                targetHeartRateZones = targetHeartRateZones()
+            )
+        )
     }
 
-    override fun onCleared() {
-        super.onCleared()
-        stopTimer()
-        stopLocationTracking()
-        stopHeartRateMonitoring()
+    // The picked document's file name, which tells the format apart
+    private fun displayName(uri: Uri): String {
+        val name = context.contentResolver
+            .query(uri, arrayOf(OpenableColumns.DISPLAY_NAME), null, null, null)
+            ?.use { cursor -> if (cursor.moveToFirst()) cursor.getString(0) else null }
+        return name ?: uri.lastPathSegment.orEmpty()
     }
-    
+
     // Health Connect import functions
     
     fun openImportDialog() {
@@ -323,14 +389,23 @@ class WorkoutTrackerViewModel @Inject constructor(
      */
     fun importSession(session: ExerciseSessionInfo) {
         showImportDialog = false
-        workoutMode = WorkoutMode.INDOOR // Imported sessions don't have route data
-        
-        // Set the elapsed time from the imported session
-        elapsedSeconds = session.durationMinutes * 60
-        
-        // Mark as completed and request feedback
-        workoutState = WorkoutState.COMPLETED
-        requestFeedback()
+
+        // Imported sessions don't have route data; mark as completed with the imported time
+        sessionEngine.completeImported(WorkoutMode.INDOOR, session.durationMinutes * 60_000L)
+
+        // Request feedback
+        val elapsed = session.durationMinutes * 60
+        viewModelScope.launch {
+            requestFeedback(
+                WorkoutResult(
+                    elapsedSeconds = elapsed,
+                    distanceMeters = 0f,
+                    workoutMode = WorkoutMode.INDOOR.name,
+                    averagePace = LocationTracker.calculatePace(0f, elapsed),
+                    plannedWorkout = trainingDay?.toPlannedWorkoutInfo()
+                )
+            )
+        }
     }
 }
 
@@ -0,0 +1,78 @@
+package com.fitnessbuddy.bluetooth
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class FtmsParserTest {
+
+    private val data = TreadmillData()
+
+    private fun bytes(vararg values: Int) = ByteArray(values.size) { values[it].toByte() }
+
+    @Test
+    fun decodesSpeedDistanceAndIncline() {
+        // Flags: total distance + inclination; 10.50 km/h, 1234 m, incline -2.5 %, ramp not available
+        val value = bytes(0x0C, 0x00, 0x1A, 0x04, 0xD2, 0x04, 0x00, 0xE7, 0xFF, 0xFF, 0x7F)
+
+        assertTrue(FtmsParser.decodeTreadmillData(value, data))
+
+        assertEquals(10.5f, data.speedKmh, 1e-4f)
+        assertEquals(10.5f / 3.6f, data.speedMs, 1e-4f)
+        assertEquals(1234, data.totalDistanceMeters)
+        assertEquals(-2.5f, data.inclinePercent, 1e-4f)
+        assertTrue(data.rampAngleDegrees.isNaN())
+    }
+
+    @Test
+    fun continuationKeepsEarlierFieldsAndDoesNotEndRecord() {
+        FtmsParser.decodeTreadmillData(bytes(0x00, 0x00, 0xE8, 0x03), data)
+
+        // More data flag set: no speed; heart rate and elapsed time follow
+        val continuation = bytes(0x01, 0x05, 150, 0x3C, 0x00)
+
+        assertFalse(FtmsParser.decodeTreadmillData(continuation, data))
+        assertEquals(10f, data.speedKmh, 1e-4f)
+        assertEquals(150, data.heartRate)
+        assertEquals(60, data.elapsedSeconds)
+    }
+
+    @Test
+    fun skipsPaceAndEnergyFields() {
+        // Flags: instantaneous pace, expended energy, heart rate
+        val value = bytes(0xA0, 0x01, 0x20, 0x03, 0x09, 0x64, 0x00, 0x0A, 0x00, 0x01, 132)
+
+        assertTrue(FtmsParser.decodeTreadmillData(value, data))
+
+        assertEquals(8f, data.speedKmh, 1e-4f)
+        assertEquals(100, data.totalEnergyKcal)
+        assertEquals(132, data.heartRate)
+    }
+
+    @Test
+    fun rejectsTruncatedTreadmillData() {
+        assertFalse(FtmsParser.decodeTreadmillData(bytes(0x00), data))
+        assertFalse(FtmsParser.decodeTreadmillData(bytes(0x04, 0x00, 0xE8, 0x03, 0x01), data))
+    }
+
+    @Test
+    fun decodesMachineStatus() {
+        assertTrue(FtmsParser.decodeMachineStatus(bytes(0x04), data))
+        assertEquals(TreadmillState.RUNNING, data.state)
+
+        assertTrue(FtmsParser.decodeMachineStatus(bytes(0x02, 0x02), data))
+        assertEquals(TreadmillState.PAUSED, data.state)
+
+        assertTrue(FtmsParser.decodeMachineStatus(bytes(0x02, 0x01), data))
+        assertEquals(TreadmillState.STOPPED, data.state)
+
+        assertTrue(FtmsParser.decodeMachineStatus(bytes(0x05, 0xB0, 0x04), data))
+        assertEquals(12f, data.targetSpeedKmh, 1e-4f)
+
+        assertTrue(FtmsParser.decodeMachineStatus(bytes(0x06, 0xF6, 0xFF), data))
+        assertEquals(-1f, data.targetInclinePercent, 1e-4f)
+
+        assertFalse(FtmsParser.decodeMachineStatus(bytes(0x7F), data))
+    }
+}
@@ -0,0 +1,83 @@
+package com.fitnessbuddy.data.export
+
+import com.fitnessbuddy.data.location.RouteBuffer
+import com.fitnessbuddy.data.metrics.HeartRateTrack
+import org.junit.Assert.assertEquals
+import org.junit.Test
+import java.io.ByteArrayInputStream
+import java.io.ByteArrayOutputStream
+import kotlin.math.cos
+import kotlin.math.sin
+
+class FitRoundTripTest {
+
+    // FIT timestamps are whole seconds
+    private val startTime = 1_714_550_400_000L
+
+    private fun writeAndRead(track: WorkoutTrack): ImportedWorkout {
+        val out = ByteArrayOutputStream()
+        FitWriter(out).write(track)
+        return FitReader(ByteArrayInputStream(out.toByteArray())).read()
+    }
+
+    @Test
+    fun routeAndHeartRateRoundTrip() {
+        val route = RouteBuffer()
+        val heartRate = HeartRateTrack()
+        for (i in 0 until 1800) {
+            val angle = i * 2 * Math.PI / 600
+            val timestamp = startTime + i * 1000L
+            route.add(59.9139 + 0.004 * sin(angle), 10.7522 + 0.008 * cos(angle), 20.0 + 5.0 * sin(angle), 3.2f, timestamp)
+            heartRate.add(timestamp, 130 + i % 20)
+        }
+        val track = WorkoutTrack(
+            startTime = startTime,
+            elapsedSeconds = 1799,
+            distanceMeters = 5_400f,
+            sport = "Easy Run",
+            route = route.snapshot(),
+            heartRate = heartRate.snapshot()
+        )
+
+        val imported = writeAndRead(track)
+
+        assertEquals(startTime, imported.startTime)
+        assertEquals(1_799_000L, imported.durationMillis)
+        assertEquals(5_400f, imported.distanceMeters, 0.01f)
+        assertEquals(route.size, imported.route.size)
+        for (i in 0 until route.size) {
+            assertEquals(route.timestamp(i), imported.route.timestamp(i))
+            // A semicircle is about 1e-7 degrees
+            assertEquals(route.latitude(i), imported.route.latitude(i), 1e-6)
+            assertEquals(route.longitude(i), imported.route.longitude(i), 1e-6)
+            assertEquals(route.altitude(i), imported.route.altitude(i), 0.2)
+            assertEquals(route.speed(i), imported.route.speed(i), 0.001f)
+        }
+        assertEquals(heartRate.size, imported.heartRate.size)
+        for (i in 0 until heartRate.size) {
+            assertEquals(heartRate.timestamp(i), imported.heartRate.timestamp(i))
+            assertEquals(heartRate.bpm(i), imported.heartRate.bpm(i))
+        }
+    }
+
+    @Test
+    fun heartRateOnlySessionRoundTrips() {
+        val heartRate = HeartRateTrack()
+        for (i in 0 until 600) heartRate.add(startTime + i * 1000L, 100 + i % 40)
+        val track = WorkoutTrack(
+            startTime = startTime,
+            elapsedSeconds = 599,
+            distanceMeters = 1_500f,
+            sport = "Treadmill Run",
+            route = RouteBuffer().snapshot(),
+            heartRate = heartRate.snapshot()
+        )
+
+        val imported = writeAndRead(track)
+
+        assertEquals(0, imported.route.size)
+        assertEquals(heartRate.size, imported.heartRate.size)
+        assertEquals(heartRate.averageBpm, imported.heartRate.averageBpm)
+        assertEquals(1_500f, imported.distanceMeters, 0.01f)
+    }
+}
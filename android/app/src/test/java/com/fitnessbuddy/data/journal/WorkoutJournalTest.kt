@@ -0,0 +1,133 @@
+package com.fitnessbuddy.data.journal
+
+import android.content.ContextWrapper
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+
+class WorkoutJournalTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private lateinit var journal: WorkoutJournal
+
+    private val info = JournalSessionInfo(
+        startedAt = 1_714_550_400_000L,
+        weekNumber = 3,
+        dayOfWeek = "Tuesday",
+        workoutMode = "OUTDOOR"
+    )
+
+    @Before
+    fun setUp() {
+        val filesDir = folder.root
+        journal = WorkoutJournal(object : ContextWrapper(null) {
+            override fun getFilesDir(): File = filesDir
+        })
+    }
+
+    @After
+    fun tearDown() {
+        journal.close()
+    }
+
+    private class Recorder : JournalVisitor {
+        val records = mutableListOf<String>()
+
+        override fun onLocation(
+            timestamp: Long,
+            latitude: Double,
+            longitude: Double,
+            altitude: Double,
+            speed: Float,
+            isStationary: Boolean
+        ) {
+            records += "location $timestamp $latitude $longitude $altitude $speed $isStationary"
+        }
+
+        override fun onHeartRate(timestamp: Long, bpm: Int) {
+            records += "heartRate $timestamp $bpm"
+        }
+
+        override fun onTreadmill(
+            timestamp: Long,
+            distanceMeters: Double,
+            altitudeMeters: Double,
+            elevationGainMeters: Float,
+            elevationLossMeters: Float
+        ) {
+            records += "treadmill $timestamp $distanceMeters $altitudeMeters $elevationGainMeters $elevationLossMeters"
+        }
+
+        override fun onStateChange(timestamp: Long, state: Int, elapsedSeconds: Long, isAuto: Boolean) {
+            records += "state $timestamp $state $elapsedSeconds" + if (isAuto) " auto" else ""
+        }
+    }
+
+    @Test
+    fun replaysRecordsInWriteOrder() {
+        journal.begin(info)
+        journal.appendStateChange(1000L, 2, 0L)
+        journal.appendLocation(2000L, 59.9139, 10.7522, 21.5, 3.25f, false)
+        journal.appendHeartRate(2500L, 141)
+        journal.appendTreadmill(3000L, 812.5f, 4.5, 6.25f, 1.5f)
+        journal.appendLocation(4000L, 59.9140, 10.7523, 21.75, 0f, true)
+        journal.appendStateChange(5000L, 3, 4L)
+        journal.appendStateChange(6000L, 2, 4L, isAuto = true)
+        journal.close()
+
+        val recorder = Recorder()
+        assertEquals(7, journal.replay(recorder))
+
+        assertEquals(
+            listOf(
+                "state 1000 2 0",
+                "location 2000 59.9139 10.7522 21.5 3.25 false",
+                "heartRate 2500 141",
+                "treadmill 3000 812.5 4.5 6.25 1.5",
+                "location 4000 59.914 10.7523 21.75 0.0 true",
+                "state 5000 3 4",
+                "state 6000 2 4 auto"
+            ),
+            recorder.records
+        )
+        assertEquals(info, journal.readSessionInfo())
+    }
+
+    @Test
+    fun growsPastInitialCapacityAndAppendsAfterReopen() {
+        journal.begin(info)
+        repeat(20_000) { journal.appendHeartRate(it * 1000L, 100 + it % 50) }
+        journal.close()
+
+        assertTrue(journal.reopen())
+        journal.appendHeartRate(20_000_000L, 77)
+        journal.close()
+
+        val recorder = Recorder()
+        assertEquals(20_001, journal.replay(recorder))
+        assertEquals("heartRate 0 100", recorder.records.first())
+        assertEquals("heartRate 20000000 77", recorder.records.last())
+    }
+
+    @Test
+    fun finishDeletesTheJournal() {
+        journal.begin(info)
+        journal.appendHeartRate(1000L, 120)
+
+        journal.finish()
+
+        assertFalse(journal.isOpen)
+        assertNull(journal.readSessionInfo())
+        assertEquals(0, journal.replay(Recorder()))
+        assertFalse(journal.reopen())
+    }
+}
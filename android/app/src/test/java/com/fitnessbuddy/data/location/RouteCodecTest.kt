@@ -0,0 +1,70 @@
+package com.fitnessbuddy.data.location
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Test
+import kotlin.math.cos
+import kotlin.math.sin
+
+class RouteCodecTest {
+
+    private fun loop(pointCount: Int): RouteBuffer {
+        val route = RouteBuffer()
+        for (i in 0 until pointCount) {
+            val angle = i * 2 * Math.PI / 600
+            route.add(
+                latitude = 59.9139 + 0.004 * sin(angle),
+                longitude = 10.7522 + 0.008 * cos(angle),
+                altitude = 20.0 + 12.5 * sin(angle * 3),
+                speed = 3f + (i % 7) * 0.13f,
+                timestamp = 1_714_550_400_000L + i * 1000L + (i % 3) * 17L
+            )
+        }
+        return route
+    }
+
+    @Test
+    fun roundTripKeepsPointsWithinQuantization() {
+        val route = loop(3600)
+
+        val decoded = RouteCodec.decode(RouteCodec.encode(route))
+
+        assertEquals(route.size, decoded.size)
+        for (i in 0 until route.size) {
+            assertEquals(route.latitude(i), decoded.latitude(i), 1e-6)
+            assertEquals(route.longitude(i), decoded.longitude(i), 1e-6)
+            assertEquals(route.altitude(i), decoded.altitude(i), 0.1)
+            assertEquals(route.speed(i), decoded.speed(i), 0.01f)
+            assertEquals(route.timestamp(i), decoded.timestamp(i))
+        }
+    }
+
+    @Test
+    fun steadyRunStaysCompact() {
+        val route = loop(3600)
+
+        val bytes = RouteCodec.encode(route)
+
+        assertTrue("${bytes.size} bytes for ${route.size} points", bytes.size <= route.size * 12)
+    }
+
+    @Test
+    fun emptyRouteRoundTrips() {
+        val decoded = RouteCodec.decode(RouteCodec.encode(RouteBuffer()))
+
+        assertEquals(0, decoded.size)
+    }
+
+    @Test
+    fun polylineRoundTripKeepsCoordinates() {
+        val route = loop(600)
+
+        val decoded = RouteCodec.decodePolyline(RouteCodec.encodePolyline(route).toString())
+
+        assertEquals(route.size, decoded.size)
+        for (i in 0 until route.size) {
+            assertEquals(route.latitude(i), decoded.latitude(i), 1e-5)
+            assertEquals(route.longitude(i), decoded.longitude(i), 1e-5)
+        }
+    }
+}
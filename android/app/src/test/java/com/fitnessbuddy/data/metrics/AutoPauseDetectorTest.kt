@@ -0,0 +1,40 @@
+package com.fitnessbuddy.data.metrics
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class AutoPauseDetectorTest {
+
+    private val detector = AutoPauseDetector()
+
+    @Test
+    fun datesTransitionsBackToTheStartOfTheDebounceWindow() {
+        var time = 0L
+        repeat(10) { detector.onSample(time, 3f); time += 1000 }
+        assertEquals(0L, detector.stateSince)
+
+        // Stopped at 10 s; only confirmed after the stop delay
+        val stoppedAt = time - 1000
+        var changed = false
+        while (!changed) {
+            changed = detector.onSample(time, 0f)
+            time += 1000
+        }
+        assertEquals(MotionState.STOPPED, detector.state)
+        assertEquals(stoppedAt, detector.stateSince)
+        assertTrue(time - 1000 - stoppedAt >= AutoPauseDetector.DEFAULT_STOP_DELAY_MILLIS)
+
+        repeat(30) { assertFalse(detector.onSample(time, 0f)); time += 1000 }
+
+        val movingAt = time - 1000
+        changed = false
+        while (!changed) {
+            changed = detector.onSample(time, 3f)
+            time += 1000
+        }
+        assertEquals(MotionState.MOVING, detector.state)
+        assertEquals(movingAt, detector.stateSince)
+    }
+}
@@ -0,0 +1,32 @@
+package com.fitnessbuddy.data.metrics
+
+import org.junit.Assert.assertEquals
+import org.junit.Test
+
+class WorkoutClockTest {
+
+    private var now = 0L
+    private val clock = WorkoutClock { now }
+
+    @Test
+    fun adjustMovesActiveTimeButNeverBelowZero() {
+        clock.start()
+        now += 10_000_000_000
+        clock.pause()
+        // An auto-pause confirmed 5 s after the runner stopped
+        clock.adjust(-5_000)
+        assertEquals(5_000L, clock.elapsedMillis)
+
+        now += 60_000_000_000
+        clock.start()
+        // Resume confirmed 2 s after running started
+        clock.adjust(2_000)
+        now += 1_000_000_000
+        assertEquals(8_000L, clock.elapsedMillis)
+
+        clock.adjust(-60_000)
+        assertEquals(0L, clock.elapsedMillis)
+        now += 1_000_000_000
+        assertEquals(1_000L, clock.elapsedMillis)
+    }
+}
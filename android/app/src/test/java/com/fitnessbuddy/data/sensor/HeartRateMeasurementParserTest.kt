@@ -0,0 +1,72 @@
+package com.fitnessbuddy.data.sensor
+
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+class HeartRateMeasurementParserTest {
+
+    private val measurement = HeartRateMeasurement()
+
+    private fun bytes(vararg values: Int) = ByteArray(values.size) { values[it].toByte() }
+
+    @Test
+    fun decodesUint8HeartRate() {
+        assertTrue(HeartRateMeasurementParser.decode(bytes(0x00, 142), measurement))
+
+        assertEquals(142, measurement.bpm)
+        assertEquals(SensorContact.NOT_SUPPORTED, measurement.contact)
+        assertEquals(-1, measurement.energyExpendedKj)
+        assertEquals(0, measurement.rrCount)
+    }
+
+    @Test
+    fun decodesUint16HeartRateAboveByteRange() {
+        assertTrue(HeartRateMeasurementParser.decode(bytes(0x01, 0x2C, 0x01), measurement))
+
+        assertEquals(300, measurement.bpm)
+    }
+
+    @Test
+    fun decodesContactEnergyAndRrIntervals() {
+        // Contact supported and detected, energy 0x0102 kJ, RR 1024 and 512 (1/1024 s)
+        val value = bytes(0x1E, 60, 0x02, 0x01, 0x00, 0x04, 0x00, 0x02)
+
+        assertTrue(HeartRateMeasurementParser.decode(value, measurement))
+
+        assertEquals(60, measurement.bpm)
+        assertEquals(SensorContact.DETECTED, measurement.contact)
+        assertTrue(measurement.hasContact)
+        assertEquals(258, measurement.energyExpendedKj)
+        assertEquals(2, measurement.rrCount)
+        assertEquals(1000, measurement.rrIntervalMillis(0))
+        assertEquals(500, measurement.rrIntervalMillis(1))
+    }
+
+    @Test
+    fun reportsLostContact() {
+        assertTrue(HeartRateMeasurementParser.decode(bytes(0x04, 80), measurement))
+
+        assertEquals(SensorContact.NOT_DETECTED, measurement.contact)
+        assertFalse(measurement.hasContact)
+    }
+
+    @Test
+    fun reusedMeasurementIsResetBetweenNotifications() {
+        HeartRateMeasurementParser.decode(bytes(0x18, 70, 0x10, 0x00, 0x00, 0x04), measurement)
+
+        HeartRateMeasurementParser.decode(bytes(0x00, 71), measurement)
+
+        assertEquals(71, measurement.bpm)
+        assertEquals(-1, measurement.energyExpendedKj)
+        assertEquals(0, measurement.rrCount)
+    }
+
+    @Test
+    fun rejectsTruncatedValues() {
+        assertFalse(HeartRateMeasurementParser.decode(bytes(0x00), measurement))
+        assertFalse(HeartRateMeasurementParser.decode(bytes(0x01, 0x2C), measurement))
+        assertFalse(HeartRateMeasurementParser.decode(bytes(0x08, 90, 0x01), measurement))
+    }
+}
@@ -0,0 +1,162 @@
+package com.fitnessbuddy.service
+
+import android.content.ContextWrapper
+import com.fitnessbuddy.data.journal.JournalSessionInfo
+import com.fitnessbuddy.data.journal.WorkoutJournal
+import com.fitnessbuddy.data.location.LocationPoint
+import com.fitnessbuddy.data.metrics.HeartRateZones
+import com.fitnessbuddy.domain.model.WorkoutMode
+import com.fitnessbuddy.domain.model.WorkoutState
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertTrue
+import org.junit.Before
+import org.junit.Rule
+import org.junit.Test
+import org.junit.rules.TemporaryFolder
+import java.io.File
+import kotlin.math.cos
+
+class JournalRestorerTest {
+
+    @get:Rule
+    val folder = TemporaryFolder()
+
+    private lateinit var journal: WorkoutJournal
+
+    // The live session, driven with the calls WorkoutSessionEngine makes
+    private val live = TrackingPipeline()
+    private var recording = false
+    private var time = START_TIME
+    private var elapsedSeconds = 0L
+
+    // Runner position, moving east along a parallel
+    private var longitude = 10.7522
+
+    @Before
+    fun setUp() {
+        val filesDir = folder.root
+        journal = WorkoutJournal(object : ContextWrapper(null) {
+            override fun getFilesDir(): File = filesDir
+        })
+        journal.begin(JournalSessionInfo(START_TIME, 3, "Tuesday", WorkoutMode.OUTDOOR.name))
+        live.reset(HeartRateZones.DEFAULT)
+    }
+
+    @After
+    fun tearDown() {
+        journal.close()
+    }
+
+    @Test
+    fun restoresTheLiveSessionAcrossAutoAndManualPauses() {
+        start()
+        run(seconds = 120)
+        autoPause()
+        standStill(seconds = 30)
+        autoResume()
+        run(seconds = 120)
+        pause()
+        walkWhilePaused(seconds = 60)
+        resume()
+        run(seconds = 60)
+        journal.close()
+
+        val restored = TrackingPipeline().apply { reset(HeartRateZones.DEFAULT) }
+        val restorer = JournalRestorer(restored)
+        journal.replay(restorer)
+        restorer.finish()
+
+        assertTrue(restorer.isRunning)
+        assertEquals(live.routeBuffer.size, restored.routeBuffer.size)
+        assertEquals(live.distanceMeters(WorkoutMode.OUTDOOR), restored.distanceMeters(WorkoutMode.OUTDOOR), 0.01f)
+        assertEquals(live.splitEngine.laps.size, restored.splitEngine.laps.size)
+        assertEquals(live.heartRateTrack.size, restored.heartRateTrack.size)
+        assertEquals(elapsedSeconds, restorer.elapsedSeconds)
+    }
+
+    @Test
+    fun autoResumeKeepsTheGroundCoveredDuringTheResumeDelay() {
+        start()
+        run(seconds = 60)
+        autoPause()
+        standStill(seconds = 30)
+        // The detector resumes a couple of seconds after running started
+        stepsUnrecorded(seconds = 2)
+        autoResume()
+        run(seconds = 60)
+        journal.close()
+
+        val restored = TrackingPipeline().apply { reset(HeartRateZones.DEFAULT) }
+        journal.replay(JournalRestorer(restored))
+
+        // Everything after the first fix at 3 m/s, the two unrecorded seconds included
+        assertEquals(121 * SPEED_MS, live.distanceMeters(WorkoutMode.OUTDOOR), 121 * SPEED_MS * 0.01f)
+        assertEquals(live.distanceMeters(WorkoutMode.OUTDOOR), restored.distanceMeters(WorkoutMode.OUTDOOR), 0.01f)
+    }
+
+    private fun start() {
+        live.breakSegment()
+        transition(WorkoutState.RUNNING, isAuto = false)
+    }
+
+    private fun autoPause() {
+        live.endHeartRateSegment(time)
+        transition(WorkoutState.PAUSED, isAuto = true)
+    }
+
+    private fun autoResume() = transition(WorkoutState.RUNNING, isAuto = true)
+
+    private fun pause() {
+        live.endHeartRateSegment(time)
+        transition(WorkoutState.PAUSED, isAuto = false)
+    }
+
+    private fun resume() {
+        live.breakSegment()
+        transition(WorkoutState.RUNNING, isAuto = false)
+    }
+
+    private fun transition(state: WorkoutState, isAuto: Boolean) {
+        recording = state == WorkoutState.RUNNING
+        journal.appendStateChange(time, state.ordinal, elapsedSeconds, isAuto)
+    }
+
+    private fun run(seconds: Int) = move(seconds, SPEED_MS)
+
+    private fun standStill(seconds: Int) = move(seconds, 0f)
+
+    private fun stepsUnrecorded(seconds: Int) = move(seconds, SPEED_MS)
+
+    private fun walkWhilePaused(seconds: Int) = move(seconds, 1.5f)
+
+    private fun move(seconds: Int, speed: Float) {
+        repeat(seconds) {
+            time += 1000
+            if (recording) elapsedSeconds++
+            longitude += speed / METERS_PER_DEGREE_LONGITUDE
+            val point = LocationPoint(
+                latitude = LATITUDE,
+                longitude = longitude,
+                altitude = 100.0,
+                speed = speed,
+                timestamp = time,
+                isStationary = speed == 0f
+            )
+            live.onLocation(point, elapsedSeconds * 1000, Float.NaN, recording)
+            if (recording) {
+                journal.appendLocation(time, point.latitude, point.longitude, point.altitude, point.speed, point.isStationary)
+            }
+            val bpm = 120 + (time / 1000 % 20).toInt()
+            journal.appendHeartRate(time, bpm)
+            live.onHeartRate(time, bpm, recording)
+        }
+    }
+
+    private companion object {
+        const val START_TIME = 1_714_550_400_000L
+        const val LATITUDE = 59.9139
+        const val SPEED_MS = 3f
+        val METERS_PER_DEGREE_LONGITUDE = 111_320.0 * cos(Math.toRadians(LATITUDE))
+    }
+}
@@ -0,0 +1,95 @@
+package com.fitnessbuddy.ui.workout
+
+import com.fitnessbuddy.data.repository.OnboardingDataHolder
+import com.fitnessbuddy.domain.model.WorkoutMode
+import com.fitnessbuddy.domain.model.WorkoutState
+import com.fitnessbuddy.service.WorkoutSessionEngine
+import com.fitnessbuddy.service.WorkoutSessionSnapshot
+import io.mockk.every
+import io.mockk.mockk
+import io.mockk.verify
+import io.mockk.verifyOrder
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.ExperimentalCoroutinesApi
+import kotlinx.coroutines.flow.MutableStateFlow
+import kotlinx.coroutines.test.UnconfinedTestDispatcher
+import kotlinx.coroutines.test.resetMain
+import kotlinx.coroutines.test.setMain
+import org.junit.After
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+
+@OptIn(ExperimentalCoroutinesApi::class)
+class WorkoutTrackerViewModelTest {
+
+    private val session = MutableStateFlow(WorkoutSessionSnapshot())
+
+    // Moves through the same states as the real engine's prepare() and start()
+    private val engine = mockk<WorkoutSessionEngine>(relaxed = true) {
+        every { snapshot } returns session
+        every { prepare(any(), any(), any(), any(), any(), any()) } answers {
+            session.value = WorkoutSessionSnapshot(state = WorkoutState.PREPARING, mode = firstArg())
+        }
+        every { start() } answers {
+            if (session.value.state == WorkoutState.PREPARING) {
+                session.value = session.value.copy(state = WorkoutState.RUNNING)
+            }
+        }
+    }
+
+    private lateinit var viewModel: WorkoutTrackerViewModel
+
+    @Before
+    fun setUp() {
+        Dispatchers.setMain(UnconfinedTestDispatcher())
+        viewModel = WorkoutTrackerViewModel(
+            context = mockk(relaxed = true),
+            trainingPlanRepository = mockk(relaxed = true),
+            geminiRepository = mockk(relaxed = true),
+            healthConnectManager = mockk(relaxed = true),
+            sessionEngine = engine,
+            workoutExporter = mockk(relaxed = true),
+            workoutHistoryRepository = mockk(relaxed = true),
+            onboardingDataHolder = OnboardingDataHolder()
+        )
+    }
+
+    @After
+    fun tearDown() {
+        Dispatchers.resetMain()
+    }
+
+    @Test
+    fun indoorStartPreparesAndStartsTheSession() {
+        viewModel.setMode(WorkoutMode.INDOOR)
+
+        viewModel.startWorkout()
+
+        verifyOrder {
+            engine.prepare(WorkoutMode.INDOOR, any(), any(), any(), any(), any())
+            engine.start()
+        }
+        assertEquals(WorkoutState.RUNNING, viewModel.workoutState)
+        assertEquals(WorkoutMode.INDOOR, viewModel.workoutMode)
+    }
+
+    @Test
+    fun outdoorStartWaitsForPrepare() {
+        viewModel.setMode(WorkoutMode.OUTDOOR)
+        viewModel.prepareWorkout()
+
+        viewModel.startWorkout()
+
+        verify(exactly = 1) { engine.prepare(WorkoutMode.OUTDOOR, any(), any(), any(), any(), any()) }
+        assertEquals(WorkoutState.RUNNING, viewModel.workoutState)
+    }
+
+    @Test
+    fun indoorStartDuringASessionDoesNotPrepareAgain() {
+        viewModel.startWorkout()
+        viewModel.startWorkout()
+
+        verify(exactly = 1) { engine.prepare(any(), any(), any(), any(), any(), any()) }
+    }
+}
@@ -0,0 +1,178 @@
+import groovy.json.JsonOutput
+import groovy.json.JsonSlurper
+
+plugins {
+    id("org.jetbrains.kotlin.jvm")
+    id("org.jetbrains.kotlin.plugin.allopen")
+    id("org.jetbrains.kotlin.plugin.serialization")
+    id("org.jetbrains.kotlinx.benchmark")
+}
+
+// JMH generates subclasses of @State classes
+allOpen {
+    annotation("org.openjdk.jmh.annotations.State")
+}
+
+// The hot paths are plain Kotlin inside :app; compile exactly those files
+// here instead of depending on the Android module
+val sharedSources = listOf(
+    "com/fitnessbuddy/bluetooth/FtmsParser.kt",
+    "com/fitnessbuddy/bluetooth/TreadmillData.kt",
+    "com/fitnessbuddy/data/export/ExportText.kt",
+    "com/fitnessbuddy/data/export/WorkoutTrack.kt",
+    "com/fitnessbuddy/data/hrv/HrvCalculator.kt",
+    "com/fitnessbuddy/data/hrv/HrvMetrics.kt",
+    "com/fitnessbuddy/data/hrv/HrvSeries.kt",
+    "com/fitnessbuddy/data/hrv/RrArtifactFilter.kt",
+    "com/fitnessbuddy/data/hrv/RrIntervalBuffer.kt",
+    "com/fitnessbuddy/data/location/GeoMath.kt",
+    "com/fitnessbuddy/data/location/LocationFilter.kt",
+    "com/fitnessbuddy/data/location/LocationPoint.kt",
+    "com/fitnessbuddy/data/location/LocationSamplingPolicy.kt",
+    "com/fitnessbuddy/data/location/LocationSource.kt",
+    "com/fitnessbuddy/data/location/RouteAccumulator.kt",
+    "com/fitnessbuddy/data/location/RouteBuffer.kt",
+    "com/fitnessbuddy/data/location/RouteMath.kt",
+    "com/fitnessbuddy/data/metrics/AutoPauseDetector.kt",
+    "com/fitnessbuddy/data/metrics/ElevationProcessor.kt",
+    "com/fitnessbuddy/data/metrics/HeartRateTrack.kt",
+    "com/fitnessbuddy/data/metrics/HeartRateZones.kt",
+    "com/fitnessbuddy/data/metrics/RollingPaceEstimator.kt",
+    "com/fitnessbuddy/data/metrics/SplitEngine.kt",
+    "com/fitnessbuddy/data/metrics/TreadmillAccumulator.kt",
+    "com/fitnessbuddy/data/replay/SensorRecording.kt",
+    "com/fitnessbuddy/data/replay/SensorReplay.kt",
+    "com/fitnessbuddy/data/repository/JsonExtractor.kt",
+    "com/fitnessbuddy/data/repository/TrainingPlanMapper.kt",
+    "com/fitnessbuddy/data/sensor/HeartRateMeasurement.kt",
+    "com/fitnessbuddy/data/sensor/HeartRateMeasurementParser.kt",
+    "com/fitnessbuddy/data/sensor/HeartRateSource.kt",
+    "com/fitnessbuddy/domain/model/TrainingPlanModels.kt",
+    "com/fitnessbuddy/domain/model/WorkoutResult.kt",
+    "com/fitnessbuddy/domain/model/WorkoutSession.kt",
+    "com/fitnessbuddy/service/TrackingPipeline.kt"
+)
+
+sourceSets {
+    main {
+        kotlin {
+            srcDir("../app/src/main/java")
+            include("com/fitnessbuddy/benchmark/**")
+            include(sharedSources)
+        }
+    }
+}
+
+dependencies {
+    implementation("org.jetbrains.kotlinx:kotlinx-benchmark-runtime:0.4.13")
+    implementation("org.jetbrains.kotlinx:kotlinx-serialization-json:1.6.0")
+    implementation("org.jetbrains.kotlinx:kotlinx-coroutines-core:1.10.2")
+}
+
+kotlin {
+    jvmToolchain(21)
+}
+
+benchmark {
+    targets {
+        register("main")
+    }
+    configurations {
+        named("main") {
+            warmups = 5
+            iterations = 5
+            iterationTime = 1
+            iterationTimeUnit = "s"
+            mode = "avgt"
+            outputTimeUnit = "ns"
+            reportFormat = "json"
+            // Adds gc.alloc.rate.norm, the bytes allocated per operation
+            advanced("jvmProfiler", "gc")
+        }
+    }
+}
+
+// Regression gate: compares the latest report against baseline.json. A
+// benchmark without a recorded baseline is reported, not failed, until the
+// reference machine records one.
+// Run ./gradlew :benchmark:checkBenchmarkBaseline in CI and
+// ./gradlew :benchmark:updateBenchmarkBaseline on the reference machine
+// after an intended change.
+val baselineFile = layout.projectDirectory.file("baseline.json").asFile
+val reportsDir = layout.buildDirectory.dir("reports/benchmarks/main")
+
+fun latestResults(): Map<String, Pair<Double, Double>> {
+    val report = reportsDir.get().asFile.walkTopDown()
+        .filter { it.isFile && it.extension == "json" }
+        .maxByOrNull { it.lastModified() }
+        ?: throw GradleException("No benchmark report in ${reportsDir.get().asFile}")
+
+    @Suppress("UNCHECKED_CAST")
+    val runs = JsonSlurper().parse(report) as List<Map<String, Any?>>
+    return runs.associate { run ->
+        val primary = run["primaryMetric"] as Map<*, *>
+        val secondary = run["secondaryMetrics"] as? Map<*, *> ?: emptyMap<String, Any?>()
+        // Older JMH versions prefix profiler metrics with a middle dot
+        val allocation = secondary.entries
+            .firstOrNull { (it.key as String).endsWith("gc.alloc.rate.norm") }
+            ?.let { ((it.value as Map<*, *>)["score"] as Number).toDouble() }
+            ?: Double.NaN
+        run["benchmark"] as String to ((primary["score"] as Number).toDouble() to allocation)
+    }
+}
+
+tasks.register("checkBenchmarkBaseline") {
+    group = "verification"
+    description = "Runs the benchmarks and fails if ns/op or bytes/op regressed against baseline.json."
+    dependsOn("mainBenchmark")
+    doLast {
+        @Suppress("UNCHECKED_CAST")
+        val baseline = JsonSlurper().parse(baselineFile) as Map<String, Any?>
+        val tolerance = baseline["tolerance"] as Map<*, *>
+        val timeTolerance = (tolerance["time"] as Number).toDouble()
+        val allocationTolerance = (tolerance["allocation"] as Number).toDouble()
+        val allocationSlackBytes = (tolerance["allocationSlackBytes"] as Number).toDouble()
+        val expected = baseline["benchmarks"] as Map<*, *>
+
+        val failures = mutableListOf<String>()
+        for ((name, result) in latestResults()) {
+            val (nsPerOp, bytesPerOp) = result
+            val reference = expected[name] as? Map<*, *>
+            if (reference == null) {
+                // Numbers from any other machine would make a meaningless baseline
+                logger.warn("$name: no baseline, record one with updateBenchmarkBaseline")
+                continue
+            }
+            val baselineNs = (reference["nsPerOp"] as Number).toDouble()
+            val baselineBytes = (reference["bytesPerOp"] as Number).toDouble()
+            logger.lifecycle(
+                "$name: %.1f ns/op (baseline %.1f), %.0f B/op (baseline %.0f)"
+                    .format(nsPerOp, baselineNs, bytesPerOp, baselineBytes)
+            )
+            if (nsPerOp > baselineNs * (1 + timeTolerance)) {
+                failures += "$name: %.1f ns/op exceeds baseline %.1f".format(nsPerOp, baselineNs)
+            }
+            if (!bytesPerOp.isNaN() && bytesPerOp > baselineBytes * (1 + allocationTolerance) + allocationSlackBytes) {
+                failures += "$name: %.0f B/op exceeds baseline %.0f".format(bytesPerOp, baselineBytes)
+            }
+        }
+        if (failures.isNotEmpty()) {
+            throw GradleException("Benchmark regressions:\n" + failures.joinToString("\n"))
+        }
+    }
+}
+
+tasks.register("updateBenchmarkBaseline") {
+    group = "verification"
+    description = "Runs the benchmarks and records the results as the new baseline.json."
+    dependsOn("mainBenchmark")
+    doLast {
+        @Suppress("UNCHECKED_CAST")
+        val baseline = JsonSlurper().parse(baselineFile) as MutableMap<String, Any?>
+        baseline["benchmarks"] = latestResults().toSortedMap().mapValues { (_, result) ->
+            mapOf("nsPerOp" to result.first, "bytesPerOp" to result.second)
+        }
+        baselineFile.writeText(JsonOutput.prettyPrint(JsonOutput.toJson(baseline)) + "\n")
+        logger.lifecycle("Baseline written to $baselineFile")
+    }
+}
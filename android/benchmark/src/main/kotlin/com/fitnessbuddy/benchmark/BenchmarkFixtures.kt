@@ -0,0 +1,94 @@
+package com.fitnessbuddy.benchmark
+
+import com.fitnessbuddy.data.location.LocationPoint
+import com.fitnessbuddy.domain.model.TrainingDay
+import com.fitnessbuddy.domain.model.TrainingPlan
+import com.fitnessbuddy.domain.model.TrainingWeek
+import kotlinx.serialization.encodeToString
+import kotlinx.serialization.json.Json
+import kotlin.math.cos
+import kotlin.math.sin
+import kotlin.random.Random
+
+/**
+ * Deterministic inputs shared by the benchmarks. Fixed seeds keep runs
+ * comparable with the stored baseline.
+ */
+object BenchmarkFixtures {
+
+    /**
+     * A 1 Hz run at about 3 m/s with GPS-like jitter, looping around Oslo.
+     */
+    fun route(pointCount: Int, seed: Int = 42): List<LocationPoint> {
+        val random = Random(seed)
+        val startTime = 1_714_550_400_000L
+        return List(pointCount) { i ->
+            val angle = i * 2 * Math.PI / 1200
+            LocationPoint(
+                latitude = 59.9139 + 0.01 * sin(angle) + random.nextDouble(-2e-5, 2e-5),
+                longitude = 10.7522 + 0.02 * cos(angle) + random.nextDouble(-2e-5, 2e-5),
+                altitude = 20.0 + 15.0 * sin(angle * 3),
+                speed = 3f + random.nextFloat() * 0.4f,
+                timestamp = startTime + i * 1000L,
+                accuracy = 4f + random.nextFloat() * 4f
+            )
+        }
+    }
+
+    fun trainingPlan(weekCount: Int): TrainingPlan {
+        val dayNames = listOf("Monday", "Tuesday", "Wednesday", "Thursday", "Friday", "Saturday", "Sunday")
+        return TrainingPlan(
+            id = "plan-benchmark",
+            eventType = "Full Marathon",
+            targetDistance = "42.2km",
+            targetDate = "2026-10-04",
+            totalWeeks = weekCount,
+            currentWeek = 1,
+            weeks = List(weekCount) { week ->
+                TrainingWeek(
+                    weekNumber = week + 1,
+                    phase = if (week < weekCount / 2) "Base" else "Build",
+                    theme = "Aerobic development",
+                    totalDistanceKm = 40f + week,
+                    totalSessions = 5,
+                    isCurrentWeek = week == 0,
+                    isLocked = week > 0,
+                    days = dayNames.mapIndexed { index, day ->
+                        TrainingDay(
+                            dayOfWeek = day,
+                            workoutType = if (index == 0) "Rest" else "Easy Run",
+                            title = "${6 + index}km Easy Run",
+                            description = "Conversational pace, focus on relaxed form and steady breathing.",
+                            distanceKm = 6f + index,
+                            durationMinutes = 35 + index * 5,
+                            intensity = "Low",
+                            zone = "Zone 2",
+                            pace = "5:45 min/km",
+                            isRestDay = index == 0,
+                            warmup = "10 min Easy",
+                            mainSet = "${6 + index}km @ Zone 2",
+                            cooldown = "5 min Walk"
+                        )
+                    }
+                )
+            }
+        )
+    }
+
+    /** A model response wrapping [plan] in a markdown code block, as Gemini tends to. */
+    fun planResponse(plan: TrainingPlan): String =
+        "Here is your personalised plan:\n\n```json\n" + Json.encodeToString(plan) + "\n```\n\nGood luck!"
+
+    /**
+     * [map] as Firestore returns it: whole numbers come back as Long.
+     */
+    fun asFirestoreData(map: Map<String, Any>): Map<String, Any> = map.mapValues { (_, value) -> toFirestore(value) }
+
+    private fun toFirestore(value: Any): Any = when (value) {
+        is Int -> value.toLong()
+        is Float -> value.toDouble()
+        is Map<*, *> -> value.entries.associate { (k, v) -> k as String to toFirestore(v!!) }
+        is List<*> -> value.map { toFirestore(it!!) }
+        else -> value
+    }
+}
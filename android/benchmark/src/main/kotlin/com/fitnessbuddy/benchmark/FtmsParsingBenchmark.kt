@@ -0,0 +1,42 @@
+package com.fitnessbuddy.benchmark
+
+import com.fitnessbuddy.bluetooth.FtmsParser
+import com.fitnessbuddy.bluetooth.TreadmillData
+import kotlinx.benchmark.Benchmark
+import kotlinx.benchmark.Scope
+import kotlinx.benchmark.State
+
+/**
+ * Decoding of FTMS Treadmill Data notifications, several per second while
+ * an indoor session records.
+ */
+@State(Scope.Benchmark)
+class FtmsParsingBenchmark {
+
+    // Flags 0x0000: instantaneous speed only
+    private val speedPayload = byteArrayOf(0x00, 0x00, 0xE8.toByte(), 0x03)
+
+    // Flags 0x040C: speed, total distance, inclination and ramp angle, elapsed time
+    private val fullPayload = byteArrayOf(
+        0x0C, 0x04,
+        0xE8.toByte(), 0x03,
+        0xD2.toByte(), 0x04, 0x00,
+        0x0F, 0x00, 0xFF.toByte(), 0x7F,
+        0x58, 0x02
+    )
+
+    private val data = TreadmillData()
+
+    @Benchmark
+    fun decodeSpeed(): Float {
+        FtmsParser.decodeTreadmillData(speedPayload, data)
+        return data.speedKmh
+    }
+
+    // Expected to report zero allocation per operation
+    @Benchmark
+    fun decodeFullRecord(): Int {
+        FtmsParser.decodeTreadmillData(fullPayload, data)
+        return data.totalDistanceMeters
+    }
+}
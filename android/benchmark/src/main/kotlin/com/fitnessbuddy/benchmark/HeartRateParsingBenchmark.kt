@@ -0,0 +1,48 @@
+package com.fitnessbuddy.benchmark
+
+import com.fitnessbuddy.data.sensor.HeartRateMeasurement
+import com.fitnessbuddy.data.sensor.HeartRateMeasurementParser
+import kotlinx.benchmark.Benchmark
+import kotlinx.benchmark.Scope
+import kotlinx.benchmark.State
+
+/**
+ * Decoding of Heart Rate Measurement notifications, once per beat or second.
+ */
+@State(Scope.Benchmark)
+class HeartRateParsingBenchmark {
+
+    // Flags 0x00: UINT8 value
+    private val uint8Payload = byteArrayOf(0x00, 0x8C.toByte())
+
+    // Flags 0x01: UINT16 value
+    private val uint16Payload = byteArrayOf(0x01, 0x8C.toByte(), 0x00)
+
+    // Flags 0x1E: UINT8 value, contact detected, energy expended, three RR intervals
+    private val fullPayload = byteArrayOf(
+        0x1E, 0x8C.toByte(),
+        0x2C, 0x01,
+        0xB4.toByte(), 0x01, 0xC0.toByte(), 0x01, 0xBA.toByte(), 0x01
+    )
+
+    private val measurement = HeartRateMeasurement()
+
+    // Expected to report zero allocation per operation, like the others
+    @Benchmark
+    fun decodeUint8(): Int {
+        HeartRateMeasurementParser.decode(uint8Payload, measurement)
+        return measurement.bpm
+    }
+
+    @Benchmark
+    fun decodeUint16(): Int {
+        HeartRateMeasurementParser.decode(uint16Payload, measurement)
+        return measurement.bpm
+    }
+
+    @Benchmark
+    fun decodeWithRrIntervals(): Int {
+        HeartRateMeasurementParser.decode(fullPayload, measurement)
+        return measurement.rrIntervalMillis(measurement.rrCount - 1)
+    }
+}
@@ -0,0 +1,48 @@
+package com.fitnessbuddy.benchmark
+
+import com.fitnessbuddy.data.hrv.HrvCalculator
+import com.fitnessbuddy.data.hrv.RrArtifactFilter
+import com.fitnessbuddy.data.hrv.RrIntervalBuffer
+import kotlinx.benchmark.Benchmark
+import kotlinx.benchmark.Scope
+import kotlinx.benchmark.Setup
+import kotlinx.benchmark.State
+import kotlin.math.sin
+
+/**
+ * The per-beat filter and the five-second HRV update over a full buffer.
+ */
+@State(Scope.Benchmark)
+class HrvBenchmark {
+
+    private val buffer = RrIntervalBuffer()
+    private val calculator = HrvCalculator(buffer.capacity)
+    private val filter = RrArtifactFilter()
+    private var beat = 0
+
+    @Setup
+    fun setUp() {
+        var timestamp = 0L
+        for (i in 0 until buffer.capacity) {
+            val rr = syntheticRr(i)
+            timestamp += rr
+            buffer.add(timestamp, rr)
+        }
+    }
+
+    @Benchmark
+    fun filterBeat(): Int = filter.correct(syntheticRr(beat++))
+
+    // Two minutes at 150 bpm
+    @Benchmark
+    fun dfaAlpha1(): Float = calculator.dfaAlpha1(buffer, buffer.size - 300, buffer.size)
+
+    @Benchmark
+    fun rmssdAndSdnn(): Float =
+        calculator.rmssd(buffer, buffer.size - 150, buffer.size) +
+            calculator.sdnn(buffer, buffer.size - 150, buffer.size)
+
+    // 400 ms with respiratory and slower oscillations
+    private fun syntheticRr(i: Int): Int =
+        (400 + 12 * sin(i / 3.0) + 6 * sin(i / 17.0)).toInt()
+}
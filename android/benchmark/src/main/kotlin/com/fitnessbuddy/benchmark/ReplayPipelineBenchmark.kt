@@ -0,0 +1,112 @@
+package com.fitnessbuddy.benchmark
+
+import com.fitnessbuddy.data.metrics.ElevationProcessor
+import com.fitnessbuddy.data.replay.ReplaySpeed
+import com.fitnessbuddy.data.replay.SensorRecording
+import com.fitnessbuddy.data.replay.SensorReplay
+import com.fitnessbuddy.domain.model.WorkoutMode
+import com.fitnessbuddy.service.TrackingPipeline
+import kotlinx.benchmark.Benchmark
+import kotlinx.benchmark.Scope
+import kotlinx.benchmark.Setup
+import kotlinx.benchmark.State
+import kotlinx.coroutines.CoroutineStart
+import kotlinx.coroutines.Dispatchers
+import kotlinx.coroutines.flow.take
+import kotlinx.coroutines.launch
+import kotlinx.coroutines.runBlocking
+import kotlinx.coroutines.withTimeoutOrNull
+import kotlin.math.PI
+import kotlin.math.abs
+
+/**
+ * Whole recorded sessions replayed at [ReplaySpeed.MAX] through the session
+ * engine's [TrackingPipeline], so a regression anywhere between the source
+ * and the metrics shows up at multi-hour scale.
+ *
+ * Every operation also checks the end-of-session totals against the
+ * recording, and that no heart-rate sample was lost on the way.
+ */
+@State(Scope.Benchmark)
+class ReplayPipelineBenchmark {
+
+    private lateinit var threeHours: SensorRecording
+
+    @Setup
+    fun setUp() {
+        threeHours = SensorRecording.syntheticLoop(START_TIME, durationSeconds = THREE_HOURS_SECONDS)
+    }
+
+    @Benchmark
+    fun replayThreeHours(): Float = checkTotals(replay(threeHours))
+
+    private fun replay(recording: SensorRecording): TrackingPipeline = runBlocking {
+        val replay = SensorReplay(recording, ReplaySpeed.MAX, Dispatchers.Unconfined, START_TIME)
+        val pipeline = TrackingPipeline()
+        var readings = 0
+        // Subscribed before playback starts, so the first reading isn't missed
+        val heartRate = launch(start = CoroutineStart.UNDISPATCHED) {
+            replay.heartRateSamples.take(recording.heartRate.size).collect { sample ->
+                pipeline.onHeartRate(sample.timestamp, sample.bpm, isRecording = true)
+                readings++
+            }
+        }
+        replay.getLocationUpdates().collect { point ->
+            pipeline.onLocation(point, point.timestamp - START_TIME, Float.NaN, isRecording = true)
+        }
+        // Playback is over; a missing reading would leave the collector waiting
+        withTimeoutOrNull(DRAIN_TIMEOUT_MS) { heartRate.join() }
+            ?: error("Replay dropped heart-rate samples: $readings of ${recording.heartRate.size}")
+        pipeline.splitEngine.finish()
+        pipeline.endHeartRateSegment(START_TIME + THREE_HOURS_SECONDS * 1000L)
+        pipeline
+    }
+
+    /**
+     * The loop is run at a constant [SPEED_MS] with altitude swinging
+     * ±[ALTITUDE_SWING_METERS] once per lap, so distance, climb and splits are
+     * known in advance.
+     */
+    private fun checkTotals(pipeline: TrackingPipeline): Float {
+        val distance = pipeline.distanceMeters(WorkoutMode.OUTDOOR)
+        val expectedDistance = SPEED_MS * THREE_HOURS_SECONDS
+        check(abs(distance - expectedDistance) <= expectedDistance * DISTANCE_TOLERANCE) {
+            "Distance $distance m, expected $expectedDistance m"
+        }
+
+        // Hysteresis may drop up to a threshold at each turning point, never add climb
+        val loops = expectedDistance / (2 * PI * LOOP_RADIUS_METERS)
+        val climb = (loops * 2 * ALTITUDE_SWING_METERS).toFloat()
+        val minClimb = (loops * (2 * ALTITUDE_SWING_METERS - 2 * ElevationProcessor.DEFAULT_THRESHOLD_METERS)).toFloat()
+        val gain = pipeline.elevationGainMeters(WorkoutMode.OUTDOOR)
+        val loss = pipeline.elevationLossMeters(WorkoutMode.OUTDOOR)
+        check(gain in minClimb..climb && loss in minClimb..climb) {
+            "Elevation +$gain/-$loss m, expected between $minClimb and $climb m"
+        }
+
+        val laps = pipeline.splitEngine.laps
+        val fullLaps = (distance / 1000f).toInt()
+        check(laps.size == fullLaps + 1) { "${laps.size} laps for $distance m" }
+        check(laps.dropLast(1).all { abs(it.durationMillis - 1000f / SPEED_MS * 1000f) <= SPLIT_TOLERANCE_MS }) {
+            "Split times off a steady ${SPEED_MS} m/s"
+        }
+
+        val samples = pipeline.heartRateTrack.size
+        check(samples == THREE_HOURS_SECONDS + 1) { "$samples heart-rate samples recorded" }
+        return distance
+    }
+
+    private companion object {
+        const val START_TIME = 1_714_550_400_000L
+        const val THREE_HOURS_SECONDS = 3 * 3600
+        const val DRAIN_TIMEOUT_MS = 1_000L
+
+        // SensorRecording.syntheticLoop defaults
+        const val SPEED_MS = 3f
+        const val LOOP_RADIUS_METERS = 400.0
+        const val ALTITUDE_SWING_METERS = 5.0
+
+        const val DISTANCE_TOLERANCE = 0.01f
+        const val SPLIT_TOLERANCE_MS = 5_000f
+    }
+}
@@ -0,0 +1,57 @@
+package com.fitnessbuddy.benchmark
+
+import com.fitnessbuddy.data.location.LocationFilter
+import com.fitnessbuddy.data.location.LocationPoint
+import com.fitnessbuddy.data.location.RouteAccumulator
+import com.fitnessbuddy.data.location.RouteMath
+import kotlinx.benchmark.Benchmark
+import kotlinx.benchmark.Scope
+import kotlinx.benchmark.Setup
+import kotlinx.benchmark.State
+
+/**
+ * Whole-route calculations and the per-fix cost of live tracking.
+ */
+@State(Scope.Benchmark)
+class RouteBenchmark {
+
+    private lateinit var hourRoute: List<LocationPoint>
+    private val accumulator = RouteAccumulator()
+    private val filter = LocationFilter()
+    private var fixIndex = 0
+
+    @Setup
+    fun setUp() {
+        hourRoute = BenchmarkFixtures.route(pointCount = 3600)
+    }
+
+    @Benchmark
+    fun calculateDistanceHour(): Float = RouteMath.calculateDistance(hourRoute)
+
+    @Benchmark
+    fun calculatePace(): String = RouteMath.calculatePace(10_123f, 3_015L)
+
+    /** One fix folded into the running distance, as the session engine does per fix. */
+    @Benchmark
+    fun accumulatePerFix(): Float {
+        val point = hourRoute[fixIndex]
+        fixIndex++
+        if (fixIndex == hourRoute.size) {
+            fixIndex = 0
+            accumulator.reset()
+        }
+        return accumulator.add(point)
+    }
+
+    /** One raw fix through the Kalman smoothing stage. */
+    @Benchmark
+    fun filterPerFix(): Boolean {
+        val point = hourRoute[fixIndex]
+        fixIndex++
+        if (fixIndex == hourRoute.size) {
+            fixIndex = 0
+            filter.reset()
+        }
+        return filter.process(point.latitude, point.longitude, point.speed, point.accuracy, point.timestamp)
+    }
+}
@@ -0,0 +1,41 @@
+package com.fitnessbuddy.benchmark
+
+import com.fitnessbuddy.data.repository.JsonExtractor
+import com.fitnessbuddy.data.repository.TrainingPlanMapper
+import com.fitnessbuddy.domain.model.TrainingPlan
+import kotlinx.benchmark.Benchmark
+import kotlinx.benchmark.Scope
+import kotlinx.benchmark.Setup
+import kotlinx.benchmark.State
+
+/**
+ * Plan response extraction and the Firestore conversions for an 18-week plan.
+ */
+@State(Scope.Benchmark)
+class TrainingPlanBenchmark {
+
+    private lateinit var plan: TrainingPlan
+    private lateinit var codeBlockResponse: String
+    private lateinit var bareResponse: String
+    private lateinit var firestoreData: Map<String, Any>
+
+    @Setup
+    fun setUp() {
+        plan = BenchmarkFixtures.trainingPlan(weekCount = 18)
+        codeBlockResponse = BenchmarkFixtures.planResponse(plan)
+        bareResponse = JsonExtractor.extract(codeBlockResponse)
+        firestoreData = BenchmarkFixtures.asFirestoreData(TrainingPlanMapper.toMap(plan, createdAt = 0L))
+    }
+
+    @Benchmark
+    fun extractJsonFromCodeBlock(): String = JsonExtractor.extract(codeBlockResponse)
+
+    @Benchmark
+    fun extractJsonFromBareObject(): String = JsonExtractor.extract(bareResponse)
+
+    @Benchmark
+    fun planToFirestoreMap(): Map<String, Any> = TrainingPlanMapper.toMap(plan, createdAt = 0L)
+
+    @Benchmark
+    fun planFromFirestoreMap(): TrainingPlan = TrainingPlanMapper.fromMap(firestoreData)
+}
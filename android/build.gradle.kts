@@ -1,11 +1,16 @@
 plugins {
     id("com.android.application") version "8.13.2" apply false
+    id("com.android.test") version "8.13.2" apply false
+    id("androidx.baselineprofile") version "1.4.1" apply false
     id("org.jetbrains.kotlin.android") version "2.0.21" apply false
+    id("org.jetbrains.kotlin.jvm") version "2.0.21" apply false
+    id("org.jetbrains.kotlin.plugin.allopen") version "2.0.21" apply false
     id("org.jetbrains.kotlin.plugin.compose") version "2.0.21" apply false
     id("org.jetbrains.kotlin.plugin.serialization") version "2.0.21" apply false
     id("com.google.devtools.ksp") version "2.0.21-1.0.27" apply false
     id("com.google.dagger.hilt.android") version "2.57.2" apply false
     id("com.google.gms.google-services") version "4.4.0" apply false
+    id("org.jetbrains.kotlinx.benchmark") version "0.4.13" apply false
 }
 
 
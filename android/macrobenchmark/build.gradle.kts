@@ -0,0 +1,61 @@
+import com.android.build.api.dsl.ManagedVirtualDevice
+
+plugins {
+    id("com.android.test")
+    id("org.jetbrains.kotlin.android")
+    id("androidx.baselineprofile")
+}
+
+// Startup, scrolling and tracker macrobenchmarks for :app, plus the journeys
+// that generate its Baseline Profile.
+//
+//   ./gradlew :macrobenchmark:connectedBenchmarkReleaseAndroidTest   (running emulator or device)
+//   ./gradlew :app:generateBaselineProfile                            (managed emulator, writes app/src/release/generated/baselineProfiles)
+//
+// Journeys need a signed-in account with a saved training plan on the device.
+android {
+    namespace = "com.fitnessbuddy.macrobenchmark"
+    compileSdk = 36
+
+    defaultConfig {
+        minSdk = 28
+        targetSdk = 36
+
+        testInstrumentationRunner = "androidx.test.runner.AndroidJUnitRunner"
+        // Emulator numbers are for tracking trends, not absolutes
+        testInstrumentationRunnerArguments["androidx.benchmark.suppressErrors"] = "EMULATOR"
+    }
+
+    compileOptions {
+        sourceCompatibility = JavaVersion.VERSION_21
+        targetCompatibility = JavaVersion.VERSION_21
+    }
+    kotlinOptions {
+        jvmTarget = "21"
+    }
+
+    targetProjectPath = ":app"
+
+    testOptions.managedDevices.allDevices {
+        create<ManagedVirtualDevice>("pixel6Api34") {
+            device = "Pixel 6"
+            apiLevel = 34
+            systemImageSource = "google"
+        }
+    }
+}
+
+baselineProfile {
+    managedDevices += "pixel6Api34"
+    useConnectedDevices = false
+}
+
+dependencies {
+    implementation("androidx.test.ext:junit:1.3.0")
+    implementation("androidx.test.uiautomator:uiautomator:2.3.0")
+    implementation("androidx.benchmark:benchmark-macro-junit4:1.4.1")
+}
+
+kotlin {
+    jvmToolchain(21)
+}
@@ -0,0 +1,49 @@
+package com.fitnessbuddy.macrobenchmark
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.LargeTest
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Collects the Baseline Profile shipped with :app. Run through
+ * `./gradlew :app:generateBaselineProfile`; the plugin merges the output of
+ * both rules into the app's release source set.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4::class)
+class BaselineProfileGenerator {
+    @get:Rule
+    val baselineProfileRule = BaselineProfileRule()
+
+    /** Launch to the first screen; also used as the startup profile for dex layout. */
+    @Test
+    fun startup() = baselineProfileRule.collect(
+        packageName = TARGET_PACKAGE,
+        includeInStartupProfile = true
+    ) {
+        pressHome()
+        startActivityAndWait()
+    }
+
+    /** Training plan lists and a tracker session. */
+    @Test
+    fun journeys() = baselineProfileRule.collect(
+        packageName = TARGET_PACKAGE
+    ) {
+        pressHome()
+        openProgramOverview()
+        scrollProgramOverview()
+
+        pressHome()
+        openWeekDetail()
+        scrollWeekDetail()
+
+        killProcess()
+        grantTrackerPermissions()
+        openTracker()
+        runTrackerSession()
+    }
+}
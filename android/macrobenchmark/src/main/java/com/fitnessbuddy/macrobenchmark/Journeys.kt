@@ -0,0 +1,93 @@
+package com.fitnessbuddy.macrobenchmark
+
+import android.content.Intent
+import android.net.Uri
+import androidx.benchmark.macro.MacrobenchmarkScope
+import androidx.test.uiautomator.By
+import androidx.test.uiautomator.Direction
+import androidx.test.uiautomator.UiObject2
+import androidx.test.uiautomator.Until
+
+/**
+ * User journeys shared by the benchmarks and the Baseline Profile generator.
+ *
+ * Screens are opened through the app's `fitnessbuddy://app/...` deep links
+ * and found by the test tags MainActivity exposes as resource ids.
+ */
+const val TARGET_PACKAGE = "com.fitnessbuddy"
+
+// Matches EmulatedSensors.EXTRA_EMULATED_SENSORS in the app
+private const val EXTRA_EMULATED_SENSORS = "com.fitnessbuddy.EMULATED_SENSORS"
+
+private const val DEEP_LINK_BASE = "fitnessbuddy://app"
+private const val UI_TIMEOUT_MS = 10_000L
+private const val GPS_TIMEOUT_MS = 30_000L
+
+// How long the tracker records before finishing
+private const val SESSION_MS = 15_000L
+
+fun MacrobenchmarkScope.openScreen(path: String, emulatedSensors: Boolean = false) {
+    val intent = Intent(Intent.ACTION_VIEW, Uri.parse("$DEEP_LINK_BASE/$path"))
+        .setPackage(TARGET_PACKAGE)
+    if (emulatedSensors) intent.putExtra(EXTRA_EMULATED_SENSORS, true)
+    startActivityAndWait(intent)
+}
+
+fun MacrobenchmarkScope.openProgramOverview() = openScreen("training_plan")
+
+fun MacrobenchmarkScope.openWeekDetail(weekNumber: Int = 1) = openScreen("week_detail/$weekNumber")
+
+fun MacrobenchmarkScope.openTracker(weekNumber: Int = 1, dayOfWeek: String = "Monday") =
+    openScreen("workout_tracker/$weekNumber/$dayOfWeek", emulatedSensors = true)
+
+/** Flings a scrollable list down and back up. */
+fun MacrobenchmarkScope.scrollList(tag: String) {
+    val list = waitForTag(tag)
+    // Keep the fling clear of the gesture navigation area
+    list.setGestureMargin(device.displayWidth / 5)
+    repeat(2) {
+        list.fling(Direction.DOWN)
+        device.waitForIdle()
+    }
+    list.fling(Direction.UP)
+    device.waitForIdle()
+}
+
+fun MacrobenchmarkScope.scrollProgramOverview() = scrollList("program_weeks")
+
+fun MacrobenchmarkScope.scrollWeekDetail() = scrollList("week_days")
+
+/** Grants what an outdoor session asks for, so no permission dialog shows up mid-run. */
+fun MacrobenchmarkScope.grantTrackerPermissions() {
+    for (permission in listOf(
+        "android.permission.ACCESS_FINE_LOCATION",
+        "android.permission.ACCESS_COARSE_LOCATION",
+        "android.permission.POST_NOTIFICATIONS"
+    )) {
+        device.executeShellCommand("pm grant $packageName $permission")
+    }
+}
+
+/**
+ * Runs an outdoor session on emulated sensors: acquire the replayed GPS
+ * fix, record for a while with the live stats updating, scroll the tracker
+ * and finish.
+ */
+fun MacrobenchmarkScope.runTrackerSession() {
+    waitForTag("mode_outdoor").click()
+    waitForTag("workout_prepare").click()
+    device.wait(Until.findObject(By.res("workout_start").enabled(true)), GPS_TIMEOUT_MS)
+        ?.click()
+        ?: error("No GPS fix from the emulated sensors")
+
+    device.wait(Until.gone(By.res("workout_start")), UI_TIMEOUT_MS)
+    Thread.sleep(SESSION_MS / 2)
+    waitForTag("workout_tracker").fling(Direction.DOWN)
+    Thread.sleep(SESSION_MS / 2)
+    waitForTag("workout_finish").click()
+    device.waitForIdle()
+}
+
+private fun MacrobenchmarkScope.waitForTag(tag: String): UiObject2 =
+    device.wait(Until.findObject(By.res(tag)), UI_TIMEOUT_MS)
+        ?: error("'$tag' not shown; is an account with a saved plan signed in?")
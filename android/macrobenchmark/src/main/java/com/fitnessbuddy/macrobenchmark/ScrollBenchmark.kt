@@ -0,0 +1,53 @@
+package com.fitnessbuddy.macrobenchmark
+
+import androidx.benchmark.macro.BaselineProfileMode
+import androidx.benchmark.macro.CompilationMode
+import androidx.benchmark.macro.FrameTimingMetric
+import androidx.benchmark.macro.MacrobenchmarkScope
+import androidx.benchmark.macro.StartupMode
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.LargeTest
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Frame timing while flinging the training plan lists. Each iteration opens
+ * the screen fresh, so plan loading is part of the setup, not the measure.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4::class)
+class ScrollBenchmark {
+    @get:Rule
+    val benchmarkRule = MacrobenchmarkRule()
+
+    @Test
+    fun programOverview() = measureScroll(
+        open = { openProgramOverview() },
+        scroll = { scrollProgramOverview() }
+    )
+
+    @Test
+    fun weekDetail() = measureScroll(
+        open = { openWeekDetail() },
+        scroll = { scrollWeekDetail() }
+    )
+
+    private fun measureScroll(
+        open: MacrobenchmarkScope.() -> Unit,
+        scroll: MacrobenchmarkScope.() -> Unit
+    ) = benchmarkRule.measureRepeated(
+        packageName = TARGET_PACKAGE,
+        metrics = listOf(FrameTimingMetric()),
+        compilationMode = CompilationMode.Partial(BaselineProfileMode.Require),
+        startupMode = StartupMode.WARM,
+        iterations = 5,
+        setupBlock = {
+            pressHome()
+            open()
+        }
+    ) {
+        scroll()
+    }
+}
@@ -0,0 +1,53 @@
+package com.fitnessbuddy.macrobenchmark
+
+import androidx.benchmark.macro.BaselineProfileMode
+import androidx.benchmark.macro.CompilationMode
+import androidx.benchmark.macro.StartupMode
+import androidx.benchmark.macro.StartupTimingMetric
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule
+import androidx.test.filters.LargeTest
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+import org.junit.runners.Parameterized
+
+/**
+ * Time to initial and full display from the launcher: Hilt graph, Firebase
+ * auth check and the first navigation to permissions or dashboard.
+ *
+ * Runs without AOT compilation and with the Baseline Profile, so the gain
+ * from the profile shows up next to the absolute numbers.
+ */
+@LargeTest
+@RunWith(Parameterized::class)
+class StartupBenchmark(
+    private val startupMode: StartupMode,
+    private val compilationMode: CompilationMode
+) {
+    @get:Rule
+    val benchmarkRule = MacrobenchmarkRule()
+
+    @Test
+    fun startup() = benchmarkRule.measureRepeated(
+        packageName = TARGET_PACKAGE,
+        metrics = listOf(StartupTimingMetric()),
+        compilationMode = compilationMode,
+        startupMode = startupMode,
+        iterations = 10,
+        setupBlock = { pressHome() }
+    ) {
+        startActivityAndWait()
+    }
+
+    companion object {
+        @JvmStatic
+        @Parameterized.Parameters(name = "{0}-{1}")
+        fun parameters(): List<Array<Any>> =
+            listOf(StartupMode.COLD, StartupMode.WARM).flatMap { startupMode ->
+                listOf(
+                    CompilationMode.None(),
+                    CompilationMode.Partial(BaselineProfileMode.Require)
+                ).map { arrayOf(startupMode, it) }
+            }
+    }
+}
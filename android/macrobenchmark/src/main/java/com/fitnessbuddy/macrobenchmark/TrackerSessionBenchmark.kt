@@ -0,0 +1,42 @@
+package com.fitnessbuddy.macrobenchmark
+
+import androidx.benchmark.macro.BaselineProfileMode
+import androidx.benchmark.macro.CompilationMode
+import androidx.benchmark.macro.FrameTimingMetric
+import androidx.benchmark.macro.StartupMode
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule
+import androidx.test.ext.junit.runners.AndroidJUnit4
+import androidx.test.filters.LargeTest
+import org.junit.Rule
+import org.junit.Test
+import org.junit.runner.RunWith
+
+/**
+ * Frame timing of a live outdoor session fed by the app's emulated sensors:
+ * a synthetic 1 Hz GPS loop and heart rate replayed in real time.
+ *
+ * Cold start on every iteration, because emulation is picked when the sensor
+ * sources are first injected in a new process.
+ */
+@LargeTest
+@RunWith(AndroidJUnit4::class)
+class TrackerSessionBenchmark {
+    @get:Rule
+    val benchmarkRule = MacrobenchmarkRule()
+
+    @Test
+    fun outdoorSession() = benchmarkRule.measureRepeated(
+        packageName = TARGET_PACKAGE,
+        metrics = listOf(FrameTimingMetric()),
+        compilationMode = CompilationMode.Partial(BaselineProfileMode.Require),
+        startupMode = StartupMode.COLD,
+        iterations = 3,
+        setupBlock = {
+            grantTrackerPermissions()
+            pressHome()
+            openTracker()
+        }
+    ) {
+        runTrackerSession()
+    }
+}
@@ -15,3 +15,5 @@ dependencyResolutionManagement {
 
 rootProject.name = "FitnessBuddy"
 include(":app")
+include(":benchmark")
+include(":macrobenchmark")